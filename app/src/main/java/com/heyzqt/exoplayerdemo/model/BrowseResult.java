@@ -0,0 +1,57 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Created by heyzqt on 2019-09-03.
+ * 浏览结果，所有音乐都来自同一个目录快照，带有这个快照的版本号。
+ * 遍历时才把id转换成MediaMetadataCompat
+ */
+public final class BrowseResult implements Iterable<MediaMetadataCompat> {
+
+    private final CatalogSnapshot mSnapshot;
+    private final List<String> mTrackIds;
+
+    BrowseResult(CatalogSnapshot snapshot, List<String> trackIds) {
+        this.mSnapshot = snapshot;
+        this.mTrackIds = trackIds;
+    }
+
+    /**
+     * @return 结果所属目录的版本，和{@link MusicProvider#getCatalogVersion()}不同时说明目录已经刷新过了
+     */
+    public long getCatalogVersion() {
+        return mSnapshot.getVersion();
+    }
+
+    public int size() {
+        return mTrackIds.size();
+    }
+
+    public List<String> getTrackIds() {
+        return mTrackIds;
+    }
+
+    @Override
+    public Iterator<MediaMetadataCompat> iterator() {
+        final Iterator<String> ids = mTrackIds.iterator();
+        return new Iterator<MediaMetadataCompat>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public MediaMetadataCompat next() {
+                if (!ids.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return mSnapshot.getMusic(ids.next());
+            }
+        };
+    }
+}
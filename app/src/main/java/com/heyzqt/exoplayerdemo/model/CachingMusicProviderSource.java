@@ -0,0 +1,39 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import java.util.Iterator;
+
+/**
+ * Created by heyzqt on 2019-08-24.
+ * 能在本地保存最近一次成功加载的目录，并且能够向服务器确认目录是否有更新的数据源
+ */
+public interface CachingMusicProviderSource extends MusicProviderSource {
+
+    /**
+     * 不访问网络，返回本地缓存的目录
+     *
+     * @return 没有可用缓存时返回null
+     */
+    Iterator<MediaMetadataCompat> cachedIterator();
+
+    /**
+     * 不访问网络，直接映射本地缓存的目录文件，不逐首读出，只校验文件头
+     *
+     * @return 没有可用缓存或者缓存不是映射格式时返回null，调用方改用{@link #cachedIterator()}
+     */
+    MappedCatalog openCachedCatalog();
+
+    /**
+     * 校验{@link #openCachedCatalog()}返回的目录的内容，需要读一遍整个文件，在后台线程调用。
+     * 校验失败时丢弃缓存，下一次{@link #iterator()}会完整下载
+     */
+    boolean verifyCachedCatalog(MappedCatalog catalog);
+
+    /**
+     * 向服务器确认目录是否有更新，需要在{@link #cachedIterator()}或者{@link #openCachedCatalog()}之后调用
+     *
+     * @return 目录没有变化或者暂时无法访问服务器时返回null，调用方继续使用当前的目录即可
+     */
+    Iterator<MediaMetadataCompat> revalidate();
+}
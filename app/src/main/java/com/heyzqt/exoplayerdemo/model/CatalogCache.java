@@ -0,0 +1,165 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by heyzqt on 2019-08-24.
+ * 把最近一次成功加载的音乐目录保存到磁盘上，冷启动时可以不访问网络、不解析JSON直接使用。
+ * 同时保存服务器返回的ETag和Last-Modified，用于下一次条件请求。
+ * 文件是{@link MappedCatalog}格式，打开时映射到内存，不逐首读出
+ */
+public class CatalogCache {
+
+    private static final String FILE_NAME = "catalog.bin";
+    private static final String TEMP_FILE_NAME = "catalog.tmp";
+
+    private final File mDir;
+
+    public static class Validators {
+        public final String etag;
+        public final String lastModified;
+
+        Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public CatalogCache(File dir) {
+        this.mDir = dir;
+    }
+
+    public boolean exists() {
+        return new File(mDir, FILE_NAME).isFile();
+    }
+
+    /**
+     * 映射缓存的目录文件。旧格式、被截断或者文件头校验失败的文件都当作没有缓存，
+     * 内容需要调用方通过{@link MappedCatalog#verify()}校验
+     *
+     * @return 没有可用缓存时返回null
+     */
+    public MappedCatalog open() {
+        File file = new File(mDir, FILE_NAME);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return MappedCatalog.open(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 只读取文件头中的ETag/Last-Modified
+     *
+     * @return 没有缓存或者缓存已损坏时返回null
+     */
+    public Validators readValidators() {
+        MappedCatalog catalog = open();
+        return catalog == null || !catalog.verify()
+                ? null : new Validators(catalog.getEtag(), catalog.getLastModified());
+    }
+
+    /**
+     * 读取缓存的全部音乐
+     *
+     * @return 没有缓存或者缓存已损坏时返回null
+     */
+    public List<MusicTrack> readTracks() {
+        MappedCatalog catalog = open();
+        if (catalog == null || !catalog.verify()) {
+            return null;
+        }
+        List<MusicTrack> tracks = new ArrayList<>(catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            tracks.add(catalog.getTrack(i));
+        }
+        return tracks;
+    }
+
+    /**
+     * 开始写入新的目录。所有音乐写完调用{@link Editor#commit()}之后才会替换旧的缓存，
+     * 中途失败的话旧缓存保持不变
+     */
+    public Editor edit(String etag, String lastModified) throws IOException {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            throw new IOException("Could not create cache dir " + mDir);
+        }
+        return new Editor(new File(mDir, TEMP_FILE_NAME), etag, lastModified);
+    }
+
+    /**
+     * 直接用已有的目录替换缓存，比如增量同步之后
+     */
+    public void write(CatalogSnapshot catalog, String etag, String lastModified) throws IOException {
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            throw new IOException("Could not create cache dir " + mDir);
+        }
+        replace(new File(mDir, TEMP_FILE_NAME), catalog, etag, lastModified);
+    }
+
+    public void clear() {
+        new File(mDir, FILE_NAME).delete();
+        new File(mDir, TEMP_FILE_NAME).delete();
+        //写到一半时进程被杀掉留下的音乐表
+        new File(mDir, TEMP_FILE_NAME + ".tracks").delete();
+    }
+
+    /**
+     * 边下载边写进临时文件，内存里不保存整个目录
+     */
+    public class Editor {
+        private final File mTempFile;
+        private final MappedCatalog.Writer mWriter;
+        private boolean mDone;
+
+        private Editor(File tempFile, String etag, String lastModified) throws IOException {
+            this.mTempFile = tempFile;
+            this.mWriter = MappedCatalog.newWriter(tempFile, etag, lastModified);
+        }
+
+        public void append(MusicTrack track) throws IOException {
+            if (mDone) {
+                throw new IOException("Editor already finished");
+            }
+            mWriter.append(track);
+        }
+
+        public void commit() throws IOException {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            mWriter.commit();
+            rename(mTempFile);
+        }
+
+        public void abort() {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            mWriter.abort();
+        }
+    }
+
+    //先写临时文件再改名，中途失败时旧缓存保持不变；已经映射的旧文件在改名后仍然可以读
+    private void replace(File tempFile, CatalogSnapshot catalog, String etag, String lastModified)
+            throws IOException {
+        MappedCatalog.write(tempFile, catalog, etag, lastModified);
+        rename(tempFile);
+    }
+
+    private void rename(File tempFile) throws IOException {
+        File file = new File(mDir, FILE_NAME);
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not rename " + tempFile + " to " + file);
+        }
+    }
+}
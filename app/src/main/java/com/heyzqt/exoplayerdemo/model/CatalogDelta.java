@@ -0,0 +1,58 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 目录从一个版本到另一个版本的增量：新增、修改、删除的音乐。
+ * 版本号就是目录的ETag，增量应用之后目录和服务器上这个ETag对应的目录一致
+ */
+public final class CatalogDelta {
+
+    private final String mBaseVersion;
+    private final String mVersion;
+    private final List<MusicTrack> mAdded;
+    private final List<MusicTrack> mUpdated;
+    private final List<String> mRemoved;
+
+    /**
+     * @param baseVersion 增量基于的版本，和本地版本不一致说明中间缺了版本，不能应用
+     * @param removed     删除的音乐id
+     */
+    public CatalogDelta(String baseVersion, String version, List<MusicTrack> added,
+                        List<MusicTrack> updated, List<String> removed) {
+        this.mBaseVersion = baseVersion;
+        this.mVersion = version;
+        this.mAdded = Collections.unmodifiableList(added);
+        this.mUpdated = Collections.unmodifiableList(updated);
+        this.mRemoved = Collections.unmodifiableList(removed);
+    }
+
+    public String getBaseVersion() {
+        return mBaseVersion;
+    }
+
+    public String getVersion() {
+        return mVersion;
+    }
+
+    public List<MusicTrack> getAdded() {
+        return mAdded;
+    }
+
+    public List<MusicTrack> getUpdated() {
+        return mUpdated;
+    }
+
+    public List<String> getRemoved() {
+        return mRemoved;
+    }
+
+    /**
+     * @return 没有任何音乐变化（版本号可能变了）
+     */
+    public boolean isEmpty() {
+        return mAdded.isEmpty() && mUpdated.isEmpty() && mRemoved.isEmpty();
+    }
+}
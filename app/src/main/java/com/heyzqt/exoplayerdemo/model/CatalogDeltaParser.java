@@ -0,0 +1,17 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 把服务器返回的目录增量解析成{@link CatalogDelta}
+ */
+public interface CatalogDeltaParser {
+
+    /**
+     * @param in       服务器返回的数据，由调用方负责关闭
+     * @param basePath 目录文件所在的路径，用于补全相对地址
+     */
+    CatalogDelta parseDelta(InputStream in, String basePath) throws IOException;
+}
@@ -0,0 +1,332 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Created by heyzqt on 2019-08-24.
+ * 带磁盘缓存的目录加载器：
+ * 1. {@link #openCached()}直接映射上一次成功加载的目录，不访问网络也不解析JSON
+ * 2. {@link #revalidate()}带着ETag/If-Modified-Since向服务器发起条件请求，
+ * 服务器返回304时什么都不用做；返回新数据时边解析边写入缓存
+ * 3. 设置了增量地址时，{@link #fetchDelta()}用缓存的ETag作为版本号请求这个版本之后的变化，
+ * 版本不连续或者服务器已经不认识这个版本时返回null，由调用方改用{@link #revalidate()}完整同步
+ */
+public class CatalogLoader {
+
+    private static final int CONNECT_TIMEOUT_MS = 15 * 1000;
+    private static final int READ_TIMEOUT_MS = 30 * 1000;
+
+    private final String mUrl;
+    private final String mBasePath;
+    private final CatalogCache mCache;
+    private final CatalogParser mParser;
+    private volatile String mDeltaUrl;
+    private volatile CatalogDeltaParser mDeltaParser;
+
+    //只有在成功读出缓存之后才能发条件请求，否则304会让我们什么数据都拿不到
+    private volatile CatalogCache.Validators mCachedValidators;
+
+    /**
+     * @param cache 为null时不使用磁盘缓存，每次都完整下载
+     */
+    public CatalogLoader(String url, CatalogCache cache, CatalogParser parser) {
+        this.mUrl = url;
+        this.mBasePath = url.substring(0, url.lastIndexOf('/') + 1);
+        this.mCache = cache;
+        this.mParser = parser;
+    }
+
+    /**
+     * @param deltaUrl 增量地址，请求时带上since=当前版本；为null时不做增量同步
+     */
+    public void setDeltaSource(String deltaUrl, CatalogDeltaParser parser) {
+        this.mDeltaParser = parser;
+        this.mDeltaUrl = deltaUrl;
+    }
+
+    /**
+     * 映射缓存的目录文件，不逐首读出，只校验文件头
+     *
+     * @return 没有可用缓存时返回null
+     */
+    public MappedCatalog openCached() {
+        MappedCatalog catalog = mCache != null ? mCache.open() : null;
+        mCachedValidators = catalog != null
+                ? new CatalogCache.Validators(catalog.getEtag(), catalog.getLastModified()) : null;
+        return catalog;
+    }
+
+    /**
+     * 校验{@link #openCached()}返回的目录的内容，失败时删除缓存，下一次请求不再带条件
+     */
+    public boolean verifyCached(MappedCatalog catalog) {
+        if (catalog.verify()) {
+            return true;
+        }
+        mCachedValidators = null;
+        if (mCache != null) {
+            mCache.clear();
+        }
+        return false;
+    }
+
+    /**
+     * @return 缓存的目录，没有可用缓存时返回null
+     */
+    public List<MusicTrack> loadCached() {
+        MappedCatalog catalog = openCached();
+        if (catalog == null || !verifyCached(catalog)) {
+            return null;
+        }
+        List<MusicTrack> tracks = new ArrayList<>(catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            tracks.add(catalog.getTrack(i));
+        }
+        return tracks;
+    }
+
+    /**
+     * 向服务器确认目录是否有更新
+     *
+     * @return 服务器返回304时返回null；否则返回新目录的迭代器，
+     * 迭代完成后新目录才会写入缓存并关闭连接。迭代器实现了Closeable，中途放弃时关闭它会断开连接、丢弃写了一半的缓存
+     */
+    public Iterator<MusicTrack> revalidate() throws IOException {
+        HttpURLConnection connection = openConnection(mUrl);
+        CatalogCache.Validators validators = mCachedValidators;
+        if (validators != null) {
+            if (validators.etag != null) {
+                connection.setRequestProperty("If-None-Match", validators.etag);
+            }
+            if (validators.lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", validators.lastModified);
+            }
+        }
+
+        InputStream in = null;
+        CatalogCache.Editor editor = null;
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null) {
+                connection.disconnect();
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + code + " for " + mUrl);
+            }
+
+            in = connection.getInputStream();
+            CatalogCache.Validators newValidators = new CatalogCache.Validators(
+                    connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+            if (mCache != null) {
+                try {
+                    editor = mCache.edit(newValidators.etag, newValidators.lastModified);
+                } catch (IOException e) {
+                    //写不了缓存也不影响这次加载
+                    editor = null;
+                }
+            }
+            return new CachingIterator(mParser.parse(in, mBasePath), connection, in, editor,
+                    newValidators);
+        } catch (IOException | RuntimeException e) {
+            //缓存边下载边写文件，删掉写了一半的临时文件
+            if (editor != null) {
+                editor.abort();
+            }
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                    // ignore
+                }
+            }
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * 请求当前版本之后的增量。版本号是缓存目录的ETag，没有缓存时无法增量同步
+     *
+     * @return 没有设置增量地址、没有版本号、服务器不认识这个版本（404/410）或者返回的增量
+     * 不是基于这个版本时返回null，需要完整同步
+     */
+    public CatalogDelta fetchDelta() throws IOException {
+        String deltaUrl = mDeltaUrl;
+        CatalogCache.Validators validators = mCachedValidators;
+        if (deltaUrl == null || validators == null || validators.etag == null) {
+            return null;
+        }
+
+        HttpURLConnection connection = openConnection(deltaUrl
+                + (deltaUrl.indexOf('?') < 0 ? '?' : '&')
+                + "since=" + URLEncoder.encode(validators.etag, "UTF-8"));
+        InputStream in = null;
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_GONE || code == HttpURLConnection.HTTP_NOT_FOUND) {
+                //服务器只保留最近一段时间的增量
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + code + " for " + deltaUrl);
+            }
+            in = connection.getInputStream();
+            //增量通常很小，直接读完
+            CatalogDelta delta = mDeltaParser.parseDelta(in, mBasePath);
+            return validators.etag.equals(delta.getBaseVersion()) ? delta : null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * 增量已经应用到目录上，用新目录替换缓存，之后的请求都基于新版本。
+     * 写缓存失败时磁盘上仍是旧版本，下次冷启动会从旧版本开始同步
+     */
+    public void commitDelta(CatalogDelta delta, CatalogSnapshot catalog) {
+        CatalogCache.Validators validators = new CatalogCache.Validators(delta.getVersion(), null);
+        if (mCache != null) {
+            try {
+                mCache.write(catalog, validators.etag, validators.lastModified);
+            } catch (IOException e) {
+                // 写不了缓存也不影响当前的目录
+            }
+        }
+        mCachedValidators = validators;
+    }
+
+    private static HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    /**
+     * 边迭代边写缓存，迭代结束时提交缓存并关闭连接。
+     * close()可以在其他线程上调用，断开连接后正在阻塞的读取会抛出异常
+     */
+    private class CachingIterator implements Iterator<MusicTrack>, Closeable {
+        private final Iterator<MusicTrack> mTracks;
+        private final HttpURLConnection mConnection;
+        private final InputStream mIn;
+        private final CatalogCache.Validators mValidators;
+        private CatalogCache.Editor mEditor;
+        private boolean mFinished;
+        //完整迭代完成，不是出错或者被关闭
+        private boolean mCompleted;
+
+        CachingIterator(Iterator<MusicTrack> tracks, HttpURLConnection connection, InputStream in,
+                        CatalogCache.Editor editor, CatalogCache.Validators validators) {
+            this.mTracks = tracks;
+            this.mConnection = connection;
+            this.mIn = in;
+            this.mEditor = editor;
+            this.mValidators = validators;
+        }
+
+        @Override
+        public boolean hasNext() {
+            synchronized (this) {
+                if (mFinished) {
+                    if (!mCompleted) {
+                        //中途关闭的下载不能当成完整的目录
+                        throw new IllegalStateException("Catalog download was closed");
+                    }
+                    return false;
+                }
+            }
+            boolean hasNext;
+            try {
+                hasNext = mTracks.hasNext();
+            } catch (RuntimeException e) {
+                finish(false);
+                throw e;
+            }
+            if (!hasNext) {
+                finish(true);
+            }
+            return hasNext;
+        }
+
+        @Override
+        public MusicTrack next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            MusicTrack track;
+            try {
+                track = mTracks.next();
+            } catch (RuntimeException e) {
+                finish(false);
+                throw e;
+            }
+            synchronized (this) {
+                if (mEditor != null) {
+                    try {
+                        mEditor.append(track);
+                    } catch (IOException e) {
+                        mEditor.abort();
+                        mEditor = null;
+                    }
+                }
+            }
+            return track;
+        }
+
+        @Override
+        public void close() {
+            finish(false);
+        }
+
+        //结束只处理一次：迭代完、迭代出错和close()可能先后发生，也可能在不同线程上
+        private synchronized void finish(boolean success) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = true;
+            mCompleted = success;
+            if (!success) {
+                //先断开连接，其他线程上阻塞的读取才能返回
+                mConnection.disconnect();
+            }
+            if (mEditor != null) {
+                if (success) {
+                    try {
+                        mEditor.commit();
+                        mCachedValidators = mValidators;
+                    } catch (IOException e) {
+                        // 提交失败时旧缓存不变
+                    }
+                } else {
+                    mEditor.abort();
+                }
+                mEditor = null;
+            }
+            try {
+                mIn.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            mConnection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Created by heyzqt on 2019-08-24.
+ * 把服务器返回的目录数据解析成MusicTrack
+ */
+public interface CatalogParser {
+
+    /**
+     * @param in       服务器返回的数据，由调用方负责关闭
+     * @param basePath 目录文件所在的路径，用于补全相对地址
+     */
+    Iterator<MusicTrack> parse(InputStream in, String basePath) throws IOException;
+}
@@ -0,0 +1,610 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by heyzqt on 2019-09-03.
+ * 某一版本的目录以及对应的分类索引，不可修改，多个线程可以不加锁同时读取。
+ * 音乐按加入目录的顺序排列，遍历顺序在同一个快照内始终不变；刷新时在旁边构建新的快照，完成后整体替换。
+ * <p>
+ * 按列保存：每个字段一个数组（按1024首分块），时长、音轨号、总音轨数是基本类型数组，歌手、专辑、流派、封面地址
+ * 用字典编码成int；id索引是开放寻址的int数组，不创建Entry和Integer。
+ * 冷启动时也可以直接读取映射到内存的目录文件（{@link MappedCatalog}），不需要逐首读出。
+ * MediaMetadataCompat只在真正交给MediaSession时才生成
+ */
+public final class CatalogSnapshot {
+
+    public static final CatalogSnapshot EMPTY = new Builder().build(0);
+
+    private static final int NO_VALUE = -1;
+
+    private final long mVersion;
+    private final TrackStore mStore;
+    private final CategoryIndex mGenreIndex;
+    private final CategoryIndex mArtistIndex;
+    private final CategoryIndex mAlbumIndex;
+
+    CatalogSnapshot(long version, TrackStore store, CategoryIndex genreIndex,
+                    CategoryIndex artistIndex, CategoryIndex albumIndex) {
+        this.mVersion = version;
+        this.mStore = store;
+        this.mGenreIndex = genreIndex;
+        this.mArtistIndex = artistIndex;
+        this.mAlbumIndex = albumIndex;
+    }
+
+    /**
+     * 内容相同、版本不同的快照，共用所有数据
+     */
+    CatalogSnapshot withVersion(long version) {
+        return new CatalogSnapshot(version, mStore, mGenreIndex, mArtistIndex, mAlbumIndex);
+    }
+
+    /**
+     * @return 目录版本，每次发布新的快照都会增加
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public int size() {
+        return mStore.size();
+    }
+
+    /**
+     * @return 音乐在目录中的位置，不存在时返回-1
+     */
+    public int indexOf(String musicId) {
+        return musicId == null ? -1 : mStore.indexOf(musicId);
+    }
+
+    public boolean contains(String musicId) {
+        return indexOf(musicId) >= 0;
+    }
+
+    /**
+     * 每次调用都生成新的MediaMetadataCompat，只在交给MediaSession时调用
+     */
+    public MediaMetadataCompat getMusic(String musicId) {
+        int position = indexOf(musicId);
+        return position >= 0 ? TrackMetadata.toMetadata(mStore.getTrack(position)) : null;
+    }
+
+    public MediaMetadataCompat getMusicAt(int position) {
+        return TrackMetadata.toMetadata(getTrackAt(position));
+    }
+
+    public MusicTrack getTrackAt(int position) {
+        checkPosition(position);
+        return mStore.getTrack(position);
+    }
+
+    public String getTrackIdAt(int position) {
+        checkPosition(position);
+        return mStore.getMediaId(position);
+    }
+
+    public String getTitleAt(int position) {
+        checkPosition(position);
+        return mStore.getTitle(position);
+    }
+
+    public long getDurationAt(int position) {
+        checkPosition(position);
+        return mStore.getDuration(position);
+    }
+
+    /**
+     * @return 所有音乐id，按目录顺序，不可修改
+     */
+    public List<String> getTrackIds() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return getTrackIdAt(index);
+            }
+
+            @Override
+            public int size() {
+                return mStore.size();
+            }
+        };
+    }
+
+    /**
+     * @return 所有音乐id的集合视图，contains不需要遍历，不可修改
+     */
+    public Set<String> getTrackIdSet() {
+        return new AbstractSet<String>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && CatalogSnapshot.this.contains((String) o);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return getTrackIds().iterator();
+            }
+
+            @Override
+            public int size() {
+                return mStore.size();
+            }
+        };
+    }
+
+    public CategoryIndex getGenreIndex() {
+        return mGenreIndex;
+    }
+
+    public CategoryIndex getArtistIndex() {
+        return mArtistIndex;
+    }
+
+    public CategoryIndex getAlbumIndex() {
+        return mAlbumIndex;
+    }
+
+    /**
+     * 整个目录，按目录顺序
+     */
+    public BrowseResult getAllMusics() {
+        return new BrowseResult(this, getTrackIds());
+    }
+
+    /**
+     * 遍历时才把id转换成MediaMetadataCompat，不会一次性生成整个列表
+     */
+    public BrowseResult getMusics(List<String> trackIds) {
+        return new BrowseResult(this, trackIds);
+    }
+
+    /**
+     * 分页浏览，代价只和这一页的大小有关
+     *
+     * @param parentMediaId {@link com.heyzqt.exoplayerdemo.utils.MediaIDHelper}格式的可浏览节点
+     */
+    public ChildrenPage getChildren(String parentMediaId, int offset, int limit) {
+        return ChildrenPage.of(this, parentMediaId, offset, limit);
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= mStore.size()) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mStore.size());
+        }
+    }
+
+    //String.hashCode的低位分布不均匀，打散后再取槽位；目录文件里的散列表也用同样的方法
+    static int hash(String value) {
+        int h = value.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 逐首加入音乐，可以随时发布当前内容的快照（分批加载），之后还可以继续加入。
+     * 列数组按1024首分块，在末尾加入不影响已发布的快照，发布不需要复制已有的数据。
+     * 增量同步时可以替换、删除已有的音乐：替换只复制所在的那一块（写时复制），分类索引只更新有变化的分类；
+     * 删除要让后面的音乐依次前移，从第一首被删除的音乐所在的块开始重写，并重建id索引。只能在一个线程上使用
+     */
+    public static final class Builder {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int mSize;
+        private Chunk[] mChunks = new Chunk[4];
+        //mChunks被已发布的快照引用，替换其中已有的块之前要先复制
+        private boolean mChunksShared;
+
+        private String[] mDictionary = new String[INITIAL_CAPACITY];
+        private int mDictionarySize;
+        //只在构建时用来查编码，不会被快照引用
+        private final HashMap<String, Integer> mCodes = new HashMap<>();
+
+        //负载不超过1/2
+        private int[] mIdSlots = new int[INITIAL_CAPACITY * 2];
+
+        private final CategoryIndex.Builder mGenreIndex = new CategoryIndex.Builder(false);
+        private final CategoryIndex.Builder mArtistIndex = new CategoryIndex.Builder(false);
+        private final CategoryIndex.Builder mAlbumIndex = new CategoryIndex.Builder(true);
+
+        /**
+         * @return false表示id已经存在，保留先加入的那首
+         */
+        public boolean add(MusicTrack track) {
+            String musicId = track.mediaId;
+            int slot = findSlot(musicId);
+            if (slot < 0) {
+                //id由source生成，重复出现的是同一首音乐；已发布的快照不能修改，所以保留第一次出现的
+                return false;
+            }
+            int position = mSize;
+            write(appendChunk(), position & Chunk.MASK, track);
+            mIdSlots[slot] = position + 1;
+            mSize++;
+            if (mSize * 2 > mIdSlots.length) {
+                rehash(mIdSlots.length * 2);
+            }
+
+            mGenreIndex.add(track.genre, musicId, 0);
+            mArtistIndex.add(track.artist, musicId, 0);
+            mAlbumIndex.add(track.album, musicId, track.trackNumber);
+            return true;
+        }
+
+        /**
+         * 加入新的音乐，或者在原来的位置上替换id相同的音乐
+         *
+         * @return false表示内容没有变化
+         */
+        public boolean put(MusicTrack track) {
+            String musicId = track.mediaId;
+            int position = indexOf(musicId);
+            if (position < 0) {
+                return add(track);
+            }
+            MusicTrack old = trackAt(position);
+            if (sameContent(old, track)) {
+                return false;
+            }
+            write(writableChunk(position >> Chunk.SHIFT), position & Chunk.MASK, track);
+
+            //换了分类的音乐排到新分类的最后
+            if (!equal(old.genre, track.genre)) {
+                mGenreIndex.remove(old.genre, musicId).add(track.genre, musicId, 0);
+            }
+            if (!equal(old.artist, track.artist)) {
+                mArtistIndex.remove(old.artist, musicId).add(track.artist, musicId, 0);
+            }
+            if (!equal(old.album, track.album) || old.trackNumber != track.trackNumber) {
+                mAlbumIndex.remove(old.album, musicId).add(track.album, musicId, track.trackNumber);
+            }
+            return true;
+        }
+
+        /**
+         * 删除音乐，后面的音乐依次前移，目录顺序不变。第一首被删除的音乐之前的块保持不变，
+         * 之后的块写到新的数组里；id索引重建。已发布的快照不受影响
+         *
+         * @return 实际删除的数量
+         */
+        public int remove(Collection<String> musicIds) {
+            boolean[] removed = null;
+            int first = mSize;
+            int count = 0;
+            for (String musicId : musicIds) {
+                int position = indexOf(musicId);
+                if (position < 0 || (removed != null && removed[position])) {
+                    continue;
+                }
+                if (removed == null) {
+                    removed = new boolean[mSize];
+                }
+                removed[position] = true;
+                first = Math.min(first, position);
+                count++;
+                Chunk chunk = mChunks[position >> Chunk.SHIFT];
+                int offset = position & Chunk.MASK;
+                mGenreIndex.remove(decode(chunk.genres[offset]), musicId);
+                mArtistIndex.remove(decode(chunk.artists[offset]), musicId);
+                mAlbumIndex.remove(decode(chunk.albums[offset]), musicId);
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            Chunk[] chunks = mChunks;
+            int start = first & ~Chunk.MASK;
+            int oldSize = mSize;
+            mChunks = Arrays.copyOf(chunks, chunks.length);
+            Arrays.fill(mChunks, start >> Chunk.SHIFT, mChunks.length, null);
+            mChunksShared = false;
+            mSize = start;
+            for (int position = start; position < oldSize; position++) {
+                if (removed[position]) {
+                    continue;
+                }
+                Chunk from = chunks[position >> Chunk.SHIFT];
+                Chunk to = appendChunk();
+                from.copyRow(position & Chunk.MASK, to, mSize & Chunk.MASK);
+                mSize++;
+            }
+            rehash(mIdSlots.length);
+            return count;
+        }
+
+        /**
+         * @return 音乐的位置，不存在时返回-1
+         */
+        public int indexOf(String musicId) {
+            int mask = mIdSlots.length - 1;
+            for (int slot = hash(musicId) & mask; ; slot = (slot + 1) & mask) {
+                int entry = mIdSlots[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (mediaIdAt(entry - 1).equals(musicId)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        public int size() {
+            return mSize;
+        }
+
+        /**
+         * 代价和块数以及上一次发布之后有变化的分类有关，不复制列数组
+         */
+        public CatalogSnapshot build(long version) {
+            mChunksShared = true;
+            int chunkCount = (mSize + Chunk.MASK) >> Chunk.SHIFT;
+            for (int i = 0; i < chunkCount; i++) {
+                mChunks[i].shared = true;
+            }
+            return new CatalogSnapshot(version, new ColumnStore(this), mGenreIndex.build(),
+                    mArtistIndex.build(), mAlbumIndex.build());
+        }
+
+        /**
+         * @return id应该放入的空槽位；id已经存在时返回-1
+         */
+        private int findSlot(String musicId) {
+            int mask = mIdSlots.length - 1;
+            for (int slot = hash(musicId) & mask; ; slot = (slot + 1) & mask) {
+                int entry = mIdSlots[slot];
+                if (entry == 0) {
+                    return slot;
+                }
+                if (mediaIdAt(entry - 1).equals(musicId)) {
+                    return -1;
+                }
+            }
+        }
+
+        //换成新的槽位数组，已发布的快照继续使用旧的
+        private void rehash(int capacity) {
+            int[] slots = new int[capacity];
+            int mask = slots.length - 1;
+            for (int position = 0; position < mSize; position++) {
+                int slot = hash(mediaIdAt(position)) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = position + 1;
+            }
+            mIdSlots = slots;
+        }
+
+        private String mediaIdAt(int position) {
+            return mChunks[position >> Chunk.SHIFT].mediaIds[position & Chunk.MASK];
+        }
+
+        /**
+         * @return 可以写入位置mSize的块。已发布的快照看不到自己的size之后的位置，所以不需要复制
+         */
+        private Chunk appendChunk() {
+            int index = mSize >> Chunk.SHIFT;
+            int offset = mSize & Chunk.MASK;
+            if (offset == 0) {
+                if (index == mChunks.length) {
+                    mChunks = Arrays.copyOf(mChunks, index * 2);
+                    mChunksShared = false;
+                }
+                //第一块从小数组开始，小目录不用一次分配1024首的空间
+                mChunks[index] = new Chunk(index == 0 ? INITIAL_CAPACITY : Chunk.SIZE);
+            } else if (offset == mChunks[index].mediaIds.length) {
+                replaceChunk(index, mChunks[index].copy(offset * 2));
+            }
+            return mChunks[index];
+        }
+
+        //块被已发布的快照引用时先复制一份，只复制这一块
+        private Chunk writableChunk(int index) {
+            Chunk chunk = mChunks[index];
+            if (chunk.shared) {
+                chunk = chunk.copy(chunk.mediaIds.length);
+                replaceChunk(index, chunk);
+            }
+            return chunk;
+        }
+
+        private void replaceChunk(int index, Chunk chunk) {
+            if (mChunksShared) {
+                mChunks = mChunks.clone();
+                mChunksShared = false;
+            }
+            mChunks[index] = chunk;
+        }
+
+        private void write(Chunk chunk, int offset, MusicTrack track) {
+            chunk.mediaIds[offset] = track.mediaId;
+            chunk.titles[offset] = track.title;
+            chunk.sources[offset] = track.source;
+            chunk.artists[offset] = encode(track.artist);
+            chunk.albums[offset] = encode(track.album);
+            chunk.genres[offset] = encode(track.genre);
+            chunk.albumArtUris[offset] = encode(track.albumArtUri);
+            chunk.trackNumbers[offset] = (int) track.trackNumber;
+            chunk.totalTrackCounts[offset] = (int) track.totalTrackCount;
+            chunk.durations[offset] = track.duration;
+        }
+
+        private MusicTrack trackAt(int position) {
+            return mChunks[position >> Chunk.SHIFT].track(position & Chunk.MASK, mDictionary);
+        }
+
+        private String decode(int code) {
+            return code == NO_VALUE ? null : mDictionary[code];
+        }
+
+        private static boolean sameContent(MusicTrack a, MusicTrack b) {
+            return equal(a.title, b.title) && equal(a.source, b.source)
+                    && equal(a.artist, b.artist) && equal(a.album, b.album)
+                    && equal(a.genre, b.genre) && equal(a.albumArtUri, b.albumArtUri)
+                    && a.trackNumber == b.trackNumber && a.totalTrackCount == b.totalTrackCount
+                    && a.duration == b.duration;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        private int encode(String value) {
+            if (value == null) {
+                return NO_VALUE;
+            }
+            Integer code = mCodes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (mDictionarySize == mDictionary.length) {
+                mDictionary = Arrays.copyOf(mDictionary, mDictionarySize * 2);
+            }
+            mDictionary[mDictionarySize] = value;
+            mCodes.put(value, mDictionarySize);
+            return mDictionarySize++;
+        }
+    }
+
+    /**
+     * 最多1024首音乐的列数组，数组只在块内增长
+     */
+    private static final class Chunk {
+        static final int SHIFT = 10;
+        static final int SIZE = 1 << SHIFT;
+        static final int MASK = SIZE - 1;
+
+        final String[] mediaIds;
+        final String[] titles;
+        final String[] sources;
+        final int[] artists;
+        final int[] albums;
+        final int[] genres;
+        final int[] albumArtUris;
+        final int[] trackNumbers;
+        final int[] totalTrackCounts;
+        final long[] durations;
+        //被已发布的快照引用，修改已有的位置之前要先复制
+        boolean shared;
+
+        Chunk(int capacity) {
+            mediaIds = new String[capacity];
+            titles = new String[capacity];
+            sources = new String[capacity];
+            artists = new int[capacity];
+            albums = new int[capacity];
+            genres = new int[capacity];
+            albumArtUris = new int[capacity];
+            trackNumbers = new int[capacity];
+            totalTrackCounts = new int[capacity];
+            durations = new long[capacity];
+        }
+
+        Chunk copy(int capacity) {
+            Chunk chunk = new Chunk(capacity);
+            int length = Math.min(capacity, mediaIds.length);
+            System.arraycopy(mediaIds, 0, chunk.mediaIds, 0, length);
+            System.arraycopy(titles, 0, chunk.titles, 0, length);
+            System.arraycopy(sources, 0, chunk.sources, 0, length);
+            System.arraycopy(artists, 0, chunk.artists, 0, length);
+            System.arraycopy(albums, 0, chunk.albums, 0, length);
+            System.arraycopy(genres, 0, chunk.genres, 0, length);
+            System.arraycopy(albumArtUris, 0, chunk.albumArtUris, 0, length);
+            System.arraycopy(trackNumbers, 0, chunk.trackNumbers, 0, length);
+            System.arraycopy(totalTrackCounts, 0, chunk.totalTrackCounts, 0, length);
+            System.arraycopy(durations, 0, chunk.durations, 0, length);
+            return chunk;
+        }
+
+        void copyRow(int from, Chunk to, int offset) {
+            to.mediaIds[offset] = mediaIds[from];
+            to.titles[offset] = titles[from];
+            to.sources[offset] = sources[from];
+            to.artists[offset] = artists[from];
+            to.albums[offset] = albums[from];
+            to.genres[offset] = genres[from];
+            to.albumArtUris[offset] = albumArtUris[from];
+            to.trackNumbers[offset] = trackNumbers[from];
+            to.totalTrackCounts[offset] = totalTrackCounts[from];
+            to.durations[offset] = durations[from];
+        }
+
+        MusicTrack track(int offset, String[] dictionary) {
+            return new MusicTrack(mediaIds[offset], sources[offset], titles[offset],
+                    decode(dictionary, albums[offset]), decode(dictionary, artists[offset]),
+                    decode(dictionary, genres[offset]), decode(dictionary, albumArtUris[offset]),
+                    trackNumbers[offset], totalTrackCounts[offset], durations[offset]);
+        }
+
+        private static String decode(String[] dictionary, int code) {
+            return code == NO_VALUE ? null : dictionary[code];
+        }
+    }
+
+    /**
+     * 某一时刻的列数组；同一个Builder发布的快照可能共用块，位置不小于mSize的对这个快照不可见
+     */
+    private static final class ColumnStore implements TrackStore {
+        private final int mSize;
+        private final Chunk[] mChunks;
+        private final String[] mDictionary;
+        //槽位里保存位置+1，0表示空
+        private final int[] mIdSlots;
+
+        ColumnStore(Builder builder) {
+            this.mSize = builder.mSize;
+            this.mChunks = builder.mChunks;
+            this.mDictionary = builder.mDictionary;
+            this.mIdSlots = builder.mIdSlots;
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Override
+        public int indexOf(String musicId) {
+            int[] slots = mIdSlots;
+            int mask = slots.length - 1;
+            for (int slot = hash(musicId) & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                int position = entry - 1;
+                if (position < mSize && getMediaId(position).equals(musicId)) {
+                    return position;
+                }
+            }
+        }
+
+        @Override
+        public String getMediaId(int position) {
+            return mChunks[position >> Chunk.SHIFT].mediaIds[position & Chunk.MASK];
+        }
+
+        @Override
+        public String getTitle(int position) {
+            return mChunks[position >> Chunk.SHIFT].titles[position & Chunk.MASK];
+        }
+
+        @Override
+        public long getDuration(int position) {
+            return mChunks[position >> Chunk.SHIFT].durations[position & Chunk.MASK];
+        }
+
+        @Override
+        public MusicTrack getTrack(int position) {
+            return mChunks[position >> Chunk.SHIFT].track(position & Chunk.MASK, mDictionary);
+        }
+    }
+}
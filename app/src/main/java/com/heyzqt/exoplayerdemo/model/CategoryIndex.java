@@ -0,0 +1,383 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Created by heyzqt on 2019-08-26.
+ * 分类（流派、歌手、专辑）到音乐id的索引，加载目录时构建，构建完成后不可修改，
+ * 可以被多个线程同时读取。浏览某个分类时不需要再遍历整个目录。
+ * 可以在内存中构建，也可以直接读取映射到内存的目录文件（{@link MappedCatalog}）
+ */
+public abstract class CategoryIndex {
+
+    public static final CategoryIndex EMPTY = new Builder(false).build();
+
+    /**
+     * @return 所有分类，按照第一次出现的顺序
+     */
+    public abstract List<String> getCategories();
+
+    /**
+     * @return 该分类下的音乐id，分类不存在时返回空列表
+     */
+    public abstract List<String> getTrackIds(String category);
+
+    public abstract boolean contains(String category);
+
+    /**
+     * 可以随时发布当前内容的索引（分批加载），之后还可以继续修改。
+     * 每个分类的id数组写满时复制到新数组，在末尾追加不影响已发布的索引；插到中间或者删除时，
+     * 发布过的数组先复制一份再修改（写时复制）。发布时只为有变化的分类生成新的列表，
+     * 没有变化的分类和上一次发布的索引共用同一个列表。只能在一个线程上使用
+     */
+    public static class Builder {
+        //发布的列表按块保存，发布时只复制有变化的块
+        private static final int CHUNK_SHIFT = 5;
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+        private static final int INITIAL_CAPACITY = 8;
+
+        private final boolean mSortByOrder;
+        //按第一次出现的顺序，只在末尾追加；压缩时换成新数组，已发布的索引继续使用旧的
+        private String[] mCategories = new String[INITIAL_CAPACITY];
+        private Entries[] mEntries = new Entries[INITIAL_CAPACITY];
+        private int mCount;
+        //开放寻址，槽位里保存位置+1，0表示空，负载不超过1/2
+        private int[] mSlots = new int[INITIAL_CAPACITY * 2];
+        //上一次发布的列表
+        private TrackList[][] mLists = new TrackList[0][];
+        //上一次发布之后有变化的分类
+        private int[] mDirty = new int[INITIAL_CAPACITY];
+        private int mDirtyCount;
+        //有分类被删空了，发布时再压缩
+        private boolean mHasEmpty;
+
+        /**
+         * @param sortByOrder 是否按照{@link #add(String, String, long)}的order排序，比如专辑按音轨号排序
+         */
+        public Builder(boolean sortByOrder) {
+            this.mSortByOrder = sortByOrder;
+        }
+
+        public Builder add(String category, String trackId, long order) {
+            if (category == null) {
+                return this;
+            }
+            int position = indexOf(category);
+            if (position < 0) {
+                position = addCategory(category);
+            }
+            mEntries[position].add(trackId, order, mSortByOrder);
+            markDirty(position);
+            return this;
+        }
+
+        /**
+         * 从分类中删除一首音乐，分类变空时一并删除
+         */
+        public Builder remove(String category, String trackId) {
+            if (category == null) {
+                return this;
+            }
+            int position = indexOf(category);
+            if (position >= 0 && mEntries[position].remove(trackId)) {
+                markDirty(position);
+                if (mEntries[position].size == 0) {
+                    mHasEmpty = true;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 生成当前内容的不可变索引，之后Builder仍然可以继续修改。
+         * 代价和上一次发布之后有变化的分类有关，不需要复制整个索引
+         */
+        public CategoryIndex build() {
+            if (mHasEmpty) {
+                compact();
+            }
+            TrackList[][] lists = Arrays.copyOf(mLists, (mCount + CHUNK_SIZE - 1) >> CHUNK_SHIFT);
+            for (int i = 0; i < mDirtyCount; i++) {
+                int position = mDirty[i];
+                int chunk = position >> CHUNK_SHIFT;
+                if (lists[chunk] == null) {
+                    lists[chunk] = new TrackList[CHUNK_SIZE];
+                } else if (chunk < mLists.length && lists[chunk] == mLists[chunk]) {
+                    //这一块被已发布的索引引用
+                    lists[chunk] = lists[chunk].clone();
+                }
+                Entries entries = mEntries[position];
+                lists[chunk][position & (CHUNK_SIZE - 1)] = entries.publish();
+                entries.dirty = false;
+            }
+            mDirtyCount = 0;
+            mLists = lists;
+            return new HeapCategoryIndex(mCategories, mCount, mSlots, lists);
+        }
+
+        private int indexOf(String category) {
+            int mask = mSlots.length - 1;
+            for (int slot = CatalogSnapshot.hash(category) & mask; ; slot = (slot + 1) & mask) {
+                int entry = mSlots[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                if (mCategories[entry - 1].equals(category)) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        private int addCategory(String category) {
+            if (mCount == mCategories.length) {
+                mCategories = Arrays.copyOf(mCategories, mCount * 2);
+                mEntries = Arrays.copyOf(mEntries, mCount * 2);
+            }
+            int position = mCount;
+            mCategories[position] = category;
+            mEntries[position] = new Entries(mSortByOrder);
+            //已发布的索引会跳过不小于自己分类数的位置，所以可以直接写入共用的槽位数组
+            mSlots[emptySlot(mSlots, category)] = position + 1;
+            mCount++;
+            if (mCount * 2 > mSlots.length) {
+                rehash(mSlots.length * 2);
+            }
+            return position;
+        }
+
+        private void markDirty(int position) {
+            Entries entries = mEntries[position];
+            if (entries.dirty) {
+                return;
+            }
+            entries.dirty = true;
+            if (mDirtyCount == mDirty.length) {
+                mDirty = Arrays.copyOf(mDirty, mDirtyCount * 2);
+            }
+            mDirty[mDirtyCount++] = position;
+        }
+
+        //去掉删空的分类，位置都变了，所有分类重新发布（没有变化的分类还是原来的列表）
+        private void compact() {
+            String[] categories = new String[mCategories.length];
+            Entries[] entries = new Entries[mEntries.length];
+            int count = 0;
+            for (int position = 0; position < mCount; position++) {
+                if (mEntries[position].size == 0) {
+                    continue;
+                }
+                categories[count] = mCategories[position];
+                entries[count] = mEntries[position];
+                entries[count].dirty = true;
+                count++;
+            }
+            mCategories = categories;
+            mEntries = entries;
+            mCount = count;
+            mDirtyCount = 0;
+            for (int position = 0; position < count; position++) {
+                if (mDirtyCount == mDirty.length) {
+                    mDirty = Arrays.copyOf(mDirty, mDirtyCount * 2);
+                }
+                mDirty[mDirtyCount++] = position;
+            }
+            mLists = new TrackList[0][];
+            rehash(mSlots.length);
+            mHasEmpty = false;
+        }
+
+        //换成新的槽位数组，已发布的索引继续使用旧的
+        private void rehash(int capacity) {
+            int[] slots = new int[capacity];
+            for (int position = 0; position < mCount; position++) {
+                slots[emptySlot(slots, mCategories[position])] = position + 1;
+            }
+            mSlots = slots;
+        }
+
+        private static int emptySlot(int[] slots, String category) {
+            int mask = slots.length - 1;
+            int slot = CatalogSnapshot.hash(category) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    //内存中构建的索引；同一个Builder发布的索引可能共用数组，位置不小于mCount的对这个索引不可见
+    private static final class HeapCategoryIndex extends CategoryIndex {
+        private final String[] mNames;
+        private final int mCount;
+        private final int[] mSlots;
+        private final TrackList[][] mLists;
+        private final List<String> mCategories;
+
+        HeapCategoryIndex(String[] names, int count, int[] slots, TrackList[][] lists) {
+            this.mNames = names;
+            this.mCount = count;
+            this.mSlots = slots;
+            this.mLists = lists;
+            this.mCategories = new TrackList(names, count);
+        }
+
+        @Override
+        public List<String> getCategories() {
+            return mCategories;
+        }
+
+        @Override
+        public List<String> getTrackIds(String category) {
+            int position = indexOf(category);
+            if (position < 0) {
+                return Collections.emptyList();
+            }
+            return mLists[position >> Builder.CHUNK_SHIFT][position & (Builder.CHUNK_SIZE - 1)];
+        }
+
+        @Override
+        public boolean contains(String category) {
+            return indexOf(category) >= 0;
+        }
+
+        private int indexOf(String category) {
+            if (category == null) {
+                return -1;
+            }
+            int[] slots = mSlots;
+            int mask = slots.length - 1;
+            for (int slot = CatalogSnapshot.hash(category) & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    return -1;
+                }
+                int position = entry - 1;
+                if (position < mCount && mNames[position].equals(category)) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    /**
+     * 数组前size个元素的不可修改视图，数组在size之后的位置可能还在被Builder写入
+     */
+    private static final class TrackList extends AbstractList<String> implements RandomAccess {
+        private final String[] mItems;
+        private final int mSize;
+
+        TrackList(String[] items, int size) {
+            this.mItems = items;
+            this.mSize = size;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+            }
+            return mItems[index];
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+    private static final class Entries {
+        String[] trackIds = new String[4];
+        //只有按order排序的分类才需要
+        long[] orders;
+        int size;
+        //数组被已发布的列表引用，修改已有的位置之前要先复制
+        boolean shared;
+        //上一次发布之后有变化
+        boolean dirty;
+        //上一次发布的列表，内容变化后为null
+        TrackList published;
+
+        Entries(boolean sortByOrder) {
+            if (sortByOrder) {
+                orders = new long[4];
+            }
+        }
+
+        //按order排序时插到order相同的最后面，音轨号相同的保持目录中的顺序
+        void add(String trackId, long order, boolean sortByOrder) {
+            int position = sortByOrder ? upperBound(order) : size;
+            if (size == trackIds.length) {
+                copy(size * 2);
+            } else if (shared && position < size) {
+                copy(trackIds.length);
+            }
+            if (position < size) {
+                System.arraycopy(trackIds, position, trackIds, position + 1, size - position);
+                System.arraycopy(orders, position, orders, position + 1, size - position);
+            }
+            trackIds[position] = trackId;
+            if (orders != null) {
+                orders[position] = order;
+            }
+            size++;
+            published = null;
+        }
+
+        //删除不会打乱已经有序的顺序
+        boolean remove(String trackId) {
+            for (int i = 0; i < size; i++) {
+                if (trackIds[i].equals(trackId)) {
+                    if (shared) {
+                        copy(trackIds.length);
+                    }
+                    System.arraycopy(trackIds, i + 1, trackIds, i, size - i - 1);
+                    if (orders != null) {
+                        System.arraycopy(orders, i + 1, orders, i, size - i - 1);
+                    }
+                    trackIds[--size] = null;
+                    published = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        TrackList publish() {
+            if (published == null) {
+                published = new TrackList(trackIds, size);
+                shared = true;
+            }
+            return published;
+        }
+
+        private int upperBound(long order) {
+            //按顺序加载时总是追加在最后
+            if (size == 0 || order >= orders[size - 1]) {
+                return size;
+            }
+            int low = 0;
+            int high = size - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (orders[middle] <= order) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void copy(int capacity) {
+            trackIds = Arrays.copyOf(trackIds, capacity);
+            if (orders != null) {
+                orders = Arrays.copyOf(orders, capacity);
+            }
+            shared = false;
+        }
+    }
+}
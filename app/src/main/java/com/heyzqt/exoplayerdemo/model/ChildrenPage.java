@@ -0,0 +1,179 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import com.heyzqt.exoplayerdemo.utils.MediaIDHelper;
+import com.heyzqt.exoplayerdemo.utils.MediaId;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 某个可浏览节点的一页子节点，按{@link MediaIDHelper}的mediaId组织：
+ * <pre>
+ * __ROOT__                 __BY_GENRE__、__BY_ARTIST__、__BY_ALBUM__
+ * __BY_GENRE__             所有流派，按第一次出现的顺序（歌手、专辑相同）
+ * __BY_GENRE__/Jazz        流派下的音乐，子节点的mediaId是__BY_GENRE__/Jazz|musicId
+ * </pre>
+ * 分页直接在索引的列表上取一段，代价只和这一页的大小有关；MediaMetadataCompat在取到某一项时才生成。
+ * 一页的所有内容都来自同一个目录快照，{@link #next()}继续读这个快照，目录刷新后翻页的顺序也不会变
+ */
+public final class ChildrenPage {
+
+    private static final List<String> ROOT_CHILDREN = Collections.unmodifiableList(Arrays.asList(
+            MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE,
+            MediaIDHelper.MEDIA_ID_MUSICS_BY_ARTIST,
+            MediaIDHelper.MEDIA_ID_MUSICS_BY_ALBUM));
+
+    private final CatalogSnapshot mSnapshot;
+    private final String mParentMediaId;
+    //父节点的分类层级，比如{"__BY_GENRE__", "Jazz"}；根节点是空数组
+    private final String[] mParentHierarchy;
+    //父节点下的所有子节点：分类名称或者音乐id
+    private final List<String> mChildren;
+    private final boolean mPlayable;
+    private final int mOffset;
+    private final int mLimit;
+    private final int mSize;
+
+    private ChildrenPage(CatalogSnapshot snapshot, String parentMediaId, String[] parentHierarchy,
+                         List<String> children, boolean playable, int offset, int limit) {
+        this.mSnapshot = snapshot;
+        this.mParentMediaId = parentMediaId;
+        this.mParentHierarchy = parentHierarchy;
+        this.mChildren = children;
+        this.mPlayable = playable;
+        this.mOffset = offset;
+        this.mLimit = limit;
+        this.mSize = Math.max(0, Math.min(limit, children.size() - offset));
+    }
+
+    /**
+     * @param offset 从0开始，超出范围时返回空页
+     * @param limit  一页最多几项，必须大于0
+     */
+    static ChildrenPage of(CatalogSnapshot snapshot, String parentMediaId, int offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new IllegalArgumentException("Invalid page: offset " + offset + ", limit " + limit);
+        }
+        MediaId parent = MediaId.of(parentMediaId);
+        List<String> children = Collections.emptyList();
+        boolean playable = false;
+        String[] hierarchy = parent.getHierarchy();
+        if (!parent.isBrowseable()) {
+            //可播放的节点没有子节点
+        } else if (MediaIDHelper.MEDIA_ID_ROOT.equals(parentMediaId)) {
+            children = ROOT_CHILDREN;
+            hierarchy = new String[0];
+        } else {
+            CategoryIndex index = hierarchy.length > 0 ? indexOf(snapshot, hierarchy[0]) : null;
+            if (index != null && hierarchy.length == 1) {
+                children = index.getCategories();
+            } else if (index != null && hierarchy.length == 2) {
+                children = index.getTrackIds(hierarchy[1]);
+                playable = true;
+            }
+        }
+        return new ChildrenPage(snapshot, parentMediaId, hierarchy, children, playable, offset, limit);
+    }
+
+    private static CategoryIndex indexOf(CatalogSnapshot snapshot, String category) {
+        switch (category) {
+            case MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE:
+                return snapshot.getGenreIndex();
+            case MediaIDHelper.MEDIA_ID_MUSICS_BY_ARTIST:
+                return snapshot.getArtistIndex();
+            case MediaIDHelper.MEDIA_ID_MUSICS_BY_ALBUM:
+                return snapshot.getAlbumIndex();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return 这一页所属目录的版本，和{@link MusicProvider#getCatalogVersion()}不同时说明目录已经刷新过了
+     */
+    public long getCatalogVersion() {
+        return mSnapshot.getVersion();
+    }
+
+    public String getParentMediaId() {
+        return mParentMediaId;
+    }
+
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @return 父节点下子节点的总数
+     */
+    public int getTotalCount() {
+        return mChildren.size();
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean hasMore() {
+        return mOffset + mSize < mChildren.size();
+    }
+
+    /**
+     * @return 同一个快照的下一页，大小和这一页相同；没有更多时返回空页
+     */
+    public ChildrenPage next() {
+        return new ChildrenPage(mSnapshot, mParentMediaId, mParentHierarchy, mChildren, mPlayable,
+                mOffset + mSize, mLimit);
+    }
+
+    public boolean isPlayable(int index) {
+        checkIndex(index);
+        return mPlayable;
+    }
+
+    /**
+     * @return 子节点的mediaId，可播放的子节点带着父节点的分类，播放时可以据此构建播放队列
+     */
+    public String getMediaId(int index) {
+        checkIndex(index);
+        String child = mChildren.get(mOffset + index);
+        if (mPlayable) {
+            return MediaIDHelper.createMediaID(child, mParentHierarchy[0], mParentHierarchy[1]);
+        }
+        if (mParentHierarchy.length == 0) {
+            return child;
+        }
+        return MediaIDHelper.createMediaID(null, mParentHierarchy[0], child);
+    }
+
+    /**
+     * @return 分类名称或者音乐标题；根节点的子节点返回mediaId，由界面换成本地化的名称
+     */
+    public String getTitle(int index) {
+        checkIndex(index);
+        String child = mChildren.get(mOffset + index);
+        if (!mPlayable) {
+            return child;
+        }
+        int position = mSnapshot.indexOf(child);
+        return position >= 0 ? mSnapshot.getTitleAt(position) : null;
+    }
+
+    /**
+     * @return 可播放的子节点对应的音乐，每次调用都会生成新的MediaMetadataCompat；分类节点返回null
+     */
+    public MediaMetadataCompat getMusic(int index) {
+        checkIndex(index);
+        return mPlayable ? mSnapshot.getMusic(mChildren.get(mOffset + index)) : null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+        }
+    }
+}
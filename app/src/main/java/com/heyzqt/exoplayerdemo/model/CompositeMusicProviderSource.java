@@ -0,0 +1,92 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by heyzqt on 2019-09-01.
+ * 把多个数据源（本地曲库、多个服务器JSON、合作方目录等）合并成一个数据源。
+ * 所有数据源同时加载，边加载边交给MusicProvider；同一首音乐（METADATA_KEY_MEDIA_ID相同）只保留先到的那个。
+ * 某个数据源超时或出错时只放弃这个数据源，全部失败时迭代抛出RuntimeException，MusicProvider保留原来的目录。
+ * 返回的迭代器实现了Closeable，MusicProvider放弃加载时关闭它，所有数据源的迭代器都会被关闭。
+ * 通过{@link MusicProvider#MusicProvider(List)}使用
+ */
+public class CompositeMusicProviderSource implements MusicProviderSource {
+
+    public static final long DEFAULT_TIMEOUT_MS = 30000;
+
+    private final List<MusicProviderSource> mSources = new ArrayList<>();
+    private final List<Long> mTimeoutsMs = new ArrayList<>();
+    private final ParallelMergeIterator.KeyExtractor<MediaMetadataCompat> mKeyExtractor;
+    private final Executor mExecutor;
+
+    public CompositeMusicProviderSource() {
+        //每个数据源加载时占用一个线程，空闲30秒后回收
+        this(new ParallelMergeIterator.KeyExtractor<MediaMetadataCompat>() {
+            @Override
+            public Object keyOf(MediaMetadataCompat item) {
+                return item.getString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID);
+            }
+        }, new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CatalogSource #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * @param keyExtractor 去重用的key
+     * @param executor     需要能同时执行所有数据源
+     */
+    CompositeMusicProviderSource(ParallelMergeIterator.KeyExtractor<MediaMetadataCompat> keyExtractor,
+                                 Executor executor) {
+        this.mKeyExtractor = keyExtractor;
+        this.mExecutor = executor;
+    }
+
+    public CompositeMusicProviderSource addSource(MusicProviderSource source) {
+        return addSource(source, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * @param timeoutMs 这个数据源从开始加载到全部返回的最长时间
+     */
+    public synchronized CompositeMusicProviderSource addSource(MusicProviderSource source,
+                                                               long timeoutMs) {
+        mSources.add(source);
+        mTimeoutsMs.add(timeoutMs);
+        return this;
+    }
+
+    @Override
+    public synchronized Iterator<MediaMetadataCompat> iterator() {
+        List<Iterable<MediaMetadataCompat>> sources = new ArrayList<>(mSources.size());
+        long[] timeoutsMs = new long[mSources.size()];
+        for (int i = 0; i < mSources.size(); i++) {
+            final MusicProviderSource source = mSources.get(i);
+            sources.add(new Iterable<MediaMetadataCompat>() {
+                @Override
+                public Iterator<MediaMetadataCompat> iterator() {
+                    return source.iterator();
+                }
+            });
+            timeoutsMs[i] = mTimeoutsMs.get(i);
+        }
+        return new ParallelMergeIterator<>(sources, timeoutsMs, mKeyExtractor, mExecutor);
+    }
+}
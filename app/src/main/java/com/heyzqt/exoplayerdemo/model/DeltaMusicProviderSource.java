@@ -0,0 +1,23 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.io.IOException;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 支持增量同步的数据源：刷新时只请求当前版本之后新增、修改、删除的音乐，不用重新下载和处理整个目录
+ */
+public interface DeltaMusicProviderSource extends CachingMusicProviderSource {
+
+    /**
+     * 请求当前版本之后的增量，需要在目录加载过之后调用
+     *
+     * @return 没有变化时返回空的增量；不能从当前版本增量同步时返回null，调用方改用{@link #revalidate()}
+     * @throws IOException 暂时无法访问服务器，调用方继续使用当前的目录
+     */
+    CatalogDelta fetchDelta() throws IOException;
+
+    /**
+     * 增量已经应用到目录上，保存新的目录和版本
+     */
+    void commitDelta(CatalogDelta delta, CatalogSnapshot catalog);
+}
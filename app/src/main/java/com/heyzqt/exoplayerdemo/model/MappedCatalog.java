@@ -0,0 +1,712 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Created by heyzqt on 2019-09-04.
+ * 映射到内存的二进制目录文件。打开时只映射文件并校验，不逐首读出，也不创建对象；
+ * 按id查找、按分类浏览都直接读映射的区域，用到的字段才转换成String。
+ * 文件被新目录替换（rename）后，已经打开的映射仍然有效。
+ * <p>
+ * 打开时只校验文件头自己的CRC和各部分的范围，耗时和目录大小无关；
+ * 内容的CRC由{@link #verify()}在后台校验，校验失败时调用方应该丢弃这个文件。
+ * 校验完成之前内容可能是坏的：读取时检查每个引用、位置和长度是否在所属部分的范围内，
+ * 散列表最多探测容量次，损坏的内容抛出{@link IllegalStateException}，不会死循环或者越界读取。
+ * <p>
+ * 文件格式（大端）：
+ * <pre>
+ * 文件头（64字节）  magic、格式版本、文件头CRC32（第12到64字节）、文件长度、内容CRC32（第64字节到文件末尾）、
+ *                   音乐数量、ETag和Last-Modified的引用、各部分的偏移
+ * 字符串池          [int 字节数][UTF-8]，相同的字符串只保存一次；引用是绝对偏移，-1表示null
+ * 音乐表            每首44字节：7个字符串引用、音轨号、总音轨数、long时长
+ * id散列表          [int 容量][容量个int：位置+1，0表示空]
+ * 流派/歌手/专辑索引 [int 分类数][int 容量][每个分类：名称引用、列表偏移、列表长度]
+ *                   [容量个int：分类序号+1][每个分类的音乐位置列表]
+ * </pre>
+ */
+public final class MappedCatalog implements TrackStore {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x45584f4d;//"EXOM"
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_HEADER_CRC = 8;
+    private static final int OFFSET_LENGTH = 12;//文件头CRC从这里开始计算
+    private static final int OFFSET_BODY_CRC = 16;
+    private static final int OFFSET_TRACK_COUNT = 20;
+    private static final int OFFSET_ETAG = 24;
+    private static final int OFFSET_LAST_MODIFIED = 28;
+    private static final int OFFSET_TRACKS = 32;
+    private static final int OFFSET_ID_TABLE = 36;
+    private static final int OFFSET_GENRES = 40;
+    private static final int OFFSET_ARTISTS = 44;
+    private static final int OFFSET_ALBUMS = 48;
+
+    //音乐表中每个字段的位置
+    private static final int TRACK_RECORD_SIZE = 44;
+    private static final int FIELD_MEDIA_ID = 0;
+    private static final int FIELD_SOURCE = 4;
+    private static final int FIELD_TITLE = 8;
+    private static final int FIELD_ALBUM = 12;
+    private static final int FIELD_ARTIST = 16;
+    private static final int FIELD_GENRE = 20;
+    private static final int FIELD_ALBUM_ART_URI = 24;
+    private static final int FIELD_TRACK_NUMBER = 28;
+    private static final int FIELD_TOTAL_TRACK_COUNT = 32;
+    private static final int FIELD_DURATION = 36;
+
+    private static final int CATEGORY_ENTRY_SIZE = 12;
+    private static final int NULL_REF = -1;
+    private static final int CHECKSUM_CHUNK = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    //字符串池在文件头和音乐表之间
+    private final int mPoolEnd;
+    private final int mTracksOffset;
+    private final int mIdSlotsOffset;
+    private final int mIdCapacity;
+    private final String mEtag;
+    private final String mLastModified;
+    private final CategoryIndex mGenreIndex;
+    private final CategoryIndex mArtistIndex;
+    private final CategoryIndex mAlbumIndex;
+    private volatile boolean mVerified;
+
+    private MappedCatalog(ByteBuffer buffer) throws IOException {
+        this.mBuffer = buffer;
+        int length = buffer.capacity();
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != FORMAT_VERSION) {
+            throw new IOException("Not a catalog file of version " + FORMAT_VERSION);
+        }
+        if (buffer.getInt(OFFSET_LENGTH) != length) {
+            throw new IOException("Catalog file truncated: " + length + " of "
+                    + buffer.getInt(OFFSET_LENGTH) + " bytes");
+        }
+        if (buffer.getInt(OFFSET_HEADER_CRC) != checksum(buffer, OFFSET_LENGTH, HEADER_SIZE)) {
+            throw new IOException("Catalog file header checksum mismatch");
+        }
+
+        //各部分按顺序排列，互不重叠
+        mSize = buffer.getInt(OFFSET_TRACK_COUNT);
+        mTracksOffset = buffer.getInt(OFFSET_TRACKS);
+        mPoolEnd = mTracksOffset;
+        int idTableOffset = buffer.getInt(OFFSET_ID_TABLE);
+        checkRange(mTracksOffset, (long) mSize * TRACK_RECORD_SIZE, idTableOffset);
+        int genresOffset = buffer.getInt(OFFSET_GENRES);
+        checkRange(idTableOffset, 4, genresOffset);
+        mIdCapacity = buffer.getInt(idTableOffset);
+        mIdSlotsOffset = idTableOffset + 4;
+        checkTable(mIdCapacity, mSize);
+        checkRange(mIdSlotsOffset, (long) mIdCapacity * 4, genresOffset);
+        int artistsOffset = buffer.getInt(OFFSET_ARTISTS);
+        int albumsOffset = buffer.getInt(OFFSET_ALBUMS);
+
+        try {
+            mEtag = readString(buffer.getInt(OFFSET_ETAG));
+            mLastModified = readString(buffer.getInt(OFFSET_LAST_MODIFIED));
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage());
+        }
+        mGenreIndex = new MappedCategoryIndex(genresOffset, artistsOffset);
+        mArtistIndex = new MappedCategoryIndex(artistsOffset, albumsOffset);
+        mAlbumIndex = new MappedCategoryIndex(albumsOffset, length);
+    }
+
+    /**
+     * 映射目录文件并校验文件头，不读内容，耗时和目录大小无关
+     *
+     * @throws IOException 文件不存在、版本不对、被截断或者文件头校验失败
+     */
+    public static MappedCatalog open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Bad catalog file length " + length);
+            }
+            //关闭文件之后映射仍然有效
+            return new MappedCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * 把目录快照写成映射格式。先写内容，最后写文件头，中途失败的文件打不开
+     */
+    public static void write(File file, CatalogSnapshot snapshot, String etag, String lastModified)
+            throws IOException {
+        Writer writer = new Writer(file, etag, lastModified, snapshot);
+        try {
+            for (int i = 0; i < snapshot.size(); i++) {
+                writer.append(snapshot.getTrackAt(i));
+            }
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    /**
+     * 边加载边写入映射格式，不需要先在内存里收集整个目录
+     */
+    public static Writer newWriter(File file, String etag, String lastModified) throws IOException {
+        return new Writer(file, etag, lastModified, null);
+    }
+
+    /**
+     * 校验内容的CRC，需要顺序读一遍整个文件，在后台线程调用
+     *
+     * @return 内容和写入时一致
+     */
+    public boolean verify() {
+        if (!mVerified) {
+            int length = mBuffer.capacity();
+            mVerified = mBuffer.getInt(OFFSET_BODY_CRC) == checksum(mBuffer, HEADER_SIZE, length);
+        }
+        return mVerified;
+    }
+
+    public String getEtag() {
+        return mEtag;
+    }
+
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    /**
+     * @return 直接读这个文件的目录快照
+     */
+    public CatalogSnapshot toSnapshot(long version) {
+        return new CatalogSnapshot(version, this, mGenreIndex, mArtistIndex, mAlbumIndex);
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public int indexOf(String musicId) {
+        byte[] key = musicId.getBytes(UTF_8);
+        int mask = mIdCapacity - 1;
+        int slot = CatalogSnapshot.hash(musicId) & mask;
+        //正常的散列表一定有空槽位；损坏的表最多探测容量次
+        for (int probe = 0; probe < mIdCapacity; probe++, slot = (slot + 1) & mask) {
+            int entry = mBuffer.getInt(mIdSlotsOffset + slot * 4);
+            if (entry == 0) {
+                return -1;
+            }
+            int position = checkPosition(entry - 1);
+            if (stringEquals(field(position, FIELD_MEDIA_ID), key)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String getMediaId(int position) {
+        return readString(field(position, FIELD_MEDIA_ID));
+    }
+
+    @Override
+    public String getTitle(int position) {
+        return readString(field(position, FIELD_TITLE));
+    }
+
+    @Override
+    public long getDuration(int position) {
+        return mBuffer.getLong(recordOffset(position) + FIELD_DURATION);
+    }
+
+    @Override
+    public MusicTrack getTrack(int position) {
+        return new MusicTrack(getMediaId(position),
+                readString(field(position, FIELD_SOURCE)),
+                getTitle(position),
+                readString(field(position, FIELD_ALBUM)),
+                readString(field(position, FIELD_ARTIST)),
+                readString(field(position, FIELD_GENRE)),
+                readString(field(position, FIELD_ALBUM_ART_URI)),
+                field(position, FIELD_TRACK_NUMBER),
+                field(position, FIELD_TOTAL_TRACK_COUNT),
+                getDuration(position));
+    }
+
+    private int field(int position, int field) {
+        return mBuffer.getInt(recordOffset(position) + field);
+    }
+
+    private int recordOffset(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+        }
+        return mTracksOffset + position * TRACK_RECORD_SIZE;
+    }
+
+    //文件里读出的位置，内容校验之前可能是坏的
+    private int checkPosition(int position) {
+        if (position < 0 || position >= mSize) {
+            throw corrupt("track position " + position);
+        }
+        return position;
+    }
+
+    private String readString(int ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        int length = stringLength(ref);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(ref + 4 + i);
+        }
+        return new String(bytes, UTF_8);
+    }
+
+    //引用和长度都必须在字符串池里
+    private int stringLength(int ref) {
+        if (ref < HEADER_SIZE || ref > mPoolEnd - 4) {
+            throw corrupt("string ref " + ref);
+        }
+        int length = mBuffer.getInt(ref);
+        if (length < 0 || length > mPoolEnd - ref - 4) {
+            throw corrupt("string length " + length + " at " + ref);
+        }
+        return length;
+    }
+
+    private static IllegalStateException corrupt(String what) {
+        return new IllegalStateException("Corrupt catalog file: " + what);
+    }
+
+    //直接比较UTF-8字节，不创建String
+    private boolean stringEquals(int ref, byte[] key) {
+        if (ref == NULL_REF || stringLength(ref) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (mBuffer.get(ref + 4 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //负载不超过1/2，查找一定能遇到空槽位
+    private static int tableCapacity(int count) {
+        int capacity = 2;
+        while (capacity < count * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static void insert(int[] slots, int hash, int value) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int to) {
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.limit(to);
+        data.position(from);
+        byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK, to - from)];
+        while (data.hasRemaining()) {
+            int n = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void checkRange(int offset, long length, int end) throws IOException {
+        if (offset < HEADER_SIZE || length < 0 || offset + length > end) {
+            throw new IOException("Catalog section out of range: " + offset + "+" + length);
+        }
+    }
+
+    private static void checkTable(int capacity, int count) throws IOException {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1 || count < 0 || capacity < count * 2L) {
+            throw new IOException("Bad catalog hash table: capacity " + capacity + ", count " + count);
+        }
+    }
+
+    /**
+     * 直接读文件的分类索引，列表按需读取
+     */
+    private final class MappedCategoryIndex extends CategoryIndex {
+        private final int mCount;
+        private final int mCapacity;
+        private final int mEntriesOffset;
+        private final int mSlotsOffset;
+        //各分类的音乐位置列表在[mListsOffset, mEnd)
+        private final int mListsOffset;
+        private final int mEnd;
+
+        MappedCategoryIndex(int offset, int end) throws IOException {
+            checkRange(offset, 8, end);
+            mCount = mBuffer.getInt(offset);
+            mCapacity = mBuffer.getInt(offset + 4);
+            checkTable(mCapacity, mCount);
+            mEntriesOffset = offset + 8;
+            checkRange(mEntriesOffset, (long) mCount * CATEGORY_ENTRY_SIZE + mCapacity * 4L, end);
+            mSlotsOffset = mEntriesOffset + mCount * CATEGORY_ENTRY_SIZE;
+            mListsOffset = mSlotsOffset + mCapacity * 4;
+            mEnd = end;
+        }
+
+        @Override
+        public List<String> getCategories() {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    if (index < 0 || index >= mCount) {
+                        throw new IndexOutOfBoundsException("Index " + index + ", size " + mCount);
+                    }
+                    return readString(mBuffer.getInt(mEntriesOffset + index * CATEGORY_ENTRY_SIZE));
+                }
+
+                @Override
+                public int size() {
+                    return mCount;
+                }
+            };
+        }
+
+        @Override
+        public List<String> getTrackIds(String category) {
+            int index = find(category);
+            if (index < 0) {
+                return Collections.emptyList();
+            }
+            final int listOffset = mBuffer.getInt(mEntriesOffset + index * CATEGORY_ENTRY_SIZE + 4);
+            final int size = mBuffer.getInt(mEntriesOffset + index * CATEGORY_ENTRY_SIZE + 8);
+            if (listOffset < mListsOffset || size < 0 || listOffset + size * 4L > mEnd) {
+                throw corrupt("category list " + listOffset + "+" + size);
+            }
+            return new AbstractList<String>() {
+                @Override
+                public String get(int i) {
+                    if (i < 0 || i >= size) {
+                        throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+                    }
+                    return getMediaId(checkPosition(mBuffer.getInt(listOffset + i * 4)));
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(String category) {
+            return find(category) >= 0;
+        }
+
+        private int find(String category) {
+            if (category == null) {
+                return -1;
+            }
+            byte[] key = category.getBytes(UTF_8);
+            int mask = mCapacity - 1;
+            int slot = CatalogSnapshot.hash(category) & mask;
+            for (int probe = 0; probe < mCapacity; probe++, slot = (slot + 1) & mask) {
+                int entry = mBuffer.getInt(mSlotsOffset + slot * 4);
+                if (entry == 0) {
+                    return -1;
+                }
+                int index = entry - 1;
+                if (index < 0 || index >= mCount) {
+                    throw corrupt("category " + index);
+                }
+                if (stringEquals(mBuffer.getInt(mEntriesOffset + index * CATEGORY_ENTRY_SIZE), key)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 边加入边写文件：字符串直接写进文件，音乐表先写到旁边的临时文件，提交时再拼到后面。
+     * 边加载边写时内存里只保留id到位置的映射（用来去重、写分类列表）和分类索引，不保存标题、地址等字段。
+     * 只能在一个线程上使用
+     */
+    public static final class Writer {
+        private final File mFile;
+        private final File mTracksFile;
+        private final DataOutputStream mOut;
+        private final DataOutputStream mTracks;
+        private final ByteBuffer mHeader = ByteBuffer.allocate(HEADER_SIZE);
+        //专辑、歌手、流派、封面地址会重复出现，只保存一次；id、标题、地址每首都不一样，不放进池里
+        private final Map<String, Integer> mPool = new HashMap<>();
+        private int[] mHashes = new int[16];
+        private int mSize;
+        //写快照时直接用快照的分类索引和id查找
+        private final CatalogSnapshot mSnapshot;
+        private final Map<String, Integer> mPositions;
+        private final CategoryIndex.Builder mGenres;
+        private final CategoryIndex.Builder mArtists;
+        private final CategoryIndex.Builder mAlbums;
+        private boolean mDone;
+
+        private Writer(File file, String etag, String lastModified, CatalogSnapshot snapshot)
+                throws IOException {
+            mFile = file;
+            mTracksFile = new File(file.getPath() + ".tracks");
+            mSnapshot = snapshot;
+            if (snapshot == null) {
+                mPositions = new HashMap<>();
+                mGenres = new CategoryIndex.Builder(false);
+                mArtists = new CategoryIndex.Builder(false);
+                mAlbums = new CategoryIndex.Builder(true);
+            } else {
+                mPositions = null;
+                mGenres = null;
+                mArtists = null;
+                mAlbums = null;
+            }
+            mOut = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file), CHECKSUM_CHUNK));
+            DataOutputStream tracks;
+            try {
+                mOut.write(new byte[HEADER_SIZE]);
+                mHeader.putInt(OFFSET_ETAG, writeString(etag, true));
+                mHeader.putInt(OFFSET_LAST_MODIFIED, writeString(lastModified, true));
+                tracks = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(mTracksFile), CHECKSUM_CHUNK));
+            } catch (IOException e) {
+                closeQuietly(mOut);
+                file.delete();
+                throw e;
+            }
+            mTracks = tracks;
+        }
+
+        /**
+         * @return false表示id已经存在，保留先加入的那首
+         */
+        public boolean append(MusicTrack track) throws IOException {
+            if (mDone) {
+                throw new IOException("Writer already finished");
+            }
+            int position = mSize;
+            if (mPositions != null) {
+                if (mPositions.containsKey(track.mediaId)) {
+                    return false;
+                }
+                mPositions.put(track.mediaId, position);
+            }
+            mTracks.writeInt(writeString(track.mediaId, false));
+            mTracks.writeInt(writeString(track.source, false));
+            mTracks.writeInt(writeString(track.title, false));
+            mTracks.writeInt(writeString(track.album, true));
+            mTracks.writeInt(writeString(track.artist, true));
+            mTracks.writeInt(writeString(track.genre, true));
+            mTracks.writeInt(writeString(track.albumArtUri, true));
+            mTracks.writeInt((int) track.trackNumber);
+            mTracks.writeInt((int) track.totalTrackCount);
+            mTracks.writeLong(track.duration);
+
+            if (mSize == mHashes.length) {
+                mHashes = Arrays.copyOf(mHashes, mSize * 2);
+            }
+            mHashes[mSize++] = CatalogSnapshot.hash(track.mediaId);
+            if (mGenres != null) {
+                mGenres.add(track.genre, track.mediaId, 0);
+                mArtists.add(track.artist, track.mediaId, 0);
+                mAlbums.add(track.album, track.mediaId, track.trackNumber);
+            }
+            return true;
+        }
+
+        /**
+         * 写完剩下的部分，最后写文件头；之前失败的话文件打不开
+         */
+        public void commit() throws IOException {
+            if (mDone) {
+                throw new IOException("Writer already finished");
+            }
+            mDone = true;
+            try {
+                mTracks.close();
+                mHeader.putInt(OFFSET_TRACKS, mOut.size());
+                copyTracks();
+
+                mHeader.putInt(OFFSET_ID_TABLE, mOut.size());
+                int capacity = tableCapacity(mSize);
+                int[] slots = new int[capacity];
+                for (int i = 0; i < mSize; i++) {
+                    insert(slots, mHashes[i], i + 1);
+                }
+                mOut.writeInt(capacity);
+                for (int slot : slots) {
+                    mOut.writeInt(slot);
+                }
+
+                if (mSnapshot != null) {
+                    mHeader.putInt(OFFSET_GENRES, writeCategoryIndex(mSnapshot.getGenreIndex()));
+                    mHeader.putInt(OFFSET_ARTISTS, writeCategoryIndex(mSnapshot.getArtistIndex()));
+                    mHeader.putInt(OFFSET_ALBUMS, writeCategoryIndex(mSnapshot.getAlbumIndex()));
+                } else {
+                    mHeader.putInt(OFFSET_GENRES, writeCategoryIndex(mGenres.build()));
+                    mHeader.putInt(OFFSET_ARTISTS, writeCategoryIndex(mArtists.build()));
+                    mHeader.putInt(OFFSET_ALBUMS, writeCategoryIndex(mAlbums.build()));
+                }
+                mOut.close();
+                writeHeader();
+            } catch (IOException e) {
+                discard();
+                throw e;
+            } finally {
+                mTracksFile.delete();
+            }
+        }
+
+        /**
+         * 放弃写入并删除文件，已经提交的话什么都不做
+         */
+        public void abort() {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            discard();
+        }
+
+        private void discard() {
+            closeQuietly(mTracks);
+            closeQuietly(mOut);
+            mTracksFile.delete();
+            mFile.delete();
+        }
+
+        private int writeString(String value, boolean pooled) throws IOException {
+            if (value == null) {
+                return NULL_REF;
+            }
+            if (pooled) {
+                Integer ref = mPool.get(value);
+                if (ref != null) {
+                    return ref;
+                }
+            }
+            int offset = mOut.size();
+            byte[] bytes = value.getBytes(UTF_8);
+            mOut.writeInt(bytes.length);
+            mOut.write(bytes);
+            if (pooled) {
+                mPool.put(value, offset);
+            }
+            return offset;
+        }
+
+        private void copyTracks() throws IOException {
+            FileInputStream in = new FileInputStream(mTracksFile);
+            try {
+                byte[] buffer = new byte[CHECKSUM_CHUNK];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    mOut.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        private int positionOf(String trackId) {
+            return mSnapshot != null ? mSnapshot.indexOf(trackId) : mPositions.get(trackId);
+        }
+
+        private int writeCategoryIndex(CategoryIndex index) throws IOException {
+            int offset = mOut.size();
+            List<String> categories = index.getCategories();
+            int count = categories.size();
+            int capacity = tableCapacity(count);
+            mOut.writeInt(count);
+            mOut.writeInt(capacity);
+
+            int listOffset = offset + 8 + count * CATEGORY_ENTRY_SIZE + capacity * 4;
+            int[] slots = new int[capacity];
+            for (int i = 0; i < count; i++) {
+                String category = categories.get(i);
+                int trackCount = index.getTrackIds(category).size();
+                //分类名称都是某首音乐的字段，已经在字符串池里了
+                mOut.writeInt(mPool.get(category));
+                mOut.writeInt(listOffset);
+                mOut.writeInt(trackCount);
+                listOffset += trackCount * 4;
+                insert(slots, CatalogSnapshot.hash(category), i + 1);
+            }
+            for (int slot : slots) {
+                mOut.writeInt(slot);
+            }
+            for (String category : categories) {
+                for (String trackId : index.getTrackIds(category)) {
+                    mOut.writeInt(positionOf(trackId));
+                }
+            }
+            return offset;
+        }
+
+        private void writeHeader() throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+            try {
+                int length = (int) raf.length();
+                mHeader.putInt(OFFSET_MAGIC, MAGIC);
+                mHeader.putInt(OFFSET_VERSION, FORMAT_VERSION);
+                mHeader.putInt(OFFSET_LENGTH, length);
+                mHeader.putInt(OFFSET_BODY_CRC, checksum(
+                        raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length), HEADER_SIZE, length));
+                mHeader.putInt(OFFSET_TRACK_COUNT, mSize);
+                mHeader.putInt(OFFSET_HEADER_CRC, checksum(mHeader, OFFSET_LENGTH, HEADER_SIZE));
+                raf.seek(0);
+                raf.write(mHeader.array());
+                raf.getFD().sync();
+            } finally {
+                raf.close();
+            }
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // ignore
+            }
+        }
+    }
+}
@@ -1,12 +1,30 @@
 package com.heyzqt.exoplayerdemo.model;
 
-import android.os.AsyncTask;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.v4.media.MediaMetadataCompat;
 
 import com.heyzqt.exoplayerdemo.utils.LogHelper;
+import com.heyzqt.exoplayerdemo.utils.SingleFlight;
+import com.heyzqt.exoplayerdemo.utils.Tracer;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Created by heyzqt on 2019-08-18.
@@ -17,7 +35,19 @@ public class MusicProvider {
 
     private MusicProviderSource mSource;
 
-    private ConcurrentHashMap<String, MutableMediaMetadata> mMusicListById;
+    //目录和分类索引放在一个不可变的快照里，在旁边构建好之后整体替换，读者不需要加锁
+    private volatile CatalogSnapshot mCatalog = CatalogSnapshot.EMPTY;
+    //最近一次发布的快照版本，只在加锁的加载方法中修改
+    private long mCatalogVersion;
+
+    //和mCatalog对应的搜索索引。完整加载时在旁边建好新的索引，和新目录一起替换；增量同步直接修改当前索引。
+    //两者都在mSearchLock的写锁中和目录一起更新，搜索时看到的目录和索引总是一致的
+    private SearchIndex mSearchIndex = new SearchIndex();
+    private final ReentrantReadWriteLock mSearchLock = new ReentrantReadWriteLock();
+    //从映射文件打开、已经校验过内容但还没有建立搜索索引的目录
+    private MappedCatalog mUnindexedCatalog;
+    //当前目录的Builder，增量同步直接在上面修改；从映射文件打开的目录在第一次增量同步时才建立
+    private CatalogSnapshot.Builder mCatalogBuilder;
 
     enum State {
         NON_INITIALIZED, INITIALIZING, INITIALIZED
@@ -25,64 +55,480 @@ public class MusicProvider {
 
     private volatile State mCurrentState = State.NON_INITIALIZED;
 
+    //分批通知的条件，两者都为0时不开启分批加载
+    private volatile int mBatchSize;
+    private volatile long mBatchIntervalMs;
+
+    //加载进度中用来表示"缓存的目录已就绪"
+    private static final int PROGRESS_CACHE_READY = -1;
+
+    public static final long DEFAULT_LOAD_TIMEOUT_MS = 60000;
+
+    //所有MusicProvider共用一个超时计时线程
+    private static final ScheduledExecutorService sTimer =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "MusicProvider timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    //同一时间只有一次加载，加载期间的所有调用方共享它的进度和结果
+    private final SingleFlight<Integer, LoadResult> mLoader;
+
     public interface Callback {
         void onMusicCatalogReady(boolean success);
     }
 
+    /**
+     * 开启分批加载后，目录还没加载完就会收到onMusicCatalogPartiallyReady，
+     * 这时已经可以通过{@link #getMusic(String)}浏览和播放已加载的音乐。
+     * 加载中途失败时已经发布的部分目录会撤回，恢复成加载之前的目录，然后回调onMusicCatalogReady(false)
+     */
+    public interface IncrementalCallback extends Callback {
+        /**
+         * @param loadedCount 目前已加载的音乐数量
+         */
+        void onMusicCatalogPartiallyReady(int loadedCount);
+    }
+
+    /**
+     * {@link #retrieveMediaAsync(Callback)}的返回值，用来取消回调
+     */
+    public interface LoadRequest {
+        /**
+         * 不再回调；所有调用方都取消时中断正在进行的加载并关闭数据源，已有的目录保持不变
+         */
+        void cancel();
+    }
+
+    private interface LoadListener {
+        /**
+         * 拿到了数据源的迭代器，超时或者取消时要关闭它：阻塞在网络读取上的线程不响应中断
+         */
+        void onSourceOpened(Iterator<?> tracks);
+
+        void onBatchLoaded(int loadedCount);
+    }
+
+    private static final class LoadResult {
+        final boolean success;
+        final boolean readyFromCache;
+        final boolean catalogChanged;
+
+        LoadResult(boolean success, boolean readyFromCache, boolean catalogChanged) {
+            this.success = success;
+            this.readyFromCache = readyFromCache;
+            this.catalogChanged = catalogChanged;
+        }
+    }
+
     public MusicProvider() {
         this(new RemoteJSONSource());//获取服务器音乐数据
     }
 
+    /**
+     * 使用磁盘缓存，冷启动时先展示上一次的目录，再在后台向服务器确认是否有更新
+     */
+    public MusicProvider(Context context) {
+        this(new RemoteJSONSource(new File(context.getCacheDir(), "catalog")));
+    }
+
+    /**
+     * 同时从多个数据源加载，合并成一个目录（见{@link CompositeMusicProviderSource}）。
+     * 只有一个数据源时直接使用它，保留它的磁盘缓存和增量同步
+     */
+    public MusicProvider(List<? extends MusicProviderSource> sources) {
+        this(combine(sources));
+    }
+
     public MusicProvider(MusicProviderSource source) {
         this.mSource = source;
-        mMusicListById = new ConcurrentHashMap<>();
+
+        //加载本身是串行的（retrieveMedia加锁），一个线程就够了，空闲30秒后回收
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "MusicProvider loader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        mLoader = new SingleFlight<>(executor, sTimer, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        }, new SingleFlight.Task<Integer, LoadResult>() {
+            @Override
+            public LoadResult run(final SingleFlight.ProgressSink<Integer> progress) {
+                Tracer.Span load = Tracer.begin("catalog.load");
+                boolean readyFromCache = false;
+                Tracer.Span span = Tracer.begin("catalog.openCached");
+                if (retrieveCachedMedia()) {
+                    //先用缓存的目录通知界面，再在后台确认服务器上的目录是否有更新
+                    readyFromCache = true;
+                    span.attr("size", mCatalog.size()).end();
+                    progress.publish(PROGRESS_CACHE_READY);
+                } else {
+                    span.end();
+                }
+                //上一次加载被中断时可能还没建完索引，这里补上
+                span = Tracer.begin("catalog.indexCached");
+                indexCachedCatalog();
+                span.end();
+                boolean catalogChanged = retrieveMedia(new LoadListener() {
+                    @Override
+                    public void onSourceOpened(final Iterator<?> tracks) {
+                        progress.setCancelAction(new Runnable() {
+                            @Override
+                            public void run() {
+                                TrackMetadata.closeQuietly(tracks);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onBatchLoaded(int loadedCount) {
+                        progress.publish(loadedCount);
+                    }
+                });
+                load.attr("fromCache", readyFromCache).attr("changed", catalogChanged).end();
+                return new LoadResult(mCurrentState == State.INITIALIZED, readyFromCache,
+                        catalogChanged);
+            }
+        });
+        mLoader.setTimeout(DEFAULT_LOAD_TIMEOUT_MS);
     }
 
+    private static MusicProviderSource combine(List<? extends MusicProviderSource> sources) {
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        CompositeMusicProviderSource composite = new CompositeMusicProviderSource();
+        for (MusicProviderSource source : sources) {
+            composite.addSource(source);
+        }
+        return composite;
+    }
+
+    /**
+     * 回调执行的线程，默认是主线程
+     */
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        mLoader.setCallbackExecutor(callbackExecutor);
+    }
+
+    /**
+     * 一次加载（包括读缓存和访问服务器）的最长时间，超时后回调失败，中断加载并关闭数据源，已有的目录保持不变
+     *
+     * @param timeoutMs 小于等于0表示不限时
+     */
+    public void setLoadTimeout(long timeoutMs) {
+        mLoader.setTimeout(timeoutMs);
+    }
+
+    /**
+     * 首次加载目录时，每加载batchSize首音乐或者每隔batchIntervalMs毫秒（以先到者为准）
+     * 通知一次{@link IncrementalCallback}。目录已存在时的刷新仍然是整体替换，读者不会看到一半新一半旧的目录
+     *
+     * @param batchSize       小于等于0表示不按数量分批
+     * @param batchIntervalMs 小于等于0表示不按时间分批
+     */
+    public void setIncrementalLoading(int batchSize, long batchIntervalMs) {
+        this.mBatchSize = batchSize;
+        this.mBatchIntervalMs = batchIntervalMs;
+    }
+
+    /**
+     * 目录按列保存，每次调用都会生成新的MediaMetadataCompat，只在交给MediaSession时调用
+     */
     public MediaMetadataCompat getMusic(String musicId) {
-        return mMusicListById.containsKey(musicId) ? mMusicListById.get(musicId).metadata : null;
+        return mCatalog.getMusic(musicId);
     }
 
-    //异步加载音乐数据
-    public void retrieveMediaAsync(final Callback callback) {
-        if (mCurrentState == State.INITIALIZED) {
-            if (callback != null) {
-                callback.onMusicCatalogReady(true);
+    /**
+     * 当前目录的快照，需要多次读取并且要求结果一致时使用
+     */
+    public CatalogSnapshot getCatalog() {
+        return mCatalog;
+    }
+
+    /**
+     * @return 当前目录的版本，目录每次替换（包括分批发布）都会增加
+     */
+    public long getCatalogVersion() {
+        return mCatalog.getVersion();
+    }
+
+    /**
+     * 按标题、歌手、专辑、流派搜索，每个词都按前缀匹配，适合边输入边搜索
+     *
+     * @return 按相关度排序的音乐
+     */
+    public List<MediaMetadataCompat> searchMusic(String query, int limit) {
+        CatalogSnapshot catalog;
+        List<String> trackIds;
+        mSearchLock.readLock().lock();
+        try {
+            catalog = mCatalog;
+            trackIds = mSearchIndex.search(query, limit);
+        } finally {
+            mSearchLock.readLock().unlock();
+        }
+        List<MediaMetadataCompat> result = new ArrayList<>(trackIds.size());
+        for (String trackId : trackIds) {
+            //首次分批加载时新索引会比已发布的部分目录多几首，只返回当前目录中有的
+            MediaMetadataCompat music = catalog.getMusic(trackId);
+            if (music != null) {
+                result.add(music);
             }
-            return;
         }
+        return result;
+    }
 
-        //开启异步线程加载音乐数据
-        new AsyncTask<Void, Void, State>() {
+    /**
+     * 所有流派，不需要遍历目录
+     */
+    public List<String> getGenres() {
+        return mCatalog.getGenreIndex().getCategories();
+    }
+
+    public BrowseResult getMusicsByGenre(String genre) {
+        CatalogSnapshot catalog = mCatalog;
+        return catalog.getMusics(catalog.getGenreIndex().getTrackIds(genre));
+    }
+
+    public List<String> getArtists() {
+        return mCatalog.getArtistIndex().getCategories();
+    }
+
+    public BrowseResult getMusicsByArtist(String artist) {
+        CatalogSnapshot catalog = mCatalog;
+        return catalog.getMusics(catalog.getArtistIndex().getTrackIds(artist));
+    }
+
+    public List<String> getAlbums() {
+        return mCatalog.getAlbumIndex().getCategories();
+    }
+
+    /**
+     * @return 专辑中的音乐，按音轨号排序
+     */
+    public BrowseResult getMusicsByAlbum(String album) {
+        CatalogSnapshot catalog = mCatalog;
+        return catalog.getMusics(catalog.getAlbumIndex().getTrackIds(album));
+    }
+
+    /**
+     * @return 整个目录，按加入目录的顺序
+     */
+    public BrowseResult getAllMusics() {
+        return mCatalog.getAllMusics();
+    }
+
+    /**
+     * 分页浏览某个节点的子节点，适合几万首音乐的分类：每次只取一页，不会一次生成所有MediaMetadataCompat。
+     * 继续翻页用{@link ChildrenPage#next()}，顺序不受目录刷新的影响
+     *
+     * @param parentMediaId {@link com.heyzqt.exoplayerdemo.utils.MediaIDHelper}格式的可浏览节点，比如"__BY_GENRE__/Jazz"
+     * @param offset        从0开始
+     * @param limit         一页最多几项
+     */
+    public ChildrenPage getChildren(String parentMediaId, int offset, int limit) {
+        return mCatalog.getChildren(parentMediaId, offset, limit);
+    }
+
+    /**
+     * 异步加载音乐数据。加载进行中时再调用不会重新加载，而是等待同一次加载的结果；
+     * 已经加载过时直接回调成功。回调在{@link #setCallbackExecutor(Executor)}指定的线程上执行
+     */
+    public LoadRequest retrieveMediaAsync(final Callback callback) {
+        if (mCurrentState == State.INITIALIZED) {
+            return notifyReady(callback);
+        }
+
+        //从调用到最终结果，缓存的目录可用的时间点记成瞬间事件
+        final Tracer.Span span = Tracer.beginAsync("catalog.retrieveMediaAsync");
+        final SingleFlight.Handle handle = mLoader.execute(new SingleFlight.Listener<Integer, LoadResult>() {
+            private boolean mReadyNotified;
 
             @Override
-            protected State doInBackground(Void... voids) {
-                retrieveMedia();
-                return mCurrentState;
+            public void onProgress(Integer progress) {
+                if (progress == PROGRESS_CACHE_READY) {
+                    Tracer.instant("catalog.cacheReady", "size", mCatalog.size());
+                    mReadyNotified = true;
+                    if (callback != null) {
+                        callback.onMusicCatalogReady(true);
+                    }
+                } else if (callback instanceof IncrementalCallback) {
+                    ((IncrementalCallback) callback).onMusicCatalogPartiallyReady(progress);
+                }
             }
 
             @Override
-            protected void onPostExecute(State state) {
-                super.onPostExecute(state);
-                if (callback != null) {
-                    callback.onMusicCatalogReady(state == State.INITIALIZED);
+            public void onResult(LoadResult result) {
+                span.attr("success", result.success).attr("changed", result.catalogChanged).end();
+                //缓存的目录已经通知过了，只有服务器上的目录有变化时才需要再通知一次
+                if (callback != null && (!result.readyFromCache || result.catalogChanged)) {
+                    callback.onMusicCatalogReady(result.success);
                 }
             }
-        }.execute();
+
+            @Override
+            public void onError(Exception e) {
+                LogHelper.e(TAG, e, "Music list loading failed");
+                span.attr("error", e.getClass().getSimpleName()).end();
+                //缓存的目录还在，已经通知过成功的不再通知失败
+                if (callback != null && !mReadyNotified) {
+                    callback.onMusicCatalogReady(mCurrentState == State.INITIALIZED);
+                }
+            }
+        });
+        return new LoadRequest() {
+            @Override
+            public void cancel() {
+                handle.cancel();
+            }
+        };
+    }
+
+    private LoadRequest notifyReady(final Callback callback) {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        if (callback != null) {
+            mLoader.getCallbackExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cancelled.get()) {
+                        callback.onMusicCatalogReady(true);
+                    }
+                }
+            });
+        }
+        return new LoadRequest() {
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        };
+    }
+
+    //从磁盘缓存加载目录，不访问网络也不解析JSON
+    private synchronized boolean retrieveCachedMedia() {
+        if (mCurrentState != State.NON_INITIALIZED
+                || !(mSource instanceof CachingMusicProviderSource)) {
+            return false;
+        }
+
+        CachingMusicProviderSource source = (CachingMusicProviderSource) mSource;
+        MappedCatalog mapped = source.openCachedCatalog();
+        if (mapped != null) {
+            //读到损坏的内容会抛出异常，所以先顺序校验一遍CRC再发布，界面不会看到没有校验过的目录。
+            //校验失败时缓存已经被删除，接下来由retrieveMedia完整加载JSON
+            Tracer.Span span = Tracer.begin("catalog.verifyCached");
+            boolean verified = source.verifyCachedCatalog(mapped);
+            span.attr("discarded", !verified).end();
+            if (!verified) {
+                LogHelper.w(TAG, "cached music list is corrupt, reloading");
+                return false;
+            }
+            //直接读映射的文件，不逐首解析；搜索索引由indexCachedCatalog随后补上
+            publish(mapped.toSnapshot(++mCatalogVersion), new SearchIndex());
+            mUnindexedCatalog = mapped;
+            mCatalogBuilder = null;
+        } else {
+            Iterator<MediaMetadataCompat> tracks = source.cachedIterator();
+            if (tracks == null) {
+                return false;
+            }
+            buildCatalog(TrackMetadata.fromMetadata(tracks), null);
+        }
+        mCurrentState = State.INITIALIZED;
+        LogHelper.d(TAG, "music list restored from cache, size = ", mCatalog.size());
+        return true;
     }
 
-    private synchronized void retrieveMedia() {
+    /**
+     * 界面已经拿到映射的目录之后再建立搜索索引，在这之前搜索没有结果
+     */
+    private synchronized void indexCachedCatalog() {
+        if (mUnindexedCatalog == null) {
+            return;
+        }
+        CatalogSnapshot catalog = mCatalog;
+        SearchIndex searchIndex = new SearchIndex();
+        for (int i = 0; i < catalog.size(); i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Music list indexing cancelled");
+            }
+            MusicTrack track = catalog.getTrackAt(i);
+            searchIndex.put(track.mediaId, track.title, track.artist, track.album, track.genre);
+        }
+        publish(catalog, searchIndex);
+        mUnindexedCatalog = null;
+    }
+
+    /**
+     * @return 目录是否被替换
+     */
+    private synchronized boolean retrieveMedia(LoadListener listener) {
         try {
             if (mCurrentState == State.NON_INITIALIZED) {
                 mCurrentState = State.INITIALIZING;
             }
 
-            Iterator<MediaMetadataCompat> tracks = mSource.iterator();
-            while (tracks.hasNext()) {
-                MediaMetadataCompat item = tracks.next();
-                String musicId = item.getString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID);
-                mMusicListById.put(musicId, new MutableMediaMetadata(musicId, item));
+            Iterator<MediaMetadataCompat> tracks;
+            if (mCurrentState == State.INITIALIZED && mSource instanceof CachingMusicProviderSource) {
+                if (mSource instanceof DeltaMusicProviderSource) {
+                    DeltaMusicProviderSource source = (DeltaMusicProviderSource) mSource;
+                    CatalogDelta delta;
+                    try {
+                        delta = source.fetchDelta();
+                    } catch (IOException e) {
+                        LogHelper.e(TAG, e, "Could not fetch music list delta");
+                        return false;
+                    }
+                    if (delta != null) {
+                        Tracer.Span span = Tracer.begin("catalog.applyDelta");
+                        boolean applied = applyDelta(source, delta);
+                        span.attr("added", delta.getAdded().size())
+                                .attr("updated", delta.getUpdated().size())
+                                .attr("removed", delta.getRemoved().size()).end();
+                        return applied;
+                    }
+                    //版本不连续或者服务器已经不认识当前版本，改为完整同步
+                }
+                //已经有缓存的目录了，服务器返回304时不需要重新解析，也不需要重建目录
+                tracks = ((CachingMusicProviderSource) mSource).revalidate();
+                if (tracks == null) {
+                    return false;
+                }
+            } else {
+                tracks = mSource.iterator();
             }
+            //超时或者调用方都取消时关闭数据源，buildCatalog随即抛出异常，保留原来的目录
+            listener.onSourceOpened(tracks);
+
+            //在新的快照中构建目录，完成之后再替换，服务器上删除的音乐也会一并移除。
+            //还没有任何目录可以展示时，如果开启了分批加载，每一批都会发布一次
+            boolean incremental = mCurrentState == State.INITIALIZING
+                    && (mBatchSize > 0 || mBatchIntervalMs > 0);
+            //数据源边下载边解析，这个区间包括了下载和解析JSON的时间
+            Tracer.Span span = Tracer.begin("catalog.build");
+            buildCatalog(TrackMetadata.fromMetadata(tracks), incremental ? listener : null);
+            span.attr("size", mCatalog.size()).attr("incremental", incremental).end();
             mCurrentState = State.INITIALIZED;
+            return true;
+        } catch (RuntimeException e) {
+            //数据源是边下载边解析的，网络中断或者数据格式错误会在迭代过程中抛出来，保留当前的目录
+            LogHelper.e(TAG, e, "Could not retrieve music list");
+            return false;
         } finally {
             if (mCurrentState != State.INITIALIZED) {
                 //发生某些意外情况，我们需要把状态重置为NON_INITIALIZED
@@ -90,4 +536,132 @@ public class MusicProvider {
             }
         }
     }
+
+    /**
+     * 在旁边构建新的目录和搜索索引，完成后一起发布。不管成功与否，最后都会关闭tracks，
+     * 中途放弃时数据源的连接和工作线程随之释放
+     *
+     * @param listener 不为null时按照{@link #setIncrementalLoading(int, long)}的条件分批发布目录并通知。
+     *                 中途失败时撤回已经发布的部分目录，恢复成加载之前的目录和索引
+     */
+    private void buildCatalog(Iterator<MusicTrack> tracks, LoadListener listener) {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        SearchIndex searchIndex = new SearchIndex();
+        int batchSize = mBatchSize;
+        long batchIntervalMs = mBatchIntervalMs;
+        int loadedCount = 0;
+        int lastNotifiedCount = 0;
+        long lastNotifiedTime = SystemClock.elapsedRealtime();
+        CatalogSnapshot previous = mCatalog;
+        SearchIndex previousIndex = mSearchIndex;
+
+        try {
+            while (tracks.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    //超时或者调用方都取消了，放弃这次加载，由retrieveMedia保留原来的目录
+                    throw new CancellationException("Music list loading cancelled");
+                }
+                MusicTrack track = tracks.next();
+                if (builder.add(track)) {
+                    //内容没变的音乐复用当前索引的切词结果
+                    searchIndex.put(previousIndex, track.mediaId, track.title, track.artist,
+                            track.album, track.genre);
+                }
+                loadedCount++;
+
+                if (listener != null) {
+                    long now = SystemClock.elapsedRealtime();
+                    if ((batchSize > 0 && loadedCount - lastNotifiedCount >= batchSize)
+                            || (batchIntervalMs > 0 && now - lastNotifiedTime >= batchIntervalMs)) {
+                        lastNotifiedCount = loadedCount;
+                        lastNotifiedTime = now;
+                        publish(builder.build(++mCatalogVersion), searchIndex);
+                        listener.onBatchLoaded(loadedCount);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            if (lastNotifiedCount > 0) {
+                //分批发布的只是一部分目录，不能当作完整的目录留下；换个版本号，读者能发现目录变了
+                publish(previous.withVersion(++mCatalogVersion), previousIndex);
+            }
+            throw e;
+        } finally {
+            TrackMetadata.closeQuietly(tracks);
+        }
+        //服务器上已经删除的音乐不会出现在新的索引里
+        publish(builder.build(++mCatalogVersion), searchIndex);
+        mUnindexedCatalog = null;
+        mCatalogBuilder = builder;
+    }
+
+    //目录和对应的搜索索引一起替换
+    private void publish(CatalogSnapshot catalog, SearchIndex searchIndex) {
+        mSearchLock.writeLock().lock();
+        try {
+            mCatalog = catalog;
+            mSearchIndex = searchIndex;
+        } finally {
+            mSearchLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在当前目录上直接应用增量：只处理变化的音乐，分类索引、字典和搜索索引都不重建。
+     * 新快照先在旁边生成，搜索索引的修改和快照的替换在同一个写锁中完成
+     *
+     * @return 目录是否被替换
+     */
+    private boolean applyDelta(DeltaMusicProviderSource source, CatalogDelta delta) {
+        if (delta.isEmpty()) {
+            if (!delta.getVersion().equals(delta.getBaseVersion())) {
+                source.commitDelta(delta, mCatalog);
+            }
+            return false;
+        }
+
+        CatalogSnapshot.Builder builder = mCatalogBuilder;
+        if (builder == null) {
+            //从映射文件打开的目录只有这一次需要逐首读出
+            builder = new CatalogSnapshot.Builder();
+            CatalogSnapshot catalog = mCatalog;
+            for (int i = 0; i < catalog.size(); i++) {
+                builder.add(catalog.getTrackAt(i));
+            }
+            mCatalogBuilder = builder;
+        }
+
+        builder.remove(delta.getRemoved());
+        List<MusicTrack> changed = new ArrayList<>();
+        put(builder, delta.getUpdated(), changed);
+        put(builder, delta.getAdded(), changed);
+        CatalogSnapshot catalog = builder.build(++mCatalogVersion);
+
+        mSearchLock.writeLock().lock();
+        try {
+            for (String trackId : delta.getRemoved()) {
+                mSearchIndex.remove(trackId);
+            }
+            for (MusicTrack track : changed) {
+                mSearchIndex.put(track.mediaId, track.title, track.artist, track.album, track.genre);
+            }
+            mCatalog = catalog;
+        } finally {
+            mSearchLock.writeLock().unlock();
+        }
+        source.commitDelta(delta, mCatalog);
+        LogHelper.d(TAG, "music list delta applied, version = ", delta.getVersion(),
+                ", size = ", mCatalog.size());
+        return true;
+    }
+
+    //changed收集内容有变化、需要重新切词的音乐
+    private static void put(CatalogSnapshot.Builder builder, List<MusicTrack> tracks,
+                            List<MusicTrack> changed) {
+        for (MusicTrack track : tracks) {
+            if (builder.put(track)) {
+                changed.add(track);
+            }
+        }
+    }
 }
@@ -10,5 +10,9 @@ import java.util.Iterator;
 public interface MusicProviderSource {
     String CUSTOM_METADATA_TRACK_SOURCE = "__SOURCE__";
 
+    /**
+     * 返回的迭代器可以实现{@link java.io.Closeable}：调用方中途放弃（出错、超时、取消）时会调用close()，
+     * 这时应该尽快释放连接和线程，正在阻塞的hasNext()/next()可以抛出异常。close()可能在其他线程上调用
+     */
     Iterator<MediaMetadataCompat> iterator();
 }
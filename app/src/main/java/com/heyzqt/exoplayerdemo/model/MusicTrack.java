@@ -0,0 +1,35 @@
+package com.heyzqt.exoplayerdemo.model;
+
+/**
+ * Created by heyzqt on 2019-08-24.
+ * 一首音乐的原始字段，不依赖Android类，方便写入磁盘缓存以及在JVM上做单元测试。
+ * 交给MediaSession之前通过{@link TrackMetadata}转换成MediaMetadataCompat
+ */
+public class MusicTrack {
+
+    public final String mediaId;
+    public final String source;
+    public final String title;
+    public final String album;
+    public final String artist;
+    public final String genre;
+    public final String albumArtUri;
+    public final long trackNumber;
+    public final long totalTrackCount;
+    public final long duration;//ms
+
+    public MusicTrack(String mediaId, String source, String title, String album, String artist,
+                      String genre, String albumArtUri, long trackNumber, long totalTrackCount,
+                      long duration) {
+        this.mediaId = mediaId;
+        this.source = source;
+        this.title = title;
+        this.album = album;
+        this.artist = artist;
+        this.genre = genre;
+        this.albumArtUri = albumArtUri;
+        this.trackNumber = trackNumber;
+        this.totalTrackCount = totalTrackCount;
+        this.duration = duration;
+    }
+}
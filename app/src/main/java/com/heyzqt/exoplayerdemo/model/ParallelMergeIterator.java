@@ -0,0 +1,246 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by heyzqt on 2019-09-01.
+ * 在多个线程上同时迭代多个数据源，按到达顺序合并成一个迭代器，并按key去重（先到的保留）。
+ * 每个数据源有自己的超时时间，超时或者出错的数据源被放弃，已经返回的元素保留；
+ * 所有数据源都失败时抛出RuntimeException。总耗时取决于最慢的数据源，而不是所有数据源之和。
+ * <p>
+ * 放弃或超时的数据源，它的迭代器实现了Closeable时会被关闭，阻塞在网络读取上的工作线程也能尽快退出。
+ * 调用方中途放弃时需要调用{@link #close()}
+ */
+public final class ParallelMergeIterator<T> implements Iterator<T>, Closeable {
+
+    private static final String TAG = LogHelper.makeLogTag(ParallelMergeIterator.class);
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    public interface KeyExtractor<T> {
+        Object keyOf(T item);
+    }
+
+    private final KeyExtractor<T> mKeyExtractor;
+    private final BlockingQueue<Message> mQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Worker> mWorkers;
+    private final Set<Object> mSeenKeys = new HashSet<>();
+    private volatile boolean mClosed;
+    private int mActiveCount;
+    private int mSucceededCount;
+    private T mNext;
+
+    /**
+     * @param sources      每个数据源的iterator()在各自的工作线程上调用
+     * @param timeoutsMs   每个数据源从开始到迭代完成的最长时间，和sources一一对应
+     * @param executor     需要能同时执行sources.size()个任务
+     */
+    public ParallelMergeIterator(List<? extends Iterable<? extends T>> sources, long[] timeoutsMs,
+                                 KeyExtractor<T> keyExtractor, Executor executor) {
+        if (timeoutsMs.length != sources.size()) {
+            throw new IllegalArgumentException("Expected " + sources.size() + " timeouts");
+        }
+        this.mKeyExtractor = keyExtractor;
+        this.mWorkers = new ArrayList<>(sources.size());
+        long start = System.nanoTime();
+        for (int i = 0; i < sources.size(); i++) {
+            Worker worker = new Worker(i, sources.get(i),
+                    start + TimeUnit.MILLISECONDS.toNanos(timeoutsMs[i]));
+            mWorkers.add(worker);
+            executor.execute(worker);
+        }
+        mActiveCount = sources.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (mNext == null) {
+            if (mClosed) {
+                //被放弃的合并结果不完整，不能当作正常结束
+                throw new IllegalStateException("Catalog sources were closed");
+            }
+            if (mActiveCount == 0) {
+                if (mSucceededCount == 0 && !mWorkers.isEmpty()) {
+                    throw new RuntimeException("All " + mWorkers.size() + " catalog sources failed");
+                }
+                return false;
+            }
+            Message message;
+            try {
+                message = mQueue.poll(nanosUntilNextDeadline(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RuntimeException("Interrupted while merging catalog sources", e);
+            }
+            if (mClosed) {
+                continue;
+            }
+            if (message == null) {
+                expireWorkers();
+            } else if (message.item != null) {
+                //超时的数据源在放弃之前已经放进队列的元素也丢弃
+                if (!message.worker.mFinished) {
+                    accept(message.item);
+                }
+            } else {
+                finish(message.worker, message.error);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T next = mNext;
+        mNext = null;
+        return next;
+    }
+
+    /**
+     * 不再需要剩下的数据时调用：关闭所有数据源的迭代器，工作线程会尽快停止。可以在其他线程上调用
+     */
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        for (Worker worker : mWorkers) {
+            worker.cancel();
+        }
+        mQueue.clear();
+        //唤醒等在队列上的消费线程
+        mQueue.offer(new Message(null, null, null));
+    }
+
+    private void accept(T item) {
+        Object key = mKeyExtractor.keyOf(item);
+        if (key == null || mSeenKeys.add(key)) {
+            mNext = item;
+        }
+    }
+
+    private void finish(Worker worker, Throwable error) {
+        if (worker.mFinished) {
+            //已经超时放弃了
+            return;
+        }
+        worker.mFinished = true;
+        mActiveCount--;
+        if (error == null) {
+            mSucceededCount++;
+            LogHelper.d(TAG, "source ", worker.mIndex, " finished in ",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - worker.mStartNanos), " ms");
+        } else {
+            LogHelper.e(TAG, error, "source ", worker.mIndex, " failed");
+        }
+    }
+
+    private long nanosUntilNextDeadline() {
+        long next = Long.MAX_VALUE;
+        for (Worker worker : mWorkers) {
+            if (!worker.mFinished) {
+                next = Math.min(next, worker.mDeadlineNanos);
+            }
+        }
+        return Math.max(0, next - System.nanoTime());
+    }
+
+    private void expireWorkers() {
+        long now = System.nanoTime();
+        for (Worker worker : mWorkers) {
+            if (!worker.mFinished && now - worker.mDeadlineNanos >= 0) {
+                LogHelper.w(TAG, "source ", worker.mIndex, " timed out, dropping its remaining items");
+                worker.cancel();
+                worker.mFinished = true;
+                mActiveCount--;
+            }
+        }
+    }
+
+    private final class Message {
+        final Worker worker;
+        final T item;
+        final Throwable error;
+
+        Message(Worker worker, T item, Throwable error) {
+            this.worker = worker;
+            this.item = item;
+            this.error = error;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final int mIndex;
+        final Iterable<? extends T> mSource;
+        final long mDeadlineNanos;
+        final long mStartNanos = System.nanoTime();
+        volatile boolean mCancelled;
+        //数据源的迭代器，取消时在其他线程上关闭它
+        volatile Iterator<? extends T> mItems;
+        //只在消费线程上读写
+        boolean mFinished;
+
+        Worker(int index, Iterable<? extends T> source, long deadlineNanos) {
+            this.mIndex = index;
+            this.mSource = source;
+            this.mDeadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void run() {
+            Throwable error = null;
+            Iterator<? extends T> items = null;
+            try {
+                items = mSource.iterator();
+                mItems = items;
+                while (!mCancelled && items.hasNext()) {
+                    T item = items.next();
+                    if (item != null) {
+                        put(new Message(this, item, null));
+                    }
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                //迭代完、出错或者被取消都关闭数据源的迭代器
+                TrackMetadata.closeQuietly(items);
+            }
+            put(new Message(this, null, error));
+        }
+
+        //取消发生在iterator()返回之前时，由run()在最后关闭
+        void cancel() {
+            mCancelled = true;
+            TrackMetadata.closeQuietly(mItems);
+        }
+
+        //队列满时等待消费者，被取消后直接丢弃
+        private void put(Message message) {
+            try {
+                while (!mCancelled && !mQueue.offer(message, 100, TimeUnit.MILLISECONDS)) {
+                    //继续等待
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                mCancelled = true;
+            }
+        }
+    }
+}
@@ -3,132 +3,107 @@ package com.heyzqt.exoplayerdemo.model;
 import android.support.v4.media.MediaMetadataCompat;
 
 import com.heyzqt.exoplayerdemo.utils.LogHelper;
+import com.heyzqt.exoplayerdemo.utils.Tracer;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.net.URLConnection;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * 从服务器获取音乐数据类
  * Created by heyzqt on 2019-08-18.
  */
-public class RemoteJSONSource implements MusicProviderSource {
+public class RemoteJSONSource implements DeltaMusicProviderSource {
 
     private static final String TAG = LogHelper.makeLogTag(RemoteJSONSource.class);
 
     protected static final String CATALOG_URL = "http://storage.googleapis.com/automotive-media/music.json";
 
-    private static final String JSON_MUSIC = "music";
-    private static final String JSON_TITLE = "title";
-    private static final String JSON_ALBUM = "album";
-    private static final String JSON_ARTIST = "artist";
-    private static final String JSON_GENRE = "genre";
-    private static final String JSON_SOURCE = "source";
-    private static final String JSON_IMAGE = "image";
-    private static final String JSON_TRACK_NUMBER = "trackNumber";
-    private static final String JSON_TOTAL_TRACK_COUNT = "totalTrackCount";
-    private static final String JSON_DURATION = "duration";
+    private final CatalogLoader mLoader;
+    private final boolean mDeltaEnabled;
+
+    public RemoteJSONSource() {
+        this(null);
+    }
+
+    /**
+     * @param cacheDir 保存目录缓存的文件夹，为null时不使用缓存
+     */
+    public RemoteJSONSource(File cacheDir) {
+        this(cacheDir, null);
+    }
+
+    /**
+     * @param deltaUrl 增量同步的地址，为null时每次刷新都是完整的条件请求
+     */
+    public RemoteJSONSource(File cacheDir, String deltaUrl) {
+        StreamingJSONParser parser = new StreamingJSONParser();
+        mLoader = new CatalogLoader(CATALOG_URL,
+                cacheDir != null ? new CatalogCache(cacheDir) : null, parser);
+        mLoader.setDeltaSource(deltaUrl, parser);
+        mDeltaEnabled = deltaUrl != null;
+    }
 
     @Override
     public Iterator<MediaMetadataCompat> iterator() {
-        try {
-            int slashPos = CATALOG_URL.lastIndexOf('/');
-            String path = CATALOG_URL.substring(0, slashPos + 1);
-
-            LogHelper.e(TAG, "path = " + path);
-
-            JSONObject jsonObject = fetchJSONFromUrl(CATALOG_URL);
-            ArrayList<MediaMetadataCompat> tracks = new ArrayList<>();
-            if (jsonObject != null) {
-                JSONArray jsonArray = jsonObject.getJSONArray(JSON_MUSIC);
-                if (jsonArray != null) {
-                    for (int j = 0; j < jsonArray.length(); j++) {
-                        tracks.add(buildFromJSON(jsonArray.getJSONObject(j), path));
-                    }
-                }
-            }
-            return tracks.iterator();
-        } catch (JSONException e) {
-            e.printStackTrace();
-            throw new RuntimeException("Could not retrieve music list", e);
+        Iterator<MediaMetadataCompat> tracks = revalidate();
+        if (tracks == null) {
+            tracks = cachedIterator();
         }
+        return tracks != null ? tracks : Collections.<MediaMetadataCompat>emptyIterator();
     }
 
-    private MediaMetadataCompat buildFromJSON(JSONObject json, String basePath) throws JSONException {
-        String title = json.getString(JSON_TITLE);
-        String album = json.getString(JSON_ALBUM);
-        String artist = json.getString(JSON_ARTIST);
-        String genre = json.getString(JSON_GENRE);
-        String source = json.getString(JSON_SOURCE);
-        String iconUrl = json.getString(JSON_IMAGE);
-        int trackNumber = json.getInt(JSON_TRACK_NUMBER);
-        int totalTrackCount = json.getInt(JSON_TOTAL_TRACK_COUNT);
-        int duration = json.getInt(JSON_DURATION) * 1000; // ms
-
-        if (!source.startsWith("http")) {
-            source = basePath + source;
-        }
+    @Override
+    public Iterator<MediaMetadataCompat> cachedIterator() {
+        List<MusicTrack> tracks = mLoader.loadCached();
+        return tracks != null ? TrackMetadata.toMetadata(tracks.iterator()) : null;
+    }
 
-        if (!iconUrl.startsWith("http")) {
-            iconUrl = basePath + iconUrl;
-        }
+    @Override
+    public MappedCatalog openCachedCatalog() {
+        return mLoader.openCached();
+    }
 
-        //正常情况下，id应该从服务器获取
-        String id = String.valueOf(source.hashCode());
-
-        return new MediaMetadataCompat.Builder()
-                .putString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID, id)
-                .putString(MusicProviderSource.CUSTOM_METADATA_TRACK_SOURCE, source).putString(MediaMetadataCompat.METADATA_KEY_ALBUM, album)
-                .putString(MediaMetadataCompat.METADATA_KEY_ARTIST, artist)
-                .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, duration)
-                .putString(MediaMetadataCompat.METADATA_KEY_GENRE, genre)
-                .putString(MediaMetadataCompat.METADATA_KEY_ALBUM_ART_URI, iconUrl)
-                .putString(MediaMetadataCompat.METADATA_KEY_TITLE, title)
-                .putLong(MediaMetadataCompat.METADATA_KEY_TRACK_NUMBER, trackNumber)
-                .putLong(MediaMetadataCompat.METADATA_KEY_NUM_TRACKS, totalTrackCount)
-                .build();
+    @Override
+    public boolean verifyCachedCatalog(MappedCatalog catalog) {
+        return mLoader.verifyCached(catalog);
+    }
 
+    @Override
+    public CatalogDelta fetchDelta() throws IOException {
+        Tracer.Span span = Tracer.begin("catalog.fetchDelta");
+        CatalogDelta delta = mLoader.fetchDelta();
+        span.attr("available", delta != null).end();
+        if (delta == null && mDeltaEnabled) {
+            LogHelper.d(TAG, "music list delta unavailable, falling back to a full sync");
+        }
+        return delta;
     }
 
-    /**
-     * Download a JSON file from a server, parse the content and return the JSON
-     * object.
-     *
-     * @return result JSONObject containing the parsed representation.
-     */
-    private JSONObject fetchJSONFromUrl(String urlString) throws JSONException {
-        BufferedReader reader = null;
+    @Override
+    public void commitDelta(CatalogDelta delta, CatalogSnapshot catalog) {
+        mLoader.commitDelta(delta, catalog);
+    }
+
+    @Override
+    public Iterator<MediaMetadataCompat> revalidate() {
+        //只包括建立连接和读取响应头，响应体在迭代时才边下载边解析
+        Tracer.Span span = Tracer.begin("catalog.revalidate");
         try {
-            URLConnection urlConnection = new URL(urlString).openConnection();
-            reader = new BufferedReader(new InputStreamReader(
-                    urlConnection.getInputStream(), "iso-8859-1"));
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line);
+            Iterator<MusicTrack> tracks = mLoader.revalidate();
+            span.attr("notModified", tracks == null).end();
+            if (tracks == null) {
+                LogHelper.d(TAG, "music list not modified");
+                return null;
             }
-            return new JSONObject(sb.toString());
-        } catch (JSONException e) {
-            throw e;
-        } catch (Exception e) {
-            LogHelper.e(TAG, "Failed to parse the json for media list", e);
+            //边下载边解析，调用方每取一首音乐才从网络流里读出一首
+            return TrackMetadata.toMetadata(tracks);
+        } catch (IOException e) {
+            span.attr("error", e.getClass().getSimpleName()).end();
+            LogHelper.e(TAG, e, "Failed to fetch the json for media list");
             return null;
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    // ignore
-                }
-            }
         }
     }
 }
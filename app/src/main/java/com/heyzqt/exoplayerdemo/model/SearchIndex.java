@@ -0,0 +1,420 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Created by heyzqt on 2019-08-27.
+ * 音乐的全文搜索索引：标题、歌手、专辑、流派切分成词，统一小写并去掉重音符号后放进前缀树，
+ * 每个词对应包含它的音乐（倒排表）。
+ * <p>
+ * 查询时每个词都按前缀匹配，先用候选最少的词取出全部候选，再检查其他词，
+ * 按字段权重（标题 > 歌手 > 专辑 > 流派）和是否完整匹配打分。
+ * 增量同步时通过{@link #put}和{@link #remove}直接修改；完整刷新时在旁边建新的索引，
+ * 内容没变的音乐复用旧索引的切词结果（{@link #put(SearchIndex, String, String, String, String, String)}）
+ */
+public class SearchIndex {
+
+    private static final int FIELD_TITLE = 0;
+    private static final int FIELD_ARTIST = 1;
+    private static final int FIELD_ALBUM = 2;
+    private static final int FIELD_GENRE = 3;
+
+    private static final int[] FIELD_WEIGHTS = {8, 4, 2, 1};
+    private static final int EXACT_MATCH_FACTOR = 2;
+
+    private final Node mRoot = new Node();
+    private final HashMap<String, Integer> mDocIdsByTrackId = new HashMap<>();
+    private final ArrayList<Document> mDocuments = new ArrayList<>();
+    //删除时只把文档置空，倒排表里的记录在查询时跳过，失效的太多时再整体压缩
+    private int mRemovedCount;
+    private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+
+    /**
+     * 添加或者更新一首音乐，内容没变化时直接返回
+     */
+    public void put(String trackId, String title, String artist, String album, String genre) {
+        put(null, trackId, title, artist, album, genre);
+    }
+
+    /**
+     * 和{@link #put(String, String, String, String, String)}相同，base中有内容相同的音乐时直接复用它的切词结果，
+     * 不会修改base。用于目录刷新时在旁边建新的索引
+     */
+    void put(SearchIndex base, String trackId, String title, String artist, String album,
+             String genre) {
+        String[] fields = {title, artist, album, genre};
+        Document reused = base != null ? base.findDocument(trackId, fields) : null;
+        mLock.writeLock().lock();
+        try {
+            Integer docId = mDocIdsByTrackId.get(trackId);
+            if (docId != null) {
+                Document document = mDocuments.get(docId);
+                if (Arrays.equals(document.fields, fields)) {
+                    return;
+                }
+                removeDocument(docId);
+            }
+            addDocument(reused != null ? reused : newDocument(trackId, fields));
+            compactIfNeeded();
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String trackId) {
+        mLock.writeLock().lock();
+        try {
+            Integer docId = mDocIdsByTrackId.get(trackId);
+            if (docId != null) {
+                removeDocument(docId);
+                compactIfNeeded();
+            }
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除不在trackIds中的音乐，用于目录刷新后清理服务器上已删除的音乐
+     */
+    public void retainAll(Set<String> trackIds) {
+        mLock.writeLock().lock();
+        try {
+            for (String trackId : new ArrayList<>(mDocIdsByTrackId.keySet())) {
+                if (!trackIds.contains(trackId)) {
+                    removeDocument(mDocIdsByTrackId.get(trackId));
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        mLock.readLock().lock();
+        try {
+            return mDocIdsByTrackId.size();
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 按相关度从高到低排序的音乐id，最多limit个
+     */
+    public List<String> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        mLock.readLock().lock();
+        try {
+            //候选最少的词决定要检查哪些音乐
+            Node driver = null;
+            for (String term : terms) {
+                Node node = find(term);
+                if (node == null) {
+                    return Collections.emptyList();
+                }
+                if (driver == null || node.subtreeCount < driver.subtreeCount) {
+                    driver = node;
+                }
+            }
+
+            PriorityQueue<ScoredDoc> top = new PriorityQueue<>();
+            //同一首音乐可能有多个词共享这个前缀
+            BitSet visited = new BitSet(mDocuments.size());
+            ArrayDeque<Node> queue = new ArrayDeque<>();
+            queue.add(driver);
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                for (int i = 0; i < node.postingCount; i++) {
+                    int docId = node.postings[i];
+                    Document document = mDocuments.get(docId);
+                    if (document == null || visited.get(docId)) {
+                        continue;
+                    }
+                    visited.set(docId);
+                    int score = score(document, terms);
+                    if (score > 0) {
+                        offer(top, new ScoredDoc(docId, score), limit);
+                    }
+                }
+                for (int i = 0; i < node.childCount; i++) {
+                    queue.add(node.children[i]);
+                }
+            }
+
+            String[] result = new String[top.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = mDocuments.get(top.poll().docId).trackId;
+            }
+            return Arrays.asList(result);
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 切词：转小写，去掉重音符号，按非字母数字分隔
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String normalized = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        List<String> tokens = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else if (sb.length() > 0) {
+                tokens.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        if (sb.length() > 0) {
+            tokens.add(sb.toString());
+        }
+        return tokens;
+    }
+
+    private static void offer(PriorityQueue<ScoredDoc> top, ScoredDoc doc, int limit) {
+        if (top.size() < limit) {
+            top.add(doc);
+        } else if (doc.compareTo(top.peek()) > 0) {
+            top.poll();
+            top.add(doc);
+        }
+    }
+
+    //每个查询词都要匹配某个词的前缀，否则不算命中
+    private static int score(Document document, List<String> terms) {
+        int total = 0;
+        for (String term : terms) {
+            int best = 0;
+            for (int i = 0; i < document.tokens.length; i++) {
+                String token = document.tokens[i];
+                if (token.startsWith(term)) {
+                    int score = document.fieldWeights[i]
+                            * (token.length() == term.length() ? EXACT_MATCH_FACTOR : 1);
+                    best = Math.max(best, score);
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    //切词结果只依赖字段内容，文档建好之后不再修改，可以在新旧索引之间共用
+    private static Document newDocument(String trackId, String[] fields) {
+        //同一个词出现在多个字段时只保留权重最高的
+        ArrayList<String> tokens = new ArrayList<>();
+        ArrayList<Integer> weights = new ArrayList<>();
+        for (int field = FIELD_TITLE; field <= FIELD_GENRE; field++) {
+            for (String token : tokenize(fields[field])) {
+                int index = tokens.indexOf(token);
+                if (index < 0) {
+                    tokens.add(token);
+                    weights.add(FIELD_WEIGHTS[field]);
+                } else if (weights.get(index) < FIELD_WEIGHTS[field]) {
+                    weights.set(index, FIELD_WEIGHTS[field]);
+                }
+            }
+        }
+
+        Document document = new Document(trackId, fields, tokens.toArray(new String[0]),
+                new int[tokens.size()]);
+        for (int i = 0; i < document.fieldWeights.length; i++) {
+            document.fieldWeights[i] = weights.get(i);
+        }
+        return document;
+    }
+
+    private Document findDocument(String trackId, String[] fields) {
+        mLock.readLock().lock();
+        try {
+            Integer docId = mDocIdsByTrackId.get(trackId);
+            if (docId == null) {
+                return null;
+            }
+            Document document = mDocuments.get(docId);
+            return Arrays.equals(document.fields, fields) ? document : null;
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    private void addDocument(Document document) {
+        int docId = mDocuments.size();
+        mDocuments.add(document);
+        mDocIdsByTrackId.put(document.trackId, docId);
+        index(document, docId);
+    }
+
+    private void index(Document document, int docId) {
+        for (String token : document.tokens) {
+            Node node = mRoot;
+            node.subtreeCount++;
+            for (int i = 0; i < token.length(); i++) {
+                node = node.getOrAddChild(token.charAt(i));
+                node.subtreeCount++;
+            }
+            node.addPosting(docId);
+        }
+    }
+
+    private void removeDocument(int docId) {
+        Document document = mDocuments.get(docId);
+        for (String token : document.tokens) {
+            Node node = mRoot;
+            node.subtreeCount--;
+            for (int i = 0; i < token.length(); i++) {
+                node = node.getChild(token.charAt(i));
+                node.subtreeCount--;
+            }
+        }
+        mDocIdsByTrackId.remove(document.trackId);
+        mDocuments.set(docId, null);
+        mRemovedCount++;
+    }
+
+    //失效记录超过一半时重新编号并重建前缀树，摊还下来每次删除是O(1)
+    private void compactIfNeeded() {
+        if (mRemovedCount < 1024 || mRemovedCount < mDocIdsByTrackId.size()) {
+            return;
+        }
+        ArrayList<Document> documents = new ArrayList<>(mDocIdsByTrackId.size());
+        for (Document document : mDocuments) {
+            if (document != null) {
+                documents.add(document);
+            }
+        }
+        mRoot.clear();
+        mDocuments.clear();
+        mDocIdsByTrackId.clear();
+        mRemovedCount = 0;
+        for (Document document : documents) {
+            int docId = mDocuments.size();
+            mDocuments.add(document);
+            mDocIdsByTrackId.put(document.trackId, docId);
+            index(document, docId);
+        }
+    }
+
+    private Node find(String prefix) {
+        Node node = mRoot;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.getChild(prefix.charAt(i));
+        }
+        return node != null && node.subtreeCount > 0 ? node : null;
+    }
+
+    private static final class Document {
+        final String trackId;
+        final String[] fields;
+        final String[] tokens;
+        final int[] fieldWeights;
+
+        Document(String trackId, String[] fields, String[] tokens, int[] fieldWeights) {
+            this.trackId = trackId;
+            this.fields = fields;
+            this.tokens = tokens;
+            this.fieldWeights = fieldWeights;
+        }
+    }
+
+    private static final class ScoredDoc implements Comparable<ScoredDoc> {
+        final int docId;
+        final int score;
+
+        ScoredDoc(int docId, int score) {
+            this.docId = docId;
+            this.score = score;
+        }
+
+        //分数相同时先加入目录的排在前面
+        @Override
+        public int compareTo(ScoredDoc other) {
+            if (score != other.score) {
+                return score < other.score ? -1 : 1;
+            }
+            return Integer.compare(other.docId, docId);
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final int[] NO_POSTINGS = new int[0];
+
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        int childCount;
+        int[] postings = NO_POSTINGS;
+        int postingCount;
+        //子树中倒排记录的总数，用来挑选候选最少的查询词
+        int subtreeCount;
+
+        Node getChild(char c) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char c) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node();
+            keys[index] = c;
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        void addPosting(int docId) {
+            if (postingCount == postings.length) {
+                postings = Arrays.copyOf(postings, Math.max(2, postingCount * 2));
+            }
+            postings[postingCount++] = docId;
+        }
+
+        void clear() {
+            keys = NO_KEYS;
+            children = NO_CHILDREN;
+            childCount = 0;
+            postings = NO_POSTINGS;
+            postingCount = 0;
+            subtreeCount = 0;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import com.heyzqt.exoplayerdemo.utils.JsonStreamReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Created by heyzqt on 2019-08-25.
+ * 流式解析music.json：不把整个文件读进内存，也不构建JSONObject，
+ * 每调用一次next()才从网络流里读出一首音乐。内存占用和目录大小无关。
+ * 也可以解析目录增量：
+ * <pre>
+ * {"since": "旧版本", "version": "新版本", "added": [音乐...], "updated": [音乐...], "removed": [source...]}
+ * </pre>
+ * 音乐的格式和music.json相同，删除的音乐用source表示，和音乐一样可以是相对路径
+ */
+public class StreamingJSONParser implements CatalogParser, CatalogDeltaParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String JSON_MUSIC = "music";
+    private static final String JSON_TITLE = "title";
+    private static final String JSON_ALBUM = "album";
+    private static final String JSON_ARTIST = "artist";
+    private static final String JSON_GENRE = "genre";
+    private static final String JSON_SOURCE = "source";
+    private static final String JSON_IMAGE = "image";
+    private static final String JSON_TRACK_NUMBER = "trackNumber";
+    private static final String JSON_TOTAL_TRACK_COUNT = "totalTrackCount";
+    private static final String JSON_DURATION = "duration";
+    private static final String JSON_SINCE = "since";
+    private static final String JSON_VERSION = "version";
+    private static final String JSON_ADDED = "added";
+    private static final String JSON_UPDATED = "updated";
+    private static final String JSON_REMOVED = "removed";
+
+    @Override
+    public Iterator<MusicTrack> parse(InputStream in, String basePath) {
+        return new TrackIterator(new JsonStreamReader(new InputStreamReader(in, UTF_8)), basePath);
+    }
+
+    @Override
+    public CatalogDelta parseDelta(InputStream in, String basePath) throws IOException {
+        JsonStreamReader reader = new JsonStreamReader(new InputStreamReader(in, UTF_8));
+        String since = null;
+        String version = null;
+        List<MusicTrack> added = new ArrayList<>();
+        List<MusicTrack> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonStreamReader.Token.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case JSON_SINCE:
+                    since = reader.nextString();
+                    break;
+                case JSON_VERSION:
+                    version = reader.nextString();
+                    break;
+                case JSON_ADDED:
+                    readTracks(reader, basePath, added);
+                    break;
+                case JSON_UPDATED:
+                    readTracks(reader, basePath, updated);
+                    break;
+                case JSON_REMOVED:
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        removed.add(mediaIdOf(resolve(reader.nextString(), basePath)));
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (version == null) {
+            throw new IOException("Missing version in catalog delta");
+        }
+        return new CatalogDelta(since, version, added, updated, removed);
+    }
+
+    private static void readTracks(JsonStreamReader reader, String basePath, List<MusicTrack> tracks)
+            throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            tracks.add(readTrack(reader, basePath));
+        }
+        reader.endArray();
+    }
+
+    /**
+     * 解析失败时抛出RuntimeException，和原来的JSONObject实现保持一致
+     */
+    private static class TrackIterator implements Iterator<MusicTrack> {
+        private final JsonStreamReader mReader;
+        private final String mBasePath;
+        private boolean mInMusicArray;
+        private boolean mFinished;
+
+        TrackIterator(JsonStreamReader reader, String basePath) {
+            this.mReader = reader;
+            this.mBasePath = basePath;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (mFinished) {
+                return false;
+            }
+            try {
+                if (!mInMusicArray && !seekToMusicArray()) {
+                    mFinished = true;
+                    return false;
+                }
+                if (mReader.hasNext()) {
+                    return true;
+                }
+                //后面的内容不需要了，不再继续读取
+                mReader.endArray();
+                mFinished = true;
+                return false;
+            } catch (IOException e) {
+                mFinished = true;
+                throw new RuntimeException("Could not retrieve music list", e);
+            }
+        }
+
+        @Override
+        public MusicTrack next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return readTrack(mReader, mBasePath);
+            } catch (IOException e) {
+                mFinished = true;
+                throw new RuntimeException("Could not retrieve music list", e);
+            }
+        }
+
+        //跳过"music"之前的字段，停在数组的第一个元素之前
+        private boolean seekToMusicArray() throws IOException {
+            mReader.beginObject();
+            while (mReader.hasNext()) {
+                if (JSON_MUSIC.equals(mReader.nextName())
+                        && mReader.peek() == JsonStreamReader.Token.BEGIN_ARRAY) {
+                    mReader.beginArray();
+                    mInMusicArray = true;
+                    return true;
+                }
+                mReader.skipValue();
+            }
+            return false;
+        }
+    }
+
+    static MusicTrack readTrack(JsonStreamReader reader, String basePath) throws IOException {
+        String title = null;
+        String album = null;
+        String artist = null;
+        String genre = null;
+        String source = null;
+        String iconUrl = null;
+        long trackNumber = -1;
+        long totalTrackCount = -1;
+        long duration = -1;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonStreamReader.Token.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case JSON_TITLE:
+                    title = reader.nextString();
+                    break;
+                case JSON_ALBUM:
+                    album = reader.nextString();
+                    break;
+                case JSON_ARTIST:
+                    artist = reader.nextString();
+                    break;
+                case JSON_GENRE:
+                    genre = reader.nextString();
+                    break;
+                case JSON_SOURCE:
+                    source = reader.nextString();
+                    break;
+                case JSON_IMAGE:
+                    iconUrl = reader.nextString();
+                    break;
+                case JSON_TRACK_NUMBER:
+                    trackNumber = reader.nextLong();
+                    break;
+                case JSON_TOTAL_TRACK_COUNT:
+                    totalTrackCount = reader.nextLong();
+                    break;
+                case JSON_DURATION:
+                    duration = reader.nextLong() * 1000; // ms
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (title == null || album == null || artist == null || genre == null || source == null
+                || iconUrl == null || trackNumber < 0 || totalTrackCount < 0 || duration < 0) {
+            throw new IOException("Missing required field in music entry, source = " + source);
+        }
+
+        source = resolve(source, basePath);
+        iconUrl = resolve(iconUrl, basePath);
+
+        return new MusicTrack(mediaIdOf(source), source, title, album, artist, genre, iconUrl,
+                trackNumber, totalTrackCount, duration);
+    }
+
+    private static String resolve(String path, String basePath) {
+        return path.startsWith("http") ? path : basePath + path;
+    }
+
+    //正常情况下，id应该从服务器获取
+    private static String mediaIdOf(String source) {
+        return String.valueOf(source.hashCode());
+    }
+}
@@ -0,0 +1,124 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Created by heyzqt on 2019-08-24.
+ * MusicTrack与MediaMetadataCompat之间的转换
+ */
+public final class TrackMetadata {
+
+    private TrackMetadata() {
+    }
+
+    public static MediaMetadataCompat toMetadata(MusicTrack track) {
+        return new MediaMetadataCompat.Builder()
+                .putString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID, track.mediaId)
+                .putString(MusicProviderSource.CUSTOM_METADATA_TRACK_SOURCE, track.source)
+                .putString(MediaMetadataCompat.METADATA_KEY_ALBUM, track.album)
+                .putString(MediaMetadataCompat.METADATA_KEY_ARTIST, track.artist)
+                .putLong(MediaMetadataCompat.METADATA_KEY_DURATION, track.duration)
+                .putString(MediaMetadataCompat.METADATA_KEY_GENRE, track.genre)
+                .putString(MediaMetadataCompat.METADATA_KEY_ALBUM_ART_URI, track.albumArtUri)
+                .putString(MediaMetadataCompat.METADATA_KEY_TITLE, track.title)
+                .putLong(MediaMetadataCompat.METADATA_KEY_TRACK_NUMBER, track.trackNumber)
+                .putLong(MediaMetadataCompat.METADATA_KEY_NUM_TRACKS, track.totalTrackCount)
+                .build();
+    }
+
+    /**
+     * 取出目录需要的字段，不保留MediaMetadataCompat
+     */
+    public static MusicTrack fromMetadata(MediaMetadataCompat metadata) {
+        return new MusicTrack(
+                metadata.getString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID),
+                metadata.getString(MusicProviderSource.CUSTOM_METADATA_TRACK_SOURCE),
+                metadata.getString(MediaMetadataCompat.METADATA_KEY_TITLE),
+                metadata.getString(MediaMetadataCompat.METADATA_KEY_ALBUM),
+                metadata.getString(MediaMetadataCompat.METADATA_KEY_ARTIST),
+                metadata.getString(MediaMetadataCompat.METADATA_KEY_GENRE),
+                metadata.getString(MediaMetadataCompat.METADATA_KEY_ALBUM_ART_URI),
+                metadata.getLong(MediaMetadataCompat.METADATA_KEY_TRACK_NUMBER),
+                metadata.getLong(MediaMetadataCompat.METADATA_KEY_NUM_TRACKS),
+                metadata.getLong(MediaMetadataCompat.METADATA_KEY_DURATION));
+    }
+
+    //边迭代边转换，不额外保存一份完整的列表；tracks实现了Closeable时，关闭返回的迭代器会一并关闭它
+    public static Iterator<MediaMetadataCompat> toMetadata(Iterator<MusicTrack> tracks) {
+        return new MetadataIterator(tracks);
+    }
+
+    /**
+     * 边迭代边取出字段。传入的是{@link #toMetadata(Iterator)}的结果时直接返回原来的MusicTrack，
+     * 不生成中间的MediaMetadataCompat。关闭返回的迭代器会一并关闭metadata
+     */
+    public static Iterator<MusicTrack> fromMetadata(Iterator<MediaMetadataCompat> metadata) {
+        if (metadata instanceof MetadataIterator) {
+            return ((MetadataIterator) metadata).mTracks;
+        }
+        return new TrackIterator(metadata);
+    }
+
+    /**
+     * 迭代器实现了Closeable时关闭它，用于中途放弃迭代时释放连接和工作线程。可以在其他线程上调用
+     */
+    public static void closeQuietly(Iterator<?> iterator) {
+        if (iterator instanceof Closeable) {
+            try {
+                ((Closeable) iterator).close();
+            } catch (IOException | RuntimeException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static final class TrackIterator implements Iterator<MusicTrack>, Closeable {
+        private final Iterator<MediaMetadataCompat> mMetadata;
+
+        TrackIterator(Iterator<MediaMetadataCompat> metadata) {
+            this.mMetadata = metadata;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mMetadata.hasNext();
+        }
+
+        @Override
+        public MusicTrack next() {
+            return fromMetadata(mMetadata.next());
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(mMetadata);
+        }
+    }
+
+    private static final class MetadataIterator implements Iterator<MediaMetadataCompat>, Closeable {
+        private final Iterator<MusicTrack> mTracks;
+
+        MetadataIterator(Iterator<MusicTrack> tracks) {
+            this.mTracks = tracks;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mTracks.hasNext();
+        }
+
+        @Override
+        public MediaMetadataCompat next() {
+            return toMetadata(mTracks.next());
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(mTracks);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.heyzqt.exoplayerdemo.model;
+
+/**
+ * Created by heyzqt on 2019-09-04.
+ * 目录快照按位置读取音乐字段的方式：内存中的列数组，或者映射到内存的目录文件
+ */
+interface TrackStore {
+
+    int size();
+
+    /**
+     * @return 音乐在目录中的位置，不存在时返回-1
+     */
+    int indexOf(String musicId);
+
+    String getMediaId(int position);
+
+    String getTitle(int position);
+
+    long getDuration(int position);
+
+    MusicTrack getTrack(int position);
+}
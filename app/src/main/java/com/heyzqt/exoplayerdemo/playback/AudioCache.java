@@ -0,0 +1,146 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.database.ExoDatabaseProvider;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.FileDataSourceFactory;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSinkFactory;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by heyzqt on 2019-08-28.
+ * 进程内唯一的音频磁盘缓存（同一个目录只能有一个SimpleCache实例）。
+ * 播放过的数据写入磁盘，超过容量时按LRU淘汰；重播和往回seek直接从磁盘读取
+ */
+public class AudioCache {
+
+    private static final String TAG = LogHelper.makeLogTag(AudioCache.class);
+
+    public static final long DEFAULT_MAX_BYTES = 256 * 1024 * 1024;
+    private static final String CACHE_DIR = "audio";
+
+    private static AudioCache sInstance;
+
+    private final Cache mCache;
+    private final DataSource.Factory mDataSourceFactory;
+
+    private final AtomicLong mCacheHitBytes = new AtomicLong();
+    private final AtomicLong mCacheMissBytes = new AtomicLong();
+    private final AtomicLong mCacheIgnoredCount = new AtomicLong();
+
+    public static AudioCache getInstance(Context context) {
+        return getInstance(context, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 缓存容量，只有第一次创建时生效
+     */
+    public static synchronized AudioCache getInstance(Context context, long maxBytes) {
+        if (sInstance == null) {
+            sInstance = new AudioCache(context.getApplicationContext(), maxBytes);
+        }
+        return sInstance;
+    }
+
+    private AudioCache(Context context, long maxBytes) {
+        mCache = new SimpleCache(new File(context.getCacheDir(), CACHE_DIR),
+                new LeastRecentlyUsedCacheEvictor(maxBytes), new ExoDatabaseProvider(context));
+
+        //从网络读取的字节数就是未命中缓存的部分
+        DataSource.Factory upstreamFactory = new DefaultDataSourceFactory(context,
+                Util.getUserAgent(context, "com.heyzqt.exoplayerdemo"), mTransferListener);
+        mDataSourceFactory = new CacheDataSourceFactory(mCache, upstreamFactory,
+                new FileDataSourceFactory(),
+                new CacheDataSinkFactory(mCache, CacheDataSink.DEFAULT_FRAGMENT_SIZE),
+                CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR, mCacheEventListener);
+        LogHelper.d(TAG, "audio cache created, maxBytes = ", maxBytes);
+    }
+
+    public Cache getCache() {
+        return mCache;
+    }
+
+    /**
+     * 先读缓存，没有命中再访问网络并写入缓存，可以在多个播放器之间共享
+     */
+    public DataSource.Factory getDataSourceFactory() {
+        return mDataSourceFactory;
+    }
+
+    public long getCacheHitBytes() {
+        return mCacheHitBytes.get();
+    }
+
+    public long getCacheMissBytes() {
+        return mCacheMissBytes.get();
+    }
+
+    /**
+     * 因为出错等原因绕过缓存的次数
+     */
+    public long getCacheIgnoredCount() {
+        return mCacheIgnoredCount.get();
+    }
+
+    public long getCacheSpaceBytes() {
+        return mCache.getCacheSpace();
+    }
+
+    @Override
+    public String toString() {
+        long hit = mCacheHitBytes.get();
+        long miss = mCacheMissBytes.get();
+        return "AudioCache{hitBytes=" + hit + ", missBytes=" + miss
+                + ", hitRatio=" + (hit + miss > 0 ? hit * 100 / (hit + miss) : 0) + "%"
+                + ", ignored=" + mCacheIgnoredCount.get()
+                + ", cacheSpace=" + mCache.getCacheSpace() + "}";
+    }
+
+    private final CacheDataSource.EventListener mCacheEventListener = new CacheDataSource.EventListener() {
+        @Override
+        public void onCachedBytesRead(long cacheSizeBytes, long cachedBytesRead) {
+            mCacheHitBytes.addAndGet(cachedBytesRead);
+        }
+
+        @Override
+        public void onCacheIgnored(int reason) {
+            mCacheIgnoredCount.incrementAndGet();
+        }
+    };
+
+    private final TransferListener mTransferListener = new TransferListener() {
+        @Override
+        public void onTransferInitializing(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+
+        @Override
+        public void onTransferStart(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+
+        @Override
+        public void onBytesTransferred(DataSource source, DataSpec dataSpec, boolean isNetwork,
+                                       int bytesTransferred) {
+            if (isNetwork) {
+                mCacheMissBytes.addAndGet(bytesTransferred);
+            }
+        }
+
+        @Override
+        public void onTransferEnd(DataSource source, DataSpec dataSpec, boolean isNetwork) {
+        }
+    };
+}
@@ -0,0 +1,54 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 播放器的缓冲策略，对应DefaultLoadControl的参数。
+ * 缓冲区是Java堆上的字节数组，缓冲得越多启动越稳但占用的堆越大；
+ * 每种策略实际的首帧耗时、缓冲区峰值和堆峰值见{@link PlaybackMetrics#getTimeToFirstAudio(String)}、
+ * {@link PlaybackMetrics#getPeakBufferBytes(String)}和{@link PlaybackMetrics#getPeakHeapBytes(String)}，
+ * 也包含在{@link PlaybackMetrics#dump()}的"profiles"里
+ */
+public enum BufferProfile {
+
+    /**
+     * ExoPlayer的默认值
+     */
+    DEFAULT(15000, 50000, 2500, 5000, -1, true),
+
+    /**
+     * 尽快出声：缓冲0.5秒就开始播放，卡顿后缓冲2秒再继续
+     */
+    LOW_LATENCY_START(15000, 30000, 500, 2000, -1, true),
+
+    /**
+     * 低内存的车机：最多缓冲10秒，并且不超过1MB，字节上限优先于时长
+     */
+    LOW_MEMORY(5000, 10000, 1500, 3000, 1024 * 1024, false),
+
+    /**
+     * 网络好的时候尽量多下载，信号差的路段（隧道、地库）靠缓冲撑过去
+     */
+    HIGH_THROUGHPUT(60000, 300000, 2500, 5000, 16 * 1024 * 1024, true);
+
+    public final int minBufferMs;
+    public final int maxBufferMs;
+    //开始播放（包括seek之后）需要缓冲的时长
+    public final int bufferForPlaybackMs;
+    //卡顿之后恢复播放需要缓冲的时长
+    public final int bufferForPlaybackAfterRebufferMs;
+    //缓冲区字节上限，-1表示按渲染器类型计算（C.LENGTH_UNSET）
+    public final int targetBufferBytes;
+    //为true时先满足minBufferMs，再看字节上限
+    public final boolean prioritizeTimeOverSizeThresholds;
+
+    BufferProfile(int minBufferMs, int maxBufferMs, int bufferForPlaybackMs,
+                  int bufferForPlaybackAfterRebufferMs, int targetBufferBytes,
+                  boolean prioritizeTimeOverSizeThresholds) {
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+        this.targetBufferBytes = targetBufferBytes;
+        this.prioritizeTimeOverSizeThresholds = prioritizeTimeOverSizeThresholds;
+    }
+}
@@ -0,0 +1,68 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.util.Util;
+import com.heyzqt.exoplayerdemo.model.MusicProvider;
+import com.heyzqt.exoplayerdemo.utils.BandwidthLimiter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 通过{@link AudioCache}的数据源读取音乐开头，读到的数据写进播放器共用的磁盘缓存。
+ * 地址和播放器使用的完全一致，播放时缓存的key才能对上
+ */
+class CachePrefetchLoader implements HeadPrefetcher.Loader {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final MusicProvider mMusicProvider;
+    private final AudioCache mAudioCache;
+
+    CachePrefetchLoader(MusicProvider musicProvider, AudioCache audioCache) {
+        this.mMusicProvider = musicProvider;
+        this.mAudioCache = audioCache;
+    }
+
+    @Override
+    public long load(String mediaId, long maxBytes, BandwidthLimiter limiter, AtomicBoolean canceled)
+            throws IOException, InterruptedException {
+        Uri uri = LocalPlayback.sourceUriOf(mMusicProvider, mediaId);
+        if (uri == null) {
+            throw new IOException("Unknown media: " + mediaId);
+        }
+        //开头已经在缓存里了，不用再读
+        String key = CacheUtil.generateKey(uri);
+        if (mAudioCache.getCache().getCachedLength(key, 0, maxBytes) >= maxBytes) {
+            return 0;
+        }
+
+        DataSource dataSource = mAudioCache.getDataSourceFactory().createDataSource();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        try {
+            dataSource.open(new DataSpec(uri, 0, maxBytes, null));
+            while (total < maxBytes) {
+                if (canceled.get() || Thread.interrupted()) {
+                    throw new InterruptedIOException("Prefetch canceled: " + mediaId);
+                }
+                int read = dataSource.read(buffer, 0, (int) Math.min(buffer.length, maxBytes - total));
+                if (read == C.RESULT_END_OF_INPUT) {
+                    break;
+                }
+                total += read;
+                limiter.acquire(read);
+            }
+        } finally {
+            Util.closeQuietly(dataSource);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,271 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import com.heyzqt.exoplayerdemo.utils.BandwidthLimiter;
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 在后台提前下载接下来可能播放的音乐的开头部分，点击播放时直接从本地缓存开始，不用等连接和缓冲。
+ * 候选来自播放队列里的后续音乐和当前浏览列表里可见的音乐，队列优先；
+ * 候选变化时取消不再需要的下载。同时下载的数量和总速率都有上限，当前音乐缓冲时暂停开始新的下载
+ */
+public class HeadPrefetcher {
+
+    private static final String TAG = LogHelper.makeLogTag(HeadPrefetcher.class);
+
+    /**
+     * 320kbps的音乐大约10秒
+     */
+    public static final long DEFAULT_HEAD_BYTES = 400 * 1024;
+    public static final int DEFAULT_MAX_CONCURRENT = 2;
+    public static final int DEFAULT_MAX_CANDIDATES = 8;
+    public static final long DEFAULT_BYTES_PER_SECOND = 256 * 1024;
+    //记住最近下载完成的音乐，避免反复下载
+    private static final int MAX_DONE = 64;
+
+    public interface Loader {
+        /**
+         * 在后台线程把mediaId对应音乐的开头最多maxBytes字节读进缓存，已经缓存的部分直接跳过。
+         * 每读一段都要通过limiter记账，canceled为true或者线程被中断时尽快返回
+         *
+         * @return 读到的字节数
+         */
+        long load(String mediaId, long maxBytes, BandwidthLimiter limiter, AtomicBoolean canceled)
+                throws IOException, InterruptedException;
+    }
+
+    private final ExecutorService mExecutor;
+    private final Loader mLoader;
+    private final BandwidthLimiter mLimiter;
+    private final int mMaxConcurrent;
+    private final int mMaxCandidates;
+    private final long mHeadBytes;
+
+    private List<String> mQueueCandidates = Collections.emptyList();
+    private List<String> mBrowseCandidates = Collections.emptyList();
+    private String mPlayingMediaId;
+    private boolean mPaused;
+
+    private final ArrayDeque<String> mPending = new ArrayDeque<>();
+    private final Map<String, Prefetch> mRunning = new HashMap<>();
+    private final Map<String, Boolean> mDone = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_DONE;
+        }
+    };
+
+    private long mPrefetchedBytes;
+    private int mCompletedCount;
+    private int mCanceledCount;
+    private int mFailedCount;
+    private int mHitCount;
+
+    public HeadPrefetcher(ExecutorService executor, Loader loader) {
+        this(executor, loader, new BandwidthLimiter(DEFAULT_BYTES_PER_SECOND, DEFAULT_BYTES_PER_SECOND),
+                DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_CANDIDATES, DEFAULT_HEAD_BYTES);
+    }
+
+    /**
+     * @param maxConcurrent 同时进行的下载数
+     * @param maxCandidates 最多考虑前几个候选，再往后的被点到的可能性很小
+     * @param headBytes     每首音乐提前下载的字节数
+     */
+    public HeadPrefetcher(ExecutorService executor, Loader loader, BandwidthLimiter limiter,
+                          int maxConcurrent, int maxCandidates, long headBytes) {
+        this.mExecutor = executor;
+        this.mLoader = loader;
+        this.mLimiter = limiter;
+        this.mMaxConcurrent = maxConcurrent;
+        this.mMaxCandidates = maxCandidates;
+        this.mHeadBytes = headBytes;
+    }
+
+    /**
+     * @param mediaIds 播放队列里排在当前音乐后面的音乐，按播放顺序排列
+     */
+    public synchronized void setQueueCandidates(List<String> mediaIds) {
+        mQueueCandidates = new ArrayList<>(mediaIds);
+        reschedule();
+    }
+
+    /**
+     * @param mediaIds 浏览列表里可见的可播放音乐，按显示顺序排列
+     */
+    public synchronized void setBrowseCandidates(List<String> mediaIds) {
+        mBrowseCandidates = new ArrayList<>(mediaIds);
+        reschedule();
+    }
+
+    /**
+     * 开始播放某首音乐：播放器自己会加载它，不再需要提前下载
+     */
+    public synchronized void setPlayingMediaId(String mediaId) {
+        mPlayingMediaId = mediaId;
+        if (mediaId != null && mDone.containsKey(mediaId)) {
+            mHitCount++;
+            LogHelper.d(TAG, "play prefetched item ", mediaId);
+        }
+        reschedule();
+    }
+
+    /**
+     * 暂停时不再开始新的下载，正在进行的下载继续，把带宽留给当前播放的音乐
+     */
+    public synchronized void setPaused(boolean paused) {
+        if (mPaused == paused) {
+            return;
+        }
+        mPaused = paused;
+        if (!paused) {
+            startPending();
+        }
+    }
+
+    /**
+     * 清空所有候选，取消正在进行的下载
+     */
+    public synchronized void cancelAll() {
+        mQueueCandidates = Collections.emptyList();
+        mBrowseCandidates = Collections.emptyList();
+        reschedule();
+    }
+
+    public synchronized boolean isPrefetched(String mediaId) {
+        return mDone.containsKey(mediaId);
+    }
+
+    public synchronized long getPrefetchedBytes() {
+        return mPrefetchedBytes;
+    }
+
+    /**
+     * @return 开始播放时已经提前下载好的次数
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "HeadPrefetcher{prefetchedBytes=" + mPrefetchedBytes
+                + ", completed=" + mCompletedCount
+                + ", canceled=" + mCanceledCount
+                + ", failed=" + mFailedCount
+                + ", hits=" + mHitCount
+                + ", running=" + mRunning.size()
+                + ", pending=" + mPending.size() + "}";
+    }
+
+    //重新计算需要下载的音乐：取消过时的下载，按优先级排好等待队列
+    private void reschedule() {
+        Set<String> wanted = new LinkedHashSet<>();
+        addCandidates(wanted, mQueueCandidates);
+        addCandidates(wanted, mBrowseCandidates);
+
+        Iterator<Map.Entry<String, Prefetch>> it = mRunning.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Prefetch> entry = it.next();
+            if (!wanted.contains(entry.getKey())) {
+                LogHelper.d(TAG, "cancel stale prefetch ", entry.getKey());
+                entry.getValue().cancel();
+                it.remove();
+                mCanceledCount++;
+            }
+        }
+
+        mPending.clear();
+        for (String mediaId : wanted) {
+            if (!mRunning.containsKey(mediaId)) {
+                mPending.add(mediaId);
+            }
+        }
+        startPending();
+    }
+
+    private void addCandidates(Set<String> wanted, List<String> candidates) {
+        for (int i = 0; i < candidates.size() && wanted.size() < mMaxCandidates; i++) {
+            String mediaId = candidates.get(i);
+            if (mediaId != null && !mediaId.equals(mPlayingMediaId) && !mDone.containsKey(mediaId)) {
+                wanted.add(mediaId);
+            }
+        }
+    }
+
+    private void startPending() {
+        while (!mPaused && mRunning.size() < mMaxConcurrent && !mPending.isEmpty()) {
+            String mediaId = mPending.removeFirst();
+            Prefetch prefetch = new Prefetch(mediaId);
+            mRunning.put(mediaId, prefetch);
+            prefetch.mFuture = mExecutor.submit(prefetch);
+        }
+    }
+
+    private synchronized void onFinished(Prefetch prefetch, long bytes, Exception error) {
+        mPrefetchedBytes += bytes;
+        //已经被取消的下载在取消时就移出了
+        if (mRunning.get(prefetch.mMediaId) != prefetch) {
+            return;
+        }
+        mRunning.remove(prefetch.mMediaId);
+        if (error == null) {
+            mDone.put(prefetch.mMediaId, Boolean.TRUE);
+            mCompletedCount++;
+        } else {
+            //失败的这次不再重试，候选下一次变化时重新排队
+            LogHelper.w(TAG, "prefetch failed ", prefetch.mMediaId, ": ", error.getMessage());
+            mFailedCount++;
+        }
+        startPending();
+    }
+
+    private class Prefetch implements Runnable {
+        final String mMediaId;
+        final AtomicBoolean mCanceled = new AtomicBoolean();
+        Future<?> mFuture;
+
+        Prefetch(String mediaId) {
+            this.mMediaId = mediaId;
+        }
+
+        void cancel() {
+            mCanceled.set(true);
+            if (mFuture != null) {
+                mFuture.cancel(true);
+            }
+        }
+
+        @Override
+        public void run() {
+            long bytes = 0;
+            Exception error = null;
+            try {
+                if (!mCanceled.get()) {
+                    bytes = mLoader.load(mMediaId, mHeadBytes, mLimiter, mCanceled);
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            onFinished(this, bytes, error);
+        }
+    }
+}
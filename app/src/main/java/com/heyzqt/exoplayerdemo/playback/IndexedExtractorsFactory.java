@@ -0,0 +1,202 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.extractor.SeekPoint;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+
+import java.io.IOException;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 一首音乐专用的解析器工厂：MP3解析器外面包一层，已经有{@link SeekIndex}时用索引代替
+ * Mp3Extractor自己估算的SeekMap，seek直接跳到索引里的帧开头。
+ * Mp3Extractor按自己的估算给seek之后的采样打时间戳，这里按索引里的时间修正。
+ * 索引在加载线程上第一次读取数据时才查，不占用主线程
+ */
+class IndexedExtractorsFactory implements ExtractorsFactory {
+
+    private static final String TAG = LogHelper.makeLogTag(IndexedExtractorsFactory.class);
+
+    private final ExtractorsFactory mDelegate;
+    private final SeekIndexStore mStore;
+    private final String mSource;
+    private volatile boolean mIndexUsed;
+
+    IndexedExtractorsFactory(ExtractorsFactory delegate, SeekIndexStore store, String source) {
+        this.mDelegate = delegate;
+        this.mStore = store;
+        this.mSource = source;
+    }
+
+    @Override
+    public Extractor[] createExtractors() {
+        Extractor[] extractors = mDelegate.createExtractors();
+        for (int i = 0; i < extractors.length; i++) {
+            if (extractors[i] instanceof Mp3Extractor) {
+                extractors[i] = new IndexedExtractor(extractors[i]);
+            }
+        }
+        return extractors;
+    }
+
+    /**
+     * @return 解析器是否已经在用seek索引
+     */
+    boolean isIndexUsed() {
+        return mIndexUsed;
+    }
+
+    private class IndexedExtractor implements Extractor, ExtractorOutput {
+        private final Extractor mExtractor;
+        private ExtractorOutput mOutput;
+        private boolean mLookedUp;
+        private SeekIndex mIndex;
+        //seek之后第一个采样应该有的时间，不需要修正时为C.TIME_UNSET
+        private long mPendingTimeUs = C.TIME_UNSET;
+        private long mTimeOffsetUs;
+
+        IndexedExtractor(Extractor extractor) {
+            this.mExtractor = extractor;
+        }
+
+        @Override
+        public boolean sniff(ExtractorInput input) throws IOException, InterruptedException {
+            return mExtractor.sniff(input);
+        }
+
+        @Override
+        public void init(ExtractorOutput output) {
+            mOutput = output;
+            mExtractor.init(this);
+        }
+
+        @Override
+        public int read(ExtractorInput input, PositionHolder seekPosition)
+                throws IOException, InterruptedException {
+            if (!mLookedUp) {
+                mLookedUp = true;
+                mIndex = mStore.get(mSource);
+                long length = input.getLength();
+                if (mIndex != null && length != C.LENGTH_UNSET && length != mIndex.getStreamLength()) {
+                    //数据变了，索引作废，下次播放时重新生成
+                    LogHelper.w(TAG, "stale seek index of ", mSource, ", length ", length);
+                    mStore.remove(mSource);
+                    mIndex = null;
+                }
+            }
+            return mExtractor.read(input, seekPosition);
+        }
+
+        @Override
+        public void seek(long position, long timeUs) {
+            mExtractor.seek(position, timeUs);
+            mTimeOffsetUs = 0;
+            mPendingTimeUs = C.TIME_UNSET;
+            if (mIndex != null && position > 0) {
+                long indexTimeUs = mIndex.getTimeUsAtPosition(position);
+                if (indexTimeUs >= 0) {
+                    mPendingTimeUs = indexTimeUs;
+                }
+            }
+        }
+
+        @Override
+        public void release() {
+            mExtractor.release();
+        }
+
+        @Override
+        public TrackOutput track(int id, int type) {
+            return new OffsetTrackOutput(mOutput.track(id, type));
+        }
+
+        @Override
+        public void endTracks() {
+            mOutput.endTracks();
+        }
+
+        @Override
+        public void seekMap(SeekMap seekMap) {
+            if (mIndex != null && mIndex.size() > 1) {
+                LogHelper.d(TAG, "use ", mIndex, " for ", mSource);
+                mOutput.seekMap(new IndexSeekMap(mIndex));
+                mIndexUsed = true;
+            } else {
+                mOutput.seekMap(seekMap);
+            }
+        }
+
+        private class OffsetTrackOutput implements TrackOutput {
+            private final TrackOutput mTrackOutput;
+
+            OffsetTrackOutput(TrackOutput trackOutput) {
+                this.mTrackOutput = trackOutput;
+            }
+
+            @Override
+            public void format(Format format) {
+                mTrackOutput.format(format);
+            }
+
+            @Override
+            public int sampleData(ExtractorInput input, int length, boolean allowEndOfInput)
+                    throws IOException, InterruptedException {
+                return mTrackOutput.sampleData(input, length, allowEndOfInput);
+            }
+
+            @Override
+            public void sampleData(ParsableByteArray data, int length) {
+                mTrackOutput.sampleData(data, length);
+            }
+
+            @Override
+            public void sampleMetadata(long timeUs, int flags, int size, int offset,
+                                       CryptoData cryptoData) {
+                if (mPendingTimeUs != C.TIME_UNSET) {
+                    mTimeOffsetUs = mPendingTimeUs - timeUs;
+                    mPendingTimeUs = C.TIME_UNSET;
+                }
+                mTrackOutput.sampleMetadata(timeUs + mTimeOffsetUs, flags, size, offset, cryptoData);
+            }
+        }
+    }
+
+    private static class IndexSeekMap implements SeekMap {
+        private final SeekIndex mIndex;
+
+        IndexSeekMap(SeekIndex index) {
+            this.mIndex = index;
+        }
+
+        @Override
+        public boolean isSeekable() {
+            return true;
+        }
+
+        @Override
+        public long getDurationUs() {
+            return mIndex.getDurationUs();
+        }
+
+        @Override
+        public SeekPoints getSeekPoints(long timeUs) {
+            int index = mIndex.indexOfTime(timeUs);
+            SeekPoint first = new SeekPoint(mIndex.getTimeUs(index), mIndex.getPosition(index));
+            if (first.timeUs == timeUs || index == mIndex.size() - 1) {
+                return new SeekPoints(first);
+            }
+            return new SeekPoints(first,
+                    new SeekPoint(mIndex.getTimeUs(index + 1), mIndex.getPosition(index + 1)));
+        }
+    }
+}
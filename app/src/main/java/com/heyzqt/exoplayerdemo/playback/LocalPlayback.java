@@ -7,30 +7,42 @@ import android.content.IntentFilter;
 import android.media.AudioManager;
 import android.net.Uri;
 import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.text.TextUtils;
 
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlaybackException;
-import com.google.android.exoplayer2.ExoPlayerFactory;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
-import com.google.android.exoplayer2.audio.AudioAttributes;
+import com.google.android.exoplayer2.Timeline;
 import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.source.ConcatenatingMediaSource;
 import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.upstream.DataSource;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.heyzqt.exoplayerdemo.model.MusicProvider;
 import com.heyzqt.exoplayerdemo.model.MusicProviderSource;
 import com.heyzqt.exoplayerdemo.utils.LogHelper;
 import com.heyzqt.exoplayerdemo.utils.MediaIDHelper;
-
-import static com.google.android.exoplayer2.C.CONTENT_TYPE_MUSIC;
-import static com.google.android.exoplayer2.C.USAGE_MEDIA;
+import com.heyzqt.exoplayerdemo.utils.Tracer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by heyzqt on 2019-08-19.
@@ -59,11 +71,101 @@ public class LocalPlayback implements Playback {
     private boolean mAudioNoisyReceiverRegistered;//音频输出通道变化广播是否注册
     private Callback mCallback;
 
+    //数据源和解析器工厂只创建一次，所有音乐共用同一个磁盘缓存；
+    //媒体资源要带上各自的mediaId作为tag，工厂创建过资源后不能再改tag，每首音乐单独创建
+    private final ExtractorsFactory mExtractorsFactory;
+    private final DataSource.Factory mDataSourceFactory;
+
+    //播放列表：当前音乐加上提前缓冲的后续音乐，一首播完ExoPlayer直接无缝切到下一首
+    private ConcatenatingMediaSource mPlaylist;
+    //和播放列表一一对应的mediaId，修改播放列表时同步修改。
+    //播放列表的修改要等播放器收到新的时间线才生效，在这之前播放器的窗口下标和这里对不上，
+    //所以播放器这边的查找都用窗口的tag（mediaId），不用这里的下标
+    private final List<String> mPlaylistMediaIds = new ArrayList<>();
+    private final Timeline.Window mWindow = new Timeline.Window();
+    //最近一次设置的后续音乐，重新prepare时加入播放列表
+    private List<MediaSessionCompat.QueueItem> mNextItems = Collections.emptyList();
+
+    //播放体验统计，播放器重建后继续累计
+    private final PlaybackMetrics mMetrics = new PlaybackMetrics();
+    private final PlaybackMetricsListener mMetricsListener = new PlaybackMetricsListener(mMetrics);
+
+    //提前下载后续音乐和浏览列表里的音乐开头，写进同一个磁盘缓存
+    private final HeadPrefetcher mPrefetcher;
+    private final ThreadPoolExecutor mPrefetchExecutor;
+    //数据源和解析器是否已经在后台预热过
+    private boolean mPrimed;
+
+    //缓冲策略在创建播放器时生效，缓冲区分配器随播放器一起创建，用来统计缓冲区占用的堆
+    private BufferProfile mBufferProfile = BufferProfile.DEFAULT;
+    private DefaultAllocator mAllocator;
+
+    //start时提前建好播放器，停止后放回池里，下次play不用重新创建渲染器和解码器
+    private final PlayerPool mPlayerPool;
+    private PlayerPool.Entry mPlayerEntry;
+
+    //从play到第一次STATE_READY
+    private Tracer.Span mStartSpan;
+
+    //MP3的seek索引：第一次播放时在后台生成并保存，之后seek直接跳到准确的帧
+    private static final String SEEK_INDEX_DIR = "seek_index";
+    private final SeekIndexStore mSeekIndexStore;
+    private final SeekIndexLoader mSeekIndexLoader;
+    private boolean mSeekIndexEnabled;
+    //每首音乐最近一次创建的解析器工厂，用来判断seek时有没有用上索引
+    private final Map<String, IndexedExtractorsFactory> mIndexedFactories = new HashMap<>();
+
+    //分级暂停：短暂停保留播放器和缓冲，暂停久了再逐级释放
+    private final PausePolicy mPausePolicy = new PausePolicy();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    //播放器完全释放时记下的音乐和位置，再次播放时从这里继续
+    private String mResumeMediaId;
+    private long mResumePositionMs;
+
     public LocalPlayback(Context context, MusicProvider musicProvider) {
         Context applicationContext = context.getApplicationContext();
         this.mContext = applicationContext;
         this.mMusicProvider = musicProvider;
 
+        //创建数据源处理工厂，先读磁盘缓存，没有命中再访问网络
+        mExtractorsFactory = new DefaultExtractorsFactory();
+        mDataSourceFactory = AudioCache.getInstance(applicationContext).getDataSourceFactory();
+
+        //下载线程数和同时进行的下载数一致，空闲30秒后回收
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(HeadPrefetcher.DEFAULT_MAX_CONCURRENT,
+                HeadPrefetcher.DEFAULT_MAX_CONCURRENT, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LocalPlayback prefetch");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        mPrefetchExecutor = executor;
+        mPrefetcher = new HeadPrefetcher(executor,
+                new CachePrefetchLoader(musicProvider, AudioCache.getInstance(applicationContext)));
+        mSeekIndexStore = new SeekIndexStore(new File(applicationContext.getCacheDir(), SEEK_INDEX_DIR),
+                SeekIndexStore.DEFAULT_MAX_BYTES);
+        //生成索引要读完整首音乐，用单独的线程，不占用提前下载的线程
+        ThreadPoolExecutor seekIndexExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LocalPlayback seek index");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        seekIndexExecutor.allowCoreThreadTimeOut(true);
+        mSeekIndexLoader = new SeekIndexLoader(AudioCache.getInstance(applicationContext),
+                mSeekIndexStore, seekIndexExecutor);
+        mMetrics.setBufferProfile(mBufferProfile.name());
+        mPlayerPool = new PlayerPool(applicationContext, PlayerPool.DEFAULT_MAX_IDLE);
+
         this.mAudioManager = (AudioManager) applicationContext.getSystemService(Context.AUDIO_SERVICE);
         this.mWifiLock = ((WifiManager) applicationContext.getSystemService(Context.WIFI_SERVICE))
                 .createWifiLock(WifiManager.WIFI_MODE_FULL, "heyzqt_lock");
@@ -86,14 +188,55 @@ public class LocalPlayback implements Playback {
 
     @Override
     public void start() {
+        //播放器要在主线程创建，数据源和解析器放到后台预热
+        Tracer.Span span = Tracer.begin("playback.warmUp");
+        if (mExoPlayer == null) {
+            mPlayerPool.warm(mBufferProfile);
+        }
+        span.attr("idle", mPlayerPool.getIdleCount()).end();
+        if (!mPrimed) {
+            mPrimed = true;
+            mPrefetchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    primeFactories();
+                }
+            });
+        }
+    }
 
+    //提前加载解析器和数据源的类，打开磁盘缓存的索引，第一次prepare时不在播放线程上等这些
+    private void primeFactories() {
+        Tracer.Span span = Tracer.begin("playback.primeFactories");
+        try {
+            span.attr("extractors", mExtractorsFactory.createExtractors().length);
+            mDataSourceFactory.createDataSource();
+            span.attr("cacheBytes", AudioCache.getInstance(mContext).getCacheSpaceBytes());
+        } catch (RuntimeException e) {
+            //预热失败不影响播放，prepare时会重新创建
+            LogHelper.w(TAG, e, "prime factories failed");
+        } finally {
+            span.end();
+        }
     }
 
     @Override
     public void stop() {
+        mHandler.removeCallbacks(mPauseTierRunnable);
+        mPausePolicy.reset(SystemClock.elapsedRealtime());
+        mMetrics.cancelResume();
+        mResumeMediaId = null;
+        mPrefetcher.cancelAll();
         giveUpAudioFocus();
         unregisterAudioNoisyReceiver();
-        releaseResources(false);
+        //播放器重置后放回池里，下次play直接用
+        releaseResources(true);
+    }
+
+    @Override
+    public void release() {
+        stop();
+        mPlayerPool.clear();
     }
 
     @Override
@@ -103,11 +246,15 @@ public class LocalPlayback implements Playback {
 
     @Override
     public long getCurrentStreamPosition() {
+        if (mExoPlayer == null && mResumeMediaId != null) {
+            return mResumePositionMs;
+        }
         return mExoPlayer != null ? mExoPlayer.getCurrentPosition() : 0;
     }
 
     @Override
     public void play(MediaSessionCompat.QueueItem item) {
+        Tracer.Span span = Tracer.begin("playback.play");
         mPlayOnFocusGain = true;
         tryToGetAudioFocus();
         registerAudioNoisyReceiver();
@@ -115,62 +262,278 @@ public class LocalPlayback implements Playback {
         boolean mediaHasChanged = !TextUtils.equals(mediaId, mCurrentMediaId);
         if (mediaHasChanged) {
             mCurrentMediaId = mediaId;
+            mPrefetcher.setPlayingMediaId(mediaId);
         }
-
-        if (mediaHasChanged || mExoPlayer == null) {
+        //换了音乐不算从暂停恢复
+        resumeFromPause(SystemClock.elapsedRealtime(), !mediaHasChanged);
+
+        int preloadedIndex = mediaHasChanged ? indexOfPreloaded(mediaId) : C.INDEX_UNSET;
+        if (preloadedIndex != C.INDEX_UNSET) {
+            //已经在播放列表里提前缓冲好了，直接跳过去，不需要重新prepare
+            LogHelper.d(TAG, "play preloaded item ", mediaId, " at window ", preloadedIndex);
+            beginStartSpan(mediaId, "preloaded");
+            mExoPlayer.seekTo(preloadedIndex, 0);
+            mMetrics.startSession(mediaId, SystemClock.elapsedRealtime(), false);
+            if (!mWifiLock.isHeld()) {
+                mWifiLock.acquire();
+            }
+        } else if (mediaHasChanged || mExoPlayer == null) {
             releaseResources(false);
 
-            //exo player 原Demo获取数据的代码
-            MediaMetadataCompat track =
-                    mMusicProvider.getMusic(
-                            MediaIDHelper.extractMusicIDFromMediaID(
-                                    item.getDescription().getMediaId()));
+            MediaSource mediaSource = buildMediaSource(mediaId);
+            if (mediaSource == null) {
+                if (mCallback != null) {
+                    mCallback.onError("Unknown media: " + mediaId);
+                }
+                span.attr("error", "unknown media").end();
+                return;
+            }
 
-            String source = track.getString(MusicProviderSource.CUSTOM_METADATA_TRACK_SOURCE);
-            if (source != null) {
-                source = source.replaceAll(" ", "%20"); // Escape spaces for URLs
+            //准备播放器，新建播放器的耗时也算进首帧耗时
+            long startMs = SystemClock.elapsedRealtime();
+            beginStartSpan(mediaId, mPrefetcher.isPrefetched(mediaId) ? "prefetched" : "cold");
+            Tracer.Span prepare = Tracer.begin("playback.prepare");
+            boolean reusedPlayer = obtainPlayer();
+            mStartSpan.attr("player", reusedPlayer ? "reused" : "new");
+            mMetrics.startSession(mediaId, startMs, false, reusedPlayer);
+            preparePlayer(mediaId, mediaSource);
+            if (TextUtils.equals(mediaId, mResumeMediaId)) {
+                //暂停太久播放器已经释放，从暂停的位置继续
+                mExoPlayer.seekTo(0, mResumePositionMs);
             }
+            prepare.attr("profile", mBufferProfile).attr("reusedPlayer", reusedPlayer).end();
+        }
+        mResumeMediaId = null;
+
+        configurePlayerState();
+        span.attr("mediaId", mediaId).end();
+    }
+
+    //开始计时到第一次STATE_READY，上一次还没准备好的直接结束
+    private void beginStartSpan(String mediaId, String source) {
+        if (mStartSpan != null) {
+            mStartSpan.attr("interrupted", true).end();
+        }
+        mStartSpan = Tracer.beginAsync("playback.firstReady").attr("mediaId", mediaId)
+                .attr("source", source);
+    }
 
-            if (mExoPlayer == null) {
-                mExoPlayer = ExoPlayerFactory.newSimpleInstance(mContext);
-                mExoPlayer.addListener(mEventListener);
+    /**
+     * 拿到播放器：已有的直接用，其次用池里空闲的，都没有才新建
+     *
+     * @return 没有新建播放器时返回true
+     */
+    private boolean obtainPlayer() {
+        if (mExoPlayer != null) {
+            return true;
+        }
+        PlayerPool.Entry entry = mPlayerPool.acquireIdle(mBufferProfile);
+        boolean reused = entry != null;
+        if (entry == null) {
+            entry = mPlayerPool.create(mBufferProfile);
+        }
+        mPlayerEntry = entry;
+        mExoPlayer = entry.player;
+        mAllocator = entry.allocator;
+        mExoPlayer.addListener(mEventListener);
+        mExoPlayer.addAnalyticsListener(mMetricsListener);
+        return reused;
+    }
+
+    //拿到播放器（如果还没有），新建播放列表并开始缓冲
+    private void preparePlayer(String mediaId, MediaSource mediaSource) {
+        obtainPlayer();
+
+        //新建播放列表，当前音乐后面接上后续音乐
+        mPlaylist = new ConcatenatingMediaSource();
+        mPlaylistMediaIds.clear();
+        mPlaylist.addMediaSource(mediaSource);
+        mPlaylistMediaIds.add(mediaId);
+        //后续音乐可能是切歌之前设置的，只接上排在当前音乐后面的部分
+        int start = 0;
+        for (int i = 0; i < mNextItems.size(); i++) {
+            if (TextUtils.equals(mediaId, mNextItems.get(i).getDescription().getMediaId())) {
+                start = i + 1;
+                break;
             }
+        }
+        appendToPlaylist(mNextItems.subList(start, mNextItems.size()));
+
+        mExoPlayer.prepare(mPlaylist);
 
-            //使用系统对应音频类型的音量控制
-            final AudioAttributes audioAttributes = new AudioAttributes.Builder()
-                    .setContentType(CONTENT_TYPE_MUSIC)
-                    .setUsage(USAGE_MEDIA)
-                    .build();
-            mExoPlayer.setAudioAttributes(audioAttributes);
-
-            //创建数据源处理工厂
-            DataSource.Factory dataSourceFactory = new DefaultDataSourceFactory(mContext, Util.getUserAgent(mContext, "com.heyzqt.exoplayerdemo"), null);
-            ExtractorsFactory extractorsFactory = new DefaultExtractorsFactory();
-            //创建常规媒体资源ExtractorMediaSource
-            ExtractorMediaSource.Factory extractorMediaFactory = new ExtractorMediaSource.Factory(dataSourceFactory);
-            extractorMediaFactory.setExtractorsFactory(extractorsFactory);
-            Uri uri = Uri.parse(source);
-            MediaSource mediaSource = extractorMediaFactory.createMediaSource(uri);
-            LogHelper.d(TAG, "source = " + source + ", uri = " + uri.toString());
-
-            //准备播放器
-            mExoPlayer.prepare(mediaSource);
-
-            //拿到WiFi锁，可以阻止WiFi进入睡眠状态，断开WiFi
+        //拿到WiFi锁，可以阻止WiFi进入睡眠状态，断开WiFi
+        if (!mWifiLock.isHeld()) {
             mWifiLock.acquire();
         }
+    }
+
+    @Override
+    public void setBufferProfile(BufferProfile profile) {
+        if (profile == null || profile == mBufferProfile) {
+            return;
+        }
+        LogHelper.d(TAG, "buffer profile ", mBufferProfile, " -> ", profile);
+        mBufferProfile = profile;
+        mMetrics.setBufferProfile(profile.name());
+        if (mExoPlayer == null) {
+            return;
+        }
 
+        //LoadControl只能在创建播放器时指定，换策略要重建播放器，从当前位置继续。
+        //旧的播放器放回池里，下次取用时因为策略不同被释放
+        String mediaId = mCurrentMediaId;
+        long position = mExoPlayer.getCurrentPosition();
+        boolean playWhenReady = mExoPlayer.getPlayWhenReady();
+        boolean wasIdle = mExoPlayer.getPlaybackState() == Player.STATE_IDLE;
+        long nowMs = SystemClock.elapsedRealtime();
+        releaseResources(true);
+        //暂停级别描述的是旧播放器保留的资源，换了播放器从ACTIVE重新开始；旧播放器上进行中的恢复也不再计时
+        mHandler.removeCallbacks(mPauseTierRunnable);
+        mPausePolicy.reset(nowMs);
+        mMetrics.cancelResume();
+        MediaSource mediaSource = wasIdle ? null : buildMediaSource(mediaId);
+        if (mediaSource == null) {
+            //没有在播放，下次play时用新的策略创建播放器
+            return;
+        }
+        mExoPlayerNullIsStopped = false;
+        //重建带来的缓冲算作卡顿，不算首帧
+        mMetrics.startSession(mediaId, nowMs, true);
+        preparePlayer(mediaId, mediaSource);
+        mExoPlayer.seekTo(0, position);
+        mPlayOnFocusGain = playWhenReady;
         configurePlayerState();
+        if (!playWhenReady) {
+            //暂停中换的策略，新播放器同样按暂停时长逐级释放
+            mPausePolicy.onPaused(nowMs, 0);
+            schedulePauseTier();
+        }
     }
 
     @Override
-    public void pause() {
-        if (mExoPlayer != null) {
-            mExoPlayer.setPlayWhenReady(false);
+    public BufferProfile getBufferProfile() {
+        return mBufferProfile;
+    }
+
+    @Override
+    public void setNextQueueItems(List<MediaSessionCompat.QueueItem> items) {
+        mNextItems = items != null ? new ArrayList<>(items)
+                : Collections.<MediaSessionCompat.QueueItem>emptyList();
+        List<String> mediaIds = new ArrayList<>(mNextItems.size());
+        for (MediaSessionCompat.QueueItem item : mNextItems) {
+            mediaIds.add(item.getDescription().getMediaId());
+        }
+        mPrefetcher.setQueueCandidates(mediaIds);
+        if (mExoPlayer == null || mPlaylist == null) {
+            return;
+        }
+
+        //当前音乐后面已经缓冲的部分如果顺序没变就保留，只替换变化的部分
+        int keep = Math.max(mPlaylistMediaIds.indexOf(mCurrentMediaId), 0) + 1;
+        int reused = 0;
+        while (keep < mPlaylistMediaIds.size() && reused < mNextItems.size()
+                && TextUtils.equals(mPlaylistMediaIds.get(keep),
+                mNextItems.get(reused).getDescription().getMediaId())) {
+            keep++;
+            reused++;
         }
+        if (keep < mPlaylistMediaIds.size()) {
+            mPlaylist.removeMediaSourceRange(keep, mPlaylistMediaIds.size());
+            mPlaylistMediaIds.subList(keep, mPlaylistMediaIds.size()).clear();
+        }
+        appendToPlaylist(mNextItems.subList(reused, mNextItems.size()));
+    }
+
+    @Override
+    public void setBrowseCandidates(List<String> mediaIds) {
+        mPrefetcher.setBrowseCandidates(mediaIds != null ? mediaIds : Collections.<String>emptyList());
+    }
 
-        releaseResources(false);
+    @Override
+    public void pause() {
         unregisterAudioNoisyReceiver();
+        if (mExoPlayer == null) {
+            releaseResources(false);
+            return;
+        }
+        mExoPlayer.setPlayWhenReady(false);
+
+        //短暂停保留播放器、缓冲区和WiFi锁，恢复时不用重新缓冲
+        mPausePolicy.onPaused(SystemClock.elapsedRealtime(),
+                mAllocator != null ? mAllocator.getTotalBytesAllocated() : 0);
+        schedulePauseTier();
+    }
+
+    @Override
+    public PausePolicy getPausePolicy() {
+        return mPausePolicy;
+    }
+
+    private void schedulePauseTier() {
+        mHandler.removeCallbacks(mPauseTierRunnable);
+        long delay = mPausePolicy.getDelayToNextTierMs(SystemClock.elapsedRealtime());
+        if (delay >= 0) {
+            mHandler.postDelayed(mPauseTierRunnable, delay);
+        }
+    }
+
+    private final Runnable mPauseTierRunnable = new Runnable() {
+        @Override
+        public void run() {
+            PausePolicy.Tier tier = mPausePolicy.advance(SystemClock.elapsedRealtime());
+            if (tier != null) {
+                applyPauseTier(tier);
+            }
+            schedulePauseTier();
+        }
+    };
+
+    //暂停超时，释放这一级不再保留的资源
+    private void applyPauseTier(PausePolicy.Tier tier) {
+        LogHelper.d(TAG, "pause tier -> ", tier);
+        Tracer.instant("playback.pauseTier", "tier", tier);
+        if (tier == PausePolicy.Tier.IDLE) {
+            //停止下载，释放WiFi锁，已经缓冲的数据保留
+            if (mPlayerEntry != null) {
+                mPlayerEntry.loadControl.setLoadingSuspended(true);
+            }
+            releaseResources(false);
+        } else if (tier == PausePolicy.Tier.RELEASED) {
+            //记下位置后释放播放器和音频焦点，暂停这么久不再自动恢复，等用户再次播放
+            if (mExoPlayer != null) {
+                mResumeMediaId = mCurrentMediaId;
+                mResumePositionMs = mExoPlayer.getCurrentPosition();
+            }
+            giveUpAudioFocus();
+            releaseResources(true);
+            //releaseResources把播放器放回了池里，这里连同池里空闲的一起释放，播放线程和渲染器都不再保留；
+            //用户再次播放时重新创建
+            mPlayerPool.clear();
+        }
+    }
+
+    /**
+     * 从暂停恢复：取消还没到的降级，重新开始下载、拿WiFi锁
+     *
+     * @param measure 是否记录恢复耗时
+     */
+    private void resumeFromPause(long nowMs, boolean measure) {
+        mHandler.removeCallbacks(mPauseTierRunnable);
+        PausePolicy.Tier tier = measure ? mPausePolicy.onResumed(nowMs) : mPausePolicy.getTier();
+        if (tier == PausePolicy.Tier.ACTIVE) {
+            return;
+        }
+        if (!measure) {
+            mPausePolicy.reset(nowMs);
+        } else {
+            mMetrics.onResumeStarted(nowMs, tier.name());
+        }
+        if (mExoPlayer != null) {
+            mPlayerEntry.loadControl.setLoadingSuspended(false);
+            if (!mWifiLock.isHeld()) {
+                mWifiLock.acquire();
+            }
+        }
     }
 
     @Override
@@ -181,6 +544,10 @@ public class LocalPlayback implements Playback {
     @Override
     public int getState() {
         if (mExoPlayer == null) {
+            if (mResumeMediaId != null) {
+                //暂停太久释放了播放器，对外仍然是暂停
+                return PlaybackStateCompat.STATE_PAUSED;
+            }
             return mExoPlayerNullIsStopped ? PlaybackStateCompat.STATE_STOPPED
                     : PlaybackStateCompat.STATE_NONE;
         }
@@ -204,6 +571,8 @@ public class LocalPlayback implements Playback {
     public void seekTo(long position) {
         if (mExoPlayer != null) {
             registerAudioNoisyReceiver();
+            IndexedExtractorsFactory factory = mIndexedFactories.get(mCurrentMediaId);
+            mMetrics.setSeekIndexed(factory != null && factory.isIndexUsed());
             mExoPlayer.seekTo(position);
         }
     }
@@ -218,6 +587,18 @@ public class LocalPlayback implements Playback {
         return mCurrentMediaId;
     }
 
+    @Override
+    public PlaybackMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 提前下载的统计：下载字节数、命中次数等
+     */
+    public HeadPrefetcher getPrefetcher() {
+        return mPrefetcher;
+    }
+
     @Override
     public void setCallback(Callback callback) {
         this.mCallback = callback;
@@ -225,7 +606,7 @@ public class LocalPlayback implements Playback {
 
     //根据音频焦点重置音乐播放器状态
     private void configurePlayerState() {
-        LogHelper.d(TAG, "configurePlayerState mCurrentAudioFocusState = " + mCurrentAudioFocusState);
+        LogHelper.d(TAG, "configurePlayerState mCurrentAudioFocusState = ", mCurrentAudioFocusState);
         if (mCurrentAudioFocusState == AUDIO_NO_FOCUS_NO_DUCK) {
             //没有音频焦点，也不能小声播放，所以只能暂停音乐
             pause();
@@ -241,6 +622,7 @@ public class LocalPlayback implements Playback {
 
             //重新获取焦点，重新开始播放
             if (mPlayOnFocusGain) {
+                resumeFromPause(SystemClock.elapsedRealtime(), true);
                 mExoPlayer.setPlayWhenReady(true);
                 mPlayOnFocusGain = false;
             }
@@ -268,7 +650,7 @@ public class LocalPlayback implements Playback {
             new AudioManager.OnAudioFocusChangeListener() {
                 @Override
                 public void onAudioFocusChange(int focusChange) {
-                    LogHelper.d(TAG, "onAudioFocusChange = " + focusChange);
+                    LogHelper.d(TAG, "onAudioFocusChange = ", focusChange);
                     switch (focusChange) {
                         case AudioManager.AUDIOFOCUS_GAIN:
                             //获得了音频焦点
@@ -295,13 +677,156 @@ public class LocalPlayback implements Playback {
                 }
             };
 
+    //exo player 原Demo获取数据的代码
+    private MediaSource buildMediaSource(String mediaId) {
+        Uri uri = sourceUriOf(mMusicProvider, mediaId);
+        if (uri == null) {
+            return null;
+        }
+        LogHelper.d(TAG, "uri = ", uri);
+        if (mSeekIndexEnabled) {
+            //工厂创建过媒体资源后不能再修改，每首音乐用单独的工厂，解析器在加载线程上查找索引
+            IndexedExtractorsFactory extractorsFactory =
+                    new IndexedExtractorsFactory(mExtractorsFactory, mSeekIndexStore, uri.toString());
+            mIndexedFactories.put(mediaId, extractorsFactory);
+            return new ExtractorMediaSource.Factory(mDataSourceFactory)
+                    .setExtractorsFactory(extractorsFactory)
+                    .setTag(mediaId)
+                    .createMediaSource(uri);
+        }
+        //创建常规媒体资源ExtractorMediaSource
+        return new ExtractorMediaSource.Factory(mDataSourceFactory)
+                .setExtractorsFactory(mExtractorsFactory)
+                .setTag(mediaId)
+                .createMediaSource(uri);
+    }
+
+    @Override
+    public void setSeekIndexEnabled(boolean enabled) {
+        mSeekIndexEnabled = enabled;
+        if (!enabled) {
+            mIndexedFactories.clear();
+        }
+    }
+
+    @Override
+    public boolean isSeekIndexEnabled() {
+        return mSeekIndexEnabled;
+    }
+
+    //当前音乐还没有seek索引、并且已经完整缓存时在后台生成，下次播放时生效
+    private void requestSeekIndex(String mediaId) {
+        Uri uri = mediaId != null ? sourceUriOf(mMusicProvider, mediaId) : null;
+        if (uri != null) {
+            mSeekIndexLoader.requestBuild(uri);
+        }
+    }
+
+    /**
+     * 音乐的播放地址，提前下载也用这个地址，和播放器的缓存key保持一致
+     *
+     * @return 找不到音乐时返回null
+     */
+    static Uri sourceUriOf(MusicProvider musicProvider, String mediaId) {
+        MediaMetadataCompat track =
+                musicProvider.getMusic(MediaIDHelper.extractMusicIDFromMediaID(mediaId));
+        if (track == null) {
+            return null;
+        }
+
+        String source = track.getString(MusicProviderSource.CUSTOM_METADATA_TRACK_SOURCE);
+        if (source != null) {
+            source = source.replaceAll(" ", "%20"); // Escape spaces for URLs
+        }
+        return Uri.parse(source);
+    }
+
+    private void appendToPlaylist(List<MediaSessionCompat.QueueItem> items) {
+        List<MediaSource> sources = new ArrayList<>(items.size());
+        for (MediaSessionCompat.QueueItem item : items) {
+            String mediaId = item.getDescription().getMediaId();
+            MediaSource mediaSource = buildMediaSource(mediaId);
+            if (mediaSource == null) {
+                LogHelper.w(TAG, "skip preloading unknown item ", mediaId);
+                continue;
+            }
+            sources.add(mediaSource);
+            mPlaylistMediaIds.add(mediaId);
+        }
+        if (!sources.isEmpty()) {
+            mPlaylist.addMediaSources(sources);
+        }
+    }
+
+    /**
+     * 在播放器时间线中当前音乐后面查找，还在等待移除的音乐不算
+     *
+     * @return 可以直接seekTo的窗口下标，找不到返回C.INDEX_UNSET
+     */
+    private int indexOfPreloaded(String mediaId) {
+        if (mExoPlayer == null || mPlaylist == null
+                || mExoPlayer.getPlaybackState() == Player.STATE_IDLE
+                || mPlaylistMediaIds.indexOf(mediaId) <= 0) {
+            return C.INDEX_UNSET;
+        }
+        Timeline timeline = mExoPlayer.getCurrentTimeline();
+        for (int i = mExoPlayer.getCurrentWindowIndex() + 1; i < timeline.getWindowCount(); i++) {
+            if (mediaId.equals(timeline.getWindow(i, mWindow, true).tag)) {
+                return i;
+            }
+        }
+        return C.INDEX_UNSET;
+    }
+
+    //播放器切到了下一首（自然播完或者seek），移除已经播过的部分，同步当前mediaId
+    private void onCurrentWindowChanged() {
+        //当前窗口的tag来自播放器自己的时间线，不受还没生效的播放列表修改影响
+        Object tag = mExoPlayer.getCurrentTag();
+        if (!(tag instanceof String)) {
+            return;
+        }
+        String mediaId = (String) tag;
+        int index = mPlaylistMediaIds.indexOf(mediaId);
+        if (index > 0) {
+            mPlaylist.removeMediaSourceRange(0, index);
+            mPlaylistMediaIds.subList(0, index).clear();
+        }
+
+        if (!TextUtils.equals(mediaId, mCurrentMediaId)) {
+            LogHelper.d(TAG, "gapless transition to ", mediaId);
+            //上一首播完了，通常已经完整缓存
+            if (mSeekIndexEnabled) {
+                requestSeekIndex(mCurrentMediaId);
+            }
+            mCurrentMediaId = mediaId;
+            //和play()一样，正在播放的音乐不再作为提前下载的候选，也要算进命中次数
+            mPrefetcher.setPlayingMediaId(mediaId);
+            mMetrics.startSession(mediaId, SystemClock.elapsedRealtime(), true);
+            if (mCallback != null) {
+                mCallback.setCurrentMediaId(mediaId);
+            }
+        }
+    }
+
     private void releaseResources(boolean releasePlayer) {
         LogHelper.d(TAG, "releaseResources. releasePlayer=", releasePlayer);
 
         if (releasePlayer && mExoPlayer != null) {
-            mExoPlayer.release();
+            //先移除监听，重置播放器时的状态变化不再通知出去
             mExoPlayer.removeListener(mEventListener);
+            mExoPlayer.removeAnalyticsListener(mMetricsListener);
+            mMetrics.endSession(SystemClock.elapsedRealtime());
+            mPlayerPool.recycle(mPlayerEntry);
+            mPlayerEntry = null;
             mExoPlayer = null;
+            mAllocator = null;
+            if (mStartSpan != null) {
+                mStartSpan.attr("interrupted", true).end();
+                mStartSpan = null;
+            }
+            mPlaylist = null;
+            mPlaylistMediaIds.clear();
+            mIndexedFactories.clear();
             mExoPlayerNullIsStopped = true;
             mPlayOnFocusGain = false;
         }
@@ -333,11 +858,21 @@ public class LocalPlayback implements Playback {
                 case Player.STATE_IDLE:
                 case Player.STATE_BUFFERING:
                 case Player.STATE_READY:
+                    if (playbackState == Player.STATE_READY && mStartSpan != null) {
+                        mStartSpan.end();
+                        mStartSpan = null;
+                    }
+                    if (playbackState == Player.STATE_READY && mSeekIndexEnabled) {
+                        requestSeekIndex(mCurrentMediaId);
+                    }
+                    //当前音乐缓冲时不开始新的提前下载，把带宽让给它
+                    mPrefetcher.setPaused(playbackState == Player.STATE_BUFFERING);
                     if (mCallback != null) {
                         mCallback.onPlaybackStatusChanged(getState());
                     }
                     break;
                 case Player.STATE_ENDED:
+                    //播放列表里最后一首播完了，后面没有提前缓冲的音乐
                     if (mCallback != null) {
                         mCallback.onCompletion();
                     }
@@ -345,6 +880,28 @@ public class LocalPlayback implements Playback {
             }
         }
 
+        @Override
+        public void onLoadingChanged(boolean isLoading) {
+            //整首音乐缓冲完时加载也会结束，这时它已经完整缓存，可以生成seek索引
+            if (!isLoading && mSeekIndexEnabled) {
+                requestSeekIndex(mCurrentMediaId);
+            }
+            //一轮加载结束时缓冲区最满
+            if (!isLoading && mAllocator != null) {
+                mMetrics.onBufferAllocated(mAllocator.getTotalBytesAllocated());
+                Runtime runtime = Runtime.getRuntime();
+                mMetrics.onHeapUsed(runtime.totalMemory() - runtime.freeMemory());
+            }
+        }
+
+        @Override
+        public void onPositionDiscontinuity(int reason) {
+            if (reason == Player.DISCONTINUITY_REASON_PERIOD_TRANSITION
+                    || reason == Player.DISCONTINUITY_REASON_SEEK) {
+                onCurrentWindowChanged();
+            }
+        }
+
         @Override
         public void onPlayerError(ExoPlaybackException error) {
             final String what;
@@ -0,0 +1,286 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 从头到尾扫描一遍MP3数据，逐个解析帧头，生成{@link SeekIndex}。
+ * 时间和ExoPlayer的Mp3Extractor保持一致：跳过ID3标签和Xing/Info/VBRI信息帧，第一个音频帧是0，
+ * 之后按每帧的采样数累加。帧头损坏的地方逐字节重新同步
+ */
+public class Mp3SeekIndexBuilder {
+
+    //两项之间的时间间隔，1小时的音乐大约7200项、56KB
+    public static final long DEFAULT_INTERVAL_US = 500000;
+
+    //和Mp3Extractor一样，开头这么多字节内找不到帧头就认为不是MP3
+    private static final int MAX_SYNC_BYTES = 128 * 1024;
+    private static final int MIN_FRAMES = 4;
+
+    private static final int[] SAMPLING_RATE_V1 = {44100, 48000, 32000};
+    private static final int[] BITRATE_V1_L1 = {32, 64, 96, 128, 160, 192, 224, 256, 288, 320,
+            352, 384, 416, 448};
+    private static final int[] BITRATE_V1_L2 = {32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224,
+            256, 320, 384};
+    private static final int[] BITRATE_V1_L3 = {32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192,
+            224, 256, 320};
+    private static final int[] BITRATE_V2_L1 = {32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176,
+            192, 224, 256};
+    private static final int[] BITRATE_V2 = {8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144,
+            160};
+
+    private Mp3SeekIndexBuilder() {
+    }
+
+    /**
+     * 读完整个输入流，不关闭
+     *
+     * @param streamLength 数据总字节数，不知道时传-1，按实际读到的字节数
+     * @return 不是MP3数据时返回null
+     */
+    public static SeekIndex build(InputStream in, long intervalUs, long streamLength)
+            throws IOException {
+        Reader reader = new Reader(in);
+        skipId3Tags(reader);
+
+        long[] timesUs = new long[64];
+        long[] positions = new long[64];
+        int size = 0;
+        int sampleRate = 0;
+        long samples = 0;
+        int frames = 0;
+        long nextEntryUs = 0;
+        boolean first = true;
+        int header = reader.readInt();
+        long syncStart = reader.mPosition;
+        while (true) {
+            int frameSize = frameSize(header);
+            if (frameSize < 0) {
+                //帧头损坏（或者到了末尾），往后挪一个字节继续找
+                if (frames == 0 && reader.mPosition - syncStart > MAX_SYNC_BYTES) {
+                    return null;
+                }
+                int next = reader.read();
+                if (next < 0) {
+                    break;
+                }
+                header = (header << 8) | next;
+                continue;
+            }
+            long position = reader.mPosition - 4;
+            byte[] body = first ? new byte[frameSize - 4] : null;
+            long read = body != null ? reader.readFully(body) : reader.skip(frameSize - 4);
+            if (read < frameSize - 4) {
+                //最后一帧不完整
+                break;
+            }
+            if (first) {
+                first = false;
+                sampleRate = sampleRate(header);
+                if (isInfoFrame(body)) {
+                    header = reader.readInt();
+                    continue;
+                }
+            }
+
+            long timeUs = samples * 1000000 / sampleRate;
+            if (timeUs >= nextEntryUs) {
+                if (size == timesUs.length) {
+                    timesUs = grow(timesUs);
+                    positions = grow(positions);
+                }
+                timesUs[size] = timeUs;
+                positions[size] = position;
+                size++;
+                nextEntryUs = timeUs + intervalUs;
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("seek index build interrupted");
+                }
+            }
+            samples += samplesPerFrame(header);
+            frames++;
+            header = reader.readInt();
+        }
+
+        if (frames < MIN_FRAMES) {
+            return null;
+        }
+        long durationUs = samples * 1000000 / sampleRate;
+        long length = streamLength >= 0 ? streamLength : reader.mPosition;
+        long[] finalTimes = new long[size];
+        long[] finalPositions = new long[size];
+        System.arraycopy(timesUs, 0, finalTimes, 0, size);
+        System.arraycopy(positions, 0, finalPositions, 0, size);
+        return new SeekIndex(finalTimes, finalPositions, durationUs, length);
+    }
+
+    //ID3v2标签头：'ID3'、版本2字节、标志1字节、4字节的synchsafe长度（每字节7位）
+    private static void skipId3Tags(Reader reader) throws IOException {
+        while (true) {
+            byte[] tagHeader = new byte[10];
+            reader.mark(tagHeader.length);
+            if (reader.readFully(tagHeader) < tagHeader.length
+                    || tagHeader[0] != 'I' || tagHeader[1] != 'D' || tagHeader[2] != '3') {
+                reader.reset();
+                return;
+            }
+            int tagSize = ((tagHeader[6] & 0x7f) << 21) | ((tagHeader[7] & 0x7f) << 14)
+                    | ((tagHeader[8] & 0x7f) << 7) | (tagHeader[9] & 0x7f);
+            //有footer时多10字节
+            if ((tagHeader[5] & 0x10) != 0) {
+                tagSize += 10;
+            }
+            reader.skip(tagSize);
+        }
+    }
+
+    //VBR文件第一帧是不含音频的信息帧，Mp3Extractor会跳过它
+    private static boolean isInfoFrame(byte[] body) {
+        int end = Math.min(body.length - 4, 40);
+        for (int i = 0; i <= end; i++) {
+            if ((body[i] == 'X' && body[i + 1] == 'i' && body[i + 2] == 'n' && body[i + 3] == 'g')
+                    || (body[i] == 'I' && body[i + 1] == 'n' && body[i + 2] == 'f' && body[i + 3] == 'o')
+                    || (body[i] == 'V' && body[i + 1] == 'B' && body[i + 2] == 'R' && body[i + 3] == 'I')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 帧的总字节数（包括4字节帧头），不是有效帧头时返回-1
+     */
+    static int frameSize(int header) {
+        if ((header & 0xffe00000) != 0xffe00000) {
+            return -1;
+        }
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        int bitrateIndex = (header >>> 12) & 0xf;
+        int samplingRateIndex = (header >>> 10) & 3;
+        //保留值和free格式不支持
+        if (version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 0xf
+                || samplingRateIndex == 3) {
+            return -1;
+        }
+        int sampleRate = sampleRate(header);
+        int padding = (header >>> 9) & 1;
+        boolean v1 = version == 3;
+        int bitrate;
+        if (layer == 3) {
+            //Layer I
+            bitrate = (v1 ? BITRATE_V1_L1 : BITRATE_V2_L1)[bitrateIndex - 1] * 1000;
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        if (v1) {
+            bitrate = (layer == 2 ? BITRATE_V1_L2 : BITRATE_V1_L3)[bitrateIndex - 1] * 1000;
+            return 144 * bitrate / sampleRate + padding;
+        }
+        bitrate = BITRATE_V2[bitrateIndex - 1] * 1000;
+        //MPEG-2/2.5的Layer III每帧采样数减半
+        return (layer == 1 ? 72 : 144) * bitrate / sampleRate + padding;
+    }
+
+    static int sampleRate(int header) {
+        int version = (header >>> 19) & 3;
+        int rate = SAMPLING_RATE_V1[(header >>> 10) & 3];
+        if (version == 2) {
+            return rate / 2;
+        } else if (version == 0) {
+            return rate / 4;
+        }
+        return rate;
+    }
+
+    static int samplesPerFrame(int header) {
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        if (layer == 3) {
+            return 384;
+        }
+        return layer == 1 && version != 3 ? 576 : 1152;
+    }
+
+    private static long[] grow(long[] array) {
+        long[] grown = new long[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    //记录读到的位置
+    private static class Reader {
+        private final BufferedInputStream mIn;
+        long mPosition;
+        private long mMarkPosition;
+
+        Reader(InputStream in) {
+            mIn = new BufferedInputStream(in, 16 * 1024);
+        }
+
+        int read() throws IOException {
+            int b = mIn.read();
+            if (b >= 0) {
+                mPosition++;
+            }
+            return b;
+        }
+
+        /**
+         * @return 4字节的大端整数，读到末尾时返回-1（不是有效的帧头）
+         */
+        int readInt() throws IOException {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = read();
+                if (b < 0) {
+                    return -1;
+                }
+                value = (value << 8) | b;
+            }
+            return value;
+        }
+
+        int readFully(byte[] buffer) throws IOException {
+            int total = 0;
+            while (total < buffer.length) {
+                int read = mIn.read(buffer, total, buffer.length - total);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            mPosition += total;
+            return total;
+        }
+
+        long skip(long count) throws IOException {
+            long total = 0;
+            while (total < count) {
+                long skipped = mIn.skip(count - total);
+                if (skipped <= 0) {
+                    //skip返回0时用read确认是不是到了末尾
+                    if (mIn.read() < 0) {
+                        break;
+                    }
+                    skipped = 1;
+                }
+                total += skipped;
+            }
+            mPosition += total;
+            return total;
+        }
+
+        void mark(int readLimit) {
+            mIn.mark(readLimit);
+            mMarkPosition = mPosition;
+        }
+
+        void reset() throws IOException {
+            mIn.reset();
+            mPosition = mMarkPosition;
+        }
+    }
+}
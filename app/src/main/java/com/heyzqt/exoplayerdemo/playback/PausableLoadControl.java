@@ -0,0 +1,78 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.Renderer;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
+import com.google.android.exoplayer2.upstream.Allocator;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 可以暂停下载的LoadControl：暂停时不再继续加载，已经缓冲的数据保留，
+ * 长时间暂停时用来停止占用网络。其他判断都交给被包装的LoadControl
+ */
+class PausableLoadControl implements LoadControl {
+
+    private final LoadControl mDelegate;
+    //在主线程修改，在播放线程读取
+    private volatile boolean mLoadingSuspended;
+
+    PausableLoadControl(LoadControl delegate) {
+        this.mDelegate = delegate;
+    }
+
+    void setLoadingSuspended(boolean suspended) {
+        mLoadingSuspended = suspended;
+    }
+
+    boolean isLoadingSuspended() {
+        return mLoadingSuspended;
+    }
+
+    @Override
+    public void onPrepared() {
+        mDelegate.onPrepared();
+    }
+
+    @Override
+    public void onTracksSelected(Renderer[] renderers, TrackGroupArray trackGroups,
+                                 TrackSelectionArray trackSelections) {
+        mDelegate.onTracksSelected(renderers, trackGroups, trackSelections);
+    }
+
+    @Override
+    public void onStopped() {
+        mDelegate.onStopped();
+    }
+
+    @Override
+    public void onReleased() {
+        mDelegate.onReleased();
+    }
+
+    @Override
+    public Allocator getAllocator() {
+        return mDelegate.getAllocator();
+    }
+
+    @Override
+    public long getBackBufferDurationUs() {
+        return mDelegate.getBackBufferDurationUs();
+    }
+
+    @Override
+    public boolean retainBackBufferFromKeyframe() {
+        return mDelegate.retainBackBufferFromKeyframe();
+    }
+
+    @Override
+    public boolean shouldContinueLoading(long bufferedDurationUs, float playbackSpeed) {
+        return !mLoadingSuspended && mDelegate.shouldContinueLoading(bufferedDurationUs, playbackSpeed);
+    }
+
+    @Override
+    public boolean shouldStartPlayback(long bufferedDurationUs, float playbackSpeed,
+                                       boolean rebuffering) {
+        return mDelegate.shouldStartPlayback(bufferedDurationUs, playbackSpeed, rebuffering);
+    }
+}
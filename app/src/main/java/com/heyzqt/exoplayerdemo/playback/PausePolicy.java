@@ -0,0 +1,187 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 分级暂停：刚暂停时保留准备好的播放器、缓冲区和WiFi锁，短暂的打断（提示音、来电挂断）恢复时不用重新缓冲；
+ * 暂停超过{@link #getIdleTimeoutMs()}后停止下载、释放WiFi锁，已经缓冲的数据保留；
+ * 超过{@link #getReleaseTimeoutMs()}后完全释放播放器，恢复时从暂停的位置重新准备。
+ * 这里只根据时间计算当前应该处于哪一级，释放资源由{@link LocalPlayback}完成；
+ * 同时统计每一级停留的时间、暂停期间占用的缓冲区和从每一级恢复的次数。
+ * 所有时间参数都是同一个单调时钟的毫秒数
+ */
+public class PausePolicy {
+
+    public enum Tier {
+        //没有暂停
+        ACTIVE,
+        //保留播放器、缓冲区、下载和WiFi锁
+        WARM,
+        //停止下载，释放WiFi锁，保留播放器和缓冲区
+        IDLE,
+        //播放器已经释放，池里也不保留空闲的播放器
+        RELEASED
+    }
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30 * 1000;
+    public static final long DEFAULT_RELEASE_TIMEOUT_MS = 10 * 60 * 1000;
+
+    private long mIdleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private long mReleaseTimeoutMs = DEFAULT_RELEASE_TIMEOUT_MS;
+
+    private Tier mTier = Tier.ACTIVE;
+    private long mPausedAtMs;
+    private long mTierEnteredMs;
+    private long mHeldBufferBytes;
+
+    private final long[] mTierMs = new long[Tier.values().length];
+    private final int[] mResumeCounts = new int[Tier.values().length];
+    //暂停期间占用的缓冲区字节数乘以毫秒数
+    private long mBufferByteMs;
+
+    /**
+     * 对下一次降级生效
+     *
+     * @param idleTimeoutMs    暂停多久以后停止下载、释放WiFi锁
+     * @param releaseTimeoutMs 暂停多久以后完全释放播放器，不能小于idleTimeoutMs
+     */
+    public synchronized void setTimeouts(long idleTimeoutMs, long releaseTimeoutMs) {
+        if (idleTimeoutMs < 0 || releaseTimeoutMs < idleTimeoutMs) {
+            throw new IllegalArgumentException("invalid timeouts: " + idleTimeoutMs + ", " + releaseTimeoutMs);
+        }
+        mIdleTimeoutMs = idleTimeoutMs;
+        mReleaseTimeoutMs = releaseTimeoutMs;
+    }
+
+    public synchronized long getIdleTimeoutMs() {
+        return mIdleTimeoutMs;
+    }
+
+    public synchronized long getReleaseTimeoutMs() {
+        return mReleaseTimeoutMs;
+    }
+
+    /**
+     * 开始暂停，已经在暂停时不重新计时
+     *
+     * @param bufferBytes 暂停时播放器缓冲区占用的字节数
+     */
+    synchronized void onPaused(long nowMs, long bufferBytes) {
+        if (mTier != Tier.ACTIVE) {
+            return;
+        }
+        mPausedAtMs = nowMs;
+        mHeldBufferBytes = bufferBytes;
+        enter(Tier.WARM, nowMs);
+    }
+
+    /**
+     * 按暂停的时长降级，可以跨过中间的级别
+     *
+     * @return 新的级别，不需要降级时返回null
+     */
+    synchronized Tier advance(long nowMs) {
+        if (mTier == Tier.ACTIVE || mTier == Tier.RELEASED) {
+            return null;
+        }
+        long pausedMs = nowMs - mPausedAtMs;
+        Tier target = pausedMs >= mReleaseTimeoutMs ? Tier.RELEASED
+                : pausedMs >= mIdleTimeoutMs ? Tier.IDLE : Tier.WARM;
+        if (target.ordinal() <= mTier.ordinal()) {
+            return null;
+        }
+        enter(target, nowMs);
+        return target;
+    }
+
+    /**
+     * @return 距离下一次降级的毫秒数，不需要再降级时返回-1
+     */
+    synchronized long getDelayToNextTierMs(long nowMs) {
+        long deadline;
+        if (mTier == Tier.WARM) {
+            deadline = mPausedAtMs + mIdleTimeoutMs;
+        } else if (mTier == Tier.IDLE) {
+            deadline = mPausedAtMs + mReleaseTimeoutMs;
+        } else {
+            return -1;
+        }
+        return Math.max(0, deadline - nowMs);
+    }
+
+    /**
+     * 恢复播放
+     *
+     * @return 恢复之前所在的级别，没有暂停时返回{@link Tier#ACTIVE}
+     */
+    synchronized Tier onResumed(long nowMs) {
+        Tier previous = mTier;
+        if (previous != Tier.ACTIVE) {
+            enter(Tier.ACTIVE, nowMs);
+            mResumeCounts[previous.ordinal()]++;
+        }
+        return previous;
+    }
+
+    /**
+     * 停止播放，不算恢复
+     */
+    synchronized void reset(long nowMs) {
+        if (mTier != Tier.ACTIVE) {
+            enter(Tier.ACTIVE, nowMs);
+        }
+    }
+
+    public synchronized Tier getTier() {
+        return mTier;
+    }
+
+    /**
+     * @return 累计停留在这一级的时间，包括当前这一次
+     */
+    public synchronized long getTimeInTierMs(Tier tier, long nowMs) {
+        long ms = mTierMs[tier.ordinal()];
+        if (tier == mTier) {
+            ms += nowMs - mTierEnteredMs;
+        }
+        return ms;
+    }
+
+    public synchronized int getResumeCount(Tier tier) {
+        return mResumeCounts[tier.ordinal()];
+    }
+
+    /**
+     * @return 暂停期间保留的缓冲区字节数乘以秒数，衡量暂停时占用了多少内存
+     */
+    public synchronized long getHeldBufferByteSeconds(long nowMs) {
+        long byteMs = mBufferByteMs;
+        if (mTier == Tier.WARM || mTier == Tier.IDLE) {
+            byteMs += mHeldBufferBytes * (nowMs - mTierEnteredMs);
+        }
+        return byteMs / 1000;
+    }
+
+    private void enter(Tier tier, long nowMs) {
+        long ms = nowMs - mTierEnteredMs;
+        if (mTier != Tier.ACTIVE) {
+            mTierMs[mTier.ordinal()] += ms;
+        }
+        if (mTier == Tier.WARM || mTier == Tier.IDLE) {
+            mBufferByteMs += mHeldBufferBytes * ms;
+        }
+        mTier = tier;
+        mTierEnteredMs = nowMs;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PausePolicy{tier=" + mTier
+                + ", idleTimeoutMs=" + mIdleTimeoutMs
+                + ", releaseTimeoutMs=" + mReleaseTimeoutMs
+                + ", warmMs=" + mTierMs[Tier.WARM.ordinal()]
+                + ", idleMs=" + mTierMs[Tier.IDLE.ordinal()]
+                + ", resumedWarm=" + mResumeCounts[Tier.WARM.ordinal()]
+                + ", resumedIdle=" + mResumeCounts[Tier.IDLE.ordinal()]
+                + ", resumedReleased=" + mResumeCounts[Tier.RELEASED.ordinal()] + "}";
+    }
+}
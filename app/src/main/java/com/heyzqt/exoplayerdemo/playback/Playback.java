@@ -2,16 +2,29 @@ package com.heyzqt.exoplayerdemo.playback;
 
 import android.support.v4.media.session.MediaSessionCompat;
 
+import java.util.List;
+
 /**
  * 通知音频播放
  * Created by heyzqt on 2019-08-19.
  */
 public interface Playback {
 
+    /**
+     * 提前创建播放器并预热数据源，第一次播放更快出声
+     */
     void start();
 
+    /**
+     * 停止播放，播放器重置后留着给下一次播放用
+     */
     void stop();
 
+    /**
+     * 停止播放并释放所有播放器，不再使用时调用
+     */
+    void release();
+
     boolean isPlaying();
 
     /**
@@ -23,6 +36,23 @@ public interface Playback {
 
     void play(MediaSessionCompat.QueueItem item);
 
+    /**
+     * 设置当前音乐之后要播放的音乐，播放器会提前缓冲，当前音乐播完后无缝切换。
+     * 切换后通过{@link Callback#setCurrentMediaId(String)}通知新的mediaId，
+     * 调用方可以在这时设置新的后续音乐
+     *
+     * @param items 按播放顺序排列，通常传入接下来的一两首即可
+     */
+    void setNextQueueItems(List<MediaSessionCompat.QueueItem> items);
+
+    /**
+     * 设置浏览列表里当前可见的可播放音乐，后台会提前下载它们的开头，点击后更快出声。
+     * 后续音乐（{@link #setNextQueueItems(List)}）优先，列表变化时取消过时的下载
+     *
+     * @param mediaIds 按显示顺序排列，比如{@link com.heyzqt.exoplayerdemo.model.ChildrenPage}当前页的mediaId
+     */
+    void setBrowseCandidates(List<String> mediaIds);
+
     void pause();
 
     void setState(int state);
@@ -35,6 +65,33 @@ public interface Playback {
 
     String getCurrentMediaId();
 
+    /**
+     * 播放体验统计：首帧耗时、卡顿、seek耗时、下载字节数等，
+     * 可以通过{@link PlaybackMetrics#dump()}导出
+     */
+    PlaybackMetrics getMetrics();
+
+    /**
+     * 切换缓冲策略。正在播放时会重建播放器并从当前位置继续，短暂缓冲后恢复
+     */
+    void setBufferProfile(BufferProfile profile);
+
+    BufferProfile getBufferProfile();
+
+    /**
+     * 开启后每首MP3第一次播放时在后台完整读一遍，生成seek索引并保存，
+     * 之后再播放这首音乐时seek直接跳到准确的位置。对之后开始播放的音乐生效
+     */
+    void setSeekIndexEnabled(boolean enabled);
+
+    boolean isSeekIndexEnabled();
+
+    /**
+     * 分级暂停的超时设置和统计：每一级停留的时间、暂停期间占用的缓冲区、从每一级恢复的次数。
+     * 恢复耗时见{@link PlaybackMetrics#getResumeLatency(String)}
+     */
+    PausePolicy getPausePolicy();
+
     interface Callback {
 
         void onCompletion();
@@ -0,0 +1,710 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by heyzqt on 2019-08-29.
+ * 播放体验（QoE）统计：首帧耗时、卡顿次数和时长、seek耗时、下载字节数、音频欠载/丢帧。
+ * 每播放一首音乐算一个会话，同时保留最近若干次的滚动分位数。
+ * 所有时间参数都是同一个单调时钟的毫秒数（Android上是SystemClock.elapsedRealtime），
+ * 事件由{@link PlaybackMetricsListener}从ExoPlayer的AnalyticsListener转发过来。
+ * 会话记录开始时使用的缓冲策略，首帧耗时、缓冲区峰值和Java堆峰值同时按策略分别统计，用来比较不同策略的效果。
+ * 首帧耗时还按播放器是复用的（提前建好或者停止后放回池里）还是新建的分开统计，
+ * seek耗时按是否使用了{@link SeekIndex}分开统计。
+ * 暂停后恢复播放的耗时按恢复前所在的{@link PausePolicy.Tier}分别统计
+ */
+public class PlaybackMetrics {
+
+    public static final int DEFAULT_WINDOW_SIZE = 256;
+    private static final int MAX_FINISHED_SESSIONS = 32;
+
+    private final RollingStats mTimeToFirstAudio;
+    private final RollingStats mRebufferDuration;
+    private final RollingStats mSeekLatency;
+    private final RollingStats mTimeToFirstAudioReused;
+    private final RollingStats mTimeToFirstAudioNewPlayer;
+    private final RollingStats mSeekLatencyIndexed;
+    private final RollingStats mSeekLatencyUnindexed;
+
+    private final ArrayDeque<Session> mFinishedSessions = new ArrayDeque<>();
+    private Session mCurrentSession;
+
+    private final int mWindowSize;
+    //按缓冲策略分别统计的首帧耗时、缓冲区峰值和堆峰值
+    private final Map<String, ProfileStats> mProfileStats = new LinkedHashMap<>();
+    private String mBufferProfile;
+
+    //按暂停级别分别统计的恢复耗时，恢复开始到播放器带着播放状态准备好
+    private final Map<String, RollingStats> mResumeLatency = new LinkedHashMap<>();
+    private long mResumeStartMs = -1;
+    private String mResumeTier;
+
+    private long mTotalSessions;
+    private long mTotalRebuffers;
+    private long mTotalBytesLoaded;
+    private long mTotalDroppedEvents;
+
+    public PlaybackMetrics() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize 分位数统计最近多少个样本
+     */
+    public PlaybackMetrics(int windowSize) {
+        mWindowSize = windowSize;
+        mTimeToFirstAudio = new RollingStats(windowSize);
+        mRebufferDuration = new RollingStats(windowSize);
+        mSeekLatency = new RollingStats(windowSize);
+        mTimeToFirstAudioReused = new RollingStats(windowSize);
+        mTimeToFirstAudioNewPlayer = new RollingStats(windowSize);
+        mSeekLatencyIndexed = new RollingStats(windowSize);
+        mSeekLatencyUnindexed = new RollingStats(windowSize);
+    }
+
+    /**
+     * 开始播放一首新的音乐，上一个会话随之结束
+     *
+     * @param firstAudio 是否已经有声音（无缝切换到下一首时为true，不统计首帧耗时）
+     */
+    public synchronized void startSession(String mediaId, long nowMs, boolean firstAudio) {
+        startSession(mediaId, nowMs, firstAudio, true);
+    }
+
+    /**
+     * @param reusedPlayer 是否复用了已有的播放器，为false时首帧耗时包含创建播放器的时间
+     */
+    public synchronized void startSession(String mediaId, long nowMs, boolean firstAudio,
+                                          boolean reusedPlayer) {
+        endSession(nowMs);
+        mCurrentSession = new Session(mediaId, nowMs, mBufferProfile);
+        mCurrentSession.mReusedPlayer = reusedPlayer;
+        if (firstAudio) {
+            mCurrentSession.mFirstAudioMs = nowMs;
+        }
+        mTotalSessions++;
+    }
+
+    public synchronized void endSession(long nowMs) {
+        Session session = mCurrentSession;
+        if (session == null) {
+            return;
+        }
+        //没完成的卡顿计入时长，没完成的seek丢弃
+        onPaused(nowMs);
+        session.mSeekStartMs = -1;
+        session.mEndMs = nowMs;
+        if (session.mPeakBufferBytes > 0) {
+            profileStats(session.mBufferProfile).mPeakBufferBytes.add(session.mPeakBufferBytes);
+        }
+        if (session.mPeakHeapBytes > 0) {
+            profileStats(session.mBufferProfile).mPeakHeapBytes.add(session.mPeakHeapBytes);
+        }
+        mFinishedSessions.addLast(session);
+        if (mFinishedSessions.size() > MAX_FINISHED_SESSIONS) {
+            mFinishedSessions.removeFirst();
+        }
+        mCurrentSession = null;
+    }
+
+    /**
+     * 播放器进入可播放状态
+     *
+     * @param playing 是否正在播放，暂停状态下准备好不算首帧
+     */
+    public synchronized void onReady(long nowMs, boolean playing) {
+        if (playing && mResumeStartMs >= 0) {
+            resumeStats(mResumeTier).add(nowMs - mResumeStartMs);
+            mResumeStartMs = -1;
+        }
+        Session session = mCurrentSession;
+        if (session == null) {
+            return;
+        }
+        if (playing && session.mFirstAudioMs < 0) {
+            session.mFirstAudioMs = nowMs;
+            mTimeToFirstAudio.add(nowMs - session.mStartMs);
+            profileStats(session.mBufferProfile).mTimeToFirstAudio.add(nowMs - session.mStartMs);
+            (session.mReusedPlayer ? mTimeToFirstAudioReused : mTimeToFirstAudioNewPlayer)
+                    .add(nowMs - session.mStartMs);
+        }
+        if (session.mRebufferStartMs >= 0) {
+            long duration = nowMs - session.mRebufferStartMs;
+            session.mRebufferMs += duration;
+            mRebufferDuration.add(duration);
+            session.mRebufferStartMs = -1;
+        }
+        if (session.mSeekStartMs >= 0 && session.mSeekProcessed) {
+            long latency = nowMs - session.mSeekStartMs;
+            session.mSeekCount++;
+            session.mSeekMs += latency;
+            session.mMaxSeekMs = Math.max(session.mMaxSeekMs, latency);
+            mSeekLatency.add(latency);
+            (session.mSeekIndexed ? mSeekLatencyIndexed : mSeekLatencyUnindexed).add(latency);
+            session.mSeekStartMs = -1;
+            session.mSeekProcessed = false;
+        }
+    }
+
+    /**
+     * 播放中进入缓冲状态。首帧之前和seek引起的缓冲不算卡顿
+     */
+    public synchronized void onBuffering(long nowMs) {
+        Session session = mCurrentSession;
+        if (session == null || session.mFirstAudioMs < 0 || session.mSeekStartMs >= 0
+                || session.mRebufferStartMs >= 0) {
+            return;
+        }
+        session.mRebufferStartMs = nowMs;
+        session.mRebufferCount++;
+        mTotalRebuffers++;
+    }
+
+    /**
+     * 暂停或停止时，正在进行的卡顿不再计时
+     */
+    public synchronized void onPaused(long nowMs) {
+        Session session = mCurrentSession;
+        if (session != null && session.mRebufferStartMs >= 0) {
+            session.mRebufferMs += nowMs - session.mRebufferStartMs;
+            session.mRebufferStartMs = -1;
+        }
+    }
+
+    public synchronized void onSeekStarted(long nowMs) {
+        Session session = mCurrentSession;
+        if (session == null) {
+            return;
+        }
+        //seek打断了卡顿，卡顿到此为止
+        onPaused(nowMs);
+        //连续seek从第一次开始计时
+        if (session.mSeekStartMs < 0) {
+            session.mSeekStartMs = nowMs;
+        }
+        session.mSeekProcessed = false;
+    }
+
+    /**
+     * 从暂停恢复播放，恢复的级别相同时可以比较耗时。完全释放后恢复会开始新的会话，不影响计时
+     *
+     * @param tier 恢复前所在的暂停级别，见{@link PausePolicy.Tier}
+     */
+    public synchronized void onResumeStarted(long nowMs, String tier) {
+        mResumeStartMs = nowMs;
+        mResumeTier = tier;
+    }
+
+    /**
+     * 恢复还没完成就停止了，不计入恢复耗时
+     */
+    public synchronized void cancelResume() {
+        mResumeStartMs = -1;
+    }
+
+    /**
+     * 当前音乐接下来的seek是否使用了{@link SeekIndex}，在seek之前调用
+     */
+    public synchronized void setSeekIndexed(boolean indexed) {
+        if (mCurrentSession != null) {
+            mCurrentSession.mSeekIndexed = indexed;
+        }
+    }
+
+    public synchronized void onSeekProcessed() {
+        if (mCurrentSession != null && mCurrentSession.mSeekStartMs >= 0) {
+            mCurrentSession.mSeekProcessed = true;
+        }
+    }
+
+    public synchronized void onBytesLoaded(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        mTotalBytesLoaded += bytes;
+        if (mCurrentSession != null) {
+            mCurrentSession.mBytesLoaded += bytes;
+        }
+    }
+
+    /**
+     * 音频输出欠载或者解码丢帧
+     */
+    public synchronized void onDroppedEvent(int count) {
+        mTotalDroppedEvents += count;
+        if (mCurrentSession != null) {
+            mCurrentSession.mDroppedEvents += count;
+        }
+    }
+
+    /**
+     * 之后开始的会话使用的缓冲策略
+     */
+    public synchronized void setBufferProfile(String profile) {
+        mBufferProfile = profile;
+    }
+
+    /**
+     * 播放器缓冲区当前分配的字节数，会话里记录最大值
+     */
+    public synchronized void onBufferAllocated(long bytes) {
+        if (mCurrentSession != null && bytes > mCurrentSession.mPeakBufferBytes) {
+            mCurrentSession.mPeakBufferBytes = bytes;
+        }
+    }
+
+    /**
+     * 进程当前使用的Java堆字节数（Runtime.totalMemory() - freeMemory()），会话里记录最大值。
+     * 包含缓冲区以外的所有对象，同一台设备上比较不同策略时才有意义
+     */
+    public synchronized void onHeapUsed(long bytes) {
+        if (mCurrentSession != null && bytes > mCurrentSession.mPeakHeapBytes) {
+            mCurrentSession.mPeakHeapBytes = bytes;
+        }
+    }
+
+    public synchronized Session getCurrentSession() {
+        return mCurrentSession != null ? mCurrentSession.copy() : null;
+    }
+
+    /**
+     * @return 最近结束的会话，按时间先后排列
+     */
+    public synchronized List<Session> getFinishedSessions() {
+        List<Session> sessions = new ArrayList<>(mFinishedSessions.size());
+        for (Session session : mFinishedSessions) {
+            sessions.add(session.copy());
+        }
+        return sessions;
+    }
+
+    public synchronized Percentiles getTimeToFirstAudio() {
+        return mTimeToFirstAudio.snapshot();
+    }
+
+    /**
+     * @param reusedPlayer true时只统计复用播放器的会话，false时只统计新建播放器的会话
+     */
+    public synchronized Percentiles getTimeToFirstAudio(boolean reusedPlayer) {
+        return (reusedPlayer ? mTimeToFirstAudioReused : mTimeToFirstAudioNewPlayer).snapshot();
+    }
+
+    /**
+     * @param tier 恢复前所在的暂停级别，见{@link #onResumeStarted(long, String)}
+     */
+    public synchronized Percentiles getResumeLatency(String tier) {
+        RollingStats stats = mResumeLatency.get(tier);
+        return stats != null ? stats.snapshot() : RollingStats.EMPTY;
+    }
+
+    /**
+     * @param profile 缓冲策略，见{@link #setBufferProfile(String)}
+     */
+    public synchronized Percentiles getTimeToFirstAudio(String profile) {
+        ProfileStats stats = mProfileStats.get(profile);
+        return stats != null ? stats.mTimeToFirstAudio.snapshot() : RollingStats.EMPTY;
+    }
+
+    /**
+     * @return 使用这个缓冲策略的会话里缓冲区的峰值字节数，会话结束时计入
+     */
+    public synchronized Percentiles getPeakBufferBytes(String profile) {
+        ProfileStats stats = mProfileStats.get(profile);
+        return stats != null ? stats.mPeakBufferBytes.snapshot() : RollingStats.EMPTY;
+    }
+
+    /**
+     * @return 使用这个缓冲策略的会话里Java堆使用量的峰值，会话结束时计入
+     */
+    public synchronized Percentiles getPeakHeapBytes(String profile) {
+        ProfileStats stats = mProfileStats.get(profile);
+        return stats != null ? stats.mPeakHeapBytes.snapshot() : RollingStats.EMPTY;
+    }
+
+    public synchronized Percentiles getRebufferDuration() {
+        return mRebufferDuration.snapshot();
+    }
+
+    public synchronized Percentiles getSeekLatency() {
+        return mSeekLatency.snapshot();
+    }
+
+    /**
+     * @param indexed true时只统计使用了seek索引的seek，false时只统计没有使用的
+     */
+    public synchronized Percentiles getSeekLatency(boolean indexed) {
+        return (indexed ? mSeekLatencyIndexed : mSeekLatencyUnindexed).snapshot();
+    }
+
+    public synchronized long getTotalRebuffers() {
+        return mTotalRebuffers;
+    }
+
+    public synchronized long getTotalBytesLoaded() {
+        return mTotalBytesLoaded;
+    }
+
+    public synchronized long getTotalDroppedEvents() {
+        return mTotalDroppedEvents;
+    }
+
+    /**
+     * 导出为JSON，方便上传或者用adb取出来分析：
+     * {"totals":{...},"ttfaMs":{...},"ttfaReusedPlayerMs":{...},"ttfaNewPlayerMs":{...},
+     * "rebufferMs":{...},"seekMs":{...},"seekIndexedMs":{...},"seekUnindexedMs":{...},
+     * "resumeMs":{"WARM":{...}},
+     * "profiles":{"LOW_MEMORY":{"ttfaMs":{...},"peakBufferBytes":{...},"peakHeapBytes":{...}}},
+     * "current":{...},"sessions":[...]}
+     */
+    public synchronized String dump() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"totals\":{\"sessions\":").append(mTotalSessions)
+                .append(",\"rebuffers\":").append(mTotalRebuffers)
+                .append(",\"bytesLoaded\":").append(mTotalBytesLoaded)
+                .append(",\"droppedEvents\":").append(mTotalDroppedEvents)
+                .append("},\"ttfaMs\":");
+        mTimeToFirstAudio.snapshot().appendJson(sb);
+        sb.append(",\"ttfaReusedPlayerMs\":");
+        mTimeToFirstAudioReused.snapshot().appendJson(sb);
+        sb.append(",\"ttfaNewPlayerMs\":");
+        mTimeToFirstAudioNewPlayer.snapshot().appendJson(sb);
+        sb.append(",\"rebufferMs\":");
+        mRebufferDuration.snapshot().appendJson(sb);
+        sb.append(",\"seekMs\":");
+        mSeekLatency.snapshot().appendJson(sb);
+        sb.append(",\"seekIndexedMs\":");
+        mSeekLatencyIndexed.snapshot().appendJson(sb);
+        sb.append(",\"seekUnindexedMs\":");
+        mSeekLatencyUnindexed.snapshot().appendJson(sb);
+        sb.append(",\"resumeMs\":{");
+        boolean first = true;
+        for (Map.Entry<String, RollingStats> entry : mResumeLatency.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            appendJsonString(sb, String.valueOf(entry.getKey()));
+            sb.append(':');
+            entry.getValue().snapshot().appendJson(sb);
+            first = false;
+        }
+        sb.append("},\"profiles\":{");
+        first = true;
+        for (Map.Entry<String, ProfileStats> entry : mProfileStats.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            appendJsonString(sb, String.valueOf(entry.getKey()));
+            sb.append(":{\"ttfaMs\":");
+            entry.getValue().mTimeToFirstAudio.snapshot().appendJson(sb);
+            sb.append(",\"peakBufferBytes\":");
+            entry.getValue().mPeakBufferBytes.snapshot().appendJson(sb);
+            sb.append(",\"peakHeapBytes\":");
+            entry.getValue().mPeakHeapBytes.snapshot().appendJson(sb);
+            sb.append('}');
+            first = false;
+        }
+        sb.append("},\"current\":");
+        if (mCurrentSession != null) {
+            mCurrentSession.appendJson(sb);
+        } else {
+            sb.append("null");
+        }
+        sb.append(",\"sessions\":[");
+        first = true;
+        for (Session session : mFinishedSessions) {
+            if (!first) {
+                sb.append(',');
+            }
+            session.appendJson(sb);
+            first = false;
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackMetrics{ttfa=" + getTimeToFirstAudio()
+                + ", rebuffer=" + getRebufferDuration()
+                + ", seek=" + getSeekLatency()
+                + ", rebuffers=" + getTotalRebuffers()
+                + ", bytesLoaded=" + getTotalBytesLoaded()
+                + ", droppedEvents=" + getTotalDroppedEvents() + "}";
+    }
+
+    /**
+     * 一首音乐的播放统计
+     */
+    public static class Session {
+        private final String mMediaId;
+        private final long mStartMs;
+        private long mEndMs = -1;
+        private long mFirstAudioMs = -1;
+        private int mRebufferCount;
+        private long mRebufferMs;
+        private long mRebufferStartMs = -1;
+        private int mSeekCount;
+        private long mSeekMs;
+        private long mMaxSeekMs;
+        private long mSeekStartMs = -1;
+        private boolean mSeekProcessed;
+        private long mBytesLoaded;
+        private int mDroppedEvents;
+        private final String mBufferProfile;
+        private long mPeakBufferBytes;
+        private long mPeakHeapBytes;
+        private boolean mReusedPlayer = true;
+        private boolean mSeekIndexed;
+
+        Session(String mediaId, long startMs, String bufferProfile) {
+            this.mMediaId = mediaId;
+            this.mStartMs = startMs;
+            this.mBufferProfile = bufferProfile;
+        }
+
+        public String getMediaId() {
+            return mMediaId;
+        }
+
+        /**
+         * @return 首帧耗时，还没有声音时返回-1；无缝切换没有等待，返回0（不计入首帧耗时的统计）
+         */
+        public long getTimeToFirstAudioMs() {
+            return mFirstAudioMs >= 0 ? mFirstAudioMs - mStartMs : -1;
+        }
+
+        public int getRebufferCount() {
+            return mRebufferCount;
+        }
+
+        public long getRebufferMs() {
+            return mRebufferMs;
+        }
+
+        public int getSeekCount() {
+            return mSeekCount;
+        }
+
+        public long getMaxSeekMs() {
+            return mMaxSeekMs;
+        }
+
+        public long getBytesLoaded() {
+            return mBytesLoaded;
+        }
+
+        public int getDroppedEvents() {
+            return mDroppedEvents;
+        }
+
+        public String getBufferProfile() {
+            return mBufferProfile;
+        }
+
+        public long getPeakBufferBytes() {
+            return mPeakBufferBytes;
+        }
+
+        public long getPeakHeapBytes() {
+            return mPeakHeapBytes;
+        }
+
+        /**
+         * @return 是否复用了已有的播放器
+         */
+        public boolean isReusedPlayer() {
+            return mReusedPlayer;
+        }
+
+        /**
+         * @return 最近一次seek是否使用了seek索引
+         */
+        public boolean isSeekIndexed() {
+            return mSeekIndexed;
+        }
+
+        /**
+         * @return 会话持续时间，还没结束时返回-1
+         */
+        public long getDurationMs() {
+            return mEndMs >= 0 ? mEndMs - mStartMs : -1;
+        }
+
+        Session copy() {
+            Session copy = new Session(mMediaId, mStartMs, mBufferProfile);
+            copy.mEndMs = mEndMs;
+            copy.mFirstAudioMs = mFirstAudioMs;
+            copy.mRebufferCount = mRebufferCount;
+            copy.mRebufferMs = mRebufferMs;
+            copy.mRebufferStartMs = mRebufferStartMs;
+            copy.mSeekCount = mSeekCount;
+            copy.mSeekMs = mSeekMs;
+            copy.mMaxSeekMs = mMaxSeekMs;
+            copy.mSeekStartMs = mSeekStartMs;
+            copy.mSeekProcessed = mSeekProcessed;
+            copy.mBytesLoaded = mBytesLoaded;
+            copy.mDroppedEvents = mDroppedEvents;
+            copy.mPeakBufferBytes = mPeakBufferBytes;
+            copy.mPeakHeapBytes = mPeakHeapBytes;
+            copy.mReusedPlayer = mReusedPlayer;
+            copy.mSeekIndexed = mSeekIndexed;
+            return copy;
+        }
+
+        void appendJson(StringBuilder sb) {
+            sb.append("{\"mediaId\":");
+            appendJsonString(sb, mMediaId);
+            sb.append(",\"durationMs\":").append(getDurationMs())
+                    .append(",\"ttfaMs\":").append(getTimeToFirstAudioMs())
+                    .append(",\"rebuffers\":").append(mRebufferCount)
+                    .append(",\"rebufferMs\":").append(mRebufferMs)
+                    .append(",\"seeks\":").append(mSeekCount)
+                    .append(",\"seekMs\":").append(mSeekMs)
+                    .append(",\"maxSeekMs\":").append(mMaxSeekMs)
+                    .append(",\"seekIndexed\":").append(mSeekIndexed)
+                    .append(",\"bytesLoaded\":").append(mBytesLoaded)
+                    .append(",\"droppedEvents\":").append(mDroppedEvents)
+                    .append(",\"reusedPlayer\":").append(mReusedPlayer)
+                    .append(",\"bufferProfile\":");
+            appendJsonString(sb, mBufferProfile);
+            sb.append(",\"peakBufferBytes\":").append(mPeakBufferBytes)
+                    .append(",\"peakHeapBytes\":").append(mPeakHeapBytes)
+                    .append('}');
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            appendJson(sb);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 滚动窗口内的分位数快照
+     */
+    public static class Percentiles {
+        public final int count;
+        public final long p50;
+        public final long p90;
+        public final long p99;
+        public final long max;
+
+        Percentiles(int count, long p50, long p90, long p99, long max) {
+            this.count = count;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        void appendJson(StringBuilder sb) {
+            sb.append("{\"count\":").append(count)
+                    .append(",\"p50\":").append(p50)
+                    .append(",\"p90\":").append(p90)
+                    .append(",\"p99\":").append(p99)
+                    .append(",\"max\":").append(max)
+                    .append('}');
+        }
+
+        @Override
+        public String toString() {
+            return "{n=" + count + ", p50=" + p50 + ", p90=" + p90 + ", p99=" + p99
+                    + ", max=" + max + "}";
+        }
+    }
+
+    private RollingStats resumeStats(String tier) {
+        RollingStats stats = mResumeLatency.get(tier);
+        if (stats == null) {
+            stats = new RollingStats(mWindowSize);
+            mResumeLatency.put(tier, stats);
+        }
+        return stats;
+    }
+
+    private ProfileStats profileStats(String profile) {
+        ProfileStats stats = mProfileStats.get(profile);
+        if (stats == null) {
+            stats = new ProfileStats(mWindowSize);
+            mProfileStats.put(profile, stats);
+        }
+        return stats;
+    }
+
+    private static class ProfileStats {
+        final RollingStats mTimeToFirstAudio;
+        final RollingStats mPeakBufferBytes;
+        final RollingStats mPeakHeapBytes;
+
+        ProfileStats(int windowSize) {
+            mTimeToFirstAudio = new RollingStats(windowSize);
+            mPeakBufferBytes = new RollingStats(windowSize);
+            mPeakHeapBytes = new RollingStats(windowSize);
+        }
+    }
+
+    //固定大小的环形缓冲，满了以后覆盖最旧的样本
+    private static class RollingStats {
+        static final Percentiles EMPTY = new Percentiles(0, 0, 0, 0, 0);
+
+        private final long[] mSamples;
+        private int mNext;
+        private int mSize;
+
+        RollingStats(int windowSize) {
+            if (windowSize <= 0) {
+                throw new IllegalArgumentException("windowSize must be positive");
+            }
+            mSamples = new long[windowSize];
+        }
+
+        void add(long value) {
+            mSamples[mNext] = value;
+            mNext = (mNext + 1) % mSamples.length;
+            if (mSize < mSamples.length) {
+                mSize++;
+            }
+        }
+
+        Percentiles snapshot() {
+            if (mSize == 0) {
+                return EMPTY;
+            }
+            long[] sorted = Arrays.copyOf(mSamples, mSize);
+            Arrays.sort(sorted);
+            return new Percentiles(mSize, rank(sorted, 50), rank(sorted, 90), rank(sorted, 99),
+                    sorted[mSize - 1]);
+        }
+
+        //nearest-rank分位数
+        private static long rank(long[] sorted, int percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+
+    private static void appendJsonString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,77 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+
+/**
+ * Created by heyzqt on 2019-08-29.
+ * 把ExoPlayer的统计回调转成{@link PlaybackMetrics}事件，时间使用EventTime.realtimeMs
+ */
+public class PlaybackMetricsListener implements AnalyticsListener {
+
+    private final PlaybackMetrics mMetrics;
+
+    public PlaybackMetricsListener(PlaybackMetrics metrics) {
+        this.mMetrics = metrics;
+    }
+
+    @Override
+    public void onPlayerStateChanged(EventTime eventTime, boolean playWhenReady, int playbackState) {
+        switch (playbackState) {
+            case Player.STATE_READY:
+                mMetrics.onReady(eventTime.realtimeMs, playWhenReady);
+                if (!playWhenReady) {
+                    mMetrics.onPaused(eventTime.realtimeMs);
+                }
+                break;
+            case Player.STATE_BUFFERING:
+                if (playWhenReady) {
+                    mMetrics.onBuffering(eventTime.realtimeMs);
+                } else {
+                    mMetrics.onPaused(eventTime.realtimeMs);
+                }
+                break;
+            default:
+                mMetrics.onPaused(eventTime.realtimeMs);
+                break;
+        }
+    }
+
+    @Override
+    public void onSeekStarted(EventTime eventTime) {
+        mMetrics.onSeekStarted(eventTime.realtimeMs);
+    }
+
+    @Override
+    public void onSeekProcessed(EventTime eventTime) {
+        mMetrics.onSeekProcessed();
+    }
+
+    @Override
+    public void onLoadCompleted(EventTime eventTime,
+                                MediaSourceEventListener.LoadEventInfo loadEventInfo,
+                                MediaSourceEventListener.MediaLoadData mediaLoadData) {
+        mMetrics.onBytesLoaded(loadEventInfo.bytesLoaded);
+    }
+
+    @Override
+    public void onLoadCanceled(EventTime eventTime,
+                               MediaSourceEventListener.LoadEventInfo loadEventInfo,
+                               MediaSourceEventListener.MediaLoadData mediaLoadData) {
+        //切歌、seek时取消的加载也已经下载了部分数据
+        mMetrics.onBytesLoaded(loadEventInfo.bytesLoaded);
+    }
+
+    @Override
+    public void onAudioUnderrun(EventTime eventTime, int bufferSize, long bufferSizeMs,
+                                long elapsedSinceLastFeedMs) {
+        //音频输出缓冲被读空，用户会听到爆音或断续
+        mMetrics.onDroppedEvent(1);
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+        mMetrics.onDroppedEvent(droppedFrames);
+    }
+}
@@ -0,0 +1,144 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.audio.AudioAttributes;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import static com.google.android.exoplayer2.C.CONTENT_TYPE_MUSIC;
+import static com.google.android.exoplayer2.C.USAGE_MEDIA;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 空闲播放器池。创建SimpleExoPlayer要建渲染器、播放线程和音频输出，首次播放前提前建好，
+ * 停止后重置放回池里，下一次播放直接取出来用。
+ * 播放器的缓冲策略在创建时确定，取用时策略不一致的空闲播放器直接释放。只能在主线程使用。
+ * 提前建好的效果看{@link PlaybackMetrics#getTimeToFirstAudio(boolean)}：复用和新建播放器的首帧耗时分开统计，
+ * dump()里是"ttfaReusedPlayerMs"和"ttfaNewPlayerMs"
+ */
+class PlayerPool {
+
+    private static final String TAG = LogHelper.makeLogTag(PlayerPool.class);
+
+    //一般同时只有一个播放器在用，留一个空闲的就够了
+    static final int DEFAULT_MAX_IDLE = 1;
+
+    static final class Entry {
+        final SimpleExoPlayer player;
+        //缓冲区分配器，用来统计缓冲区占用的堆
+        final DefaultAllocator allocator;
+        final BufferProfile profile;
+        //长时间暂停时用来停止下载
+        final PausableLoadControl loadControl;
+
+        Entry(SimpleExoPlayer player, DefaultAllocator allocator, BufferProfile profile,
+              PausableLoadControl loadControl) {
+            this.player = player;
+            this.allocator = allocator;
+            this.profile = profile;
+            this.loadControl = loadControl;
+        }
+    }
+
+    private final Context mContext;
+    private final int mMaxIdle;
+    private final ArrayDeque<Entry> mIdle = new ArrayDeque<>();
+
+    PlayerPool(Context context, int maxIdle) {
+        this.mContext = context;
+        this.mMaxIdle = maxIdle;
+    }
+
+    /**
+     * 提前建好一个播放器放进池里，已经有可用的就什么都不做
+     */
+    void warm(BufferProfile profile) {
+        evictOtherThan(profile);
+        if (mIdle.isEmpty() && mMaxIdle > 0) {
+            mIdle.addLast(create(profile));
+            LogHelper.d(TAG, "warmed up a player, profile = ", profile);
+        }
+    }
+
+    /**
+     * @return 池里策略相同的空闲播放器，没有时返回null
+     */
+    Entry acquireIdle(BufferProfile profile) {
+        evictOtherThan(profile);
+        return mIdle.pollFirst();
+    }
+
+    Entry create(BufferProfile profile) {
+        DefaultAllocator allocator = new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+        PausableLoadControl loadControl = new PausableLoadControl(buildLoadControl(profile, allocator));
+        SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(mContext,
+                new DefaultRenderersFactory(mContext), new DefaultTrackSelector(), loadControl);
+        //使用系统对应音频类型的音量控制
+        player.setAudioAttributes(new AudioAttributes.Builder()
+                .setContentType(CONTENT_TYPE_MUSIC)
+                .setUsage(USAGE_MEDIA)
+                .build());
+        return new Entry(player, allocator, profile, loadControl);
+    }
+
+    /**
+     * 重置播放器放回池里，池满了就释放。调用前先移除自己加的监听
+     */
+    void recycle(Entry entry) {
+        if (mIdle.size() >= mMaxIdle) {
+            entry.player.release();
+            return;
+        }
+        //清空播放列表和进度，释放缓冲区，播放器本身和渲染器保留
+        entry.player.stop(true);
+        entry.player.setPlayWhenReady(false);
+        entry.player.setVolume(LocalPlayback.VOLUME_NORMAL);
+        entry.loadControl.setLoadingSuspended(false);
+        mIdle.addLast(entry);
+    }
+
+    /**
+     * 释放所有空闲的播放器
+     */
+    void clear() {
+        while (!mIdle.isEmpty()) {
+            mIdle.pollFirst().player.release();
+        }
+    }
+
+    int getIdleCount() {
+        return mIdle.size();
+    }
+
+    private void evictOtherThan(BufferProfile profile) {
+        Iterator<Entry> it = mIdle.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.profile != profile) {
+                entry.player.release();
+                it.remove();
+            }
+        }
+    }
+
+    private static LoadControl buildLoadControl(BufferProfile profile, DefaultAllocator allocator) {
+        return new DefaultLoadControl.Builder()
+                .setAllocator(allocator)
+                .setBufferDurationsMs(profile.minBufferMs, profile.maxBufferMs,
+                        profile.bufferForPlaybackMs, profile.bufferForPlaybackAfterRebufferMs)
+                .setTargetBufferBytes(profile.targetBufferBytes)
+                .setPrioritizeTimeOverSizeThresholds(profile.prioritizeTimeOverSizeThresholds)
+                .createDefaultLoadControl();
+    }
+}
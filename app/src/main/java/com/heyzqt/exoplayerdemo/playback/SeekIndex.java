@@ -0,0 +1,129 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 一首音乐的seek索引：按时间顺序排列的（时间，字节位置）对，每个位置都是一个音频帧的开头。
+ * seek时找到目标时间之前最近的一项，直接从这个位置开始读，不用估算也不用从头扫描。
+ * 由{@link Mp3SeekIndexBuilder}扫描一遍音频数据生成，通过{@link SeekIndexStore}持久化
+ */
+public class SeekIndex {
+
+    public static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x45584f53;//"EXOS"
+
+    private final long[] mTimesUs;
+    private final long[] mPositions;
+    private final long mDurationUs;
+    private final long mStreamLength;
+
+    /**
+     * @param timesUs      递增的时间，第一项一般是0
+     * @param positions    和时间一一对应的字节位置
+     * @param durationUs   总时长
+     * @param streamLength 生成索引时数据的总字节数，用来判断数据有没有变化
+     */
+    public SeekIndex(long[] timesUs, long[] positions, long durationUs, long streamLength) {
+        if (timesUs.length != positions.length || timesUs.length == 0) {
+            throw new IllegalArgumentException("times and positions must be non-empty and of the same size");
+        }
+        this.mTimesUs = timesUs;
+        this.mPositions = positions;
+        this.mDurationUs = durationUs;
+        this.mStreamLength = streamLength;
+    }
+
+    public int size() {
+        return mTimesUs.length;
+    }
+
+    public long getTimeUs(int index) {
+        return mTimesUs[index];
+    }
+
+    public long getPosition(int index) {
+        return mPositions[index];
+    }
+
+    public long getDurationUs() {
+        return mDurationUs;
+    }
+
+    public long getStreamLength() {
+        return mStreamLength;
+    }
+
+    /**
+     * @return 时间不晚于timeUs的最后一项，timeUs早于第一项时返回0
+     */
+    public int indexOfTime(long timeUs) {
+        int index = Arrays.binarySearch(mTimesUs, timeUs);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return Math.max(0, index);
+    }
+
+    /**
+     * @return 这个位置对应的时间，不是索引里的位置时返回-1
+     */
+    public long getTimeUsAtPosition(long position) {
+        int index = Arrays.binarySearch(mPositions, position);
+        return index >= 0 ? mTimesUs[index] : -1;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(mDurationUs);
+        data.writeLong(mStreamLength);
+        data.writeInt(mTimesUs.length);
+        //都是递增的，存差值
+        long lastTimeUs = 0;
+        long lastPosition = 0;
+        for (int i = 0; i < mTimesUs.length; i++) {
+            data.writeInt((int) (mTimesUs[i] - lastTimeUs));
+            data.writeInt((int) (mPositions[i] - lastPosition));
+            lastTimeUs = mTimesUs[i];
+            lastPosition = mPositions[i];
+        }
+        data.flush();
+    }
+
+    public static SeekIndex readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a seek index of version " + FORMAT_VERSION);
+        }
+        long durationUs = data.readLong();
+        long streamLength = data.readLong();
+        int size = data.readInt();
+        if (size <= 0 || size > streamLength) {
+            throw new IOException("Invalid seek index size " + size);
+        }
+        long[] timesUs = new long[size];
+        long[] positions = new long[size];
+        long timeUs = 0;
+        long position = 0;
+        for (int i = 0; i < size; i++) {
+            timeUs += data.readInt();
+            position += data.readInt();
+            timesUs[i] = timeUs;
+            positions[i] = position;
+        }
+        return new SeekIndex(timesUs, positions, durationUs, streamLength);
+    }
+
+    @Override
+    public String toString() {
+        return "SeekIndex{entries=" + mTimesUs.length + ", durationUs=" + mDurationUs
+                + ", streamLength=" + mStreamLength + "}";
+    }
+}
@@ -0,0 +1,141 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DummyDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadata;
+import com.google.android.exoplayer2.util.Util;
+import com.heyzqt.exoplayerdemo.utils.BandwidthLimiter;
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+import com.heyzqt.exoplayerdemo.utils.Tracer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 音乐完整地在{@link AudioCache}的磁盘缓存里之后，在后台从缓存读一遍，生成{@link SeekIndex}存进{@link SeekIndexStore}。
+ * 只读缓存，不访问网络：还没缓存完的音乐直接跳过，等播放器把它下载完再请求。
+ * 使用单独的线程，不占用提前下载的线程；限速读取，不和播放器抢磁盘IO。
+ * 同一个地址同时只生成一次，已经有索引的直接跳过
+ */
+class SeekIndexLoader {
+
+    private static final String TAG = LogHelper.makeLogTag(SeekIndexLoader.class);
+
+    public static final long DEFAULT_BYTES_PER_SECOND = 4 * 1024 * 1024;
+
+    private final AudioCache mAudioCache;
+    private final SeekIndexStore mStore;
+    private final Executor mExecutor;
+    private final BandwidthLimiter mLimiter;
+    //正在排队或者正在生成的地址
+    private final Set<String> mPending = Collections.synchronizedSet(new HashSet<String>());
+
+    SeekIndexLoader(AudioCache audioCache, SeekIndexStore store, Executor executor) {
+        this.mAudioCache = audioCache;
+        this.mStore = store;
+        this.mExecutor = executor;
+        this.mLimiter = new BandwidthLimiter(DEFAULT_BYTES_PER_SECOND, DEFAULT_BYTES_PER_SECOND);
+    }
+
+    /**
+     * 没有索引并且已经完整缓存时在后台生成，可以在主线程调用，没缓存完时可以之后再次调用
+     */
+    void requestBuild(final Uri uri) {
+        final String source = uri.toString();
+        if (mStore.getIfLoaded(source) != null || !mPending.add(source)) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mStore.get(source) == null && isFullyCached(uri)) {
+                        build(uri);
+                    }
+                } catch (IOException e) {
+                    LogHelper.w(TAG, e, "build seek index failed: ", source);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    mPending.remove(source);
+                }
+            }
+        });
+    }
+
+    //缓存里记录了文件总长度，并且从头到尾都缓存了
+    private boolean isFullyCached(Uri uri) {
+        Cache cache = mAudioCache.getCache();
+        String key = CacheUtil.generateKey(uri);
+        long length = ContentMetadata.getContentLength(cache.getContentMetadata(key));
+        return length != C.LENGTH_UNSET && cache.getCachedLength(key, 0, length) >= length;
+    }
+
+    private void build(Uri uri) throws IOException, InterruptedException {
+        Tracer.Span span = Tracer.begin("seekIndex.build");
+        //上游是DummyDataSource，缓存里没有的数据读取失败而不是去下载；播放器正在写同一段时等它写完
+        DataSource dataSource = new CacheDataSource(mAudioCache.getCache(), DummyDataSource.INSTANCE,
+                CacheDataSource.FLAG_BLOCK_ON_CACHE);
+        try {
+            long length = dataSource.open(new DataSpec(uri, 0, C.LENGTH_UNSET, null));
+            SeekIndex index = Mp3SeekIndexBuilder.build(new LimitedInputStream(dataSource),
+                    Mp3SeekIndexBuilder.DEFAULT_INTERVAL_US, length);
+            if (index == null) {
+                //不是MP3，其他格式的解析器自己有准确的索引
+                span.attr("result", "unsupported");
+                return;
+            }
+            mStore.put(uri.toString(), index);
+            span.attr("entries", index.size());
+            LogHelper.d(TAG, "built ", index, " for ", uri);
+        } catch (InterruptedIOException e) {
+            throw new InterruptedException(e.getMessage());
+        } finally {
+            Util.closeQuietly(dataSource);
+            span.end();
+        }
+    }
+
+    //从数据源读，每次读之前按读到的字节数限速
+    private class LimitedInputStream extends InputStream {
+        private final DataSource mDataSource;
+        private final byte[] mSingle = new byte[1];
+
+        LimitedInputStream(DataSource dataSource) {
+            this.mDataSource = dataSource;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(mSingle, 0, 1) < 0 ? -1 : mSingle[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = mDataSource.read(buffer, offset, length);
+            if (read == C.RESULT_END_OF_INPUT) {
+                return -1;
+            }
+            try {
+                mLimiter.acquire(read);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("seek index build interrupted");
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import com.heyzqt.exoplayerdemo.utils.DiskByteCache;
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 按音乐地址保存{@link SeekIndex}：最近用过的几个放在内存里，全部写到磁盘，重启后继续有效。
+ * 读取出错的文件直接删掉，下次播放时重新生成。线程安全
+ */
+public class SeekIndexStore {
+
+    private static final String TAG = LogHelper.makeLogTag(SeekIndexStore.class);
+
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+    private static final int MEMORY_ENTRIES = 8;
+
+    private final DiskByteCache mDiskCache;
+    private final Map<String, SeekIndex> mMemoryCache =
+            new LinkedHashMap<String, SeekIndex>(MEMORY_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SeekIndex> eldest) {
+                    return size() > MEMORY_ENTRIES;
+                }
+            };
+
+    public SeekIndexStore(File directory, long maxBytes) {
+        mDiskCache = new DiskByteCache(directory, maxBytes);
+    }
+
+    /**
+     * 会读磁盘，不要在主线程上第一次读取
+     *
+     * @param source 音乐的播放地址
+     * @return 没有索引时返回null
+     */
+    public SeekIndex get(String source) {
+        synchronized (mMemoryCache) {
+            SeekIndex index = mMemoryCache.get(source);
+            if (index != null) {
+                return index;
+            }
+        }
+        File file = mDiskCache.get(source);
+        if (file == null) {
+            return null;
+        }
+        SeekIndex index;
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(file));
+            try {
+                index = SeekIndex.readFrom(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LogHelper.w(TAG, e, "drop unreadable seek index of ", source);
+            mDiskCache.remove(source);
+            return null;
+        }
+        synchronized (mMemoryCache) {
+            mMemoryCache.put(source, index);
+        }
+        return index;
+    }
+
+    /**
+     * 只查内存，可以在主线程调用
+     *
+     * @return 内存里没有时返回null
+     */
+    public SeekIndex getIfLoaded(String source) {
+        synchronized (mMemoryCache) {
+            return mMemoryCache.get(source);
+        }
+    }
+
+    public void put(String source, SeekIndex index) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + index.size() * 8);
+        index.writeTo(out);
+        mDiskCache.put(source, new ByteArrayInputStream(out.toByteArray()));
+        synchronized (mMemoryCache) {
+            mMemoryCache.put(source, index);
+        }
+    }
+
+    public void remove(String source) {
+        synchronized (mMemoryCache) {
+            mMemoryCache.remove(source);
+        }
+        mDiskCache.remove(source);
+    }
+}
@@ -0,0 +1,214 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Created by heyzqt on 2019-08-30.
+ * 专辑封面加载：内存LRU（按字节数限制）-> 磁盘缓存 -> 网络。
+ * 很多音乐共用同一张封面，同一个URI同时只下载、解码一次；解码时直接按目标尺寸降采样，
+ * 大图和通知栏小图都从同一次解码得到
+ */
+public class AlbumArtCache {
+
+    private static final String TAG = LogHelper.makeLogTag(AlbumArtCache.class);
+
+    private static final int MAX_ALBUM_ART_CACHE_SIZE = 12 * 1024 * 1024;//内存缓存上限 12M
+    private static final long MAX_DISK_CACHE_SIZE = 32 * 1024 * 1024;//磁盘缓存上限 32M
+    private static final int MAX_ART_WIDTH = 800;//大图最大宽度
+    private static final int MAX_ART_HEIGHT = 480;//大图最大高度
+    private static final int MAX_ART_WIDTH_ICON = 128;//通知栏小图宽度
+    private static final int MAX_ART_HEIGHT_ICON = 128;//通知栏小图高度
+    private static final int LOADER_THREADS = 2;
+    private static final String DISK_CACHE_DIR = "art";
+
+    private static final int BIG_BITMAP_INDEX = 0;
+    private static final int ICON_BITMAP_INDEX = 1;
+
+    private static AlbumArtCache sInstance;
+
+    private final LruCache<String, Bitmap[]> mMemoryCache;
+    private final DiskByteCache mDiskCache;
+    private final CoalescingLoader<String, Bitmap[]> mLoader;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public static synchronized AlbumArtCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AlbumArtCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private AlbumArtCache(Context context) {
+        //不超过应用可用内存的1/8
+        int maxSize = (int) Math.min(MAX_ALBUM_ART_CACHE_SIZE, Runtime.getRuntime().maxMemory() / 8);
+        mMemoryCache = new LruCache<String, Bitmap[]>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap[] value) {
+                Bitmap bigImage = value[BIG_BITMAP_INDEX];
+                Bitmap iconImage = value[ICON_BITMAP_INDEX];
+                //原图不大于小图尺寸时两者是同一个Bitmap，只算一次
+                return bigImage.getAllocationByteCount()
+                        + (iconImage != bigImage ? iconImage.getAllocationByteCount() : 0);
+            }
+        };
+        mDiskCache = new DiskByteCache(new File(context.getCacheDir(), DISK_CACHE_DIR),
+                MAX_DISK_CACHE_SIZE);
+
+        ExecutorService executor = Executors.newFixedThreadPool(LOADER_THREADS);
+        mLoader = new CoalescingLoader<>(executor, new CoalescingLoader.Loader<String, Bitmap[]>() {
+            @Override
+            public Bitmap[] load(String artUrl) throws IOException {
+                //排队期间可能已经被别的请求加载好了
+                Bitmap[] bitmaps = mMemoryCache.get(artUrl);
+                if (bitmaps == null) {
+                    bitmaps = decode(artUrl, fetchToDisk(artUrl));
+                    mMemoryCache.put(artUrl, bitmaps);
+                }
+                return bitmaps;
+            }
+        });
+    }
+
+    /**
+     * @return 内存里的大图，没有时返回null
+     */
+    public Bitmap getBigImage(String artUrl) {
+        Bitmap[] result = mMemoryCache.get(artUrl);
+        return result == null ? null : result[BIG_BITMAP_INDEX];
+    }
+
+    /**
+     * @return 内存里的小图，没有时返回null
+     */
+    public Bitmap getIconImage(String artUrl) {
+        Bitmap[] result = mMemoryCache.get(artUrl);
+        return result == null ? null : result[ICON_BITMAP_INDEX];
+    }
+
+    /**
+     * 加载封面，结果在主线程回调。内存命中时直接回调
+     */
+    public void fetch(final String artUrl, final FetchListener listener) {
+        Bitmap[] bitmap = mMemoryCache.get(artUrl);
+        if (bitmap != null) {
+            LogHelper.d(TAG, "getOrFetch: album art is in memory cache ", artUrl);
+            listener.onFetched(artUrl, bitmap[BIG_BITMAP_INDEX], bitmap[ICON_BITMAP_INDEX]);
+            return;
+        }
+
+        boolean started = mLoader.load(artUrl, new CoalescingLoader.Callback<String, Bitmap[]>() {
+            @Override
+            public void onLoaded(String key, final Bitmap[] bitmaps) {
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onFetched(artUrl, bitmaps[BIG_BITMAP_INDEX],
+                                bitmaps[ICON_BITMAP_INDEX]);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailed(String key, final Exception e) {
+                LogHelper.e(TAG, e, "failed to load album art ", artUrl);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onError(artUrl, e);
+                    }
+                });
+            }
+        });
+        if (!started) {
+            LogHelper.d(TAG, "joined in-flight album art request ", artUrl);
+        }
+    }
+
+    //先查磁盘缓存，没有再下载原图写入磁盘
+    private File fetchToDisk(String artUrl) throws IOException {
+        File file = mDiskCache.get(artUrl);
+        if (file != null) {
+            return file;
+        }
+
+        LogHelper.d(TAG, "downloading album art ", artUrl);
+        HttpURLConnection connection = (HttpURLConnection) new URL(artUrl).openConnection();
+        connection.setConnectTimeout(15000);
+        connection.setReadTimeout(30000);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + connection.getResponseCode() + " for " + artUrl);
+            }
+            InputStream in = connection.getInputStream();
+            try {
+                return mDiskCache.put(artUrl, in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    //按大图尺寸降采样解码一次，小图从大图缩放得到
+    private static Bitmap[] decode(String artUrl, File file) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Could not decode album art " + artUrl);
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                MAX_ART_WIDTH, MAX_ART_HEIGHT);
+        Bitmap decoded = BitmapFactory.decodeFile(file.getPath(), options);
+        if (decoded == null) {
+            throw new IOException("Could not decode album art " + artUrl);
+        }
+
+        Bitmap bigImage = scaleToFit(decoded, MAX_ART_WIDTH, MAX_ART_HEIGHT);
+        Bitmap iconImage = scaleToFit(bigImage, MAX_ART_WIDTH_ICON, MAX_ART_HEIGHT_ICON);
+        return new Bitmap[]{bigImage, iconImage};
+    }
+
+    /**
+     * 不小于目标尺寸的最大2的幂采样率，解码后再精确缩放
+     */
+    static int calculateInSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= maxWidth && height / (inSampleSize * 2) >= maxHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private static Bitmap scaleToFit(Bitmap src, int maxWidth, int maxHeight) {
+        double scaleFactor = Math.min(((double) maxWidth) / src.getWidth(),
+                ((double) maxHeight) / src.getHeight());
+        if (scaleFactor >= 1) {
+            return src;
+        }
+        return Bitmap.createScaledBitmap(src, (int) (src.getWidth() * scaleFactor),
+                (int) (src.getHeight() * scaleFactor), true);
+    }
+
+    public interface FetchListener {
+        void onFetched(String artUrl, Bitmap bigImage, Bitmap iconImage);
+
+        void onError(String artUrl, Exception e);
+    }
+}
@@ -0,0 +1,234 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * {@link LogHelper}的后台写日志线程。调用方把日志记录放进无锁的环形缓冲就返回，
+ * 拼接字符串和写logcat都在后台线程完成。缓冲满了直接丢弃并计数，不会阻塞调用方，
+ * 后台线程追上之后补一条日志说明丢了多少条
+ */
+final class AsyncLogWriter {
+
+    interface Sink {
+        void println(int level, String tag, String message);
+    }
+
+    //后台线程拼接字符串时，可变对象的内容可能已经变了，只有不可变的类型才推迟转换
+    static boolean isImmutable(Object message) {
+        return message == null || message instanceof String || message instanceof Number
+                || message instanceof Boolean || message instanceof Character
+                || message instanceof Enum;
+    }
+
+    private static final String TAG = LogHelper.makeLogTag(AsyncLogWriter.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Entry[] mEntries;
+    private final int mMask;
+    private final Sink mSink;
+
+    //已经被调用方占用的序号
+    private final AtomicLong mClaimed = new AtomicLong();
+    //后台线程已经写完的序号，只有后台线程修改
+    private volatile long mConsumed;
+    private final AtomicLong mDropped = new AtomicLong();
+    private long mReportedDropped;
+
+    private final Thread mThread;
+    private volatile boolean mWaiting;
+
+    /**
+     * @param capacity 环形缓冲的大小，必须是2的幂
+     */
+    AsyncLogWriter(int capacity, Sink sink) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        mEntries = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mEntries[i] = new Entry();
+        }
+        mMask = capacity - 1;
+        mSink = sink;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "LogHelper writer");
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    /**
+     * 最多4段消息放在固定的字段里，更多的放在more里；可变对象在这里就转成字符串
+     *
+     * @return 缓冲满了被丢弃时返回false
+     */
+    boolean log(String tag, int level, Throwable t, int count,
+                Object m0, Object m1, Object m2, Object m3, Object[] more) {
+        long seq;
+        do {
+            seq = mClaimed.get();
+            if (seq - mConsumed >= mEntries.length) {
+                mDropped.incrementAndGet();
+                return false;
+            }
+        } while (!mClaimed.compareAndSet(seq, seq + 1));
+
+        Entry entry = mEntries[(int) (seq & mMask)];
+        entry.mTag = tag;
+        entry.mLevel = level;
+        entry.mThrowable = t;
+        entry.mCount = count;
+        entry.m0 = snapshot(m0);
+        entry.m1 = snapshot(m1);
+        entry.m2 = snapshot(m2);
+        entry.m3 = snapshot(m3);
+        entry.mMore = snapshot(more);
+        //写sequence之后后台线程才能看到这条记录
+        entry.mSequence = seq;
+
+        if (mWaiting) {
+            LockSupport.unpark(mThread);
+        }
+        return true;
+    }
+
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * 等到调用之前放进来的日志都写完
+     *
+     * @return 超时返回false
+     */
+    boolean flush(long timeoutMs) {
+        long target = mClaimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (mConsumed < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(mThread);
+            Thread.yield();
+        }
+        return true;
+    }
+
+    private static Object snapshot(Object message) {
+        return isImmutable(message) ? message : String.valueOf(message);
+    }
+
+    private static Object[] snapshot(Object[] more) {
+        if (more == null) {
+            return null;
+        }
+        Object[] copy = null;
+        for (int i = 0; i < more.length; i++) {
+            if (!isImmutable(more[i])) {
+                if (copy == null) {
+                    copy = more.clone();
+                }
+                copy[i] = String.valueOf(more[i]);
+            }
+        }
+        return copy != null ? copy : more;
+    }
+
+    private void drainLoop() {
+        StringBuilder sb = new StringBuilder(256);
+        while (true) {
+            long seq = mConsumed;
+            Entry entry = mEntries[(int) (seq & mMask)];
+            if (entry.mSequence != seq) {
+                //先声明要睡眠再检查一次，避免错过调用方的unpark
+                mWaiting = true;
+                if (entry.mSequence != seq) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                mWaiting = false;
+                continue;
+            }
+
+            String tag = entry.mTag;
+            int level = entry.mLevel;
+            String message = entry.format(sb);
+            entry.clear();
+            //这个位置可以被下一轮的调用方占用了
+            mConsumed = seq + 1;
+
+            try {
+                mSink.println(level, tag, message);
+            } catch (RuntimeException e) {
+                //写日志失败不能让后台线程退出
+            }
+            long dropped = mDropped.get();
+            if (dropped != mReportedDropped) {
+                mSink.println(Log.WARN, TAG,
+                        "log buffer full, dropped " + (dropped - mReportedDropped) + " records");
+                mReportedDropped = dropped;
+            }
+        }
+    }
+
+    private static class Entry {
+        volatile long mSequence = -1;
+        String mTag;
+        int mLevel;
+        Throwable mThrowable;
+        int mCount;
+        Object m0;
+        Object m1;
+        Object m2;
+        Object m3;
+        Object[] mMore;
+
+        String format(StringBuilder sb) {
+            if (mThrowable == null && mCount == 1) {
+                // handle this common case without the extra cost of creating a stringbuffer:
+                return String.valueOf(m0);
+            }
+            sb.setLength(0);
+            if (mCount > 0) {
+                sb.append(m0);
+            }
+            if (mCount > 1) {
+                sb.append(m1);
+            }
+            if (mCount > 2) {
+                sb.append(m2);
+            }
+            if (mCount > 3) {
+                sb.append(m3);
+            }
+            if (mMore != null) {
+                for (Object m : mMore) {
+                    sb.append(m);
+                }
+            }
+            if (mThrowable != null) {
+                sb.append("\n").append(Log.getStackTraceString(mThrowable));
+            }
+            return sb.toString();
+        }
+
+        void clear() {
+            mTag = null;
+            mThrowable = null;
+            m0 = null;
+            m1 = null;
+            m2 = null;
+            m3 = null;
+            mMore = null;
+        }
+    }
+}
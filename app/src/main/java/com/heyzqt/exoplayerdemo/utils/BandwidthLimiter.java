@@ -0,0 +1,66 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 令牌桶限速，多个下载线程共享同一个速率上限。
+ * 先读后记账：读到多少字节就扣多少令牌，令牌不够时睡眠到还清为止
+ */
+public class BandwidthLimiter {
+
+    private final long mBytesPerSecond;
+    private final long mBurstBytes;
+
+    //当前可用的令牌，可以为负数，表示欠下的字节
+    private long mAvailable;
+    private long mLastRefillNs;
+
+    /**
+     * @param bytesPerSecond 每秒最多多少字节，小于等于0表示不限速
+     * @param burstBytes     空闲之后最多可以一次性用掉的字节数
+     */
+    public BandwidthLimiter(long bytesPerSecond, long burstBytes) {
+        this(bytesPerSecond, burstBytes, System.nanoTime());
+    }
+
+    BandwidthLimiter(long bytesPerSecond, long burstBytes, long nowNs) {
+        this.mBytesPerSecond = bytesPerSecond;
+        this.mBurstBytes = Math.max(0, burstBytes);
+        this.mAvailable = mBurstBytes;
+        this.mLastRefillNs = nowNs;
+    }
+
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * 记下刚刚传输的字节数，超过速率时阻塞
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        long waitNs = reserve(bytes, System.nanoTime());
+        //在锁外睡眠，其他线程可以继续记账，排在后面的会睡得更久
+        if (waitNs > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNs);
+        }
+    }
+
+    /**
+     * 按nowNs时刻补充令牌并扣掉bytes
+     *
+     * @return 需要睡眠多少纳秒才能还清欠下的字节
+     */
+    synchronized long reserve(long bytes, long nowNs) {
+        if (mBytesPerSecond <= 0 || bytes <= 0) {
+            return 0;
+        }
+        long refill = (nowNs - mLastRefillNs) * mBytesPerSecond / TimeUnit.SECONDS.toNanos(1);
+        if (refill > 0) {
+            mAvailable = Math.min(mBurstBytes, mAvailable + refill);
+            mLastRefillNs = nowNs;
+        }
+        mAvailable -= bytes;
+        return mAvailable < 0 ? -mAvailable * TimeUnit.SECONDS.toNanos(1) / mBytesPerSecond : 0;
+    }
+}
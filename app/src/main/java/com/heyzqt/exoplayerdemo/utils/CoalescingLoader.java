@@ -0,0 +1,94 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Created by heyzqt on 2019-08-30.
+ * 合并相同key的并发请求：同一个key同时只加载一次，加载期间到来的请求挂在同一个任务上，
+ * 加载完成后一起回调。回调在执行加载的线程上
+ */
+public class CoalescingLoader<K, V> {
+
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    public interface Callback<K, V> {
+        void onLoaded(K key, V value);
+
+        void onFailed(K key, Exception e);
+    }
+
+    private final Executor mExecutor;
+    private final Loader<K, V> mLoader;
+    private final Map<K, List<Callback<K, V>>> mInFlight = new HashMap<>();
+
+    public CoalescingLoader(Executor executor, Loader<K, V> loader) {
+        this.mExecutor = executor;
+        this.mLoader = loader;
+    }
+
+    /**
+     * @return true表示发起了新的加载，false表示合并到了正在进行的加载上
+     */
+    public boolean load(final K key, Callback<K, V> callback) {
+        synchronized (mInFlight) {
+            List<Callback<K, V>> callbacks = mInFlight.get(key);
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return false;
+            }
+            callbacks = new ArrayList<>(2);
+            callbacks.add(callback);
+            mInFlight.put(key, callbacks);
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                V value = null;
+                Exception error = null;
+                try {
+                    value = mLoader.load(key);
+                } catch (Exception e) {
+                    error = e;
+                }
+
+                List<Callback<K, V>> callbacks;
+                synchronized (mInFlight) {
+                    callbacks = mInFlight.remove(key);
+                }
+                for (Callback<K, V> callback : callbacks) {
+                    if (error != null) {
+                        callback.onFailed(key, error);
+                    } else {
+                        callback.onLoaded(key, value);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 不再关心结果。加载本身不会中断，完成后结果仍然可以被缓存
+     */
+    public void cancel(K key, Callback<K, V> callback) {
+        synchronized (mInFlight) {
+            List<Callback<K, V>> callbacks = mInFlight.get(key);
+            if (callbacks != null) {
+                callbacks.remove(callback);
+            }
+        }
+    }
+
+    public int getInFlightCount() {
+        synchronized (mInFlight) {
+            return mInFlight.size();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Created by heyzqt on 2019-08-30.
+ * 按总字节数限制大小的磁盘缓存，一个key对应一个文件，文件名是key的SHA-1。
+ * 读取时更新文件的修改时间，超出容量时删除最久没有用过的文件
+ */
+public class DiskByteCache {
+
+    private static final String TAG = LogHelper.makeLogTag(DiskByteCache.class);
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private long mSizeBytes = -1;
+
+    public DiskByteCache(File directory, long maxBytes) {
+        this.mDirectory = directory;
+        this.mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @return 缓存的文件，没有时返回null
+     */
+    public synchronized File get(String key) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        //LRU依据修改时间，读一次就刷新
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * 把输入流完整写入缓存，写完之前其他人看不到这个文件
+     *
+     * @return 缓存的文件
+     */
+    public File put(String key, InputStream in) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Could not create " + mDirectory);
+        }
+        File file = fileFor(key);
+        File tmp = File.createTempFile(file.getName(), TMP_SUFFIX, mDirectory);
+        long length = 0;
+        try {
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    length += read;
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        synchronized (this) {
+            long previous = file.isFile() ? file.length() : 0;
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Could not rename " + tmp + " to " + file);
+            }
+            if (mSizeBytes >= 0) {
+                mSizeBytes += length - previous;
+            }
+            trimToSize();
+        }
+        return file;
+    }
+
+    public synchronized void remove(String key) {
+        File file = fileFor(key);
+        long length = file.length();
+        if (file.delete() && mSizeBytes >= 0) {
+            mSizeBytes -= length;
+        }
+    }
+
+    public synchronized long size() {
+        if (mSizeBytes < 0) {
+            mSizeBytes = 0;
+            for (File file : listFiles()) {
+                mSizeBytes += file.length();
+            }
+        }
+        return mSizeBytes;
+    }
+
+    private void trimToSize() {
+        if (size() <= mMaxBytes) {
+            return;
+        }
+        File[] files = listFiles();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (mSizeBytes <= mMaxBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                mSizeBytes -= length;
+                LogHelper.d(TAG, "evicted ", file.getName(), ", size = ", mSizeBytes);
+            }
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        //只算已经写完的文件
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile() && !file.getName().endsWith(TMP_SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, hash(key));
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(key.getBytes(Charset.forName("UTF-8")));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
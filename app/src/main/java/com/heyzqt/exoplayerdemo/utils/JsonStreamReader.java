@@ -0,0 +1,360 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Created by heyzqt on 2019-08-25.
+ * 基于token的JSON流式读取，用法和android.util.JsonReader一致。
+ * 不依赖Android类，解析代码可以直接在JVM上做单元测试和性能测试
+ */
+public class JsonStreamReader implements Closeable {
+
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    //当前所处的嵌套层级
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final Reader mIn;
+    private final char[] mBuffer = new char[8192];
+    private int mPos;
+    private int mLimit;
+
+    private int[] mStack = new int[32];
+    private int mStackSize;
+
+    private Token mPeeked;
+    private final StringBuilder mStringBuilder = new StringBuilder();
+
+    public JsonStreamReader(Reader in) {
+        this.mIn = in;
+        mStack[mStackSize++] = EMPTY_DOCUMENT;
+    }
+
+    public Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+
+        int c;
+        switch (mStack[mStackSize - 1]) {
+            case EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+                return mPeeked = readValueToken(nextNonWhitespace(true));
+            case NONEMPTY_DOCUMENT:
+                return mPeeked = nextNonWhitespace(false) == -1 ? Token.END_DOCUMENT
+                        : syntaxError("Expected end of document");
+            case EMPTY_ARRAY:
+                mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace(true);
+                return mPeeked = c == ']' ? Token.END_ARRAY : readValueToken(c);
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace(true);
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    return syntaxError("Unterminated array");
+                }
+                return mPeeked = readValueToken(nextNonWhitespace(true));
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace(true);
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (mStack[mStackSize - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        return syntaxError("Unterminated object");
+                    }
+                    c = nextNonWhitespace(true);
+                }
+                if (c != '"') {
+                    return syntaxError("Expected name");
+                }
+                mStack[mStackSize - 1] = DANGLING_NAME;
+                return mPeeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace(true) != ':') {
+                    return syntaxError("Expected ':'");
+                }
+                mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+                return mPeeked = readValueToken(nextNonWhitespace(true));
+            default:
+                throw new IllegalStateException("JsonStreamReader is closed");
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    public String nextString() throws IOException {
+        Token token = peek();
+        mPeeked = null;
+        if (token == Token.STRING) {
+            return readString();
+        }
+        if (token == Token.NUMBER) {
+            return readLiteral();
+        }
+        return syntaxError("Expected a string but was " + token);
+    }
+
+    public long nextLong() throws IOException {
+        String value = nextString();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(value);
+            } catch (NumberFormatException e2) {
+                return syntaxError("Expected a number but was " + value);
+            }
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return Boolean.parseBoolean(readLiteral());
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        readLiteral();
+    }
+
+    //跳过当前的值，包括嵌套的数组和对象
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            mPeeked = null;
+            switch (token) {
+                case BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    mStackSize--;
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    skipString();
+                    break;
+                case NUMBER:
+                case BOOLEAN:
+                case NULL:
+                    readLiteral();
+                    break;
+                default:
+                    syntaxError("Unexpected " + token);
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mPeeked = null;
+        mStack[0] = -1;
+        mStackSize = 1;
+        mIn.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            mStack = Arrays.copyOf(mStack, mStackSize * 2);
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    private Token readValueToken(int c) throws IOException {
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                mPos--;
+                return Token.BOOLEAN;
+            case 'n':
+                mPos--;
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    mPos--;
+                    return Token.NUMBER;
+                }
+                return syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+        while (mPos < mLimit || fillBuffer()) {
+            char c = mBuffer[mPos++];
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+                return c;
+            }
+        }
+        if (throwOnEof) {
+            syntaxError("Unexpected end of input");
+        }
+        return -1;
+    }
+
+    //读取引号之后直到结束引号之间的内容
+    private String readString() throws IOException {
+        StringBuilder sb = mStringBuilder;
+        sb.setLength(0);
+        while (true) {
+            int start = mPos;
+            while (mPos < mLimit) {
+                char c = mBuffer[mPos++];
+                if (c == '"') {
+                    sb.append(mBuffer, start, mPos - start - 1);
+                    return sb.toString();
+                } else if (c == '\\') {
+                    sb.append(mBuffer, start, mPos - start - 1);
+                    sb.append(readEscapeCharacter());
+                    start = mPos;
+                }
+            }
+            sb.append(mBuffer, start, mPos - start);
+            if (!fillBuffer()) {
+                syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (mPos < mLimit || fillBuffer()) {
+            char c = mBuffer[mPos++];
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscapeCharacter();
+            }
+        }
+        syntaxError("Unterminated string");
+    }
+
+    private char readEscapeCharacter() throws IOException {
+        if (mPos == mLimit && !fillBuffer()) {
+            syntaxError("Unterminated escape sequence");
+        }
+        char escaped = mBuffer[mPos++];
+        switch (escaped) {
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    if (mPos == mLimit && !fillBuffer()) {
+                        syntaxError("Unterminated escape sequence");
+                    }
+                    int digit = Character.digit(mBuffer[mPos++], 16);
+                    if (digit < 0) {
+                        syntaxError("Malformed unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                //包括 " \ /
+                return escaped;
+        }
+    }
+
+    //读取数字、true/false/null这些没有引号的值
+    private String readLiteral() throws IOException {
+        StringBuilder sb = mStringBuilder;
+        sb.setLength(0);
+        while (mPos < mLimit || fillBuffer()) {
+            char c = mBuffer[mPos];
+            if (c == ',' || c == '}' || c == ']' || c == ':'
+                    || c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+                break;
+            }
+            sb.append(c);
+            mPos++;
+        }
+        return sb.toString();
+    }
+
+    private boolean fillBuffer() throws IOException {
+        int read = mIn.read(mBuffer, 0, mBuffer.length);
+        if (read <= 0) {
+            mPos = mLimit = 0;
+            return false;
+        }
+        mPos = 0;
+        mLimit = read;
+        return true;
+    }
+
+    private <T> T syntaxError(String message) throws IOException {
+        throw new IOException(message);
+    }
+}
@@ -4,8 +4,13 @@ import android.util.Log;
 
 import com.heyzqt.exoplayerdemo.BuildConfig;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Created by heyzqt on 2019-08-18.
+ * 日志先检查级别再处理：每个tag的Log.isLoggable结果缓存起来，级别关闭时调用几乎没有开销。
+ * 打开时记录交给后台线程拼接和写入，调用方不等待；少于等于4段的消息有固定参数的重载，不分配varargs数组。
+ * 消息分段传入（LogHelper.d(TAG, "uri = ", uri)），不要在调用前自己拼接字符串
  */
 public class LogHelper {
 
@@ -13,6 +18,12 @@ public class LogHelper {
     private static final int LOG_PREFIX_LENGTH = LOG_PREFIX.length();
     private static final int MAX_LOG_TAG_LENGTH = 23;
 
+    private static final int WRITER_CAPACITY = 1024;
+
+    //每个tag开启的最低级别
+    private static final ConcurrentHashMap<String, Integer> sMinLevels = new ConcurrentHashMap<>();
+    private static volatile AsyncLogWriter sWriter;
+
     public static String makeLogTag(String str) {
         if (str.length() > MAX_LOG_TAG_LENGTH - LOG_PREFIX_LENGTH) {
             return LOG_PREFIX + str.substring(0, MAX_LOG_TAG_LENGTH - LOG_PREFIX_LENGTH - 1);
@@ -28,21 +39,108 @@ public class LogHelper {
         return makeLogTag(cls.getSimpleName());
     }
 
+    /**
+     * 和Log.isLoggable相同，但是每个tag只查询一次系统属性。
+     * 拼接消息本身开销很大时，先用这个判断
+     */
+    public static boolean isLoggable(String tag, int level) {
+        Integer minLevel = sMinLevels.get(tag);
+        if (minLevel == null) {
+            minLevel = Log.ASSERT;
+            for (int l = Log.VERBOSE; l < Log.ASSERT; l++) {
+                if (Log.isLoggable(tag, l)) {
+                    minLevel = l;
+                    break;
+                }
+            }
+            sMinLevels.put(tag, minLevel);
+        }
+        return level >= minLevel;
+    }
+
+    /**
+     * 通过adb shell setprop log.tag.XXX修改了日志级别后调用，重新查询
+     */
+    public static void refreshLoggable() {
+        sMinLevels.clear();
+    }
 
-    public static void v(String tag, Object... messages) {
+    /**
+     * @return 后台线程来不及写而丢弃的日志条数
+     */
+    public static long getDroppedCount() {
+        AsyncLogWriter writer = sWriter;
+        return writer != null ? writer.getDroppedCount() : 0;
+    }
+
+    /**
+     * 等待已经记录的日志写完，比如崩溃之前
+     */
+    public static void flush() {
+        AsyncLogWriter writer = sWriter;
+        if (writer != null) {
+            writer.flush(1000);
+        }
+    }
+
+    public static void v(String tag, Object m0) {
         // Only log VERBOSE if build type is DEBUG
+        if (BuildConfig.DEBUG) {
+            log(tag, Log.VERBOSE, 1, m0, null, null, null);
+        }
+    }
+
+    public static void v(String tag, Object m0, Object m1) {
+        if (BuildConfig.DEBUG) {
+            log(tag, Log.VERBOSE, 2, m0, m1, null, null);
+        }
+    }
+
+    public static void v(String tag, Object... messages) {
         if (BuildConfig.DEBUG) {
             log(tag, Log.VERBOSE, null, messages);
         }
     }
 
-    public static void d(String tag, Object... messages) {
+    public static void d(String tag, Object m0) {
         // Only log DEBUG if build type is DEBUG
+        if (BuildConfig.DEBUG) {
+            log(tag, Log.DEBUG, 1, m0, null, null, null);
+        }
+    }
+
+    public static void d(String tag, Object m0, Object m1) {
+        if (BuildConfig.DEBUG) {
+            log(tag, Log.DEBUG, 2, m0, m1, null, null);
+        }
+    }
+
+    public static void d(String tag, Object m0, Object m1, Object m2) {
+        if (BuildConfig.DEBUG) {
+            log(tag, Log.DEBUG, 3, m0, m1, m2, null);
+        }
+    }
+
+    public static void d(String tag, Object m0, Object m1, Object m2, Object m3) {
+        if (BuildConfig.DEBUG) {
+            log(tag, Log.DEBUG, 4, m0, m1, m2, m3);
+        }
+    }
+
+    public static void d(String tag, Object... messages) {
         if (BuildConfig.DEBUG) {
             log(tag, Log.DEBUG, null, messages);
         }
     }
 
+    public static void i(String tag, Object m0) {
+        log(tag, Log.INFO, 1, m0, null, null, null);
+    }
+
+    public static void i(String tag, Object m0, Object m1) {
+        log(tag, Log.INFO, 2, m0, m1, null, null);
+    }
+
     public static void i(String tag, Object... messages) {
         log(tag, Log.INFO, null, messages);
     }
@@ -64,22 +162,34 @@ public class LogHelper {
     }
 
     public static void log(String tag, int level, Throwable t, Object... messages) {
-        if (Log.isLoggable(tag, level)) {
-            String message;
-            if (t == null && messages != null && messages.length == 1) {
-                // handle this common case without the extra cost of creating a stringbuffer:
-                message = messages[0].toString();
-            } else {
-                StringBuilder sb = new StringBuilder();
-                if (messages != null) for (Object m : messages) {
-                    sb.append(m);
-                }
-                if (t != null) {
-                    sb.append("\n").append(Log.getStackTraceString(t));
+        if (isLoggable(tag, level)) {
+            int count = messages != null ? messages.length : 0;
+            writer().log(tag, level, t, 0, null, null, null, null, count > 0 ? messages : null);
+        }
+    }
+
+    private static void log(String tag, int level, int count, Object m0, Object m1, Object m2, Object m3) {
+        if (isLoggable(tag, level)) {
+            writer().log(tag, level, null, count, m0, m1, m2, m3, null);
+        }
+    }
+
+    private static AsyncLogWriter writer() {
+        AsyncLogWriter writer = sWriter;
+        if (writer == null) {
+            synchronized (LogHelper.class) {
+                writer = sWriter;
+                if (writer == null) {
+                    writer = new AsyncLogWriter(WRITER_CAPACITY, new AsyncLogWriter.Sink() {
+                        @Override
+                        public void println(int level, String tag, String message) {
+                            Log.println(level, tag, message);
+                        }
+                    });
+                    sWriter = writer;
                 }
-                message = sb.toString();
             }
-            Log.println(level, tag, message);
         }
+        return writer;
     }
 }
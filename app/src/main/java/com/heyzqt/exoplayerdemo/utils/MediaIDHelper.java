@@ -19,12 +19,9 @@ package com.heyzqt.exoplayerdemo.utils;
 import android.app.Activity;
 import android.support.v4.media.MediaBrowserCompat;
 import android.support.v4.media.session.MediaControllerCompat;
-import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 
-import java.util.Arrays;
-
 /**
  * Utility class to help on queue related tasks.
  */
@@ -34,10 +31,12 @@ public class MediaIDHelper {
     public static final String MEDIA_ID_EMPTY_ROOT = "__EMPTY_ROOT__";
     public static final String MEDIA_ID_ROOT = "__ROOT__";
     public static final String MEDIA_ID_MUSICS_BY_GENRE = "__BY_GENRE__";
+    public static final String MEDIA_ID_MUSICS_BY_ARTIST = "__BY_ARTIST__";
+    public static final String MEDIA_ID_MUSICS_BY_ALBUM = "__BY_ALBUM__";
     public static final String MEDIA_ID_MUSICS_BY_SEARCH = "__BY_SEARCH__";
 
-    private static final char CATEGORY_SEPARATOR = '/';
-    private static final char LEAF_SEPARATOR = '|';
+    static final char CATEGORY_SEPARATOR = '/';
+    static final char LEAF_SEPARATOR = '|';
 
     /**
      * Create a String value that represents a playable or a browsable media.
@@ -56,12 +55,19 @@ public class MediaIDHelper {
      * @return a hierarchy-aware media ID
      */
     public static String createMediaID(String musicID, String... categories) {
-        StringBuilder sb = new StringBuilder();
+        //先算出长度，StringBuilder不需要扩容
+        int length = musicID != null ? musicID.length() + 1 : 0;
         if (categories != null) {
             for (int i = 0; i < categories.length; i++) {
                 if (!isValidCategory(categories[i])) {
                     throw new IllegalArgumentException("Invalid category: " + categories[i]);
                 }
+                length += (categories[i] != null ? categories[i].length() : 4) + (i > 0 ? 1 : 0);
+            }
+        }
+        StringBuilder sb = new StringBuilder(length);
+        if (categories != null) {
+            for (int i = 0; i < categories.length; i++) {
                 sb.append(categories[i]);
                 if (i < categories.length - 1) {
                     sb.append(CATEGORY_SEPARATOR);
@@ -74,6 +80,42 @@ public class MediaIDHelper {
         return sb.toString();
     }
 
+    /**
+     * 一层分类的常用情况，不创建可变参数数组
+     */
+    public static String createMediaID(String musicID, String category) {
+        if (!isValidCategory(category)) {
+            throw new IllegalArgumentException("Invalid category: " + category);
+        }
+        String first = String.valueOf(category);
+        if (musicID == null) {
+            return first;
+        }
+        return new StringBuilder(first.length() + musicID.length() + 1)
+                .append(first).append(LEAF_SEPARATOR).append(musicID).toString();
+    }
+
+    /**
+     * 两层分类的常用情况，比如"__BY_GENRE__/Jazz|musicId"，不创建可变参数数组
+     */
+    public static String createMediaID(String musicID, String category, String categoryValue) {
+        if (!isValidCategory(category)) {
+            throw new IllegalArgumentException("Invalid category: " + category);
+        }
+        if (!isValidCategory(categoryValue)) {
+            throw new IllegalArgumentException("Invalid category: " + categoryValue);
+        }
+        String first = String.valueOf(category);
+        String second = String.valueOf(categoryValue);
+        StringBuilder sb = new StringBuilder(first.length() + second.length() + 1
+                + (musicID != null ? musicID.length() + 1 : 0));
+        sb.append(first).append(CATEGORY_SEPARATOR).append(second);
+        if (musicID != null) {
+            sb.append(LEAF_SEPARATOR).append(musicID);
+        }
+        return sb.toString();
+    }
+
     private static boolean isValidCategory(String category) {
         return category == null ||
                 (
@@ -92,11 +134,7 @@ public class MediaIDHelper {
      * @return musicID
      */
     public static String extractMusicIDFromMediaID(@NonNull String mediaID) {
-        int pos = mediaID.indexOf(LEAF_SEPARATOR);
-        if (pos >= 0) {
-            return mediaID.substring(pos + 1);
-        }
-        return null;
+        return MediaId.of(mediaID).getMusicId();
     }
 
     /**
@@ -108,19 +146,11 @@ public class MediaIDHelper {
      * @param mediaID that contains a category and categoryValue.
      */
     public static @NonNull String[] getHierarchy(@NonNull String mediaID) {
-        int pos = mediaID.indexOf(LEAF_SEPARATOR);
-        if (pos >= 0) {
-            mediaID = mediaID.substring(0, pos);
-        }
-        return mediaID.split(String.valueOf(CATEGORY_SEPARATOR));
+        return MediaId.of(mediaID).getHierarchy();
     }
 
     public static String extractBrowseCategoryValueFromMediaID(@NonNull String mediaID) {
-        String[] hierarchy = getHierarchy(mediaID);
-        if (hierarchy.length == 2) {
-            return hierarchy[1];
-        }
-        return null;
+        return MediaId.of(mediaID).getBrowseCategoryValue();
     }
 
     public static boolean isBrowseable(@NonNull String mediaID) {
@@ -128,15 +158,7 @@ public class MediaIDHelper {
     }
 
     public static String getParentMediaID(@NonNull String mediaID) {
-        String[] hierarchy = getHierarchy(mediaID);
-        if (!isBrowseable(mediaID)) {
-            return createMediaID(null, hierarchy);
-        }
-        if (hierarchy.length <= 1) {
-            return MEDIA_ID_ROOT;
-        }
-        String[] parentHierarchy = Arrays.copyOf(hierarchy, hierarchy.length - 1);
-        return createMediaID(null, parentHierarchy);
+        return MediaId.of(mediaID).getParentMediaId();
     }
 
     /**
@@ -153,10 +175,8 @@ public class MediaIDHelper {
         if (controller != null && controller.getMetadata() != null) {
             String currentPlayingMediaId = controller.getMetadata().getDescription()
                     .getMediaId();
-            String itemMusicId = MediaIDHelper.extractMusicIDFromMediaID(
-                    mediaItem.getDescription().getMediaId());
-            if (currentPlayingMediaId != null
-                    && TextUtils.equals(currentPlayingMediaId, itemMusicId)) {
+            if (currentPlayingMediaId != null && MediaId.of(mediaItem.getDescription().getMediaId())
+                    .musicIdEquals(currentPlayingMediaId)) {
                 return true;
             }
         }
@@ -0,0 +1,184 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import java.util.Arrays;
+
+/**
+ * Created by heyzqt on 2019-08-31.
+ * 解析后的mediaId，格式见{@link MediaIDHelper#createMediaID(String, String...)}。
+ * 不可变，解析结果（分类、音乐id、父节点）在第一次访问时计算并保存，之后的访问不再分配内存。
+ * 常用的mediaId通过{@link #of(String)}放在一个固定大小的缓存里，浏览时重复使用
+ */
+public final class MediaId {
+
+    private static final String[] NO_CATEGORIES = new String[0];
+
+    //直接映射的缓存，冲突时直接覆盖；元素是不可变对象，多线程读写不需要加锁
+    private static final int CACHE_SIZE = 512;
+    private static final MediaId[] sCache = new MediaId[CACHE_SIZE];
+
+    private final String mValue;
+    private final int mLeafPos;
+    private final String[] mCategories;
+    private String mMusicId;
+    private String mParent;
+
+    private MediaId(String value) {
+        this.mValue = value;
+        this.mLeafPos = value.indexOf(MediaIDHelper.LEAF_SEPARATOR);
+        this.mCategories = parseCategories(value, mLeafPos >= 0 ? mLeafPos : value.length());
+    }
+
+    /**
+     * 解析mediaId，命中缓存时不分配内存
+     */
+    public static MediaId of(String mediaId) {
+        int slot = (mediaId.hashCode() & 0x7fffffff) % CACHE_SIZE;
+        MediaId cached = sCache[slot];
+        if (cached != null && cached.mValue.equals(mediaId)) {
+            return cached;
+        }
+        MediaId parsed = new MediaId(mediaId);
+        sCache[slot] = parsed;
+        return parsed;
+    }
+
+    /**
+     * 按分类和音乐id生成mediaId，结果直接放入缓存
+     */
+    public static MediaId create(String musicId, String... categories) {
+        return of(MediaIDHelper.createMediaID(musicId, categories));
+    }
+
+    /**
+     * 和String.split一样的规则拆分分类：没有分隔符时是整个字符串，否则去掉末尾的空字符串
+     */
+    private static String[] parseCategories(String value, int end) {
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (value.charAt(i) == MediaIDHelper.CATEGORY_SEPARATOR) {
+                count++;
+            }
+        }
+        if (count == 1) {
+            return new String[]{end == value.length() ? value : value.substring(0, end)};
+        }
+
+        String[] categories = new String[count];
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i <= end; i++) {
+            if (i == end || value.charAt(i) == MediaIDHelper.CATEGORY_SEPARATOR) {
+                categories[index++] = value.substring(start, i);
+                start = i + 1;
+            }
+        }
+        int length = count;
+        while (length > 0 && categories[length - 1].isEmpty()) {
+            length--;
+        }
+        if (length == 0) {
+            return NO_CATEGORIES;
+        }
+        return length == count ? categories : Arrays.copyOf(categories, length);
+    }
+
+    @Override
+    public String toString() {
+        return mValue;
+    }
+
+    public boolean isBrowseable() {
+        return mLeafPos < 0;
+    }
+
+    public int getCategoryCount() {
+        return mCategories.length;
+    }
+
+    public String getCategory(int index) {
+        return mCategories[index];
+    }
+
+    /**
+     * @return 分类层级的副本，可以修改
+     */
+    public String[] getHierarchy() {
+        return mCategories.clone();
+    }
+
+    /**
+     * 比较第index层分类，不创建子串
+     */
+    public boolean categoryEquals(int index, String category) {
+        return index < mCategories.length && mCategories[index].equals(category);
+    }
+
+    /**
+     * @return 第二层分类的值，比如流派名称；层级不是两层时返回null
+     */
+    public String getBrowseCategoryValue() {
+        return mCategories.length == 2 ? mCategories[1] : null;
+    }
+
+    /**
+     * @return 音乐id，可浏览的节点返回null
+     */
+    public String getMusicId() {
+        if (mLeafPos < 0) {
+            return null;
+        }
+        String musicId = mMusicId;
+        if (musicId == null) {
+            musicId = mValue.substring(mLeafPos + 1);
+            mMusicId = musicId;
+        }
+        return musicId;
+    }
+
+    /**
+     * 比较音乐id，不创建子串
+     */
+    public boolean musicIdEquals(String musicId) {
+        return mLeafPos >= 0 && musicId != null
+                && mValue.length() - mLeafPos - 1 == musicId.length()
+                && mValue.regionMatches(mLeafPos + 1, musicId, 0, musicId.length());
+    }
+
+    public String getParentMediaId() {
+        String parent = mParent;
+        if (parent == null) {
+            if (!isBrowseable()) {
+                parent = join(mCategories.length);
+            } else if (mCategories.length <= 1) {
+                parent = MediaIDHelper.MEDIA_ID_ROOT;
+            } else {
+                parent = join(mCategories.length - 1);
+            }
+            mParent = parent;
+        }
+        return parent;
+    }
+
+    public MediaId getParent() {
+        return of(getParentMediaId());
+    }
+
+    //分类是原字符串里从头开始连续的几段，前count层分类拼起来就是原字符串的前缀
+    private String join(int count) {
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += mCategories[i].length() + (i > 0 ? 1 : 0);
+        }
+        return length == mValue.length() ? mValue : mValue.substring(0, length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof MediaId && mValue.equals(((MediaId) o).mValue));
+    }
+
+    @Override
+    public int hashCode() {
+        return mValue.hashCode();
+    }
+}
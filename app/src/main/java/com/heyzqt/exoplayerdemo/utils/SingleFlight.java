@@ -0,0 +1,294 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Created by heyzqt on 2019-09-02.
+ * 同一时间最多只执行一次的后台任务：任务执行期间的所有调用共享这一次执行的进度和结果，
+ * 执行结束后再调用才会重新执行。支持超时，所有调用方都取消后中断任务，回调在指定的Executor上执行。
+ * 阻塞在网络读取上的任务不响应中断，可以通过{@link ProgressSink#setCancelAction(Runnable)}在取消时关闭连接
+ */
+public class SingleFlight<P, R> {
+
+    public interface Task<P, R> {
+        /**
+         * 在后台线程执行，需要响应线程中断
+         */
+        R run(ProgressSink<P> progress) throws Exception;
+    }
+
+    public interface ProgressSink<P> {
+        void publish(P progress);
+
+        /**
+         * 这一次执行超时或者被所有调用方取消时，在中断线程之后执行action，比如关闭正在阻塞读取的连接。
+         * 已经取消时立即执行；只对这一次执行有效，传null清除
+         */
+        void setCancelAction(Runnable action);
+    }
+
+    public interface Listener<P, R> {
+        void onProgress(P progress);
+
+        void onResult(R result);
+
+        /**
+         * @param e 任务抛出的异常，超时时是{@link TimeoutException}
+         */
+        void onError(Exception e);
+    }
+
+    public interface Handle {
+        /**
+         * 不再接收回调；所有调用方都取消时中断正在执行的任务
+         */
+        void cancel();
+    }
+
+    private final ExecutorService mExecutor;
+    private final ScheduledExecutorService mTimer;
+    private final Task<P, R> mTask;
+    private volatile Executor mCallbackExecutor;
+    private volatile long mTimeoutMs;
+
+    private Flight mFlight;
+
+    /**
+     * @param executor         执行任务
+     * @param timer            超时计时，和executor分开，任务卡住时超时仍然能触发
+     * @param callbackExecutor 回调执行的线程
+     */
+    public SingleFlight(ExecutorService executor, ScheduledExecutorService timer,
+                        Executor callbackExecutor, Task<P, R> task) {
+        this.mExecutor = executor;
+        this.mTimer = timer;
+        this.mCallbackExecutor = callbackExecutor;
+        this.mTask = task;
+    }
+
+    public void setCallbackExecutor(Executor callbackExecutor) {
+        this.mCallbackExecutor = callbackExecutor;
+    }
+
+    public Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    /**
+     * @param timeoutMs 小于等于0表示不限时
+     */
+    public void setTimeout(long timeoutMs) {
+        this.mTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * 有任务正在执行时加入它，否则开始新的执行。加入时会先收到最近一次的进度
+     */
+    public synchronized Handle execute(Listener<P, R> listener) {
+        Flight flight = mFlight;
+        boolean start = flight == null;
+        if (start) {
+            flight = new Flight();
+            mFlight = flight;
+        }
+        Subscription subscription = flight.add(listener);
+        if (start) {
+            flight.start();
+        }
+        return subscription;
+    }
+
+    public synchronized boolean isRunning() {
+        return mFlight != null;
+    }
+
+    private final class Flight implements Runnable, ProgressSink<P> {
+        private final List<Subscription> mSubscriptions = new ArrayList<>(2);
+        private P mLastProgress;
+        private boolean mHasProgress;
+        private boolean mFinished;
+        //超时或者被取消，不是任务自己结束
+        private boolean mAborted;
+        private Runnable mCancelAction;
+        private Future<?> mFuture;
+        private Future<?> mTimeout;
+
+        //以下方法都在SingleFlight的锁内调用
+        Subscription add(Listener<P, R> listener) {
+            Subscription subscription = new Subscription(this, listener);
+            mSubscriptions.add(subscription);
+            if (mHasProgress) {
+                deliverProgress(subscription, mLastProgress);
+            }
+            return subscription;
+        }
+
+        void start() {
+            mFuture = mExecutor.submit(this);
+            final long timeoutMs = mTimeoutMs;
+            if (timeoutMs > 0) {
+                mTimeout = mTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(null, new TimeoutException("Timed out after " + timeoutMs + " ms"));
+                    }
+                }, timeoutMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * @return 需要在锁外执行的取消动作，没有时返回null
+         */
+        Runnable remove(Subscription subscription) {
+            mSubscriptions.remove(subscription);
+            if (mSubscriptions.isEmpty() && !mFinished) {
+                //没有人关心结果了，中断任务
+                mFinished = true;
+                if (mFlight == this) {
+                    mFlight = null;
+                }
+                if (mTimeout != null) {
+                    mTimeout.cancel(false);
+                }
+                return abort();
+            }
+            return null;
+        }
+
+        private Runnable abort() {
+            mAborted = true;
+            if (mFuture != null) {
+                mFuture.cancel(true);
+            }
+            Runnable action = mCancelAction;
+            mCancelAction = null;
+            return action;
+        }
+
+        @Override
+        public void run() {
+            R result = null;
+            Exception error = null;
+            try {
+                result = mTask.run(this);
+            } catch (Exception e) {
+                error = e;
+            }
+            finish(result, error);
+        }
+
+        @Override
+        public void setCancelAction(Runnable action) {
+            synchronized (SingleFlight.this) {
+                if (!mAborted) {
+                    mCancelAction = action;
+                    return;
+                }
+            }
+            if (action != null) {
+                action.run();
+            }
+        }
+
+        @Override
+        public void publish(P progress) {
+            synchronized (SingleFlight.this) {
+                if (mFinished) {
+                    return;
+                }
+                mLastProgress = progress;
+                mHasProgress = true;
+                for (Subscription subscription : mSubscriptions) {
+                    deliverProgress(subscription, progress);
+                }
+            }
+        }
+
+        private void finish(final R result, final Exception error) {
+            List<Subscription> subscriptions;
+            Runnable cancelAction = null;
+            synchronized (SingleFlight.this) {
+                if (mFinished) {
+                    return;
+                }
+                mFinished = true;
+                //先摘下来，回调里再调用execute会开始新的执行
+                if (mFlight == this) {
+                    mFlight = null;
+                }
+                if (mTimeout != null) {
+                    mTimeout.cancel(false);
+                }
+                if (error instanceof TimeoutException) {
+                    cancelAction = abort();
+                } else {
+                    mCancelAction = null;
+                }
+                subscriptions = new ArrayList<>(mSubscriptions);
+            }
+            if (cancelAction != null) {
+                cancelAction.run();
+            }
+            for (final Subscription subscription : subscriptions) {
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (subscription.mCancelled) {
+                            return;
+                        }
+                        if (error != null) {
+                            subscription.mListener.onError(error);
+                        } else {
+                            subscription.mListener.onResult(result);
+                        }
+                    }
+                });
+            }
+        }
+
+        private void deliverProgress(final Subscription subscription, final P progress) {
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!subscription.mCancelled) {
+                        subscription.mListener.onProgress(progress);
+                    }
+                }
+            });
+        }
+    }
+
+    private final class Subscription implements Handle {
+        final Flight mOwner;
+        final Listener<P, R> mListener;
+        volatile boolean mCancelled;
+
+        Subscription(Flight owner, Listener<P, R> listener) {
+            this.mOwner = owner;
+            this.mListener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            Runnable cancelAction;
+            synchronized (SingleFlight.this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+                cancelAction = mOwner.remove(this);
+            }
+            //取消动作可能要关闭网络连接，不在锁内执行
+            if (cancelAction != null) {
+                cancelAction.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Created by heyzqt on 2019-09-05.
+ * 轻量的耗时追踪：记录带属性的计时区间（span），结束的span放进内存里的环形缓冲，
+ * 可以导出成Chrome Trace Event格式的JSON，用chrome://tracing或者Perfetto打开，看冷启动和开始播放的时间线。
+ * 同一个线程上的span按时间自动嵌套；开始和结束不在同一段代码里的（比如从play到第一次STATE_READY）
+ * 用{@link #beginAsync(String)}，在时间线上单独显示一行。
+ * 关闭时begin返回一个什么都不做的共享对象，只多一次volatile读，不分配
+ * <pre>
+ * Tracer.Span span = Tracer.begin("catalog.build");
+ * try {
+ *     ...
+ * } finally {
+ *     span.attr("count", count).end();
+ * }
+ * </pre>
+ */
+public final class Tracer {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_ATTRS = 4;
+
+    private static volatile boolean sEnabled;
+    private static volatile Ring sRing = new Ring(DEFAULT_CAPACITY);
+    private static final AtomicLong sNextAsyncId = new AtomicLong();
+
+    private static final Span NOOP = new Span(null, false) {
+        @Override
+        public Span attr(String key, Object value) {
+            return this;
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    private Tracer() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 修改环形缓冲的大小，已经记录的span会被清空
+     *
+     * @param capacity 必须是2的幂
+     */
+    public static void setCapacity(int capacity) {
+        sRing = new Ring(capacity);
+    }
+
+    public static void clear() {
+        sRing = new Ring(sRing.mSpans.length());
+    }
+
+    /**
+     * 开始一个同步的span，必须在同一个线程上结束
+     */
+    public static Span begin(String name) {
+        return sEnabled ? new Span(name, false) : NOOP;
+    }
+
+    /**
+     * 开始一个异步的span，可以在任意时间、任意线程上结束
+     */
+    public static Span beginAsync(String name) {
+        return sEnabled ? new Span(name, true) : NOOP;
+    }
+
+    /**
+     * 记录一个瞬间事件
+     */
+    public static void instant(String name, String key, Object value) {
+        if (sEnabled) {
+            Span span = new Span(name, false);
+            span.mInstant = true;
+            span.attr(key, value).end();
+        }
+    }
+
+    /**
+     * @return 缓冲里已经结束的span，按结束的先后排列
+     */
+    public static List<Span> getSpans() {
+        return sRing.snapshot();
+    }
+
+    /**
+     * 导出为Chrome Trace Event格式：{"traceEvents":[...],"displayTimeUnit":"ms"}
+     */
+    public static String exportChromeTrace() {
+        StringBuilder sb = new StringBuilder(4096);
+        try {
+            writeChromeTrace(sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sb.toString();
+    }
+
+    public static void writeChromeTrace(Writer writer) throws IOException {
+        writeChromeTrace((Appendable) writer);
+        writer.flush();
+    }
+
+    private static void writeChromeTrace(Appendable out) throws IOException {
+        List<Span> spans = sRing.snapshot();
+        out.append("{\"traceEvents\":[");
+        //线程名称放在metadata事件里，每个线程一条
+        List<Long> threads = new ArrayList<>();
+        boolean first = true;
+        for (Span span : spans) {
+            if (!threads.contains(span.mThreadId)) {
+                threads.add(span.mThreadId);
+                first = appendSeparator(out, first);
+                out.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":")
+                        .append(String.valueOf(span.mThreadId)).append(",\"args\":{\"name\":");
+                appendJsonString(out, span.mThreadName);
+                out.append("}}");
+            }
+        }
+        for (Span span : spans) {
+            first = appendSeparator(out, first);
+            if (span.mAsync) {
+                //异步span拆成开始和结束两个事件，用id配对
+                span.appendEvent(out, "b", span.mStartNs, true);
+                out.append(',');
+                span.appendEvent(out, "e", span.mEndNs, false);
+            } else if (span.mInstant) {
+                span.appendEvent(out, "i", span.mStartNs, true);
+            } else {
+                span.appendEvent(out, "X", span.mStartNs, true);
+            }
+        }
+        out.append("],\"displayTimeUnit\":\"ms\"}");
+    }
+
+    private static boolean appendSeparator(Appendable out, boolean first) throws IOException {
+        if (!first) {
+            out.append(',');
+        }
+        return false;
+    }
+
+    private static void appendJsonString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * 一个计时区间。属性最多{@value #MAX_ATTRS}个，多出的忽略
+     */
+    public static class Span {
+        private final String mName;
+        private final boolean mAsync;
+        private boolean mInstant;
+        private final long mStartNs;
+        private long mEndNs = -1;
+        private final long mThreadId;
+        private final String mThreadName;
+        private final long mAsyncId;
+        private String[] mKeys;
+        private Object[] mValues;
+        private int mAttrCount;
+
+        Span(String name, boolean async) {
+            mName = name;
+            mAsync = async;
+            mStartNs = System.nanoTime();
+            Thread thread = Thread.currentThread();
+            mThreadId = thread.getId();
+            mThreadName = thread.getName();
+            mAsyncId = async ? sNextAsyncId.incrementAndGet() : 0;
+        }
+
+        public synchronized Span attr(String key, Object value) {
+            if (mKeys == null) {
+                mKeys = new String[MAX_ATTRS];
+                mValues = new Object[MAX_ATTRS];
+            }
+            if (mAttrCount < MAX_ATTRS) {
+                mKeys[mAttrCount] = key;
+                mValues[mAttrCount] = value;
+                mAttrCount++;
+            }
+            return this;
+        }
+
+        /**
+         * 结束计时并放进缓冲，重复调用只有第一次有效
+         */
+        public void end() {
+            synchronized (this) {
+                if (mEndNs >= 0) {
+                    return;
+                }
+                mEndNs = System.nanoTime();
+            }
+            sRing.add(this);
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public synchronized long getDurationMs() {
+            return mEndNs >= 0 ? TimeUnit.NANOSECONDS.toMillis(mEndNs - mStartNs) : -1;
+        }
+
+        /**
+         * @return 属性值，没有这个属性时返回null
+         */
+        public synchronized Object getAttr(String key) {
+            for (int i = 0; i < mAttrCount; i++) {
+                if (mKeys[i].equals(key)) {
+                    return mValues[i];
+                }
+            }
+            return null;
+        }
+
+        private synchronized void appendEvent(Appendable out, String phase, long timeNs,
+                                              boolean withArgs) throws IOException {
+            out.append("{\"name\":");
+            appendJsonString(out, mName);
+            out.append(",\"cat\":\"exodemo\",\"ph\":\"").append(phase)
+                    .append("\",\"ts\":").append(String.valueOf(timeNs / 1000));
+            if ("X".equals(phase)) {
+                out.append(",\"dur\":").append(String.valueOf((mEndNs - mStartNs) / 1000));
+            } else if (mAsync) {
+                out.append(",\"id\":").append(String.valueOf(mAsyncId));
+            } else {
+                out.append(",\"s\":\"t\"");
+            }
+            out.append(",\"pid\":1,\"tid\":").append(String.valueOf(mThreadId));
+            if (withArgs && mAttrCount > 0) {
+                out.append(",\"args\":{");
+                for (int i = 0; i < mAttrCount; i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    appendJsonString(out, mKeys[i]);
+                    out.append(':');
+                    Object value = mValues[i];
+                    if (value instanceof Number || value instanceof Boolean) {
+                        out.append(String.valueOf(value));
+                    } else {
+                        appendJsonString(out, value != null ? String.valueOf(value) : null);
+                    }
+                }
+                out.append('}');
+            }
+            out.append('}');
+        }
+    }
+
+    //结束的span按顺序写入，满了以后覆盖最旧的
+    private static class Ring {
+        final AtomicReferenceArray<Span> mSpans;
+        final int mMask;
+        final AtomicLong mNext = new AtomicLong();
+
+        Ring(int capacity) {
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+            }
+            mSpans = new AtomicReferenceArray<>(capacity);
+            mMask = capacity - 1;
+        }
+
+        void add(Span span) {
+            mSpans.set((int) (mNext.getAndIncrement() & mMask), span);
+        }
+
+        List<Span> snapshot() {
+            long end = mNext.get();
+            long start = Math.max(0, end - mSpans.length());
+            List<Span> spans = new ArrayList<>((int) (end - start));
+            for (long i = start; i < end; i++) {
+                Span span = mSpans.get((int) (i & mMask));
+                //并发写入时这个位置可能还没写好，跳过
+                if (span != null) {
+                    spans.add(span);
+                }
+            }
+            return spans;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用本地HTTP服务模拟支持增量同步的目录服务器：/music.json返回完整目录，
+ * /delta.json?since=版本返回这个版本之后的变化
+ */
+public class CatalogDeltaTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HttpServer mServer;
+    private File mCacheDir;
+    private String mBase;
+
+    private volatile String mVersion = "\"v1\"";
+    private volatile String mCatalog = catalog(track("a", "Rock", 1), track("b", "Jazz", 2));
+    //since -> 增量；没有的版本返回410
+    private final Map<String, String> mDeltas = new HashMap<>();
+    private volatile int mFullResponses;
+    private volatile int mDeltaResponses;
+
+    @Before
+    public void setUp() throws IOException {
+        mCacheDir = Files.createTempDirectory("delta").toFile();
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/music.json", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (mVersion.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                mFullResponses++;
+                exchange.getResponseHeaders().set("ETag", mVersion);
+                send(exchange, 200, mCatalog);
+            }
+        });
+        mServer.createContext("/delta.json", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getRawQuery();
+                String since = URLDecoder.decode(query.substring(query.indexOf('=') + 1), "UTF-8");
+                String delta;
+                synchronized (mDeltas) {
+                    delta = mDeltas.get(since);
+                }
+                if (delta == null) {
+                    send(exchange, 410, "");
+                    return;
+                }
+                mDeltaResponses++;
+                send(exchange, 200, delta);
+            }
+        });
+        mServer.start();
+        mBase = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        for (File file : mCacheDir.listFiles()) {
+            file.delete();
+        }
+        mCacheDir.delete();
+    }
+
+    @Test
+    public void delta_appliesInPlace_andBecomesTheNewVersion() throws IOException {
+        CatalogLoader loader = newLoader();
+        CatalogSnapshot.Builder builder = fullSync(loader);
+
+        mVersion = "\"v2\"";
+        putDelta("\"v1\"", "\"v2\"", "[" + track("c", "Pop", 1) + "]",
+                "[" + track("a", "Jazz", 1) + "]", "[\"b.mp3\"]");
+        CatalogDelta delta = loader.fetchDelta();
+        assertNotNull(delta);
+        assertEquals(1, delta.getAdded().size());
+        assertEquals(Arrays.asList(idOf("b")), delta.getRemoved());
+
+        builder.remove(delta.getRemoved());
+        for (MusicTrack track : delta.getUpdated()) {
+            builder.put(track);
+        }
+        for (MusicTrack track : delta.getAdded()) {
+            builder.put(track);
+        }
+        CatalogSnapshot catalog = builder.build(2);
+        loader.commitDelta(delta, catalog);
+
+        assertEquals(Arrays.asList(idOf("a"), idOf("c")), catalog.getTrackIds());
+        assertEquals(Arrays.asList(idOf("a")), catalog.getGenreIndex().getTrackIds("Jazz"));
+        assertEquals(1, mFullResponses);
+
+        //缓存已经是新版本：冷启动读到新目录，条件请求返回304
+        CatalogLoader restarted = newLoader();
+        MappedCatalog cached = restarted.openCached();
+        assertEquals("\"v2\"", cached.getEtag());
+        assertEquals(catalog.getTrackIds(), cached.toSnapshot(1).getTrackIds());
+        assertNull(restarted.revalidate());
+        assertEquals(1, mFullResponses);
+    }
+
+    @Test
+    public void versionGap_fallsBackToFullSync() throws IOException {
+        CatalogLoader loader = newLoader();
+        fullSync(loader);
+
+        //服务器只给出v2到v3的增量，本地是v1，中间缺了一个版本
+        mVersion = "\"v3\"";
+        mCatalog = catalog(track("a", "Rock", 1), track("d", "Rock", 2));
+        putDelta("\"v2\"", "\"v3\"", "[" + track("d", "Rock", 2) + "]", "[]", "[\"b.mp3\"]");
+        assertNull(loader.fetchDelta());
+        assertEquals(0, mDeltaResponses);
+
+        //请求的是本地版本，返回的增量却不是从这个版本开始的，同样不能应用
+        synchronized (mDeltas) {
+            mDeltas.put("\"v1\"", delta("\"v0\"", "\"v3\"", "[]", "[]", "[]"));
+        }
+        assertNull(loader.fetchDelta());
+
+        List<String> titles = new ArrayList<>();
+        Iterator<MusicTrack> tracks = loader.revalidate();
+        while (tracks.hasNext()) {
+            titles.add(tracks.next().title);
+        }
+        assertEquals(Arrays.asList("Song a", "Song d"), titles);
+        assertEquals(2, mFullResponses);
+        assertEquals("\"v3\"", newLoader().openCached().getEtag());
+    }
+
+    @Test
+    public void emptyDelta_keepsCatalog() throws IOException {
+        CatalogLoader loader = newLoader();
+        fullSync(loader);
+        putDelta("\"v1\"", "\"v1\"", "[]", "[]", "[]");
+
+        CatalogDelta delta = loader.fetchDelta();
+        assertTrue(delta.isEmpty());
+        assertEquals("\"v1\"", delta.getVersion());
+    }
+
+    @Test
+    public void withoutCache_deltaIsUnavailable() throws IOException {
+        CatalogLoader loader = new CatalogLoader(mBase + "music.json", null, new StreamingJSONParser());
+        loader.setDeltaSource(mBase + "delta.json", new StreamingJSONParser());
+        drain(loader.revalidate());
+        putDelta("\"v1\"", "\"v2\"", "[]", "[]", "[]");
+
+        assertNull(loader.fetchDelta());
+        assertFalse(mDeltaResponses > 0);
+    }
+
+    private CatalogLoader newLoader() {
+        StreamingJSONParser parser = new StreamingJSONParser();
+        CatalogLoader loader = new CatalogLoader(mBase + "music.json", new CatalogCache(mCacheDir), parser);
+        loader.setDeltaSource(mBase + "delta.json", parser);
+        return loader;
+    }
+
+    private CatalogSnapshot.Builder fullSync(CatalogLoader loader) throws IOException {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        Iterator<MusicTrack> tracks = loader.revalidate();
+        while (tracks.hasNext()) {
+            builder.add(tracks.next());
+        }
+        builder.build(1);
+        return builder;
+    }
+
+    private void putDelta(String since, String version, String added, String updated,
+                          String removed) {
+        synchronized (mDeltas) {
+            mDeltas.put(since, delta(since, version, added, updated, removed));
+        }
+    }
+
+    private static String delta(String since, String version, String added, String updated,
+                                String removed) {
+        return "{\"since\":" + quote(since) + ",\"version\":" + quote(version)
+                + ",\"added\":" + added + ",\"updated\":" + updated + ",\"removed\":" + removed + "}";
+    }
+
+    private String idOf(String name) {
+        return String.valueOf((mBase + name + ".mp3").hashCode());
+    }
+
+    private static void drain(Iterator<MusicTrack> tracks) {
+        while (tracks.hasNext()) {
+            tracks.next();
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\\\"") + "\"";
+    }
+
+    private static String catalog(String... tracks) {
+        StringBuilder sb = new StringBuilder("{\"music\":[");
+        for (int i = 0; i < tracks.length; i++) {
+            sb.append(i > 0 ? "," : "").append(tracks[i]);
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String track(String name, String genre, int trackNumber) {
+        return "{\"title\":\"Song " + name + "\",\"album\":\"Album\",\"artist\":\"Artist\","
+                + "\"genre\":\"" + genre + "\",\"source\":\"" + name + ".mp3\",\"image\":\"art.jpg\","
+                + "\"trackNumber\":" + trackNumber + ",\"totalTrackCount\":2,\"duration\":180}";
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}
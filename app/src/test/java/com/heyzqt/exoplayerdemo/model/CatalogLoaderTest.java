@@ -0,0 +1,188 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 用本地HTTP服务模拟目录服务器，验证磁盘缓存和条件请求
+ */
+public class CatalogLoaderTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HttpServer mServer;
+    private File mCacheDir;
+    private String mUrl;
+
+    private volatile String mBody = "Song A|Rock\nSong B|Jazz\n";
+    private volatile String mEtag = "\"v1\"";
+    private volatile int mFullResponses;
+    private volatile int mNotModifiedResponses;
+
+    @Before
+    public void setUp() throws IOException {
+        mCacheDir = Files.createTempDirectory("catalog").toFile();
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/music.json", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                if (mEtag.equals(ifNoneMatch)) {
+                    mNotModifiedResponses++;
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                mFullResponses++;
+                byte[] body = mBody.getBytes(UTF_8);
+                exchange.getResponseHeaders().set("ETag", mEtag);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mServer.start();
+        mUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/music.json";
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        for (File file : mCacheDir.listFiles()) {
+            file.delete();
+        }
+        mCacheDir.delete();
+    }
+
+    @Test
+    public void coldStart_downloadsParsesAndCaches() throws IOException {
+        CountingParser parser = new CountingParser();
+        CatalogLoader loader = new CatalogLoader(mUrl, new CatalogCache(mCacheDir), parser);
+
+        assertNull(loader.loadCached());
+        List<MusicTrack> tracks = drain(loader.revalidate());
+
+        assertEquals(2, tracks.size());
+        assertEquals(1, parser.parseCount);
+        assertEquals(1, mFullResponses);
+        assertEquals(2, new CatalogCache(mCacheDir).readTracks().size());
+    }
+
+    @Test
+    public void warmStart_notModified_doesNoParsing() throws IOException {
+        drain(new CatalogLoader(mUrl, new CatalogCache(mCacheDir), new CountingParser()).revalidate());
+
+        //模拟进程重启
+        CountingParser parser = new CountingParser();
+        CatalogLoader loader = new CatalogLoader(mUrl, new CatalogCache(mCacheDir), parser);
+        List<MusicTrack> cached = loader.loadCached();
+
+        assertNotNull(cached);
+        assertEquals(2, cached.size());
+        assertEquals("Song A", cached.get(0).title);
+        assertEquals("Jazz", cached.get(1).genre);
+
+        assertNull(loader.revalidate());
+        assertEquals(1, mNotModifiedResponses);
+        assertEquals(0, parser.parseCount);
+    }
+
+    @Test
+    public void warmStart_catalogChanged_replacesCache() throws IOException {
+        drain(new CatalogLoader(mUrl, new CatalogCache(mCacheDir), new CountingParser()).revalidate());
+        mBody = "Song C|Pop\n";
+        mEtag = "\"v2\"";
+
+        CountingParser parser = new CountingParser();
+        CatalogLoader loader = new CatalogLoader(mUrl, new CatalogCache(mCacheDir), parser);
+        assertEquals(2, loader.loadCached().size());
+
+        List<MusicTrack> tracks = drain(loader.revalidate());
+        assertEquals(1, tracks.size());
+        assertEquals(1, parser.parseCount);
+        assertEquals("Song C", new CatalogCache(mCacheDir).readTracks().get(0).title);
+
+        //新的ETag已经生效
+        assertNull(loader.revalidate());
+        assertEquals(1, parser.parseCount);
+    }
+
+    @Test
+    public void unconditionalRequest_withoutUsableCache() throws IOException {
+        drain(new CatalogLoader(mUrl, new CatalogCache(mCacheDir), new CountingParser()).revalidate());
+
+        //没有先读缓存，不能发条件请求，否则304之后没有任何数据
+        CountingParser parser = new CountingParser();
+        CatalogLoader loader = new CatalogLoader(mUrl, new CatalogCache(mCacheDir), parser);
+        assertEquals(2, drain(loader.revalidate()).size());
+        assertEquals(0, mNotModifiedResponses);
+        assertEquals(1, parser.parseCount);
+    }
+
+    @Test
+    public void abandonedDownload_keepsOldCache() throws IOException {
+        drain(new CatalogLoader(mUrl, new CatalogCache(mCacheDir), new CountingParser()).revalidate());
+        mBody = "Song C|Pop\nSong D|Pop\n";
+        mEtag = "\"v2\"";
+
+        CatalogLoader loader = new CatalogLoader(mUrl, new CatalogCache(mCacheDir), new CountingParser());
+        loader.loadCached();
+        Iterator<MusicTrack> tracks = loader.revalidate();
+        tracks.next();
+
+        assertEquals("Song A", new CatalogCache(mCacheDir).readTracks().get(0).title);
+    }
+
+    private static List<MusicTrack> drain(Iterator<MusicTrack> iterator) {
+        List<MusicTrack> tracks = new ArrayList<>();
+        while (iterator.hasNext()) {
+            tracks.add(iterator.next());
+        }
+        return tracks;
+    }
+
+    /**
+     * 每行一首音乐："title|genre"
+     */
+    private static class CountingParser implements CatalogParser {
+        int parseCount;
+
+        @Override
+        public Iterator<MusicTrack> parse(InputStream in, String basePath) throws IOException {
+            parseCount++;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+            List<MusicTrack> tracks = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\\|");
+                String source = basePath + fields[0] + ".mp3";
+                tracks.add(new MusicTrack(String.valueOf(source.hashCode()), source, fields[0],
+                        "album", "artist", fields[1], null, 1, 1, 1000));
+            }
+            return tracks.iterator();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CatalogSnapshotTest {
+
+    @Test
+    public void publishedSnapshot_isNotAffectedByLaterAdds() {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        builder.add(track("1", "Jazz", "Artist A", "Album A", 2));
+        builder.add(track("2", "Rock", "Artist B", "Album B", 1));
+        CatalogSnapshot first = builder.build(1);
+
+        //超过初始容量，数组会扩容，id索引会重建
+        for (int i = 3; i <= 40; i++) {
+            builder.add(track(String.valueOf(i), "Jazz", "Artist A", "Album A", 1));
+        }
+        CatalogSnapshot second = builder.build(2);
+
+        assertEquals(1, first.getVersion());
+        assertEquals(2, first.size());
+        assertEquals(Arrays.asList("1", "2"), first.getTrackIds());
+        assertFalse(first.contains("3"));
+        assertEquals(-1, first.indexOf("40"));
+        assertEquals(Collections.singletonList("1"), first.getGenreIndex().getTrackIds("Jazz"));
+        assertFalse(first.getTrackIdSet().contains("3"));
+
+        assertEquals(2, second.getVersion());
+        assertEquals(40, second.size());
+        assertEquals(39, second.indexOf("40"));
+        assertEquals(1, second.indexOf("2"));
+        assertEquals(-1, second.indexOf("41"));
+        assertEquals(39, second.getGenreIndex().getTrackIds("Jazz").size());
+        assertTrue(second.getTrackIdSet().contains("3"));
+    }
+
+    @Test
+    public void columns_roundTripEveryField() {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        builder.add(new MusicTrack("a", "http://example.com/a.mp3", "Title A", "Album", "Artist",
+                "Jazz", "http://example.com/art.jpg", 3, 12, 215000));
+        builder.add(new MusicTrack("b", "http://example.com/b.mp3", "Title B", null, null,
+                null, null, 0, 0, 0));
+        CatalogSnapshot snapshot = builder.build(1);
+
+        MusicTrack a = snapshot.getTrackAt(snapshot.indexOf("a"));
+        assertEquals("a", a.mediaId);
+        assertEquals("http://example.com/a.mp3", a.source);
+        assertEquals("Title A", a.title);
+        assertEquals("Album", a.album);
+        assertEquals("Artist", a.artist);
+        assertEquals("Jazz", a.genre);
+        assertEquals("http://example.com/art.jpg", a.albumArtUri);
+        assertEquals(3, a.trackNumber);
+        assertEquals(12, a.totalTrackCount);
+        assertEquals(215000, a.duration);
+        assertEquals(215000, snapshot.getDurationAt(0));
+
+        MusicTrack b = snapshot.getTrackAt(1);
+        assertEquals("Title B", snapshot.getTitleAt(1));
+        assertEquals(null, b.album);
+        assertEquals(null, b.genre);
+        assertEquals(null, b.albumArtUri);
+    }
+
+    @Test
+    public void iterationOrder_isCatalogOrder_andDuplicatesKeepFirst() {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        assertTrue(builder.add(track("b", "Jazz", null, "Album", 2)));
+        assertTrue(builder.add(track("a", "Rock", null, "Album", 1)));
+        assertFalse(builder.add(track("b", "Pop", null, "Other", 1)));
+        CatalogSnapshot snapshot = builder.build(7);
+
+        assertEquals(Arrays.asList("b", "a"), snapshot.getTrackIds());
+        assertEquals("Jazz", snapshot.getTrackAt(0).genre);
+        assertEquals(Arrays.asList("Jazz", "Rock"), snapshot.getGenreIndex().getCategories());
+        assertEquals(Arrays.asList("a", "b"), snapshot.getAlbumIndex().getTrackIds("Album"));
+        assertFalse(snapshot.getGenreIndex().contains("Pop"));
+
+        BrowseResult all = snapshot.getAllMusics();
+        assertEquals(7, all.getCatalogVersion());
+        assertEquals(2, all.size());
+        assertEquals(snapshot.getTrackIds(), all.getTrackIds());
+    }
+
+    @Test
+    public void putAndRemove_updateInPlace_withoutTouchingPublishedSnapshots() {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        builder.add(track("1", "Jazz", "Artist A", "Album A", 1));
+        builder.add(track("2", "Rock", "Artist B", "Album A", 2));
+        builder.add(track("3", "Jazz", "Artist A", "Album B", 1));
+        CatalogSnapshot before = builder.build(1);
+
+        assertFalse(builder.put(track("1", "Jazz", "Artist A", "Album A", 1)));
+        assertTrue(builder.put(track("2", "Jazz", "Artist B", "Album A", 0)));
+        assertTrue(builder.put(track("4", "Pop", "Artist C", "Album C", 1)));
+        assertEquals(1, builder.remove(Arrays.asList("3", "missing")));
+        CatalogSnapshot after = builder.build(2);
+
+        assertEquals(Arrays.asList("1", "2", "3"), before.getTrackIds());
+        assertEquals("Rock", before.getTrackAt(1).genre);
+        assertEquals(Collections.singletonList("2"), before.getGenreIndex().getTrackIds("Rock"));
+        assertEquals(2, before.indexOf("3"));
+
+        assertEquals(Arrays.asList("1", "2", "4"), after.getTrackIds());
+        assertEquals(-1, after.indexOf("3"));
+        assertEquals(2, after.indexOf("4"));
+        assertEquals("Jazz", after.getTrackAt(1).genre);
+        assertFalse(after.getGenreIndex().contains("Rock"));
+        assertEquals(Arrays.asList("1", "2"), after.getGenreIndex().getTrackIds("Jazz"));
+        //音轨号改成0之后排到专辑的最前面
+        assertEquals(Arrays.asList("2", "1"), after.getAlbumIndex().getTrackIds("Album A"));
+        assertFalse(after.getAlbumIndex().contains("Album B"));
+        assertEquals(Arrays.asList("Jazz", "Pop"), after.getGenreIndex().getCategories());
+    }
+
+    @Test
+    public void delta_reusesUntouchedIndexLists_acrossChunks() {
+        //超过两块（每块1024首）
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        for (int i = 0; i < 2500; i++) {
+            builder.add(track(String.valueOf(i), "Genre " + (i % 10), "Artist " + (i % 100),
+                    "Album " + (i % 250), i / 250));
+        }
+        CatalogSnapshot before = builder.build(1);
+
+        //第二块里的一首换了流派，第三块里删掉一首
+        assertTrue(builder.put(track("1500", "Genre 1", "Artist 0", "Album 0", 0)));
+        assertEquals(1, builder.remove(Collections.singletonList("2001")));
+        CatalogSnapshot after = builder.build(2);
+
+        //没有受影响的分类还是原来的列表
+        for (int i = 2; i < 10; i++) {
+            assertSame(before.getGenreIndex().getTrackIds("Genre " + i),
+                    after.getGenreIndex().getTrackIds("Genre " + i));
+        }
+        assertSame(before.getArtistIndex().getTrackIds("Artist 2"),
+                after.getArtistIndex().getTrackIds("Artist 2"));
+        assertSame(before.getAlbumIndex().getTrackIds("Album 2"),
+                after.getAlbumIndex().getTrackIds("Album 2"));
+
+        assertEquals("Genre 0", before.getTrackAt(1500).genre);
+        assertEquals("Genre 1", after.getTrackAt(1500).genre);
+        assertEquals(2500, before.size());
+        assertEquals("2001", before.getTrackIdAt(2001));
+        assertEquals(2499, after.size());
+        assertEquals("2002", after.getTrackIdAt(2001));
+        assertEquals(-1, after.indexOf("2001"));
+        assertEquals(2498, after.indexOf("2499"));
+        assertEquals("Album 0", after.getTrackAt(0).album);
+        //1500加入、2001删除
+        assertEquals(250, after.getGenreIndex().getTrackIds("Genre 1").size());
+        assertTrue(after.getGenreIndex().getTrackIds("Genre 1").contains("1500"));
+        assertEquals(Arrays.asList("0", "1500"),
+                after.getAlbumIndex().getTrackIds("Album 0").subList(0, 2));
+    }
+
+    @Test
+    public void emptySnapshot_hasVersionZero() {
+        assertEquals(0, CatalogSnapshot.EMPTY.getVersion());
+        assertEquals(0, CatalogSnapshot.EMPTY.size());
+        assertEquals(null, CatalogSnapshot.EMPTY.getMusic("1"));
+        assertFalse(CatalogSnapshot.EMPTY.getAllMusics().iterator().hasNext());
+    }
+
+    private static MusicTrack track(String id, String genre, String artist, String album,
+                                    long trackNumber) {
+        return new MusicTrack(id, "http://example.com/" + id + ".mp3", "Title " + id, album,
+                artist, genre, null, trackNumber, 10, 180000);
+    }
+}
@@ -0,0 +1,189 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 索引浏览的结果必须和遍历整个目录的结果一致，性能比较见:benchmark模块的CategoryIndexBenchmark
+ */
+public class CategoryIndexTest {
+
+    private static final int GENRE_COUNT = 8;
+    private static final int ALBUM_COUNT = 50;
+
+    @Test
+    public void indexedBrowse_matchesScan() {
+        List<MusicTrack> catalog = syntheticCatalog(2000);
+        CategoryIndex.Builder genreBuilder = new CategoryIndex.Builder(false);
+        CategoryIndex.Builder albumBuilder = new CategoryIndex.Builder(true);
+        for (MusicTrack track : catalog) {
+            genreBuilder.add(track.genre, track.mediaId, 0);
+            albumBuilder.add(track.album, track.mediaId, track.trackNumber);
+        }
+        CategoryIndex genreIndex = genreBuilder.build();
+        CategoryIndex albumIndex = albumBuilder.build();
+
+        assertEquals(new ArrayList<>(scanGenres(catalog)), genreIndex.getCategories());
+        for (int i = 0; i < GENRE_COUNT; i++) {
+            assertEquals(scanGenre(catalog, "Genre " + i), genreIndex.getTrackIds("Genre " + i));
+        }
+        for (int i = 0; i < ALBUM_COUNT; i++) {
+            assertEquals(scanAlbum(catalog, "Album " + i), albumIndex.getTrackIds("Album " + i));
+        }
+    }
+
+    @Test
+    public void unknownCategory_isEmpty() {
+        CategoryIndex index = new CategoryIndex.Builder(false).add("Jazz", "1", 0).build();
+        assertTrue(index.contains("Jazz"));
+        assertFalse(index.contains("Rock"));
+        assertTrue(index.getTrackIds("Rock").isEmpty());
+        assertTrue(index.getTrackIds(null).isEmpty());
+    }
+
+    @Test
+    public void album_sortsByTrackNumberKeepingCatalogOrderForTies() {
+        CategoryIndex index = new CategoryIndex.Builder(true)
+                .add("Album", "a", 3)
+                .add("Album", "b", 1)
+                .add("Album", "c", 3)
+                .add("Album", "d", 2)
+                .add("Album", "e", 1)
+                .build();
+        assertEquals(Arrays.asList("b", "e", "d", "a", "c"), index.getTrackIds("Album"));
+    }
+
+    @Test
+    public void removingLastTrack_dropsCategory() {
+        CategoryIndex.Builder builder = new CategoryIndex.Builder(false)
+                .add("Jazz", "1", 0)
+                .add("Rock", "2", 0)
+                .add("Jazz", "3", 0);
+        builder.remove("Rock", "2").remove("Jazz", "1");
+        CategoryIndex index = builder.build();
+        assertEquals(Collections.singletonList("Jazz"), index.getCategories());
+        assertEquals(Collections.singletonList("3"), index.getTrackIds("Jazz"));
+        assertFalse(index.contains("Rock"));
+    }
+
+    @Test
+    public void successiveBuilds_shareUnchangedLists() {
+        CategoryIndex.Builder builder = new CategoryIndex.Builder(true);
+        for (int i = 0; i < 100; i++) {
+            builder.add("Album " + i, "a" + i, 1);
+        }
+        CategoryIndex first = builder.build();
+
+        //追加到已有分类的末尾、插到中间、删除、新增分类
+        builder.add("Album 1", "b1", 2);
+        builder.add("Album 2", "b2", 0);
+        builder.add("Album 3", "b3", 1);
+        builder.remove("Album 3", "a3");
+        builder.add("Album 100", "a100", 1);
+        CategoryIndex second = builder.build();
+
+        //没有变化的分类是同一个列表，不会在每次发布时复制
+        for (int i = 4; i < 100; i++) {
+            assertSame(first.getTrackIds("Album " + i), second.getTrackIds("Album " + i));
+        }
+        assertSame(first.getTrackIds("Album 0"), second.getTrackIds("Album 0"));
+        assertSame(second.getTrackIds("Album 0"), builder.build().getTrackIds("Album 0"));
+
+        //已发布的索引不受影响
+        assertEquals(Collections.singletonList("a1"), first.getTrackIds("Album 1"));
+        assertEquals(Collections.singletonList("a2"), first.getTrackIds("Album 2"));
+        assertEquals(Collections.singletonList("a3"), first.getTrackIds("Album 3"));
+        assertFalse(first.contains("Album 100"));
+        assertEquals(100, first.getCategories().size());
+
+        assertEquals(Arrays.asList("a1", "b1"), second.getTrackIds("Album 1"));
+        assertEquals(Arrays.asList("b2", "a2"), second.getTrackIds("Album 2"));
+        assertEquals(Collections.singletonList("b3"), second.getTrackIds("Album 3"));
+        assertEquals(Collections.singletonList("a100"), second.getTrackIds("Album 100"));
+        assertEquals(101, second.getCategories().size());
+    }
+
+    @Test
+    public void droppingACategory_keepsEarlierIndexIntact() {
+        CategoryIndex.Builder builder = new CategoryIndex.Builder(false)
+                .add("Jazz", "1", 0)
+                .add("Rock", "2", 0)
+                .add("Pop", "3", 0);
+        CategoryIndex first = builder.build();
+
+        builder.remove("Rock", "2");
+        CategoryIndex second = builder.build();
+
+        assertEquals(Arrays.asList("Jazz", "Rock", "Pop"), first.getCategories());
+        assertEquals(Collections.singletonList("2"), first.getTrackIds("Rock"));
+        assertEquals(Arrays.asList("Jazz", "Pop"), second.getCategories());
+        assertFalse(second.contains("Rock"));
+        assertSame(first.getTrackIds("Pop"), second.getTrackIds("Pop"));
+    }
+
+    //没有索引时的做法：遍历整个目录
+    private static Set<String> scanGenres(List<MusicTrack> catalog) {
+        Set<String> genres = new LinkedHashSet<>();
+        for (MusicTrack track : catalog) {
+            genres.add(track.genre);
+        }
+        return genres;
+    }
+
+    private static List<String> scanGenre(List<MusicTrack> catalog, String genre) {
+        List<String> ids = new ArrayList<>();
+        for (MusicTrack track : catalog) {
+            if (genre.equals(track.genre)) {
+                ids.add(track.mediaId);
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> scanAlbum(List<MusicTrack> catalog, String album) {
+        List<MusicTrack> tracks = new ArrayList<>();
+        for (MusicTrack track : catalog) {
+            if (album.equals(track.album)) {
+                tracks.add(track);
+            }
+        }
+        //和索引一样按音轨号稳定排序
+        Collections.sort(tracks, new Comparator<MusicTrack>() {
+            @Override
+            public int compare(MusicTrack a, MusicTrack b) {
+                return Long.compare(a.trackNumber, b.trackNumber);
+            }
+        });
+        List<String> ids = new ArrayList<>(tracks.size());
+        for (MusicTrack track : tracks) {
+            ids.add(track.mediaId);
+        }
+        return ids;
+    }
+
+    private static List<MusicTrack> syntheticCatalog(int size) {
+        Random random = new Random(42);
+        List<MusicTrack> catalog = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String source = "http://example.com/music/" + i + ".mp3";
+            catalog.add(new MusicTrack(String.valueOf(i), source, "Track " + i,
+                    "Album " + random.nextInt(ALBUM_COUNT), "Artist " + random.nextInt(100),
+                    "Genre " + random.nextInt(GENRE_COUNT), source + ".jpg",
+                    1 + random.nextInt(15), 15, 180000));
+        }
+        return catalog;
+    }
+}
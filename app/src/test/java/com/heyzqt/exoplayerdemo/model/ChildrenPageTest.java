@@ -0,0 +1,107 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import com.heyzqt.exoplayerdemo.utils.MediaIDHelper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChildrenPageTest {
+
+    @Test
+    public void root_listsCategoryNodes() {
+        ChildrenPage page = catalog(3).build(1).getChildren(MediaIDHelper.MEDIA_ID_ROOT, 0, 10);
+
+        assertEquals(3, page.getTotalCount());
+        assertEquals(MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE, page.getMediaId(0));
+        assertFalse(page.isPlayable(0));
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    public void categoryList_isPagedWithBrowsableIds() {
+        CatalogSnapshot snapshot = catalog(10).build(1);
+
+        ChildrenPage page = snapshot.getChildren(MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE, 1, 1);
+        assertEquals(2, page.getTotalCount());
+        assertEquals(1, page.size());
+        assertEquals("__BY_GENRE__/Rock", page.getMediaId(0));
+        assertEquals("Rock", page.getTitle(0));
+        assertNull(page.getMusic(0));
+    }
+
+    @Test
+    public void tracks_arePagedInIndexOrder_andNextStaysOnTheSameSnapshot() {
+        CatalogSnapshot.Builder builder = catalog(10);
+        CatalogSnapshot snapshot = builder.build(1);
+
+        ChildrenPage page = snapshot.getChildren("__BY_GENRE__/Jazz", 0, 2);
+        //目录在翻页的过程中刷新了
+        builder.remove(Arrays.asList("0", "2"));
+        builder.build(2);
+
+        List<String> ids = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        while (page.size() > 0) {
+            for (int i = 0; i < page.size(); i++) {
+                assertTrue(page.isPlayable(i));
+                ids.add(page.getMediaId(i));
+                titles.add(page.getTitle(i));
+            }
+            assertEquals(1, page.getCatalogVersion());
+            page = page.next();
+        }
+        assertEquals(Arrays.asList("__BY_GENRE__/Jazz|0", "__BY_GENRE__/Jazz|2",
+                "__BY_GENRE__/Jazz|4", "__BY_GENRE__/Jazz|6", "__BY_GENRE__/Jazz|8"), ids);
+        assertEquals(Arrays.asList("Title 0", "Title 2", "Title 4", "Title 6", "Title 8"), titles);
+        assertEquals(5, page.getOffset());
+    }
+
+    @Test
+    public void unknownOrPlayableParent_hasNoChildren() {
+        CatalogSnapshot snapshot = catalog(4).build(1);
+
+        assertEquals(0, snapshot.getChildren("__BY_GENRE__/Pop", 0, 10).getTotalCount());
+        assertEquals(0, snapshot.getChildren("__BY_GENRE__/Jazz|0", 0, 10).getTotalCount());
+        assertEquals(0, snapshot.getChildren("__UNKNOWN__", 0, 10).getTotalCount());
+        ChildrenPage past = snapshot.getChildren("__BY_GENRE__/Jazz", 100, 10);
+        assertEquals(2, past.getTotalCount());
+        assertEquals(0, past.size());
+        assertFalse(past.hasMore());
+    }
+
+    @Test
+    public void invalidPage_throws() {
+        CatalogSnapshot snapshot = catalog(4).build(1);
+        try {
+            snapshot.getChildren(MediaIDHelper.MEDIA_ID_ROOT, -1, 10);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        try {
+            snapshot.getChildren(MediaIDHelper.MEDIA_ID_ROOT, 0, 0);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    private static CatalogSnapshot.Builder catalog(int size) {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        for (int i = 0; i < size; i++) {
+            String id = String.valueOf(i);
+            builder.add(new MusicTrack(id, "http://example.com/" + id + ".mp3", "Title " + id,
+                    "Album", "Artist", i % 2 == 0 ? "Jazz" : "Rock", null, i, size, 180000));
+        }
+        return builder;
+    }
+}
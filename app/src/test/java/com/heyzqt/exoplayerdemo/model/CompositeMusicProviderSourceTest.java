@@ -0,0 +1,131 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompositeMusicProviderSourceTest {
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    //单元测试里MediaMetadataCompat读不出字段，按对象记下每个元素的id
+    private final Map<MediaMetadataCompat, String> mIds =
+            Collections.synchronizedMap(new IdentityHashMap<MediaMetadataCompat, String>());
+
+    private final ParallelMergeIterator.KeyExtractor<MediaMetadataCompat> mKey =
+            new ParallelMergeIterator.KeyExtractor<MediaMetadataCompat>() {
+                @Override
+                public Object keyOf(MediaMetadataCompat item) {
+                    return mIds.get(item);
+                }
+            };
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void iterator_mergesEverySourceAndDropsDuplicates() {
+        CompositeMusicProviderSource composite = new CompositeMusicProviderSource(mKey, mExecutor)
+                .addSource(source("1", "2"))
+                .addSource(source("2", "3"), 5000);
+
+        List<String> ids = new ArrayList<>();
+        Iterator<MediaMetadataCompat> merged = composite.iterator();
+        while (merged.hasNext()) {
+            ids.add(mIds.get(merged.next()));
+        }
+
+        assertEquals(3, ids.size());
+        assertEquals(new HashSet<>(Arrays.asList("1", "2", "3")), new HashSet<>(ids));
+    }
+
+    @Test
+    public void closingTheIterator_closesEverySource() throws Exception {
+        BlockingSource first = new BlockingSource();
+        BlockingSource second = new BlockingSource();
+        CompositeMusicProviderSource composite = new CompositeMusicProviderSource(mKey, mExecutor)
+                .addSource(first)
+                .addSource(second);
+
+        Iterator<MediaMetadataCompat> merged = composite.iterator();
+        assertTrue(first.mStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(second.mStarted.await(5, TimeUnit.SECONDS));
+        //MusicProvider放弃加载时就是这样关闭的
+        TrackMetadata.closeQuietly(TrackMetadata.fromMetadata(merged));
+
+        assertTrue(first.mClosed.await(5, TimeUnit.SECONDS));
+        assertTrue(second.mClosed.await(5, TimeUnit.SECONDS));
+        mExecutor.shutdown();
+        assertTrue(mExecutor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    private MusicProviderSource source(final String... ids) {
+        return new MusicProviderSource() {
+            @Override
+            public Iterator<MediaMetadataCompat> iterator() {
+                List<MediaMetadataCompat> items = new ArrayList<>();
+                for (String id : ids) {
+                    MediaMetadataCompat metadata = new MediaMetadataCompat.Builder()
+                            .putString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID, id)
+                            .build();
+                    mIds.put(metadata, id);
+                    items.add(metadata);
+                }
+                return items.iterator();
+            }
+        };
+    }
+
+    //hasNext一直阻塞，直到迭代器被关闭，模拟卡住的网络读取
+    private static class BlockingSource implements MusicProviderSource {
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mClosed = new CountDownLatch(1);
+
+        @Override
+        public Iterator<MediaMetadataCompat> iterator() {
+            return new BlockingIterator();
+        }
+
+        private class BlockingIterator implements Iterator<MediaMetadataCompat>, Closeable {
+            @Override
+            public boolean hasNext() {
+                mStarted.countDown();
+                try {
+                    mClosed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RuntimeException("connection closed");
+            }
+
+            @Override
+            public MediaMetadataCompat next() {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void close() {
+                mClosed.countDown();
+            }
+        }
+    }
+}
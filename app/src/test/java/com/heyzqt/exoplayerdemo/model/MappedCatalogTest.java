@@ -0,0 +1,229 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedCatalogTest {
+
+    private File mDir;
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("mapped").toFile();
+        mFile = new File(mDir, "catalog.bin");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void writtenCatalog_readsBackWithoutDeserializing() throws IOException {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        builder.add(new MusicTrack("a", "http://example.com/a.mp3", "Título A", "Album", "Artist",
+                "Jazz", "http://example.com/art.jpg", 3, 12, 215000));
+        builder.add(new MusicTrack("b", "http://example.com/b.mp3", "Title B", null, null,
+                null, null, 0, 0, 0));
+        for (int i = 0; i < 50; i++) {
+            builder.add(track("t" + i, i % 2 == 0 ? "Rock" : "Jazz", "Album " + (i % 5), 50 - i));
+        }
+        CatalogSnapshot written = builder.build(1);
+        MappedCatalog.write(mFile, written, "\"v1\"", "Wed, 04 Sep 2019 10:00:00 GMT");
+
+        MappedCatalog mapped = MappedCatalog.open(mFile);
+        assertEquals("\"v1\"", mapped.getEtag());
+        assertEquals("Wed, 04 Sep 2019 10:00:00 GMT", mapped.getLastModified());
+
+        CatalogSnapshot snapshot = mapped.toSnapshot(5);
+        assertEquals(5, snapshot.getVersion());
+        assertEquals(written.getTrackIds(), snapshot.getTrackIds());
+        assertEquals(-1, snapshot.indexOf("missing"));
+        assertEquals(51, snapshot.indexOf("t49"));
+
+        MusicTrack a = snapshot.getTrackAt(snapshot.indexOf("a"));
+        assertEquals("http://example.com/a.mp3", a.source);
+        assertEquals("Título A", a.title);
+        assertEquals("Album", a.album);
+        assertEquals("Artist", a.artist);
+        assertEquals("http://example.com/art.jpg", a.albumArtUri);
+        assertEquals(3, a.trackNumber);
+        assertEquals(12, a.totalTrackCount);
+        assertEquals(215000, snapshot.getDurationAt(0));
+        MusicTrack b = snapshot.getTrackAt(1);
+        assertNull(b.album);
+        assertNull(b.genre);
+        assertNull(b.albumArtUri);
+    }
+
+    @Test
+    public void categoryIndexes_keepOrder() throws IOException {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        builder.add(track("1", "Jazz", "Album", 2));
+        builder.add(track("2", "Rock", "Album", 1));
+        builder.add(track("3", "Jazz", "Other", 1));
+        CatalogSnapshot written = builder.build(1);
+        MappedCatalog.write(mFile, written, null, null);
+
+        CatalogSnapshot snapshot = MappedCatalog.open(mFile).toSnapshot(1);
+        assertEquals(written.getGenreIndex().getCategories(), snapshot.getGenreIndex().getCategories());
+        assertEquals(Arrays.asList("1", "3"), snapshot.getGenreIndex().getTrackIds("Jazz"));
+        assertEquals(Arrays.asList("2", "1"), snapshot.getAlbumIndex().getTrackIds("Album"));
+        assertTrue(snapshot.getAlbumIndex().contains("Other"));
+        assertFalse(snapshot.getGenreIndex().contains("Pop"));
+        assertEquals(Collections.<String>emptyList(), snapshot.getGenreIndex().getTrackIds("Pop"));
+    }
+
+    @Test
+    public void corruptedBody_failsVerification_andCacheFallsBack() throws IOException {
+        writeCatalog();
+        flipByte(mFile.length() / 2);
+
+        //打开只校验文件头，内容损坏要到verify时才发现
+        MappedCatalog mapped = MappedCatalog.open(mFile);
+        assertFalse(mapped.verify());
+        //缓存层把损坏的文件当作没有缓存，调用方会回退到JSON
+        assertNull(new CatalogCache(mDir).readValidators());
+        assertNull(new CatalogCache(mDir).readTracks());
+
+        writeCatalog();
+        assertTrue(MappedCatalog.open(mFile).verify());
+    }
+
+    @Test
+    public void corruptedHeaderOrTruncatedFile_failsToOpen() throws IOException {
+        writeCatalog();
+        flipByte(24);
+        assertOpenFails();
+        assertNull(new CatalogCache(mDir).open());
+
+        writeCatalog();
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        raf.setLength(raf.length() - 4);
+        raf.close();
+        assertOpenFails();
+    }
+
+    @Test
+    public void streamingWriter_matchesSnapshotAndDropsDuplicates() throws IOException {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        MappedCatalog.Writer writer = MappedCatalog.newWriter(mFile, "\"v2\"", null);
+        for (int i = 0; i < 30; i++) {
+            MusicTrack track = track("t" + i, i % 3 == 0 ? "Rock" : "Jazz", "Album " + (i % 4),
+                    10 - i % 10);
+            builder.add(track);
+            assertTrue(writer.append(track));
+        }
+        assertFalse(writer.append(track("t3", "Pop", "Other", 1)));
+        writer.commit();
+        CatalogSnapshot expected = builder.build(1);
+
+        MappedCatalog mapped = MappedCatalog.open(mFile);
+        assertTrue(mapped.verify());
+        assertEquals("\"v2\"", mapped.getEtag());
+        CatalogSnapshot snapshot = mapped.toSnapshot(1);
+        assertEquals(expected.getTrackIds(), snapshot.getTrackIds());
+        assertEquals("Rock", snapshot.getTrackAt(snapshot.indexOf("t3")).genre);
+        assertFalse(snapshot.getGenreIndex().contains("Pop"));
+        for (CategoryIndex[] pair : new CategoryIndex[][]{
+                {expected.getGenreIndex(), snapshot.getGenreIndex()},
+                {expected.getAlbumIndex(), snapshot.getAlbumIndex()}}) {
+            assertEquals(pair[0].getCategories(), pair[1].getCategories());
+            for (String category : pair[0].getCategories()) {
+                assertEquals(pair[0].getTrackIds(category), pair[1].getTrackIds(category));
+            }
+        }
+        //音乐表的临时文件已经删掉
+        assertEquals(1, mDir.listFiles().length);
+    }
+
+    @Test
+    public void abortedWriter_leavesNoFiles() throws IOException {
+        MappedCatalog.Writer writer = MappedCatalog.newWriter(mFile, null, null);
+        writer.append(track("1", "Rock", "Album", 1));
+        writer.abort();
+        assertEquals(0, mDir.listFiles().length);
+    }
+
+    @Test
+    public void corruptedTables_failFastBeforeVerification() throws IOException {
+        writeCatalog();
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        //id散列表的每个槽位都指向第0首：没有空槽位，查找不存在的id也必须结束
+        raf.seek(36);
+        int idTable = raf.readInt();
+        raf.seek(idTable);
+        int capacity = raf.readInt();
+        for (int i = 0; i < capacity; i++) {
+            raf.writeInt(1);
+        }
+        //第1首的id长度改成负数
+        raf.seek(32);
+        int tracks = raf.readInt();
+        raf.seek(tracks + 44);
+        int idRef = raf.readInt();
+        raf.seek(idRef);
+        raf.writeInt(-5);
+        raf.close();
+
+        CatalogSnapshot snapshot = MappedCatalog.open(mFile).toSnapshot(1);
+        assertEquals(-1, snapshot.indexOf("missing"));
+        assertEquals(0, snapshot.indexOf("0"));
+        try {
+            snapshot.getTrackIdAt(1);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        assertFalse(MappedCatalog.open(mFile).verify());
+    }
+
+    private void writeCatalog() throws IOException {
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        for (int i = 0; i < 20; i++) {
+            builder.add(track(String.valueOf(i), "Rock", "Album", i));
+        }
+        MappedCatalog.write(mFile, builder.build(1), "\"v1\"", null);
+    }
+
+    private void flipByte(long position) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        raf.seek(position);
+        int b = raf.read();
+        raf.seek(position);
+        raf.write(b ^ 0x01);
+        raf.close();
+    }
+
+    private void assertOpenFails() {
+        try {
+            MappedCatalog.open(mFile);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    private static MusicTrack track(String id, String genre, String album, long trackNumber) {
+        return new MusicTrack(id, "http://example.com/" + id + ".mp3", "Title " + id, album,
+                "Artist", genre, null, trackNumber, 10, 180000);
+    }
+}
@@ -0,0 +1,266 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MusicProviderTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void incrementalLoading_publishesEveryBatch() throws Exception {
+        MusicProvider provider = newProvider(source(tracks(7), -1));
+        provider.setIncrementalLoading(3, 0);
+        RecordingCallback callback = new RecordingCallback(provider);
+        provider.retrieveMediaAsync(callback);
+        callback.await();
+
+        //7首分成3、3、1，最后一批在加载完成时发布，不单独通知
+        assertEquals(Arrays.asList(3, 6), callback.mPartialCounts);
+        assertEquals(Arrays.asList(ids(3), ids(6)), callback.mPartialIds);
+        assertEquals(Collections.singletonList(true), callback.mReady);
+        assertEquals(ids(7), provider.getCatalog().getTrackIds());
+        assertTrue(callback.mPartialVersions.get(0) < callback.mPartialVersions.get(1));
+        assertTrue(callback.mPartialVersions.get(1) < provider.getCatalogVersion());
+    }
+
+    @Test
+    public void withoutIncrementalLoading_onlyTheFinalCatalogIsPublished() throws Exception {
+        MusicProvider provider = newProvider(source(tracks(7), -1));
+        RecordingCallback callback = new RecordingCallback(provider);
+        provider.retrieveMediaAsync(callback);
+        callback.await();
+
+        assertTrue(callback.mPartialCounts.isEmpty());
+        assertEquals(Collections.singletonList(true), callback.mReady);
+        assertEquals(7, provider.getCatalog().size());
+    }
+
+    @Test
+    public void failedFirstLoad_withdrawsPublishedBatches() throws Exception {
+        //第6首时连接中断
+        MusicProvider provider = newProvider(source(tracks(10), 5));
+        provider.setIncrementalLoading(2, 0);
+        RecordingCallback callback = new RecordingCallback(provider);
+        provider.retrieveMediaAsync(callback);
+        callback.await();
+
+        assertEquals(Arrays.asList(2, 4), callback.mPartialCounts);
+        assertEquals(Collections.singletonList(false), callback.mReady);
+        //不能把部分目录当成完整的目录留下
+        assertEquals(0, provider.getCatalog().size());
+        assertFalse(provider.getCatalog().contains("1"));
+        assertTrue(provider.getCatalogVersion() > callback.mPartialVersions.get(1));
+        assertTrue(provider.searchMusic("title", 10).isEmpty());
+
+        //再次加载会重新开始
+        provider = newProvider(source(tracks(3), -1));
+        callback = new RecordingCallback(provider);
+        provider.retrieveMediaAsync(callback);
+        callback.await();
+        assertEquals(Collections.singletonList(true), callback.mReady);
+        assertEquals(3, provider.getCatalog().size());
+    }
+
+    @Test
+    public void timeout_closesTheSourceAndWithdrawsPublishedBatches() throws Exception {
+        HangingSource source = new HangingSource(tracks(4));
+        MusicProvider provider = newProvider(source);
+        source.mProvider = provider;
+        provider.setIncrementalLoading(2, 0);
+        provider.setLoadTimeout(100);
+        RecordingCallback callback = new RecordingCallback(provider);
+        provider.retrieveMediaAsync(callback);
+
+        callback.await();
+        assertEquals(Collections.singletonList(false), callback.mReady);
+        //阻塞的读取不响应中断，只有关闭数据源才能结束这次加载
+        assertTrue(source.mClosed.await(5, TimeUnit.SECONDS));
+
+        //加载是串行的，下一次加载开始时上一次已经撤回了部分目录
+        provider.setLoadTimeout(0);
+        callback = new RecordingCallback(provider);
+        provider.retrieveMediaAsync(callback);
+        callback.await();
+        assertEquals(0, source.mSizeBeforeRetry);
+        assertEquals(Collections.singletonList(true), callback.mReady);
+        assertEquals(4, provider.getCatalog().size());
+    }
+
+    @Test
+    public void cancellingEveryRequest_closesTheSource() throws Exception {
+        HangingSource source = new HangingSource(tracks(1));
+        MusicProvider provider = newProvider(source);
+        RecordingCallback callback = new RecordingCallback(provider);
+        MusicProvider.LoadRequest request = provider.retrieveMediaAsync(callback);
+        assertTrue(source.mHanging.await(5, TimeUnit.SECONDS));
+
+        request.cancel();
+
+        assertTrue(source.mClosed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, callback.mDone.getCount());
+    }
+
+    private static MusicProvider newProvider(MusicProviderSource source) {
+        MusicProvider provider = new MusicProvider(source);
+        provider.setCallbackExecutor(DIRECT);
+        return provider;
+    }
+
+    /**
+     * @param failAt 取到第几首（从0开始）时抛出异常，-1表示不失败
+     */
+    private static MusicProviderSource source(final List<MusicTrack> tracks, final int failAt) {
+        return new MusicProviderSource() {
+            @Override
+            public Iterator<MediaMetadataCompat> iterator() {
+                return TrackMetadata.toMetadata(new Iterator<MusicTrack>() {
+                    private int mNext;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (mNext == failAt) {
+                            throw new RuntimeException("connection reset");
+                        }
+                        return mNext < tracks.size();
+                    }
+
+                    @Override
+                    public MusicTrack next() {
+                        return tracks.get(mNext++);
+                    }
+                });
+            }
+        };
+    }
+
+    private static List<MusicTrack> tracks(int count) {
+        List<MusicTrack> tracks = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String id = String.valueOf(i);
+            tracks.add(new MusicTrack(id, "http://example.com/" + id + ".mp3", "Title " + id,
+                    "Album", "Artist", "Jazz", null, i, count, 180000));
+        }
+        return tracks;
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            ids.add(String.valueOf(i));
+        }
+        return ids;
+    }
+
+    /**
+     * 第一次迭代先返回tracks，然后阻塞在hasNext上（不响应中断），直到迭代器被关闭；之后的迭代正常返回
+     */
+    private static class HangingSource implements MusicProviderSource {
+        final List<MusicTrack> mTracks;
+        final CountDownLatch mHanging = new CountDownLatch(1);
+        final CountDownLatch mClosed = new CountDownLatch(1);
+        volatile MusicProvider mProvider;
+        volatile int mSizeBeforeRetry = -1;
+        private int mCalls;
+
+        HangingSource(List<MusicTrack> tracks) {
+            this.mTracks = tracks;
+        }
+
+        @Override
+        public synchronized Iterator<MediaMetadataCompat> iterator() {
+            if (mCalls++ > 0) {
+                mSizeBeforeRetry = mProvider != null ? mProvider.getCatalog().size() : -1;
+                return TrackMetadata.toMetadata(mTracks.iterator());
+            }
+            return TrackMetadata.toMetadata(new HangingIterator());
+        }
+
+        private class HangingIterator implements Iterator<MusicTrack>, Closeable {
+            private int mNext;
+
+            @Override
+            public boolean hasNext() {
+                if (mNext < mTracks.size()) {
+                    return true;
+                }
+                mHanging.countDown();
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        mClosed.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("connection closed");
+            }
+
+            @Override
+            public MusicTrack next() {
+                return mTracks.get(mNext++);
+            }
+
+            @Override
+            public void close() {
+                mClosed.countDown();
+            }
+        }
+    }
+
+    //回调直接在加载线程上执行，分批通知时能看到刚发布的那一批
+    private static class RecordingCallback implements MusicProvider.IncrementalCallback {
+        final MusicProvider mProvider;
+        final List<Integer> mPartialCounts = new ArrayList<>();
+        final List<List<String>> mPartialIds = new ArrayList<>();
+        final List<Long> mPartialVersions = new ArrayList<>();
+        final List<Boolean> mReady = new ArrayList<>();
+        final CountDownLatch mDone = new CountDownLatch(1);
+
+        RecordingCallback(MusicProvider provider) {
+            this.mProvider = provider;
+        }
+
+        @Override
+        public void onMusicCatalogPartiallyReady(int loadedCount) {
+            CatalogSnapshot catalog = mProvider.getCatalog();
+            mPartialCounts.add(loadedCount);
+            mPartialIds.add(new ArrayList<>(catalog.getTrackIds()));
+            mPartialVersions.add(catalog.getVersion());
+        }
+
+        @Override
+        public void onMusicCatalogReady(boolean success) {
+            mReady.add(success);
+            mDone.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(mDone.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
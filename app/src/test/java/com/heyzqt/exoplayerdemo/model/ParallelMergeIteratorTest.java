@@ -0,0 +1,277 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelMergeIteratorTest {
+
+    private static final ParallelMergeIterator.KeyExtractor<String> KEY =
+            new ParallelMergeIterator.KeyExtractor<String>() {
+                @Override
+                public Object keyOf(String item) {
+                    //"id:来源"，按id去重
+                    return item.substring(0, item.indexOf(':'));
+                }
+            };
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void sources_loadInParallel() {
+        //每个数据源都要等到三个数据源同时开始加载才返回，串行加载时会一直等到超时失败
+        CountDownLatch started = new CountDownLatch(3);
+        List<Iterable<String>> sources = Arrays.asList(
+                awaitingSource("a", started, started, "1", "2"),
+                awaitingSource("b", started, started, "3"),
+                awaitingSource("c", started, started, "4", "5"));
+
+        List<String> merged = drain(new ParallelMergeIterator<>(sources,
+                new long[]{5000, 5000, 5000}, KEY, mExecutor));
+
+        assertEquals(new HashSet<>(Arrays.asList("1:a", "2:a", "3:b", "4:c", "5:c")),
+                new HashSet<>(merged));
+    }
+
+    @Test
+    public void duplicates_keepFirstArrival() {
+        //慢的数据源等快的迭代完才开始返回
+        CountDownLatch fastDone = new CountDownLatch(1);
+        List<Iterable<String>> sources = Arrays.asList(
+                listSource("fast", fastDone, "1", "2"),
+                awaitingSource("slow", null, fastDone, "2", "3"));
+
+        List<String> merged = drain(new ParallelMergeIterator<>(sources, new long[]{5000, 5000},
+                KEY, mExecutor));
+
+        Collections.sort(merged);
+        assertEquals(Arrays.asList("1:fast", "2:fast", "3:slow"), merged);
+    }
+
+    @Test
+    public void timedOutSource_isDroppedAndClosed() throws Exception {
+        BlockingSource hung = new BlockingSource();
+        List<Iterable<String>> sources = Arrays.asList(listSource("ok", null, "1", "2"), hung);
+
+        List<String> merged = drain(new ParallelMergeIterator<>(sources, new long[]{5000, 200},
+                KEY, mExecutor));
+
+        assertEquals(new HashSet<>(Arrays.asList("1:ok", "2:ok")), new HashSet<>(merged));
+        //阻塞在读取上的数据源被关闭，工作线程不会一直卡在那里
+        assertTrue(hung.mClosed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedSource_doesNotFailTheOthers() {
+        List<Iterable<String>> sources = Arrays.asList(
+                listSource("ok", null, "1"),
+                failingSource("2:broken"));
+
+        //出错之前已经返回的元素保留
+        assertEquals(new HashSet<>(Arrays.asList("1:ok", "2:broken")), new HashSet<>(drain(
+                new ParallelMergeIterator<>(sources, new long[]{5000, 5000}, KEY, mExecutor))));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void allSourcesFailing_throws() {
+        List<Iterable<String>> sources = Arrays.asList(failingSource("1:a"), failingSource("2:b"));
+        drain(new ParallelMergeIterator<>(sources, new long[]{5000, 5000}, KEY, mExecutor));
+    }
+
+    @Test
+    public void noSources_isEmpty() {
+        assertFalse(new ParallelMergeIterator<>(Collections.<Iterable<String>>emptyList(),
+                new long[0], KEY, mExecutor).hasNext());
+    }
+
+    @Test
+    public void close_closesSourcesAndStopsWorkers() throws Exception {
+        BlockingSource hung = new BlockingSource();
+        //源源不断的数据源，队列满了之后工作线程会等在put上
+        Iterable<String> endless = new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private int mNext;
+
+                    @Override
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    @Override
+                    public String next() {
+                        return (mNext++) + ":endless";
+                    }
+                };
+            }
+        };
+        ParallelMergeIterator<String> merged = new ParallelMergeIterator<>(
+                Arrays.asList(endless, hung), new long[]{5000, 5000}, KEY, mExecutor);
+        assertTrue(merged.hasNext());
+        merged.next();
+        assertTrue(hung.mStarted.await(5, TimeUnit.SECONDS));
+
+        merged.close();
+
+        assertTrue(hung.mClosed.await(5, TimeUnit.SECONDS));
+        mExecutor.shutdown();
+        assertTrue(mExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        try {
+            merged.hasNext();
+            fail("a closed merge must not look complete");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    private static List<String> drain(Iterator<String> iterator) {
+        List<String> items = new ArrayList<>();
+        while (iterator.hasNext()) {
+            items.add(iterator.next());
+        }
+        return items;
+    }
+
+    private static List<String> items(String name, String... ids) {
+        List<String> items = new ArrayList<>();
+        for (String id : ids) {
+            items.add(id + ":" + name);
+        }
+        return items;
+    }
+
+    /**
+     * @param done 不为null时在迭代完之后countDown
+     */
+    private static Iterable<String> listSource(final String name, final CountDownLatch done,
+                                               final String... ids) {
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                final Iterator<String> items = items(name, ids).iterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        boolean hasNext = items.hasNext();
+                        if (!hasNext && done != null) {
+                            done.countDown();
+                        }
+                        return hasNext;
+                    }
+
+                    @Override
+                    public String next() {
+                        return items.next();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * 开始加载时arrive.countDown()，等待await归零（模拟建立连接），然后依次返回"id:name"
+     *
+     * @param arrive 可以为null
+     */
+    private static Iterable<String> awaitingSource(final String name, final CountDownLatch arrive,
+                                                   final CountDownLatch await, final String... ids) {
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                if (arrive != null) {
+                    arrive.countDown();
+                }
+                try {
+                    if (!await.await(5, TimeUnit.SECONDS)) {
+                        throw new RuntimeException("source " + name + " gave up waiting");
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return items(name, ids).iterator();
+            }
+        };
+    }
+
+    //返回一个元素后抛出异常，模拟下载中途断开
+    private static Iterable<String> failingSource(final String first) {
+        return new Iterable<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+                    private boolean mReturned;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (mReturned) {
+                            throw new RuntimeException("connection reset");
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public String next() {
+                        mReturned = true;
+                        return first;
+                    }
+                };
+            }
+        };
+    }
+
+    //hasNext一直阻塞，直到迭代器被关闭，模拟卡住的网络读取
+    private static class BlockingSource implements Iterable<String> {
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mClosed = new CountDownLatch(1);
+
+        @Override
+        public Iterator<String> iterator() {
+            return new BlockingIterator();
+        }
+
+        private class BlockingIterator implements Iterator<String>, Closeable {
+            @Override
+            public boolean hasNext() {
+                mStarted.countDown();
+                try {
+                    mClosed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RuntimeException("connection closed");
+            }
+
+            @Override
+            public String next() {
+                throw new AssertionError();
+            }
+
+            @Override
+            public void close() {
+                mClosed.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+
+    @Test
+    public void search_matchesPrefixesAcrossFields() {
+        SearchIndex index = sampleIndex();
+
+        assertEquals(Arrays.asList("1", "2"), index.search("jaz", 10));
+        assertEquals(Collections.singletonList("2"), index.search("jazz messen", 10));
+        assertEquals(Collections.singletonList("3"), index.search("SPACE", 10));
+        assertTrue(index.search("blues rock", 10).isEmpty());
+        assertTrue(index.search("   ", 10).isEmpty());
+    }
+
+    @Test
+    public void search_ranksTitleAndExactMatchesFirst() {
+        SearchIndex index = sampleIndex();
+
+        //"Jazz in Paris"标题命中，比流派命中的排名高
+        assertEquals("1", index.search("jazz", 10).get(0));
+        //完整匹配"moon"优先于前缀匹配"moonlight"，即使后者先加入目录
+        assertEquals(Arrays.asList("5", "4"), index.search("moon", 10));
+        assertEquals(Collections.singletonList("5"), index.search("moon", 1));
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        SearchIndex index = new SearchIndex();
+        index.put("1", "Café del Mar", "Beyoncé", "Été", "Électronique");
+
+        assertEquals(Collections.singletonList("1"), index.search("cafe", 10));
+        assertEquals(Collections.singletonList("1"), index.search("BEYON", 10));
+        assertEquals(Collections.singletonList("1"), index.search("electro ete", 10));
+    }
+
+    @Test
+    public void putAndRetainAll_updateIncrementally() {
+        SearchIndex index = sampleIndex();
+
+        index.put("1", "Swing in Paris", "Media Right Productions", "Swing Time", "Swing");
+        assertEquals(Collections.singletonList("2"), index.search("jaz", 10));
+        assertEquals(Collections.singletonList("1"), index.search("swing", 10));
+
+        index.retainAll(new HashSet<>(Arrays.asList("1", "3")));
+        assertEquals(2, index.size());
+        assertTrue(index.search("jaz", 10).isEmpty());
+        assertTrue(index.search("moon", 10).isEmpty());
+        assertEquals(Collections.singletonList("3"), index.search("wak", 10));
+    }
+
+    //查询耗时见:benchmark模块的MusicProviderLookupBenchmark
+    @Test
+    public void search_largeCatalogFindsExactTrack() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 20000; i++) {
+            index.put(String.valueOf(i), "Track " + i, "Artist " + (i % 500),
+                    "Album " + (i % 2000), "Genre " + (i % 40));
+        }
+
+        assertEquals(Collections.singletonList("4242"), index.search("track 4242", 20));
+        assertEquals("4242", index.search("track 4242 artist 242", 1).get(0));
+        assertTrue(index.search("track 4242 genre 3", 20).isEmpty());
+    }
+
+    @Test
+    public void search_broadQueryChecksEveryCandidate() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 5000; i++) {
+            index.put(String.valueOf(i), "Song " + i, "Artist", "Album", "Pop");
+        }
+        //最相关的一首在最后加入，候选不能只检查前面一部分
+        index.put("last", "Pop", "Artist", "Album", "Pop");
+
+        assertEquals("last", index.search("pop", 3).get(0));
+        assertEquals(5001, index.search("pop", 10000).size());
+        assertEquals(Collections.singletonList("last"), index.search("pop pop", 1));
+    }
+
+    @Test
+    public void putWithBase_reusesTokensAndLeavesBaseUnchanged() {
+        SearchIndex base = sampleIndex();
+        SearchIndex index = new SearchIndex();
+        index.put(base, "1", "Jazz in Paris", "Media Right Productions", "Jazz & Blues", "Jazz");
+        index.put(base, "4", "Moonlight Sonata", "Artist", "Album", "Classical");
+        index.put(base, "6", "Waltz", "Artist", "Album", "Classical");
+
+        assertEquals(Collections.singletonList("1"), index.search("paris", 10));
+        assertEquals(Collections.singletonList("4"), index.search("sonata", 10));
+        assertEquals(Arrays.asList("4", "6"), index.search("classical", 10));
+        assertTrue(index.search("messenger", 10).isEmpty());
+
+        //旧索引不受影响，刷新失败时可以继续使用
+        assertEquals(5, base.size());
+        assertEquals(Arrays.asList("5", "4"), base.search("moon", 10));
+        assertTrue(base.search("sonata", 10).isEmpty());
+    }
+
+    private static SearchIndex sampleIndex() {
+        SearchIndex index = new SearchIndex();
+        index.put("1", "Jazz in Paris", "Media Right Productions", "Jazz & Blues", "Jazz");
+        index.put("2", "The Messenger", "Silent Partner", "You're Going To Need This", "Jazz");
+        index.put("3", "Intro - The Way Of Waking Up", "The Kyoto Connection", "Wake Up", "Spacey");
+        index.put("4", "Moonlight", "Artist", "Album", "Pop");
+        index.put("5", "Moon", "Artist", "Album", "Pop");
+        return index;
+    }
+}
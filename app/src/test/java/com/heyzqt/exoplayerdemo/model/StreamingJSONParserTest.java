@@ -0,0 +1,92 @@
+package com.heyzqt.exoplayerdemo.model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingJSONParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String BASE_PATH = "http://example.com/media/";
+
+    @Test
+    public void parse_resolvesRelativePathsAndSkipsUnknownFields() {
+        String json = "{\"version\": 3, \"extra\": {\"a\": [1, 2, {\"b\": null}]}, \"music\": [" +
+                track("Jazz in Paris", "jazz.mp3", "https://cdn.example.com/jazz.jpg") + "]}";
+
+        Iterator<MusicTrack> tracks = new StreamingJSONParser().parse(stream(json), BASE_PATH);
+
+        assertTrue(tracks.hasNext());
+        MusicTrack track = tracks.next();
+        assertEquals("Jazz in Paris", track.title);
+        assertEquals(BASE_PATH + "jazz.mp3", track.source);
+        assertEquals("https://cdn.example.com/jazz.jpg", track.albumArtUri);
+        assertEquals(String.valueOf((BASE_PATH + "jazz.mp3").hashCode()), track.mediaId);
+        assertEquals(103000, track.duration);
+        assertEquals(2, track.trackNumber);
+        assertEquals(13, track.totalTrackCount);
+        assertFalse(tracks.hasNext());
+    }
+
+    @Test
+    public void parse_decodesUtf8AndEscapes() {
+        String json = "{\"music\": [" + track("Caf\u00e9 \\\"Ol\\u00e9\\\"\\n\u97f3\u4e50", "a.mp3", "a.jpg") + "]}";
+
+        MusicTrack track = new StreamingJSONParser().parse(stream(json), BASE_PATH).next();
+
+        assertEquals("Caf\u00e9 \"Ol\u00e9\"\n\u97f3\u4e50", track.title);
+    }
+
+    @Test
+    public void parse_yieldsTracksBeforeStreamIsComplete() {
+        String head = "{\"music\": [" + track("First", "1.mp3", "1.jpg") + ",";
+        InputStream brokenTail = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+
+        Iterator<MusicTrack> tracks = new StreamingJSONParser().parse(
+                new SequenceInputStream(stream(head), brokenTail), BASE_PATH);
+
+        assertEquals("First", tracks.next().title);
+        try {
+            tracks.hasNext();
+            fail("expected the network failure to surface while iterating");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void parse_emptyOrMissingMusicArray() {
+        assertFalse(new StreamingJSONParser().parse(stream("{\"music\": []}"), BASE_PATH).hasNext());
+        assertFalse(new StreamingJSONParser().parse(stream("{\"other\": 1}"), BASE_PATH).hasNext());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void parse_missingFieldFails() {
+        new StreamingJSONParser().parse(stream("{\"music\": [{\"title\": \"x\"}]}"), BASE_PATH).next();
+    }
+
+    private static String track(String title, String source, String image) {
+        return "{\"title\": \"" + title + "\", \"album\": \"Jazz & Blues\", \"artist\": \"Media Right\"," +
+                " \"genre\": \"Jazz\", \"source\": \"" + source + "\", \"image\": \"" + image + "\"," +
+                " \"trackNumber\": 2, \"totalTrackCount\": 13, \"duration\": 103, \"site\": \"x\"}";
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,169 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import com.heyzqt.exoplayerdemo.utils.BandwidthLimiter;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HeadPrefetcherTest {
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final FakeLoader mLoader = new FakeLoader();
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void queueBeforeBrowse_andConcurrencyIsLimited() throws Exception {
+        HeadPrefetcher prefetcher = newPrefetcher(2);
+        prefetcher.setBrowseCandidates(Arrays.asList("d", "a"));
+        prefetcher.setQueueCandidates(Arrays.asList("a", "b", "c"));
+
+        assertEquals(set("d", "a"), mLoader.nextStarted(2));
+        assertNull(mLoader.mStarted.poll(100, TimeUnit.MILLISECONDS));
+
+        //"d"在排队之前已经开始了，"a"完成后按优先级接着下载"b"
+        mLoader.finish("a");
+        assertEquals("b", mLoader.nextStarted());
+        assertTrue(waitPrefetched(prefetcher, "a"));
+        mLoader.finish("d");
+        assertEquals("c", mLoader.nextStarted());
+    }
+
+    @Test
+    public void staleCandidates_areCanceled() throws Exception {
+        HeadPrefetcher prefetcher = newPrefetcher(2);
+        prefetcher.setBrowseCandidates(Arrays.asList("a", "b"));
+        assertEquals(set("a", "b"), mLoader.nextStarted(2));
+
+        //翻到了下一页，上一页的下载都过时了
+        prefetcher.setBrowseCandidates(Arrays.asList("c"));
+        assertEquals("c", mLoader.nextStarted());
+        assertTrue(mLoader.mCanceled.get("a").await(1, TimeUnit.SECONDS));
+        assertTrue(mLoader.mCanceled.get("b").await(1, TimeUnit.SECONDS));
+        assertFalse(prefetcher.isPrefetched("a"));
+
+        prefetcher.cancelAll();
+        assertTrue(mLoader.mCanceled.get("c").await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void prefetchedItems_areNotLoadedAgain_andPlayCountsHits() throws Exception {
+        HeadPrefetcher prefetcher = newPrefetcher(1);
+        prefetcher.setQueueCandidates(Collections.singletonList("a"));
+        assertEquals("a", mLoader.nextStarted());
+        mLoader.finish("a");
+        assertTrue(waitPrefetched(prefetcher, "a"));
+        assertEquals(100, prefetcher.getPrefetchedBytes());
+
+        prefetcher.setBrowseCandidates(Arrays.asList("a", "b"));
+        assertEquals("b", mLoader.nextStarted());
+
+        //播放器自己加载正在播放的音乐，对应的提前下载取消
+        prefetcher.setPlayingMediaId("a");
+        assertEquals(1, prefetcher.getHitCount());
+        prefetcher.setPlayingMediaId("b");
+        assertTrue(mLoader.mCanceled.get("b").await(1, TimeUnit.SECONDS));
+        assertEquals(1, prefetcher.getHitCount());
+    }
+
+    @Test
+    public void paused_startsNothingNew() throws Exception {
+        HeadPrefetcher prefetcher = newPrefetcher(2);
+        prefetcher.setPaused(true);
+        prefetcher.setQueueCandidates(Arrays.asList("a", "b"));
+        assertNull(mLoader.mStarted.poll(100, TimeUnit.MILLISECONDS));
+
+        prefetcher.setPaused(false);
+        assertEquals(set("a", "b"), mLoader.nextStarted(2));
+    }
+
+    private HeadPrefetcher newPrefetcher(int maxConcurrent) {
+        return new HeadPrefetcher(mExecutor, mLoader, new BandwidthLimiter(0, 0), maxConcurrent, 8, 100);
+    }
+
+    private static Set<String> set(String... mediaIds) {
+        return new HashSet<>(Arrays.asList(mediaIds));
+    }
+
+    private static boolean waitPrefetched(HeadPrefetcher prefetcher, String mediaId)
+            throws InterruptedException {
+        for (int i = 0; i < 100 && !prefetcher.isPrefetched(mediaId); i++) {
+            Thread.sleep(10);
+        }
+        return prefetcher.isPrefetched(mediaId);
+    }
+
+    //每个下载都阻塞到测试调用finish或者被取消
+    private static class FakeLoader implements HeadPrefetcher.Loader {
+        final BlockingQueue<String> mStarted = new LinkedBlockingQueue<>();
+        final Map<String, CountDownLatch> mFinish = new ConcurrentHashMap<>();
+        final Map<String, CountDownLatch> mCanceled = new ConcurrentHashMap<>();
+
+        @Override
+        public long load(String mediaId, long maxBytes, BandwidthLimiter limiter, AtomicBoolean canceled)
+                throws InterruptedException {
+            CountDownLatch canceledLatch = new CountDownLatch(1);
+            mCanceled.put(mediaId, canceledLatch);
+            mStarted.add(mediaId);
+            try {
+                while (!latch(mediaId).await(10, TimeUnit.MILLISECONDS)) {
+                    if (canceled.get()) {
+                        throw new InterruptedException();
+                    }
+                }
+            } catch (InterruptedException e) {
+                canceledLatch.countDown();
+                throw e;
+            }
+            return maxBytes;
+        }
+
+        void finish(String mediaId) {
+            latch(mediaId).countDown();
+        }
+
+        String nextStarted() throws InterruptedException {
+            return mStarted.poll(1, TimeUnit.SECONDS);
+        }
+
+        //同时开始的下载先后顺序不确定
+        Set<String> nextStarted(int count) throws InterruptedException {
+            Set<String> started = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                started.add(nextStarted());
+            }
+            return started;
+        }
+
+        private CountDownLatch latch(String mediaId) {
+            CountDownLatch latch = mFinish.get(mediaId);
+            if (latch == null) {
+                mFinish.putIfAbsent(mediaId, new CountDownLatch(1));
+                latch = mFinish.get(mediaId);
+            }
+            return latch;
+        }
+    }
+}
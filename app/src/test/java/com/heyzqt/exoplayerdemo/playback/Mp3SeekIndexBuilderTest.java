@@ -0,0 +1,108 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Mp3SeekIndexBuilderTest {
+
+    //MPEG-1 Layer III，128kbps，44100Hz，没有padding：每帧417字节、1152个采样
+    private static final int HEADER = 0xfffb9000;
+    private static final int FRAME_SIZE = 417;
+    private static final long FRAME_US = 1152L * 1000000 / 44100;
+
+    @Test
+    public void frameHeaders_areParsed() {
+        assertEquals(FRAME_SIZE, Mp3SeekIndexBuilder.frameSize(HEADER));
+        //加上padding多1字节
+        assertEquals(FRAME_SIZE + 1, Mp3SeekIndexBuilder.frameSize(HEADER | 0x200));
+        assertEquals(44100, Mp3SeekIndexBuilder.sampleRate(HEADER));
+        assertEquals(1152, Mp3SeekIndexBuilder.samplesPerFrame(HEADER));
+        //MPEG-2 Layer III，64kbps，22050Hz
+        int mpeg2 = 0xfff38000;
+        assertEquals(72 * 64000 / 22050, Mp3SeekIndexBuilder.frameSize(mpeg2));
+        assertEquals(576, Mp3SeekIndexBuilder.samplesPerFrame(mpeg2));
+        //不是帧头
+        assertEquals(-1, Mp3SeekIndexBuilder.frameSize(0x49443303));
+        assertEquals(-1, Mp3SeekIndexBuilder.frameSize(0xfffbf000));
+    }
+
+    @Test
+    public void build_skipsTagsAndInfoFrame_andResyncsAfterGarbage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeId3(out, 100);
+        writeFrame(out, "Xing");
+        for (int i = 0; i < 100; i++) {
+            if (i == 51) {
+                out.write(new byte[7]);
+            }
+            writeFrame(out, null);
+        }
+        //结尾不完整的一帧和ID3v1标签
+        writeInt(out, HEADER);
+        out.write(new byte[100]);
+        out.write('T');
+        out.write('A');
+        out.write('G');
+        out.write(new byte[125]);
+        byte[] data = out.toByteArray();
+
+        SeekIndex index = Mp3SeekIndexBuilder.build(new ByteArrayInputStream(data),
+                Mp3SeekIndexBuilder.DEFAULT_INTERVAL_US, -1);
+
+        long firstAudio = 10 + 100 + FRAME_SIZE;
+        assertEquals(data.length, index.getStreamLength());
+        assertEquals(100 * 1152L * 1000000 / 44100, index.getDurationUs());
+        //每20帧（约522ms）一项
+        assertEquals(5, index.size());
+        for (int i = 0; i < index.size(); i++) {
+            int frame = i * 20;
+            assertEquals(frame * 1152L * 1000000 / 44100, index.getTimeUs(i));
+            long expected = firstAudio + frame * FRAME_SIZE + (frame >= 51 ? 7 : 0);
+            assertEquals("entry " + i, expected, index.getPosition(i));
+        }
+        assertEquals(0, index.indexOfTime(0));
+        assertEquals(1, index.indexOfTime(21 * FRAME_US));
+        assertEquals(4, index.indexOfTime(Long.MAX_VALUE));
+        assertEquals(index.getTimeUs(3), index.getTimeUsAtPosition(index.getPosition(3)));
+        assertEquals(-1, index.getTimeUsAtPosition(index.getPosition(3) + 1));
+    }
+
+    @Test
+    public void build_returnsNullForOtherData() throws IOException {
+        assertNull(Mp3SeekIndexBuilder.build(new ByteArrayInputStream(new byte[200 * 1024]),
+                Mp3SeekIndexBuilder.DEFAULT_INTERVAL_US, -1));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeFrame(out, null);
+        writeFrame(out, null);
+        assertNull(Mp3SeekIndexBuilder.build(new ByteArrayInputStream(out.toByteArray()),
+                Mp3SeekIndexBuilder.DEFAULT_INTERVAL_US, -1));
+    }
+
+    private static void writeId3(ByteArrayOutputStream out, int size) throws IOException {
+        out.write(new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, (byte) (size >> 7), (byte) (size & 0x7f)});
+        out.write(new byte[size]);
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, String tag) throws IOException {
+        writeInt(out, HEADER);
+        byte[] body = new byte[FRAME_SIZE - 4];
+        if (tag != null) {
+            byte[] bytes = tag.getBytes("US-ASCII");
+            System.arraycopy(bytes, 0, body, 32, bytes.length);
+        }
+        out.write(body);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
@@ -0,0 +1,71 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PausePolicyTest {
+
+    @Test
+    public void pause_stepsDownThroughTiers() {
+        PausePolicy policy = new PausePolicy();
+        policy.setTimeouts(1000, 5000);
+        assertEquals(-1, policy.getDelayToNextTierMs(0));
+
+        policy.onPaused(10000, 2048);
+        assertEquals(PausePolicy.Tier.WARM, policy.getTier());
+        assertEquals(1000, policy.getDelayToNextTierMs(10000));
+        //已经在暂停时不重新计时
+        policy.onPaused(10500, 4096);
+        assertNull(policy.advance(10999));
+
+        assertEquals(PausePolicy.Tier.IDLE, policy.advance(11000));
+        assertEquals(4000, policy.getDelayToNextTierMs(11000));
+        assertEquals(PausePolicy.Tier.RELEASED, policy.advance(15000));
+        assertEquals(-1, policy.getDelayToNextTierMs(15000));
+        assertNull(policy.advance(99999));
+
+        assertEquals(1000, policy.getTimeInTierMs(PausePolicy.Tier.WARM, 20000));
+        assertEquals(4000, policy.getTimeInTierMs(PausePolicy.Tier.IDLE, 20000));
+        assertEquals(5000, policy.getTimeInTierMs(PausePolicy.Tier.RELEASED, 20000));
+        //释放以后不再占用缓冲区
+        assertEquals(2048 * 5, policy.getHeldBufferByteSeconds(20000));
+    }
+
+    @Test
+    public void lateTimer_canSkipTiers() {
+        PausePolicy policy = new PausePolicy();
+        policy.setTimeouts(1000, 5000);
+        policy.onPaused(0, 0);
+        assertEquals(PausePolicy.Tier.RELEASED, policy.advance(6000));
+    }
+
+    @Test
+    public void resume_countsTierAndRestartsTiming() {
+        PausePolicy policy = new PausePolicy();
+        policy.setTimeouts(1000, 5000);
+        policy.onPaused(0, 100);
+        assertEquals(PausePolicy.Tier.WARM, policy.onResumed(300));
+        assertEquals(PausePolicy.Tier.ACTIVE, policy.onResumed(400));
+        assertEquals(1, policy.getResumeCount(PausePolicy.Tier.WARM));
+
+        policy.onPaused(1000, 100);
+        policy.advance(2500);
+        assertEquals(PausePolicy.Tier.IDLE, policy.onResumed(3000));
+        assertEquals(1, policy.getResumeCount(PausePolicy.Tier.IDLE));
+        assertEquals(300 + 1500, policy.getTimeInTierMs(PausePolicy.Tier.WARM, 3000));
+        assertEquals(500, policy.getTimeInTierMs(PausePolicy.Tier.IDLE, 3000));
+
+        //停止不算恢复
+        policy.onPaused(4000, 100);
+        policy.reset(4200);
+        assertEquals(PausePolicy.Tier.ACTIVE, policy.getTier());
+        assertEquals(1, policy.getResumeCount(PausePolicy.Tier.WARM));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releaseTimeout_cannotBeShorterThanIdleTimeout() {
+        new PausePolicy().setTimeouts(5000, 1000);
+    }
+}
@@ -0,0 +1,223 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PlaybackMetricsTest {
+
+    @Test
+    public void session_tracksFirstAudioRebuffersAndSeeks() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession("a", 1000, false);
+        //首帧之前的缓冲不算卡顿
+        metrics.onBuffering(1100);
+        metrics.onReady(1350, true);
+        metrics.onBytesLoaded(4096);
+
+        metrics.onBuffering(5000);
+        metrics.onReady(5200, true);
+
+        //seek引起的缓冲不算卡顿，耗时算到seek完成后第一次准备好
+        metrics.onSeekStarted(8000);
+        metrics.onBuffering(8010);
+        metrics.onSeekProcessed();
+        metrics.onReady(8090, true);
+        metrics.onDroppedEvent(2);
+
+        PlaybackMetrics.Session session = metrics.getCurrentSession();
+        assertEquals("a", session.getMediaId());
+        assertEquals(350, session.getTimeToFirstAudioMs());
+        assertEquals(1, session.getRebufferCount());
+        assertEquals(200, session.getRebufferMs());
+        assertEquals(1, session.getSeekCount());
+        assertEquals(90, session.getMaxSeekMs());
+        assertEquals(4096, session.getBytesLoaded());
+        assertEquals(2, session.getDroppedEvents());
+        assertEquals(-1, session.getDurationMs());
+    }
+
+    @Test
+    public void pausedReady_doesNotCountAsFirstAudio() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession("a", 0, false);
+        metrics.onReady(100, false);
+        assertEquals(-1, metrics.getCurrentSession().getTimeToFirstAudioMs());
+        metrics.onReady(700, true);
+        assertEquals(700, metrics.getCurrentSession().getTimeToFirstAudioMs());
+    }
+
+    @Test
+    public void startSession_finishesPreviousOne() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession("a", 0, false);
+        metrics.onReady(100, true);
+        metrics.onBuffering(500);
+        //无缝切换到下一首：没有首帧等待，上一首没结束的卡顿计入时长
+        metrics.startSession("b", 800, true);
+
+        List<PlaybackMetrics.Session> finished = metrics.getFinishedSessions();
+        assertEquals(1, finished.size());
+        assertEquals(800, finished.get(0).getDurationMs());
+        assertEquals(300, finished.get(0).getRebufferMs());
+        assertEquals(0, metrics.getCurrentSession().getTimeToFirstAudioMs());
+        assertEquals(1, metrics.getTimeToFirstAudio().count);
+
+        metrics.endSession(900);
+        assertNull(metrics.getCurrentSession());
+        assertEquals(2, metrics.getFinishedSessions().size());
+    }
+
+    @Test
+    public void percentiles_useRollingWindow() {
+        PlaybackMetrics metrics = new PlaybackMetrics(100);
+        //前100个样本会被后面的覆盖
+        for (int i = 0; i < 100; i++) {
+            metrics.startSession("old" + i, 0, false);
+            metrics.onReady(10000, true);
+        }
+        for (int i = 1; i <= 100; i++) {
+            metrics.startSession("new" + i, 0, false);
+            metrics.onReady(i, true);
+        }
+
+        PlaybackMetrics.Percentiles ttfa = metrics.getTimeToFirstAudio();
+        assertEquals(100, ttfa.count);
+        assertEquals(50, ttfa.p50);
+        assertEquals(90, ttfa.p90);
+        assertEquals(99, ttfa.p99);
+        assertEquals(100, ttfa.max);
+    }
+
+    @Test
+    public void bufferProfiles_areMeasuredSeparately() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.setBufferProfile("LOW_LATENCY_START");
+        metrics.startSession("a", 0, false);
+        metrics.onReady(300, true);
+        metrics.onBufferAllocated(2 * 1024 * 1024);
+        metrics.onBufferAllocated(1024 * 1024);
+        metrics.onHeapUsed(40 * 1024 * 1024);
+        metrics.onHeapUsed(30 * 1024 * 1024);
+
+        //切换策略只影响之后开始的会话
+        metrics.setBufferProfile("LOW_MEMORY");
+        assertEquals("LOW_LATENCY_START", metrics.getCurrentSession().getBufferProfile());
+        metrics.startSession("b", 1000, false);
+        metrics.onReady(1900, true);
+        metrics.onBufferAllocated(512 * 1024);
+        metrics.onHeapUsed(20 * 1024 * 1024);
+        metrics.endSession(2000);
+
+        assertEquals(300, metrics.getTimeToFirstAudio("LOW_LATENCY_START").p50);
+        assertEquals(2 * 1024 * 1024, metrics.getPeakBufferBytes("LOW_LATENCY_START").max);
+        assertEquals(900, metrics.getTimeToFirstAudio("LOW_MEMORY").p50);
+        assertEquals(512 * 1024, metrics.getPeakBufferBytes("LOW_MEMORY").max);
+        assertEquals(40 * 1024 * 1024, metrics.getPeakHeapBytes("LOW_LATENCY_START").max);
+        assertEquals(20 * 1024 * 1024, metrics.getPeakHeapBytes("LOW_MEMORY").max);
+        assertEquals(0, metrics.getPeakHeapBytes("HIGH_THROUGHPUT").count);
+        assertEquals(0, metrics.getTimeToFirstAudio("HIGH_THROUGHPUT").count);
+        assertEquals(2, metrics.getTimeToFirstAudio().count);
+
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("\"profiles\":{\"LOW_LATENCY_START\":{\"ttfaMs\":{\"count\":1,\"p50\":300"));
+        assertTrue(dump, dump.contains(
+                "\"bufferProfile\":\"LOW_MEMORY\",\"peakBufferBytes\":524288,\"peakHeapBytes\":20971520}"));
+        assertTrue(dump, dump.contains("\"peakHeapBytes\":{\"count\":1,\"p50\":41943040"));
+    }
+
+    @Test
+    public void reusedAndNewPlayers_areMeasuredSeparately() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession("a", 0, false, false);
+        metrics.onReady(700, true);
+        metrics.startSession("b", 1000, false, true);
+        metrics.onReady(1200, true);
+        //无缝切换不统计首帧
+        metrics.startSession("c", 2000, true);
+        metrics.onReady(2100, true);
+
+        assertEquals(2, metrics.getTimeToFirstAudio().count);
+        assertEquals(1, metrics.getTimeToFirstAudio(false).count);
+        assertEquals(700, metrics.getTimeToFirstAudio(false).p50);
+        assertEquals(1, metrics.getTimeToFirstAudio(true).count);
+        assertEquals(200, metrics.getTimeToFirstAudio(true).p50);
+        assertFalse(metrics.getFinishedSessions().get(0).isReusedPlayer());
+
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("\"ttfaReusedPlayerMs\":{\"count\":1,\"p50\":200"));
+        assertTrue(dump, dump.contains("\"ttfaNewPlayerMs\":{\"count\":1,\"p50\":700"));
+        assertTrue(dump, dump.contains("\"reusedPlayer\":false"));
+    }
+
+    @Test
+    public void seekLatency_isSplitByIndexUse() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession("a", 0, false);
+        metrics.onReady(100, true);
+        metrics.onSeekStarted(1000);
+        metrics.onSeekProcessed();
+        metrics.onReady(1400, true);
+
+        metrics.setSeekIndexed(true);
+        metrics.onSeekStarted(2000);
+        metrics.onSeekProcessed();
+        metrics.onReady(2060, true);
+
+        assertEquals(2, metrics.getSeekLatency().count);
+        assertEquals(400, metrics.getSeekLatency(false).p50);
+        assertEquals(1, metrics.getSeekLatency(true).count);
+        assertEquals(60, metrics.getSeekLatency(true).p50);
+        assertTrue(metrics.getCurrentSession().isSeekIndexed());
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("\"seekIndexedMs\":{\"count\":1,\"p50\":60"));
+        assertTrue(dump, dump.contains("\"seekUnindexedMs\":{\"count\":1,\"p50\":400"));
+    }
+
+    @Test
+    public void resumeLatency_isMeasuredPerTier() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession("a", 0, false);
+        metrics.onReady(100, true);
+        metrics.onReady(5000, false);
+
+        metrics.onResumeStarted(6000, "WARM");
+        metrics.onReady(6015, true);
+        //完全释放后恢复会开始新的会话
+        metrics.onResumeStarted(9000, "RELEASED");
+        metrics.startSession("a", 9000, false);
+        metrics.onReady(9400, true);
+        //停止时没完成的恢复不计入
+        metrics.onResumeStarted(12000, "WARM");
+        metrics.cancelResume();
+        metrics.onReady(13000, true);
+
+        assertEquals(1, metrics.getResumeLatency("WARM").count);
+        assertEquals(15, metrics.getResumeLatency("WARM").p50);
+        assertEquals(400, metrics.getResumeLatency("RELEASED").p50);
+        assertEquals(0, metrics.getResumeLatency("IDLE").count);
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("\"resumeMs\":{\"WARM\":{\"count\":1,\"p50\":15"));
+    }
+
+    @Test
+    public void dump_exportsJson() {
+        PlaybackMetrics metrics = new PlaybackMetrics();
+        metrics.startSession("__BY_GENRE__/Jazz|\"1\"", 0, false);
+        metrics.onReady(250, true);
+        metrics.onBytesLoaded(100);
+        metrics.endSession(1000);
+
+        String dump = metrics.dump();
+        assertTrue(dump, dump.startsWith("{\"totals\":{\"sessions\":1,\"rebuffers\":0,\"bytesLoaded\":100"));
+        assertTrue(dump, dump.contains("\"ttfaMs\":{\"count\":1,\"p50\":250,\"p90\":250,\"p99\":250,\"max\":250}"));
+        assertTrue(dump, dump.contains("\"current\":null"));
+        assertTrue(dump, dump.contains("{\"mediaId\":\"__BY_GENRE__/Jazz|\\\"1\\\"\",\"durationMs\":1000,\"ttfaMs\":250"));
+        assertTrue(dump, dump.endsWith("}]}"));
+    }
+}
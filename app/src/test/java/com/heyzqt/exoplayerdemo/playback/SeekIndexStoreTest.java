@@ -0,0 +1,72 @@
+package com.heyzqt.exoplayerdemo.playback;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SeekIndexStoreTest {
+
+    private static final String SOURCE = "http://example.com/music/long track.mp3";
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("seek", "");
+        mDir.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void index_survivesRestart() throws IOException {
+        SeekIndex index = new SeekIndex(new long[]{0, 522448, 1044897},
+                new long[]{527, 8867, 17207}, 2612244, 42000);
+        new SeekIndexStore(mDir, SeekIndexStore.DEFAULT_MAX_BYTES).put(SOURCE, index);
+
+        //新的实例只能从磁盘读到
+        SeekIndexStore store = new SeekIndexStore(mDir, SeekIndexStore.DEFAULT_MAX_BYTES);
+        assertNull(store.getIfLoaded(SOURCE));
+        SeekIndex loaded = store.get(SOURCE);
+        assertNotNull(loaded);
+        assertEquals(3, loaded.size());
+        assertEquals(1044897, loaded.getTimeUs(2));
+        assertEquals(17207, loaded.getPosition(2));
+        assertEquals(2612244, loaded.getDurationUs());
+        assertEquals(42000, loaded.getStreamLength());
+        assertNotNull(store.getIfLoaded(SOURCE));
+        assertNull(store.get("http://example.com/music/other.mp3"));
+    }
+
+    @Test
+    public void unreadableFile_isDropped() throws IOException {
+        SeekIndexStore store = new SeekIndexStore(mDir, SeekIndexStore.DEFAULT_MAX_BYTES);
+        store.put(SOURCE, new SeekIndex(new long[]{0}, new long[]{0}, 1000, 100));
+        File[] files = mDir.listFiles();
+        assertEquals(1, files.length);
+        FileOutputStream out = new FileOutputStream(files[0]);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+
+        SeekIndexStore reopened = new SeekIndexStore(mDir, SeekIndexStore.DEFAULT_MAX_BYTES);
+        assertNull(reopened.get(SOURCE));
+        assertEquals(0, mDir.listFiles().length);
+    }
+}
@@ -0,0 +1,132 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import android.util.Log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLogWriterTest {
+
+    @Test
+    public void records_areFormattedInOrder_andMutableArgsAreCapturedAtCallTime() {
+        RecordingSink sink = new RecordingSink();
+        AsyncLogWriter writer = new AsyncLogWriter(16, sink);
+
+        StringBuilder mutable = new StringBuilder("before");
+        writer.log("tag", Log.DEBUG, null, 1, "single", null, null, null, null);
+        writer.log("tag", Log.INFO, null, 3, "size = ", 42, mutable, null, null);
+        writer.log("tag", Log.WARN, null, 0, null, null, null, null, new Object[]{"a", 'b', 3L, null});
+        mutable.append(" after");
+        assertTrue(writer.flush(1000));
+
+        assertEquals(3, sink.mLines.size());
+        assertEquals("3/tag/single", sink.mLines.get(0));
+        assertEquals("4/tag/size = 42before", sink.mLines.get(1));
+        assertEquals("5/tag/ab3null", sink.mLines.get(2));
+    }
+
+    @Test
+    public void fullBuffer_dropsAndReportsWithoutBlocking() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink() {
+            @Override
+            public void println(int level, String tag, String message) {
+                if (message.equals("block")) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.println(level, tag, message);
+            }
+        };
+        AsyncLogWriter writer = new AsyncLogWriter(4, sink);
+        writer.log("tag", Log.DEBUG, null, 1, "block", null, null, null, null);
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+        //后台线程卡住时调用方不等待，多出来的直接丢弃
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (writer.log("tag", Log.DEBUG, null, 1, i, null, null, null, null)) {
+                accepted++;
+            }
+        }
+        assertEquals(4, accepted);
+        assertEquals(6, writer.getDroppedCount());
+
+        release.countDown();
+        assertTrue(writer.flush(1000));
+        assertEquals("3/tag/block", sink.mLines.get(0));
+        assertTrue(sink.mLines.toString(), sink.mLines.get(1).endsWith("log buffer full, dropped 6 records"));
+        assertEquals("3/tag/0", sink.mLines.get(2));
+        assertEquals(6, sink.mLines.size());
+    }
+
+    @Test
+    public void concurrentProducers_keepPerThreadOrder() throws Exception {
+        final RecordingSink sink = new RecordingSink();
+        final AsyncLogWriter writer = new AsyncLogWriter(256, sink);
+        final int perThread = 20000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final String tag = "t" + t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        writer.log(tag, Log.DEBUG, null, 1, i, null, null, null, null);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(writer.flush(5000));
+
+        int[] last = {-1, -1, -1, -1};
+        int received = 0;
+        for (String line : sink.snapshot()) {
+            String[] parts = line.split("/");
+            if (!parts[1].startsWith("t")) {
+                continue;
+            }
+            int thread = Integer.parseInt(parts[1].substring(1));
+            int value = Integer.parseInt(parts[2]);
+            assertTrue(line, value > last[thread]);
+            last[thread] = value;
+            received++;
+        }
+        assertEquals(4 * perThread, received + writer.getDroppedCount());
+        assertFalse(received == 0);
+    }
+
+    private static class RecordingSink implements AsyncLogWriter.Sink {
+        final List<String> mLines = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void println(int level, String tag, String message) {
+            mLines.add(level + "/" + tag + "/" + message);
+        }
+
+        List<String> snapshot() {
+            synchronized (mLines) {
+                return new ArrayList<>(mLines);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class BandwidthLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void sharedReads_queueBehindEachOther() {
+        BandwidthLimiter limiter = new BandwidthLimiter(1000 * 1000, 0, 0);
+        //1MB/s下每100KB要100ms，后来的要等前面欠下的一起还清
+        assertEquals(100 * MS, limiter.reserve(100 * 1000, 0));
+        assertEquals(200 * MS, limiter.reserve(100 * 1000, 0));
+        //过了150ms还了150KB，还欠50KB，再读1KB要等51ms
+        assertEquals(51 * MS, limiter.reserve(1000, 150 * MS));
+    }
+
+    @Test
+    public void idleTime_refillsUpToBurst() {
+        BandwidthLimiter limiter = new BandwidthLimiter(1000 * 1000, 100 * 1000, 0);
+        assertEquals(0, limiter.reserve(100 * 1000, 0));
+        assertEquals(50 * MS, limiter.reserve(50 * 1000, 0));
+
+        //空闲250ms最多攒下burst的100KB
+        assertEquals(0, limiter.reserve(100 * 1000, 250 * MS));
+        assertEquals(MS, limiter.reserve(1000, 250 * MS));
+    }
+
+    @Test
+    public void zeroRate_neverWaits() throws InterruptedException {
+        BandwidthLimiter limiter = new BandwidthLimiter(0, 0, 0);
+        assertEquals(0, limiter.reserve(Long.MAX_VALUE, 0));
+        new BandwidthLimiter(0, 0).acquire(Long.MAX_VALUE);
+    }
+}
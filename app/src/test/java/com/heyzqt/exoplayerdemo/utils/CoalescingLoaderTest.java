@@ -0,0 +1,132 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingLoaderTest {
+
+    @Test
+    public void concurrentRequests_forSameKey_loadOnce() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CoalescingLoader<String, String> loader = new CoalescingLoader<>(executor,
+                new CoalescingLoader.Loader<String, String>() {
+                    @Override
+                    public String load(String key) throws Exception {
+                        loads.incrementAndGet();
+                        release.await();
+                        return key.toUpperCase();
+                    }
+                });
+
+        RecordingCallback callback = new RecordingCallback(6);
+        assertTrue(loader.load("cover.jpg", callback));
+        for (int i = 0; i < 4; i++) {
+            assertFalse(loader.load("cover.jpg", callback));
+        }
+        assertTrue(loader.load("other.jpg", callback));
+        assertEquals(2, loader.getInFlightCount());
+
+        release.countDown();
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(2, loads.get());
+        assertEquals(6, callback.results.size());
+        assertEquals(5, Collections.frequency(callback.results, "COVER.JPG"));
+        assertEquals(0, loader.getInFlightCount());
+    }
+
+    @Test
+    public void failure_isDeliveredToEveryWaiter_andNextRequestRetries() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CoalescingLoader<String, String> loader = new CoalescingLoader<>(executor,
+                new CoalescingLoader.Loader<String, String>() {
+                    @Override
+                    public String load(String key) throws Exception {
+                        release.await();
+                        if (loads.incrementAndGet() == 1) {
+                            throw new IOException("boom");
+                        }
+                        return key;
+                    }
+                });
+
+        RecordingCallback failed = new RecordingCallback(2);
+        loader.load("a", failed);
+        loader.load("a", failed);
+        release.countDown();
+        assertTrue(failed.done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, failed.errors.get());
+
+        RecordingCallback retried = new RecordingCallback(1);
+        assertTrue(loader.load("a", retried));
+        assertTrue(retried.done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(Collections.singletonList("a"), retried.results);
+    }
+
+    @Test
+    public void cancel_removesOnlyThatWaiter() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CoalescingLoader<String, String> loader = new CoalescingLoader<>(executor,
+                new CoalescingLoader.Loader<String, String>() {
+                    @Override
+                    public String load(String key) throws Exception {
+                        release.await();
+                        return key;
+                    }
+                });
+
+        RecordingCallback cancelled = new RecordingCallback(1);
+        RecordingCallback kept = new RecordingCallback(1);
+        loader.load("a", cancelled);
+        loader.load("a", kept);
+        loader.cancel("a", cancelled);
+        release.countDown();
+
+        assertTrue(kept.done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(cancelled.results.isEmpty());
+    }
+
+    private static class RecordingCallback implements CoalescingLoader.Callback<String, String> {
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done;
+
+        RecordingCallback(int expected) {
+            done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onLoaded(String key, String value) {
+            results.add(value);
+            done.countDown();
+        }
+
+        @Override
+        public void onFailed(String key, Exception e) {
+            errors.incrementAndGet();
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DiskByteCacheTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("art", "");
+        mDir.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void putAndGet_roundTrip() throws IOException {
+        DiskByteCache cache = new DiskByteCache(mDir, 1024);
+        assertNull(cache.get("http://example.com/a.jpg"));
+
+        File file = cache.put("http://example.com/a.jpg", bytes(100));
+        assertEquals(100, file.length());
+        assertEquals(file, cache.get("http://example.com/a.jpg"));
+        assertEquals(100, cache.size());
+
+        //覆盖同一个key不会重复计算大小
+        cache.put("http://example.com/a.jpg", bytes(300));
+        assertEquals(300, cache.size());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws IOException {
+        DiskByteCache cache = new DiskByteCache(mDir, 250);
+        cache.put("a", bytes(100)).setLastModified(1000000);
+        cache.put("b", bytes(100)).setLastModified(2000000);
+        //读a以后b变成最久没用的
+        cache.get("a");
+
+        cache.put("c", bytes(100));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(200, cache.size());
+    }
+
+    @Test
+    public void size_isRecomputedFromDisk() throws IOException {
+        new DiskByteCache(mDir, 1024).put("a", bytes(64));
+        DiskByteCache reopened = new DiskByteCache(mDir, 1024);
+        assertEquals(64, reopened.size());
+        reopened.remove("a");
+        assertEquals(0, reopened.size());
+    }
+
+    @Test
+    public void failedWrite_leavesNoEntry() {
+        DiskByteCache cache = new DiskByteCache(mDir, 1024);
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        };
+        try {
+            cache.put("a", broken);
+        } catch (IOException expected) {
+        }
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, mDir.listFiles().length);
+    }
+
+    private static InputStream bytes(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+}
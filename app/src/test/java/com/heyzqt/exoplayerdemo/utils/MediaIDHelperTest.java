@@ -0,0 +1,103 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MediaIDHelperTest {
+
+    private static final String[] MEDIA_IDS = {
+            "", "__ROOT__", "__BY_GENRE__", "__BY_GENRE__/Jazz", "__BY_GENRE__/Jazz|1234",
+            "__BY_SEARCH__/moon|42", "|42", "a/b/c", "a/b/c|", "a/", "a//", "/a", "/", "//|x",
+            "a/b|c/d|e",
+    };
+
+    @Test
+    public void helpers_matchSplitBasedImplementation() {
+        for (String mediaId : MEDIA_IDS) {
+            assertArrayEquals(mediaId, legacyHierarchy(mediaId), MediaIDHelper.getHierarchy(mediaId));
+            assertEquals(mediaId, legacyMusicId(mediaId), MediaIDHelper.extractMusicIDFromMediaID(mediaId));
+            assertEquals(mediaId, legacyParent(mediaId), MediaIDHelper.getParentMediaID(mediaId));
+            String[] hierarchy = legacyHierarchy(mediaId);
+            assertEquals(mediaId, hierarchy.length == 2 ? hierarchy[1] : null,
+                    MediaIDHelper.extractBrowseCategoryValueFromMediaID(mediaId));
+        }
+    }
+
+    @Test
+    public void createMediaID_overloadsMatchVarargs() {
+        assertEquals("__BY_GENRE__/Jazz|1", MediaIDHelper.createMediaID("1", "__BY_GENRE__", "Jazz"));
+        assertEquals("__BY_GENRE__/Jazz", MediaIDHelper.createMediaID(null, "__BY_GENRE__", "Jazz"));
+        assertEquals("__ROOT__|1", MediaIDHelper.createMediaID("1", "__ROOT__"));
+        assertEquals("null|1", MediaIDHelper.createMediaID("1", (String) null));
+        assertEquals("a/b/c|1", MediaIDHelper.createMediaID("1", new String[]{"a", "b", "c"}));
+        assertEquals("|1", MediaIDHelper.createMediaID("1", new String[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createMediaID_rejectsSeparatorsInCategories() {
+        MediaIDHelper.createMediaID("1", "__BY_GENRE__", "Rock/Pop");
+    }
+
+    @Test
+    public void mediaId_isCachedAndComparesWithoutCopies() {
+        MediaId id = MediaId.of("__BY_GENRE__/Jazz|1234");
+        assertSame(id, MediaId.of(new String("__BY_GENRE__/Jazz|1234")));
+        assertSame(id.getMusicId(), id.getMusicId());
+        assertTrue(id.musicIdEquals("1234"));
+        assertFalse(id.musicIdEquals("123"));
+        assertFalse(MediaId.of("__BY_GENRE__/Jazz").musicIdEquals("Jazz"));
+        assertTrue(id.categoryEquals(0, MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE));
+        assertFalse(id.categoryEquals(2, "x"));
+        assertEquals("__BY_GENRE__/Jazz", id.getParent().toString());
+        assertEquals("__BY_GENRE__", id.getParent().getParentMediaId());
+
+        //getHierarchy返回副本，修改不影响缓存
+        id.getHierarchy()[0] = "changed";
+        assertEquals("__BY_GENRE__", id.getCategory(0));
+    }
+
+    @Test
+    public void repeatedIds_reuseCachedResults() {
+        //分配次数由MediaIDHelperBenchmark的gc profiler统计，这里只确认重复的id不会重新解析
+        String mediaId = "__BY_GENRE__/Jazz|1234";
+        MediaId id = MediaId.of(mediaId);
+        assertSame(id, MediaId.of(mediaId));
+        assertSame(MediaIDHelper.getParentMediaID(mediaId), MediaIDHelper.getParentMediaID(mediaId));
+        assertSame(MediaIDHelper.extractMusicIDFromMediaID(mediaId),
+                MediaIDHelper.extractMusicIDFromMediaID(mediaId));
+        assertSame(MediaIDHelper.extractBrowseCategoryValueFromMediaID(mediaId),
+                MediaIDHelper.extractBrowseCategoryValueFromMediaID(mediaId));
+    }
+
+    //原来基于split/substring的实现，用来对照
+    private static String[] legacyHierarchy(String mediaID) {
+        int pos = mediaID.indexOf('|');
+        if (pos >= 0) {
+            mediaID = mediaID.substring(0, pos);
+        }
+        return mediaID.split("/");
+    }
+
+    private static String legacyMusicId(String mediaID) {
+        int pos = mediaID.indexOf('|');
+        return pos >= 0 ? mediaID.substring(pos + 1) : null;
+    }
+
+    private static String legacyParent(String mediaID) {
+        String[] hierarchy = legacyHierarchy(mediaID);
+        if (mediaID.indexOf('|') >= 0) {
+            return MediaIDHelper.createMediaID(null, hierarchy);
+        }
+        if (hierarchy.length <= 1) {
+            return MediaIDHelper.MEDIA_ID_ROOT;
+        }
+        return MediaIDHelper.createMediaID(null, Arrays.copyOf(hierarchy, hierarchy.length - 1));
+    }
+}
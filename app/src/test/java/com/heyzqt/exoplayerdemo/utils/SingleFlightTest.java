@@ -0,0 +1,274 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ExecutorService mExecutor;
+    private ScheduledExecutorService mTimer;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadExecutor();
+        mTimer = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mTimer.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallers_shareOneRun_andLateJoinerGetsLastProgress() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch published = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        SingleFlight<Integer, String> flight = new SingleFlight<>(mExecutor, mTimer, DIRECT,
+                new SingleFlight.Task<Integer, String>() {
+                    @Override
+                    public String run(SingleFlight.ProgressSink<Integer> progress) throws Exception {
+                        runs.incrementAndGet();
+                        progress.publish(50);
+                        published.countDown();
+                        release.await();
+                        return "catalog";
+                    }
+                });
+
+        RecordingListener first = new RecordingListener();
+        flight.execute(first);
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        RecordingListener late = new RecordingListener();
+        flight.execute(late);
+        assertTrue(flight.isRunning());
+
+        release.countDown();
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        assertTrue(late.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, runs.get());
+        assertEquals(Collections.singletonList(50), first.progress);
+        assertEquals(Collections.singletonList(50), late.progress);
+        assertEquals("catalog", first.result);
+        assertEquals("catalog", late.result);
+        assertFalse(flight.isRunning());
+    }
+
+    @Test
+    public void executeAfterFinish_startsNewRun() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        SingleFlight<Integer, String> flight = new SingleFlight<>(mExecutor, mTimer, DIRECT,
+                new SingleFlight.Task<Integer, String>() {
+                    @Override
+                    public String run(SingleFlight.ProgressSink<Integer> progress) {
+                        return "run " + runs.incrementAndGet();
+                    }
+                });
+
+        RecordingListener first = new RecordingListener();
+        flight.execute(first);
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        RecordingListener second = new RecordingListener();
+        flight.execute(second);
+        assertTrue(second.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals("run 1", first.result);
+        assertEquals("run 2", second.result);
+    }
+
+    @Test
+    public void timeout_reportsTimeoutException_andInterruptsTask() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        SingleFlight<Integer, String> flight = new SingleFlight<>(mExecutor, mTimer, DIRECT,
+                new SingleFlight.Task<Integer, String>() {
+                    @Override
+                    public String run(SingleFlight.ProgressSink<Integer> progress) throws Exception {
+                        try {
+                            Thread.sleep(10000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                            throw e;
+                        }
+                        return "too late";
+                    }
+                });
+        flight.setTimeout(50);
+
+        RecordingListener listener = new RecordingListener();
+        flight.execute(listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        assertTrue(listener.error instanceof TimeoutException);
+        assertEquals(null, listener.result);
+        assertFalse(flight.isRunning());
+    }
+
+    @Test
+    public void cancellingEveryCaller_interruptsTask() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        SingleFlight<Integer, String> flight = new SingleFlight<>(mExecutor, mTimer, DIRECT,
+                new SingleFlight.Task<Integer, String>() {
+                    @Override
+                    public String run(SingleFlight.ProgressSink<Integer> progress) throws Exception {
+                        started.countDown();
+                        try {
+                            Thread.sleep(10000);
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                            throw e;
+                        }
+                        return "too late";
+                    }
+                });
+
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        SingleFlight.Handle firstHandle = flight.execute(first);
+        SingleFlight.Handle secondHandle = flight.execute(second);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        firstHandle.cancel();
+        assertTrue(flight.isRunning());
+        secondHandle.cancel();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertFalse(flight.isRunning());
+
+        mExecutor.shutdown();
+        assertTrue(mExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, first.done.getCount());
+        assertEquals(1, second.done.getCount());
+    }
+
+    @Test
+    public void cancelAction_runsOnTimeoutAndCancel_butNotAfterNormalFinish() throws Exception {
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        SingleFlight<Integer, String> flight = new SingleFlight<>(mExecutor, mTimer, DIRECT,
+                new SingleFlight.Task<Integer, String>() {
+                    @Override
+                    public String run(SingleFlight.ProgressSink<Integer> progress) throws Exception {
+                        if (runs.incrementAndGet() == 2) {
+                            progress.setCancelAction(new Runnable() {
+                                @Override
+                                public void run() {
+                                    throw new AssertionError("finished flights are not cancelled");
+                                }
+                            });
+                            return "done";
+                        }
+                        //模拟不响应中断的阻塞读取，只有关闭连接才能返回
+                        progress.setCancelAction(new Runnable() {
+                            @Override
+                            public void run() {
+                                closed.countDown();
+                            }
+                        });
+                        while (true) {
+                            try {
+                                closed.await();
+                                throw new IllegalStateException("connection closed");
+                            } catch (InterruptedException e) {
+                                //中断不能让阻塞的读取返回
+                            }
+                        }
+                    }
+                });
+        flight.setTimeout(50);
+
+        RecordingListener timedOut = new RecordingListener();
+        flight.execute(timedOut);
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertTrue(timedOut.done.await(5, TimeUnit.SECONDS));
+        assertTrue(timedOut.error instanceof TimeoutException);
+
+        RecordingListener normal = new RecordingListener();
+        flight.execute(normal);
+        assertTrue(normal.done.await(5, TimeUnit.SECONDS));
+        assertEquals("done", normal.result);
+    }
+
+    @Test
+    public void callbacks_runOnCallbackExecutor() throws Exception {
+        ExecutorService callbacks = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "callbacks");
+            }
+        });
+        SingleFlight<Integer, String> flight = new SingleFlight<>(mExecutor, mTimer, DIRECT,
+                new SingleFlight.Task<Integer, String>() {
+                    @Override
+                    public String run(SingleFlight.ProgressSink<Integer> progress) {
+                        progress.publish(1);
+                        return "done";
+                    }
+                });
+        flight.setCallbackExecutor(callbacks);
+
+        RecordingListener listener = new RecordingListener();
+        flight.execute(listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        callbacks.shutdown();
+
+        assertEquals(Collections.singletonList(1), listener.progress);
+        assertEquals(Arrays.asList("callbacks", "callbacks"), listener.callbackThreads);
+    }
+
+    private static class RecordingListener implements SingleFlight.Listener<Integer, String> {
+        final List<Integer> progress = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<String> callbackThreads = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String result;
+        volatile Exception error;
+
+        @Override
+        public void onProgress(Integer value) {
+            callbackThreads.add(Thread.currentThread().getName());
+            progress.add(value);
+        }
+
+        @Override
+        public void onResult(String value) {
+            callbackThreads.add(Thread.currentThread().getName());
+            result = value;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            callbackThreads.add(Thread.currentThread().getName());
+            error = e;
+            done.countDown();
+        }
+    }
+}
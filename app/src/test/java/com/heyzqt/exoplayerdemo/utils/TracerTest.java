@@ -0,0 +1,96 @@
+package com.heyzqt.exoplayerdemo.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+    @Before
+    public void setUp() {
+        Tracer.setCapacity(Tracer.DEFAULT_CAPACITY);
+    }
+
+    @After
+    public void tearDown() {
+        Tracer.setEnabled(false);
+        Tracer.clear();
+    }
+
+    @Test
+    public void disabled_recordsNothing_andReturnsSharedSpan() {
+        Tracer.setEnabled(false);
+        Tracer.Span span = Tracer.begin("a");
+        assertSame(span, Tracer.beginAsync("b"));
+        span.attr("key", "value").end();
+        Tracer.instant("c", "key", 1);
+
+        assertTrue(Tracer.getSpans().isEmpty());
+        assertEquals("{\"traceEvents\":[],\"displayTimeUnit\":\"ms\"}", Tracer.exportChromeTrace());
+    }
+
+    @Test
+    public void nestedSpans_exportAsCompleteEventsWithArgs() throws InterruptedException {
+        Tracer.setEnabled(true);
+        Tracer.Span outer = Tracer.begin("catalog.load");
+        Tracer.Span inner = Tracer.begin("catalog.build");
+        Thread.sleep(5);
+        inner.attr("size", 42).attr("source", "a\"b").end();
+        outer.attr("fromCache", false).end();
+        //重复结束不会重复记录
+        outer.end();
+
+        List<Tracer.Span> spans = Tracer.getSpans();
+        assertEquals(2, spans.size());
+        assertEquals("catalog.build", spans.get(0).getName());
+        assertEquals(42, spans.get(0).getAttr("size"));
+        assertTrue(spans.get(0).getDurationMs() >= 5);
+        assertTrue(spans.get(1).getDurationMs() >= spans.get(0).getDurationMs());
+
+        String trace = Tracer.exportChromeTrace();
+        assertTrue(trace, trace.startsWith("{\"traceEvents\":[{\"name\":\"thread_name\",\"ph\":\"M\""));
+        assertTrue(trace, trace.contains("{\"name\":\"catalog.build\",\"cat\":\"exodemo\",\"ph\":\"X\",\"ts\":"));
+        assertTrue(trace, trace.contains("\"args\":{\"size\":42,\"source\":\"a\\\"b\"}}"));
+        assertTrue(trace, trace.contains("\"args\":{\"fromCache\":false}}"));
+    }
+
+    @Test
+    public void asyncSpan_endsOnAnotherThread_andExportsPairedEvents() throws InterruptedException {
+        Tracer.setEnabled(true);
+        final Tracer.Span span = Tracer.beginAsync("playback.firstReady").attr("mediaId", "x");
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                span.end();
+            }
+        });
+        thread.start();
+        thread.join();
+        Tracer.instant("catalog.cacheReady", "size", 3);
+
+        String trace = Tracer.exportChromeTrace();
+        assertTrue(trace, trace.contains("\"ph\":\"b\""));
+        assertTrue(trace, trace.contains("\"ph\":\"e\""));
+        assertTrue(trace, trace.contains("{\"name\":\"catalog.cacheReady\",\"cat\":\"exodemo\",\"ph\":\"i\""));
+        assertTrue(trace, trace.contains("\"s\":\"t\""));
+    }
+
+    @Test
+    public void ring_keepsMostRecentSpans() {
+        Tracer.setEnabled(true);
+        Tracer.setCapacity(4);
+        for (int i = 0; i < 10; i++) {
+            Tracer.begin("span" + i).end();
+        }
+        List<Tracer.Span> spans = Tracer.getSpans();
+        assertEquals(4, spans.size());
+        assertEquals("span6", spans.get(0).getName());
+        assertEquals("span9", spans.get(3).getName());
+    }
+}
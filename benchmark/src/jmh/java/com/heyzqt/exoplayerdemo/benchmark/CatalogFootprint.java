@@ -0,0 +1,116 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import com.heyzqt.exoplayerdemo.model.CatalogSnapshot;
+import com.heyzqt.exoplayerdemo.model.CategoryIndex;
+import com.heyzqt.exoplayerdemo.model.MusicTrack;
+import com.heyzqt.exoplayerdemo.model.MutableMediaMetadata;
+import com.heyzqt.exoplayerdemo.model.TrackMetadata;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 目录常驻内存的大小：每首音乐平均占用的字节数，包括字符串和分类索引，不包括搜索索引（两种方式相同）。
+ * 比较原来的ConcurrentHashMap+MutableMediaMetadata（MediaMetadataCompat）和按列保存的CatalogSnapshot。
+ * 测量的是保留的堆大小，不是分配量，所以不用JMH，直接运行：./gradlew :benchmark:catalogFootprint
+ * <p>
+ * shims里的MediaMetadataCompat用HashMap代替Bundle，两者都是每个字段一个装箱的Entry，
+ * 设备上的结果会有差别，但量级相同
+ */
+public final class CatalogFootprint {
+
+    private static final int[] DEFAULT_SIZES = {10000, 100000, 1000000};
+
+    private CatalogFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println(String.format("%10s %22s %22s", "tracks", "map+metadata (B/track)",
+                "columnar (B/track)"));
+        for (int size : sizes) {
+            //先各跑一次，让类加载和JIT分配的内存不计入
+            measureLegacy(1000);
+            measureColumnar(1000);
+            System.out.println(String.format("%10d %22.1f %22.1f", size,
+                    measureLegacy(size), measureColumnar(size)));
+        }
+    }
+
+    private static double measureLegacy(int size) {
+        long before = usedHeap();
+        Object[] catalog = new Object[1];
+        {
+            List<MusicTrack> tracks = SyntheticCatalog.tracks(size);
+            ConcurrentHashMap<String, MutableMediaMetadata> musicListById = new ConcurrentHashMap<>();
+            CategoryIndex.Builder genres = new CategoryIndex.Builder(false);
+            CategoryIndex.Builder artists = new CategoryIndex.Builder(false);
+            CategoryIndex.Builder albums = new CategoryIndex.Builder(true);
+            for (int i = 0; i < size; i++) {
+                MusicTrack track = tracks.get(i);
+                tracks.set(i, null);
+                MediaMetadataCompat metadata = TrackMetadata.toMetadata(track);
+                musicListById.put(track.mediaId, new MutableMediaMetadata(track.mediaId, metadata));
+                genres.add(track.genre, track.mediaId, 0);
+                artists.add(track.artist, track.mediaId, 0);
+                albums.add(track.album, track.mediaId, track.trackNumber);
+            }
+            catalog[0] = new Object[]{musicListById, genres.build(), artists.build(), albums.build()};
+        }
+        long after = usedHeap();
+        keepAlive(catalog);
+        return (after - before) / (double) size;
+    }
+
+    private static double measureColumnar(int size) {
+        long before = usedHeap();
+        Object[] catalog = new Object[1];
+        {
+            List<MusicTrack> tracks = SyntheticCatalog.tracks(size);
+            CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+            for (int i = 0; i < size; i++) {
+                builder.add(tracks.get(i));
+                tracks.set(i, null);
+            }
+            catalog[0] = builder.build(1);
+        }
+        long after = usedHeap();
+        keepAlive(catalog);
+        return (after - before) / (double) size;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        //多次GC直到结果稳定
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                return used;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    private static volatile Object sSink;
+
+    private static void keepAlive(Object value) {
+        sSink = value;
+        sSink = null;
+    }
+}
@@ -0,0 +1,67 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import com.heyzqt.exoplayerdemo.model.MusicTrack;
+import com.heyzqt.exoplayerdemo.model.StreamingJSONParser;
+import com.heyzqt.exoplayerdemo.model.TrackMetadata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析整个music.json的耗时和分配：只解析成MusicTrack，以及继续转换成MediaMetadataCompat
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CatalogParseBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private byte[] mJson;
+    private final StreamingJSONParser mParser = new StreamingJSONParser();
+
+    @Setup
+    public void setUp() {
+        mJson = SyntheticCatalog.json(SyntheticCatalog.tracks(catalogSize));
+    }
+
+    @Benchmark
+    public int parseTracks(Blackhole blackhole) {
+        Iterator<MusicTrack> tracks = mParser.parse(new ByteArrayInputStream(mJson),
+                SyntheticCatalog.BASE_PATH);
+        int count = 0;
+        while (tracks.hasNext()) {
+            blackhole.consume(tracks.next());
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int parseToMetadata(Blackhole blackhole) {
+        Iterator<?> metadata = TrackMetadata.toMetadata(mParser.parse(
+                new ByteArrayInputStream(mJson), SyntheticCatalog.BASE_PATH));
+        int count = 0;
+        while (metadata.hasNext()) {
+            blackhole.consume(metadata.next());
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,137 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import com.heyzqt.exoplayerdemo.model.CategoryIndex;
+import com.heyzqt.exoplayerdemo.model.MusicTrack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按分类浏览：分类索引和没有索引时的做法（遍历所有MediaMetadataCompat，逐首getString比较字段）。
+ * 遍历的是MediaMetadataCompat而不是MusicTrack，和加索引之前MusicProvider读的数据一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CategoryIndexBenchmark {
+
+    private static final int KEY_COUNT = 1024;
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private List<MediaMetadataCompat> mMetadata;
+    private CategoryIndex mGenreIndex;
+    private CategoryIndex mAlbumIndex;
+    private final String[] mGenres = new String[KEY_COUNT];
+    private final String[] mAlbums = new String[KEY_COUNT];
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        List<MusicTrack> tracks = SyntheticCatalog.tracks(catalogSize);
+        mMetadata = SyntheticCatalog.metadata(tracks);
+        CategoryIndex.Builder genres = new CategoryIndex.Builder(false);
+        CategoryIndex.Builder albums = new CategoryIndex.Builder(true);
+        for (MusicTrack track : tracks) {
+            genres.add(track.genre, track.mediaId, 0);
+            albums.add(track.album, track.mediaId, track.trackNumber);
+        }
+        mGenreIndex = genres.build();
+        mAlbumIndex = albums.build();
+
+        Random random = new Random(7);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            MusicTrack track = tracks.get(random.nextInt(tracks.size()));
+            mGenres[i] = track.genre;
+            mAlbums[i] = track.album;
+        }
+    }
+
+    private int next() {
+        mNext = (mNext + 1) & (KEY_COUNT - 1);
+        return mNext;
+    }
+
+    @Benchmark
+    public List<String> listGenresIndexed() {
+        return mGenreIndex.getCategories();
+    }
+
+    @Benchmark
+    public Set<String> listGenresScan() {
+        Set<String> genres = new LinkedHashSet<>();
+        for (MediaMetadataCompat metadata : mMetadata) {
+            genres.add(metadata.getString(MediaMetadataCompat.METADATA_KEY_GENRE));
+        }
+        return genres;
+    }
+
+    @Benchmark
+    public void browseGenreIndexed(Blackhole blackhole) {
+        for (String trackId : mGenreIndex.getTrackIds(mGenres[next()])) {
+            blackhole.consume(trackId);
+        }
+    }
+
+    @Benchmark
+    public void browseGenreScan(Blackhole blackhole) {
+        String genre = mGenres[next()];
+        for (MediaMetadataCompat metadata : mMetadata) {
+            if (genre.equals(metadata.getString(MediaMetadataCompat.METADATA_KEY_GENRE))) {
+                blackhole.consume(metadata.getString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID));
+            }
+        }
+    }
+
+    @Benchmark
+    public void browseAlbumIndexed(Blackhole blackhole) {
+        for (String trackId : mAlbumIndex.getTrackIds(mAlbums[next()])) {
+            blackhole.consume(trackId);
+        }
+    }
+
+    //没有索引时还要按音轨号排序
+    @Benchmark
+    public void browseAlbumScan(Blackhole blackhole) {
+        String album = mAlbums[next()];
+        List<MediaMetadataCompat> tracks = new ArrayList<>();
+        for (MediaMetadataCompat metadata : mMetadata) {
+            if (album.equals(metadata.getString(MediaMetadataCompat.METADATA_KEY_ALBUM))) {
+                tracks.add(metadata);
+            }
+        }
+        Collections.sort(tracks, new Comparator<MediaMetadataCompat>() {
+            @Override
+            public int compare(MediaMetadataCompat a, MediaMetadataCompat b) {
+                return Long.compare(a.getLong(MediaMetadataCompat.METADATA_KEY_TRACK_NUMBER),
+                        b.getLong(MediaMetadataCompat.METADATA_KEY_TRACK_NUMBER));
+            }
+        });
+        for (MediaMetadataCompat metadata : tracks) {
+            blackhole.consume(metadata.getString(MediaMetadataCompat.METADATA_KEY_MEDIA_ID));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import com.heyzqt.exoplayerdemo.utils.LogHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志级别关闭时（shim里的Log.isLoggable总是返回false）热路径上一次日志调用的开销。
+ * 分段传入的消息在级别检查之后才拼接；调用前自己拼接的字符串每次都要付出拼接和分配，varargs还要分配数组
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LogHelperBenchmark {
+
+    private static final String TAG = LogHelper.makeLogTag(LogHelperBenchmark.class);
+
+    private final String mSource = "http://storage.example.com/music/track_42.mp3";
+    private int mPosition = 12345;
+
+    @Benchmark
+    public void disabledDeferred() {
+        LogHelper.d(TAG, "source = ", mSource, ", position = ", mPosition);
+    }
+
+    @Benchmark
+    public void disabledEagerConcat() {
+        LogHelper.d(TAG, "source = " + mSource + ", position = " + mPosition);
+    }
+
+    @Benchmark
+    public void disabledVarargs() {
+        LogHelper.d(TAG, "source = ", mSource, ", position = ", mPosition, ".");
+    }
+}
@@ -0,0 +1,90 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import com.heyzqt.exoplayerdemo.model.CatalogSnapshot;
+import com.heyzqt.exoplayerdemo.model.MappedCatalog;
+import com.heyzqt.exoplayerdemo.model.MusicTrack;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冷启动打开映射目录的耗时、后台校验内容CRC的耗时，以及打开后直接读映射区域的查找和浏览。
+ * 和{@link CatalogParseBenchmark}对比可以看出不解析JSON省下的时间
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MappedCatalogBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private File mFile;
+    private CatalogSnapshot mSnapshot;
+    private String[] mIds;
+    private String mGenre;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<MusicTrack> tracks = SyntheticCatalog.tracks(catalogSize);
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder();
+        for (MusicTrack track : tracks) {
+            builder.add(track);
+        }
+        mFile = File.createTempFile("catalog", ".bin");
+        MappedCatalog.write(mFile, builder.build(1), "\"etag\"", null);
+
+        mSnapshot = MappedCatalog.open(mFile).toSnapshot(1);
+        mIds = new String[1024];
+        for (int i = 0; i < mIds.length; i++) {
+            mIds[i] = tracks.get((int) ((long) i * tracks.size() / mIds.length)).mediaId;
+        }
+        mGenre = tracks.get(0).genre;
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public CatalogSnapshot open() throws IOException {
+        return MappedCatalog.open(mFile).toSnapshot(1);
+    }
+
+    @Benchmark
+    public boolean openAndVerify() throws IOException {
+        return MappedCatalog.open(mFile).verify();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String lookupTitle() {
+        String id = mIds[mNext++ & (mIds.length - 1)];
+        return mSnapshot.getTitleAt(mSnapshot.indexOf(id));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String browseGenre() {
+        List<String> ids = mSnapshot.getGenreIndex().getTrackIds(mGenre);
+        return ids.get(mNext++ % ids.size());
+    }
+}
@@ -0,0 +1,85 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import com.heyzqt.exoplayerdemo.utils.MediaIDHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 浏览时每个条目都会调用的mediaId操作。
+ * distinctIds较小时mediaId都在解析缓存里（浏览同一个列表），较大时几乎每次都要重新解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MediaIDHelperBenchmark {
+
+    @Param({"64", "100000"})
+    public int distinctIds;
+
+    private String[] mMediaIds;
+    private String[] mMusicIds;
+    private String[] mGenres;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        //取2的幂，方便用位运算循环
+        int size = Integer.highestOneBit(distinctIds);
+        mMediaIds = new String[size];
+        mMusicIds = new String[size];
+        mGenres = new String[size];
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            mMusicIds[i] = String.valueOf(("track_" + i + ".mp3").hashCode());
+            mGenres[i] = "Genre " + random.nextInt(40);
+            mMediaIds[i] = MediaIDHelper.createMediaID(mMusicIds[i],
+                    MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE, mGenres[i]);
+        }
+    }
+
+    private int next() {
+        mNext = (mNext + 1) & (mMediaIds.length - 1);
+        return mNext;
+    }
+
+    @Benchmark
+    public String createMediaID() {
+        int i = next();
+        return MediaIDHelper.createMediaID(mMusicIds[i], MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE,
+                mGenres[i]);
+    }
+
+    @Benchmark
+    public String extractMusicID() {
+        return MediaIDHelper.extractMusicIDFromMediaID(mMediaIds[next()]);
+    }
+
+    @Benchmark
+    public String[] getHierarchy() {
+        return MediaIDHelper.getHierarchy(mMediaIds[next()]);
+    }
+
+    @Benchmark
+    public String getParentMediaID() {
+        return MediaIDHelper.getParentMediaID(mMediaIds[next()]);
+    }
+
+    @Benchmark
+    public String extractBrowseCategoryValue() {
+        return MediaIDHelper.extractBrowseCategoryValueFromMediaID(mMediaIds[next()]);
+    }
+}
@@ -0,0 +1,46 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import com.heyzqt.exoplayerdemo.model.MusicProvider;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MusicProvider加载整个目录（建立id表、分类索引和搜索索引）的耗时和分配。
+ * 数据源直接返回准备好的MediaMetadataCompat，不包含网络和解析
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MusicProviderLoadBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private List<MediaMetadataCompat> mMetadata;
+
+    @Setup
+    public void setUp() {
+        mMetadata = SyntheticCatalog.metadata(SyntheticCatalog.tracks(catalogSize));
+    }
+
+    @Benchmark
+    public MusicProvider populate() {
+        return SyntheticCatalog.load(new MusicProvider(SyntheticCatalog.source(mMetadata)));
+    }
+}
@@ -0,0 +1,112 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import com.heyzqt.exoplayerdemo.model.ChildrenPage;
+import com.heyzqt.exoplayerdemo.model.MusicProvider;
+import com.heyzqt.exoplayerdemo.model.MusicTrack;
+import com.heyzqt.exoplayerdemo.utils.MediaIDHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目录加载完成后的查询：按id取音乐、浏览分类、搜索。
+ * 同时报告吞吐量和延迟分布（SampleTime给出p50/p90/p99等分位数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MusicProviderLookupBenchmark {
+
+    private static final int KEY_COUNT = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int catalogSize;
+
+    private MusicProvider mProvider;
+    private final String[] mMusicIds = new String[KEY_COUNT];
+    private final String[] mGenres = new String[KEY_COUNT];
+    private final String[] mAlbums = new String[KEY_COUNT];
+    private final String[] mQueries = new String[KEY_COUNT];
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        List<MusicTrack> tracks = SyntheticCatalog.tracks(catalogSize);
+        mProvider = SyntheticCatalog.load(
+                new MusicProvider(SyntheticCatalog.source(SyntheticCatalog.metadata(tracks))));
+
+        Random random = new Random(7);
+        for (int i = 0; i < KEY_COUNT; i++) {
+            MusicTrack track = tracks.get(random.nextInt(tracks.size()));
+            mMusicIds[i] = track.mediaId;
+            mGenres[i] = track.genre;
+            mAlbums[i] = track.album;
+            //边输入边搜索：标题的前缀
+            mQueries[i] = track.title.substring(0, Math.min(track.title.length(), 6 + i % 4));
+        }
+    }
+
+    private int next() {
+        mNext = (mNext + 1) & (KEY_COUNT - 1);
+        return mNext;
+    }
+
+    @Benchmark
+    public MediaMetadataCompat getMusic() {
+        return mProvider.getMusic(mMusicIds[next()]);
+    }
+
+    @Benchmark
+    public void browseGenre(Blackhole blackhole) {
+        for (MediaMetadataCompat metadata : mProvider.getMusicsByGenre(mGenres[next()])) {
+            blackhole.consume(metadata);
+        }
+    }
+
+    @Benchmark
+    public void browseAlbum(Blackhole blackhole) {
+        for (MediaMetadataCompat metadata : mProvider.getMusicsByAlbum(mAlbums[next()])) {
+            blackhole.consume(metadata);
+        }
+    }
+
+    /**
+     * 和browseGenre对比：只取第一页，代价和流派的大小无关
+     */
+    @Benchmark
+    public void browseGenrePage(Blackhole blackhole) {
+        ChildrenPage page = mProvider.getChildren(
+                MediaIDHelper.createMediaID(null, MediaIDHelper.MEDIA_ID_MUSICS_BY_GENRE, mGenres[next()]), 0, 50);
+        for (int i = 0; i < page.size(); i++) {
+            blackhole.consume(page.getMediaId(i));
+            blackhole.consume(page.getTitle(i));
+        }
+    }
+
+    @Benchmark
+    public List<String> listGenres() {
+        return mProvider.getGenres();
+    }
+
+    @Benchmark
+    public List<MediaMetadataCompat> search() {
+        return mProvider.searchMusic(mQueries[next()], 20);
+    }
+}
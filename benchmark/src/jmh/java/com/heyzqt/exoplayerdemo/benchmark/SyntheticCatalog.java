@@ -0,0 +1,126 @@
+package com.heyzqt.exoplayerdemo.benchmark;
+
+import android.support.v4.media.MediaMetadataCompat;
+
+import com.heyzqt.exoplayerdemo.model.MusicProvider;
+import com.heyzqt.exoplayerdemo.model.MusicProviderSource;
+import com.heyzqt.exoplayerdemo.model.MusicTrack;
+import com.heyzqt.exoplayerdemo.model.TrackMetadata;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 固定随机种子生成的合成目录，每次运行的数据完全相同。
+ * 流派、歌手、专辑的数量随目录大小增长，分布接近真实目录
+ */
+final class SyntheticCatalog {
+
+    static final String BASE_PATH = "http://example.com/music/";
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * 加载目录并等待完成，包括在加载线程上建立索引的时间
+     */
+    static MusicProvider load(MusicProvider provider) {
+        final CountDownLatch done = new CountDownLatch(1);
+        final boolean[] success = new boolean[1];
+        provider.retrieveMediaAsync(new MusicProvider.Callback() {
+            @Override
+            public void onMusicCatalogReady(boolean ready) {
+                success[0] = ready;
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        if (!success[0]) {
+            throw new IllegalStateException("Catalog failed to load");
+        }
+        return provider;
+    }
+
+    static int genreCount(int size) {
+        return 40;
+    }
+
+    static int artistCount(int size) {
+        return Math.max(1, size / 20);
+    }
+
+    static int albumCount(int size) {
+        return Math.max(1, size / 10);
+    }
+
+    static List<MusicTrack> tracks(int size) {
+        Random random = new Random(42);
+        int genres = genreCount(size);
+        int artists = artistCount(size);
+        int albums = albumCount(size);
+        List<MusicTrack> tracks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String source = BASE_PATH + "track_" + i + ".mp3";
+            tracks.add(new MusicTrack(String.valueOf(source.hashCode()), source, "Track " + i,
+                    "Album " + random.nextInt(albums), "Artist " + random.nextInt(artists),
+                    "Genre " + random.nextInt(genres), BASE_PATH + "art_" + (i / 10) + ".jpg",
+                    1 + random.nextInt(15), 15, 180000 + random.nextInt(120000)));
+        }
+        return tracks;
+    }
+
+    /**
+     * 和服务器上music.json相同格式的UTF-8数据，source和image使用相对路径
+     */
+    static byte[] json(List<MusicTrack> tracks) {
+        StringBuilder sb = new StringBuilder(tracks.size() * 260 + 16);
+        sb.append("{\"music\":[");
+        for (int i = 0; i < tracks.size(); i++) {
+            MusicTrack track = tracks.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"title\":\"").append(track.title)
+                    .append("\",\"album\":\"").append(track.album)
+                    .append("\",\"artist\":\"").append(track.artist)
+                    .append("\",\"genre\":\"").append(track.genre)
+                    .append("\",\"source\":\"").append(track.source.substring(BASE_PATH.length()))
+                    .append("\",\"image\":\"").append(track.albumArtUri.substring(BASE_PATH.length()))
+                    .append("\",\"trackNumber\":").append(track.trackNumber)
+                    .append(",\"totalTrackCount\":").append(track.totalTrackCount)
+                    .append(",\"duration\":").append(track.duration / 1000)
+                    .append(",\"site\":\"https://example.com\"}");
+        }
+        sb.append("]}");
+        return sb.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    static List<MediaMetadataCompat> metadata(List<MusicTrack> tracks) {
+        List<MediaMetadataCompat> metadata = new ArrayList<>(tracks.size());
+        for (MusicTrack track : tracks) {
+            metadata.add(TrackMetadata.toMetadata(track));
+        }
+        return metadata;
+    }
+
+    /**
+     * 每次迭代都返回同一批MediaMetadataCompat，测量的是MusicProvider本身的开销
+     */
+    static MusicProviderSource source(final List<MediaMetadataCompat> metadata) {
+        return new MusicProviderSource() {
+            @Override
+            public Iterator<MediaMetadataCompat> iterator() {
+                return metadata.iterator();
+            }
+        };
+    }
+}
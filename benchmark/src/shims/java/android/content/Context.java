@@ -0,0 +1,10 @@
+package android.content;
+
+import java.io.File;
+
+public abstract class Context {
+
+    public abstract File getCacheDir();
+
+    public abstract Context getApplicationContext();
+}
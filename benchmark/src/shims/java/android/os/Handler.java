@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * 基准测试用：post()在调用线程上同步执行
+ */
+public class Handler {
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable r) {
+        r.run();
+        return true;
+    }
+}
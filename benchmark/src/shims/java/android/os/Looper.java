@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * 基准测试用：没有消息循环，只用来构造Handler
+ */
+public final class Looper {
+
+    private static final Looper sMainLooper = new Looper();
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+}
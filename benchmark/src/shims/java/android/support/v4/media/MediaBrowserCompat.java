@@ -0,0 +1,19 @@
+package android.support.v4.media;
+
+public final class MediaBrowserCompat {
+
+    private MediaBrowserCompat() {
+    }
+
+    public static class MediaItem {
+        private final MediaDescriptionCompat mDescription;
+
+        public MediaItem(MediaDescriptionCompat description) {
+            this.mDescription = description;
+        }
+
+        public MediaDescriptionCompat getDescription() {
+            return mDescription;
+        }
+    }
+}
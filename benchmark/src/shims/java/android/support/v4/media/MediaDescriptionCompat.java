@@ -0,0 +1,14 @@
+package android.support.v4.media;
+
+public final class MediaDescriptionCompat {
+
+    private final String mMediaId;
+
+    MediaDescriptionCompat(String mediaId) {
+        this.mMediaId = mediaId;
+    }
+
+    public String getMediaId() {
+        return mMediaId;
+    }
+}
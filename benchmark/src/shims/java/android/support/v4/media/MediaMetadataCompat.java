@@ -0,0 +1,78 @@
+package android.support.v4.media;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试用：用HashMap保存字段，接口和androidx.media中的同名类一致
+ */
+public final class MediaMetadataCompat {
+
+    public static final String METADATA_KEY_TITLE = "android.media.metadata.TITLE";
+    public static final String METADATA_KEY_ARTIST = "android.media.metadata.ARTIST";
+    public static final String METADATA_KEY_DURATION = "android.media.metadata.DURATION";
+    public static final String METADATA_KEY_ALBUM = "android.media.metadata.ALBUM";
+    public static final String METADATA_KEY_GENRE = "android.media.metadata.GENRE";
+    public static final String METADATA_KEY_TRACK_NUMBER = "android.media.metadata.TRACK_NUMBER";
+    public static final String METADATA_KEY_NUM_TRACKS = "android.media.metadata.NUM_TRACKS";
+    public static final String METADATA_KEY_ALBUM_ART_URI = "android.media.metadata.ALBUM_ART_URI";
+    public static final String METADATA_KEY_MEDIA_ID = "android.media.metadata.MEDIA_ID";
+
+    private final Map<String, Object> mValues;
+    private MediaDescriptionCompat mDescription;
+
+    private MediaMetadataCompat(Map<String, Object> values) {
+        this.mValues = values;
+    }
+
+    public boolean containsKey(String key) {
+        return mValues.containsKey(key);
+    }
+
+    public String getString(String key) {
+        Object value = mValues.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public long getLong(String key) {
+        Object value = mValues.get(key);
+        return value instanceof Long ? (Long) value : 0;
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public MediaDescriptionCompat getDescription() {
+        if (mDescription == null) {
+            mDescription = new MediaDescriptionCompat(getString(METADATA_KEY_MEDIA_ID));
+        }
+        return mDescription;
+    }
+
+    public static final class Builder {
+        private final Map<String, Object> mValues;
+
+        public Builder() {
+            mValues = new HashMap<>();
+        }
+
+        public Builder(MediaMetadataCompat source) {
+            mValues = new HashMap<>(source.mValues);
+        }
+
+        public Builder putString(String key, String value) {
+            mValues.put(key, value);
+            return this;
+        }
+
+        public Builder putLong(String key, long value) {
+            mValues.put(key, value);
+            return this;
+        }
+
+        public MediaMetadataCompat build() {
+            return new MediaMetadataCompat(new HashMap<>(mValues));
+        }
+    }
+}
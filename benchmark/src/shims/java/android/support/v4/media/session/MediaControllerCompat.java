@@ -0,0 +1,18 @@
+package android.support.v4.media.session;
+
+import android.app.Activity;
+import android.support.v4.media.MediaMetadataCompat;
+
+public final class MediaControllerCompat {
+
+    private MediaControllerCompat() {
+    }
+
+    public static MediaControllerCompat getMediaController(Activity activity) {
+        return null;
+    }
+
+    public MediaMetadataCompat getMetadata() {
+        return null;
+    }
+}
@@ -0,0 +1,15 @@
+package android.text;
+
+public final class TextUtils {
+
+    private TextUtils() {
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+
+    public static boolean equals(CharSequence a, CharSequence b) {
+        return a == b || (a != null && b != null && a.equals(b));
+    }
+}
@@ -0,0 +1,8 @@
+package com.heyzqt.exoplayerdemo;
+
+/**
+ * 基准测试按release构建的行为运行，不输出调试日志
+ */
+public final class BuildConfig {
+    public static final boolean DEBUG = false;
+}